@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.data.batch;
+
+import co.cask.cdap.api.dataset.DataSetException;
+
+/**
+ * This interface is implemented by a dataset if at the end of a batch job (MapReduce, Spark, ...)
+ * the consumption of its input needs to be committed, or rolled back, depending on success of the job.
+ * For example, a dataset that is consumed incrementally can record the position up to which it was
+ * read, once the job that read it has succeeded. This is the input counterpart of {@link DatasetOutputCommitter}.
+ */
+public interface DatasetInputCommitter {
+
+  /**
+   * Called if the job that read this dataset completed successfully.
+   */
+  void onInputSuccess() throws DataSetException;
+
+  /**
+   * Called if the job that read this dataset failed.
+   */
+  void onInputFailure() throws DataSetException;
+}
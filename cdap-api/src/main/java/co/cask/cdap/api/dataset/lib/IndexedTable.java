@@ -31,6 +31,8 @@ import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Longs;
@@ -39,6 +41,9 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -90,7 +95,15 @@ import javax.annotation.Nullable;
  * as it would break parsing of the configuration property.
  * </p>
  *
+ * <p>Optionally, a set of covering columns can be configured with
+ * {@link co.cask.cdap.api.dataset.lib.IndexedTableDefinition#COVERING_COLUMNS_CONF_KEY}. The values of these columns
+ * are copied into every index row of a data row, so that {@link #readByIndex(byte[], byte[], byte[][])} can return
+ * them without reading the data table. Covering columns must be configured when the dataset instance is created,
+ * because existing index rows are not updated when the configuration changes.
+ * </p>
+ *
  * @see co.cask.cdap.api.dataset.lib.IndexedTableDefinition#INDEX_COLUMNS_CONF_KEY
+ * @see co.cask.cdap.api.dataset.lib.IndexedTableDefinition#COVERING_COLUMNS_CONF_KEY
  */
 public class IndexedTable extends AbstractDataset implements Table {
   private static final Logger LOG = LoggerFactory.getLogger(IndexedTable.class);
@@ -100,10 +113,24 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   private static final byte[] IDX_COL = {'r'};
 
+  /**
+   * Prefix of the column keys used to store the values of covering columns in the secondary index.
+   */
+  private static final byte[] COVERING_COL_PREFIX = {'c', ':'};
+
+  /**
+   * Number of index entries resolved with one multi-get on the data table when reading by index.
+   */
+  private static final int INDEX_READ_BATCH_SIZE = 100;
+
   // the two underlying tables
   private Table table, index;
   // the secondary index column
   private SortedSet<byte[]> indexedColumns;
+  // the columns whose values are copied into the index rows
+  private SortedSet<byte[]> coveringColumns;
+  // the columns that need to be read to maintain the index: indexed and covering columns
+  private byte[][] columnsToRead;
 
   private byte[] keyDelimiter = new byte[] {0};
 
@@ -116,6 +143,19 @@ public class IndexedTable extends AbstractDataset implements Table {
    * @param columnsToIndex the names of the data columns to index
    */
   public IndexedTable(String name, Table table, Table index, byte[][] columnsToIndex) {
+    this(name, table, index, columnsToIndex, new byte[0][]);
+  }
+
+  /**
+   * Configuration time constructor.
+   *
+   * @param name the name of the table
+   * @param table table to use as the table
+   * @param index table to use as the index
+   * @param columnsToIndex the names of the data columns to index
+   * @param coveringColumns the names of the data columns to store in the index rows
+   */
+  public IndexedTable(String name, Table table, Table index, byte[][] columnsToIndex, byte[][] coveringColumns) {
     super(name, table, index);
     this.table = table;
     this.index = index;
@@ -123,6 +163,14 @@ public class IndexedTable extends AbstractDataset implements Table {
     for (byte[] col : columnsToIndex) {
       this.indexedColumns.add(col);
     }
+    this.coveringColumns = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    for (byte[] col : coveringColumns) {
+      this.coveringColumns.add(col);
+    }
+    Set<byte[]> columnsToRead = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    columnsToRead.addAll(this.indexedColumns);
+    columnsToRead.addAll(this.coveringColumns);
+    this.columnsToRead = columnsToRead.toArray(new byte[columnsToRead.size()][]);
   }
 
   /**
@@ -170,13 +218,36 @@ public class IndexedTable extends AbstractDataset implements Table {
    * @throws java.lang.IllegalArgumentException if the given column is not configured for indexing.
    */
   public Scanner readByIndex(byte[] column, byte[] value) {
+    return readByIndex(column, value, null);
+  }
+
+  /**
+   * Reads the given columns of table rows by the given secondary index key.  If all requested columns are
+   * covering columns or the indexed column itself, the rows are read from the index only.  Otherwise the data rows
+   * are read from the data table, with one multi-get per batch of index entries.
+   *
+   * @param columns the columns to read, or {@code null} to read all columns of the data rows
+   * @return a Scanner returning rows from the data table, whose stored value for the given column matches the
+   * given value.
+   * @throws java.lang.IllegalArgumentException if the given column is not configured for indexing.
+   */
+  public Scanner readByIndex(byte[] column, byte[] value, @Nullable byte[][] columns) {
     if (!indexedColumns.contains(column)) {
       throw new IllegalArgumentException("Column " + Bytes.toStringBinary(column) + " is not configured for indexing");
     }
+    boolean covered = columns != null;
+    if (columns != null) {
+      for (byte[] col : columns) {
+        if (!coveringColumns.contains(col) && !Bytes.equals(col, column)) {
+          covered = false;
+          break;
+        }
+      }
+    }
     byte[] rowKeyPrefix = Bytes.concat(column, keyDelimiter, value, keyDelimiter);
     byte[] stopRow = Bytes.stopKeyForPrefix(rowKeyPrefix);
     Scanner indexScan = index.scan(rowKeyPrefix, stopRow);
-    return new IndexScanner(indexScan, rowKeyPrefix);
+    return new IndexScanner(indexScan, rowKeyPrefix, column, value, columns, covered);
   }
 
   /**
@@ -187,38 +258,145 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   @Override
   public void put(Put put) {
-    // if different value exists, remove current index ref
-    // add a new index ref unless same value already exists
-    byte[] dataRow = put.getRow();
-    // find which values need to be indexed
-    Map<byte[], byte[]> putColumns = put.getValues();
-    Set<byte[]> colsToIndex = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], byte[]> putEntry : putColumns.entrySet()) {
-      if (indexedColumns.contains(putEntry.getKey())) {
-        colsToIndex.add(putEntry.getKey());
+    put(Collections.singletonList(put));
+  }
+
+  /**
+   * Writes multiple puts to the data table. The existing values of the indexed and covering columns of all rows
+   * are read with a single multi-get, and the indexes are then updated as for {@link #put(Put)}.
+   *
+   * @param puts The put operations to store, applied in order
+   */
+  public void put(List<Put> puts) {
+    // read the existing indexed and covering values of all rows whose index may be affected
+    List<Get> gets = Lists.newArrayList();
+    for (Put put : puts) {
+      if (affectsIndex(put.getValues().keySet())) {
+        gets.add(new Get(put.getRow(), columnsToRead));
+      }
+    }
+    Map<byte[], Map<byte[], byte[]>> existingRows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    if (!gets.isEmpty()) {
+      List<Row> rows = table.get(gets);
+      for (int i = 0; i < gets.size(); i++) {
+        existingRows.put(gets.get(i).getRow(), toColumnMap(rows.get(i)));
       }
     }
 
-    // first read the existing indexed values to find which have changed and need to be updated
-    Row existingRow = table.get(dataRow, colsToIndex.toArray(new byte[colsToIndex.size()][]));
-    if (existingRow != null) {
-      for (Map.Entry<byte[], byte[]> entry : existingRow.getColumns().entrySet()) {
-        if (!Arrays.equals(entry.getValue(), putColumns.get(entry.getKey()))) {
-          index.delete(createIndexKey(dataRow, entry.getKey(), entry.getValue()), IDX_COL);
+    for (Put put : puts) {
+      Map<byte[], byte[]> existing = existingRows.get(put.getRow());
+      if (existing != null) {
+        updateIndex(put.getRow(), existing, put.getValues());
+      }
+      table.put(put);
+    }
+  }
+
+  private boolean affectsIndex(Collection<byte[]> columns) {
+    for (byte[] column : columns) {
+      if (indexedColumns.contains(column) || coveringColumns.contains(column)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Map<byte[], byte[]> toColumnMap(@Nullable Row row) {
+    Map<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    if (row != null) {
+      columns.putAll(row.getColumns());
+    }
+    return columns;
+  }
+
+  /**
+   * Reads the existing values of the indexed and covering columns of a row.
+   */
+  private Map<byte[], byte[]> readIndexedValues(byte[] row) {
+    return toColumnMap(table.get(row, columnsToRead));
+  }
+
+  /**
+   * Updates the index for a change of a data row. Index entries are removed for indexed values that changed or were
+   * deleted, and added for new values. If covering columns changed, the index entries of unchanged values are
+   * updated with the new covering values.
+   *
+   * @param row the data row
+   * @param existing the existing values of the indexed and covering columns; updated to reflect the change
+   * @param changes the new values of changed columns, with {@code null} values for deleted columns
+   */
+  private void updateIndex(byte[] row, Map<byte[], byte[]> existing, Map<byte[], byte[]> changes) {
+    Map<byte[], byte[]> changedCovering = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (byte[] col : coveringColumns) {
+      if (changes.containsKey(col) && !Arrays.equals(changes.get(col), existing.get(col))) {
+        changedCovering.put(col, changes.get(col));
+      }
+    }
+
+    for (byte[] col : indexedColumns) {
+      byte[] oldValue = existing.get(col);
+      byte[] newValue = changes.containsKey(col) ? changes.get(col) : oldValue;
+      if (Arrays.equals(oldValue, newValue)) {
+        // value already indexed, only update the covering values
+        if (newValue != null && !changedCovering.isEmpty()) {
+          updateCoveringValues(createIndexKey(row, col, newValue), changedCovering);
+        }
+        continue;
+      }
+      if (oldValue != null) {
+        deleteIndexEntry(createIndexKey(row, col, oldValue));
+      }
+      if (newValue != null) {
+        Put indexPut = new Put(createIndexKey(row, col, newValue), IDX_COL, row);
+        for (byte[] coveringCol : coveringColumns) {
+          byte[] coveringValue = changes.containsKey(coveringCol)
+            ? changes.get(coveringCol) : existing.get(coveringCol);
+          if (coveringValue != null) {
+            indexPut.add(Bytes.add(COVERING_COL_PREFIX, coveringCol), coveringValue);
+          }
+        }
+        index.put(indexPut);
+      }
+    }
+
+    // subsequent changes of the same row must see this change
+    for (Map.Entry<byte[], byte[]> change : changes.entrySet()) {
+      byte[] col = change.getKey();
+      if (indexedColumns.contains(col) || coveringColumns.contains(col)) {
+        if (change.getValue() == null) {
+          existing.remove(col);
         } else {
-          // value already indexed
-          colsToIndex.remove(entry.getKey());
+          existing.put(col, change.getValue());
         }
       }
     }
+  }
 
-    // add new index entries for all values that have changed or did not exist
-    for (byte[] col : colsToIndex) {
-      index.put(createIndexKey(dataRow, col, putColumns.get(col)), IDX_COL, dataRow);
+  private void updateCoveringValues(byte[] indexKey, Map<byte[], byte[]> changedCovering) {
+    Put put = new Put(indexKey);
+    List<byte[]> deleted = Lists.newArrayList();
+    for (Map.Entry<byte[], byte[]> entry : changedCovering.entrySet()) {
+      byte[] indexColumn = Bytes.add(COVERING_COL_PREFIX, entry.getKey());
+      if (entry.getValue() == null) {
+        deleted.add(indexColumn);
+      } else {
+        put.add(indexColumn, entry.getValue());
+      }
     }
+    if (!put.getValues().isEmpty()) {
+      index.put(put);
+    }
+    if (!deleted.isEmpty()) {
+      index.delete(indexKey, deleted.toArray(new byte[deleted.size()][]));
+    }
+  }
 
-    // store the data row
-    table.put(put);
+  private void deleteIndexEntry(byte[] indexKey) {
+    if (coveringColumns.isEmpty()) {
+      index.delete(indexKey, IDX_COL);
+    } else {
+      index.delete(indexKey);
+    }
   }
 
   private byte[] createIndexKey(byte[] row, byte[] column, byte[] value) {
@@ -258,14 +436,8 @@ public class IndexedTable extends AbstractDataset implements Table {
 
   @Override
   public void delete(byte[] row) {
-    Row existingRow = table.get(row);
-    if (existingRow == null) {
-      // no row to delete
-      return;
-    }
-
     // delete all index entries
-    deleteIndexEntries(existingRow);
+    deleteIndexEntries(row, columnsToRead);
 
     // delete the row
     table.delete(row);
@@ -278,26 +450,22 @@ public class IndexedTable extends AbstractDataset implements Table {
 
   @Override
   public void delete(byte[] row, byte[][] columns) {
-    Row existingRow = table.get(row, columns);
-    if (existingRow == null) {
-      // no row to delete
-      return;
-    }
-
     // delete all index entries
-    deleteIndexEntries(existingRow);
+    deleteIndexEntries(row, columns);
 
     // delete the row's columns
     table.delete(row, columns);
   }
 
-  private void deleteIndexEntries(Row existingRow) {
-    byte[] row = existingRow.getRow();
-    for (Map.Entry<byte[], byte[]> entry : existingRow.getColumns().entrySet()) {
-      if (indexedColumns.contains(entry.getKey())) {
-        index.delete(createIndexKey(row, entry.getKey(), entry.getValue()), IDX_COL);
-      }
+  private void deleteIndexEntries(byte[] row, byte[][] columns) {
+    if (!affectsIndex(Arrays.asList(columns))) {
+      return;
+    }
+    Map<byte[], byte[]> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : columns) {
+      changes.put(column, null);
     }
+    updateIndex(row, readIndexedValues(row), changes);
   }
 
   /**
@@ -313,24 +481,19 @@ public class IndexedTable extends AbstractDataset implements Table {
     // the index is not affected - just execute the swap.
     // also, if the swap is on the index column, but the old value
     // is the same as the new value, then the index is not affected either.
-    if (!indexedColumns.contains(column) ||
+    if (!(indexedColumns.contains(column) || coveringColumns.contains(column)) ||
         Arrays.equals(expected, newValue)) {
       return table.compareAndSwap(row, column, expected, newValue);
     }
 
-    // the swap is on the index column. it will only succeed if the current
-    // value matches the expected value of the swap. if that value is not null,
-    // then we must remove the row key from the index for that value.
-    Delete idxDelete = null;
-    if (expected != null) {
-      idxDelete = new Delete(createIndexKey(row, column, expected), IDX_COL);
-    }
-
-    // if the new value is not null, then we must add the rowkey to the index
-    // for that value.
-    Put idxPut = null;
-    if (newValue != null) {
-      idxPut = new Put(createIndexKey(row, column, newValue), IDX_COL, row);
+    // the swap is on an indexed or covering column. it will only succeed if the current
+    // value matches the expected value of the swap. in that case, the index must be
+    // updated from the expected value to the new value.
+    Map<byte[], byte[]> existing;
+    if (coveringColumns.isEmpty()) {
+      existing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    } else {
+      existing = readIndexedValues(row);
     }
 
     // apply all operations to both tables
@@ -339,12 +502,14 @@ public class IndexedTable extends AbstractDataset implements Table {
       // do nothing: no changes
       return false;
     }
-    if (idxDelete != null) {
-      index.delete(idxDelete);
-    }
-    if (idxPut != null) {
-      index.put(idxPut);
+    if (expected == null) {
+      existing.remove(column);
+    } else {
+      existing.put(column, expected);
     }
+    Map<byte[], byte[]> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    changes.put(column, newValue);
+    updateIndex(row, existing, changes);
 
     return true;
   }
@@ -375,7 +540,14 @@ public class IndexedTable extends AbstractDataset implements Table {
   public Row incrementAndGet(byte[] row, byte[][] columns, long[] amounts) {
     Preconditions.checkArgument(columns.length == amounts.length, "Size of columns and amounts arguments must match");
 
-    Row existingRow = table.get(row, columns);
+    // read the incremented columns, and the indexed and covering columns if the index is affected
+    boolean affectsIndex = affectsIndex(Arrays.asList(columns));
+    Set<byte[]> columnsToGet = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    columnsToGet.addAll(Arrays.asList(columns));
+    if (affectsIndex) {
+      columnsToGet.addAll(Arrays.asList(columnsToRead));
+    }
+    Row existingRow = table.get(row, columnsToGet.toArray(new byte[columnsToGet.size()][]));
     byte[][] updatedValues = new byte[columns.length][];
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
 
@@ -390,16 +562,23 @@ public class IndexedTable extends AbstractDataset implements Table {
                                               " column: " + Bytes.toStringBinary(columns[i]));
           }
           existingValue = Bytes.toLong(existingBytes);
-          if (indexedColumns.contains(columns[i])) {
-            index.delete(createIndexKey(row, columns[i], existingBytes), IDX_COL);
-          }
         }
       }
       updatedValues[i] = Bytes.toBytes(existingValue + amounts[i]);
       result.put(columns[i], updatedValues[i]);
-      if (indexedColumns.contains(columns[i])) {
-        index.put(createIndexKey(row, columns[i], updatedValues[i]), IDX_COL, row);
+    }
+
+    if (affectsIndex) {
+      Map<byte[], byte[]> existing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      if (existingRow != null) {
+        for (byte[] col : columnsToRead) {
+          byte[] value = existingRow.get(col);
+          if (value != null) {
+            existing.put(col, value);
+          }
+        }
       }
+      updateIndex(row, existing, result);
     }
 
     table.put(row, columns, updatedValues);
@@ -432,7 +611,7 @@ public class IndexedTable extends AbstractDataset implements Table {
   @Override
   public void increment(byte[] row, byte[] column, long amount) {
     // read-less increments should not be used on indexed columns
-    if (indexedColumns.contains(column)) {
+    if (indexedColumns.contains(column) || coveringColumns.contains(column)) {
       throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
                                            + Bytes.toStringBinary(column) + "'");
     }
@@ -449,7 +628,7 @@ public class IndexedTable extends AbstractDataset implements Table {
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     // read-less increments should not be used on indexed columns
     for (byte[] col : columns) {
-      if (indexedColumns.contains(col)) {
+      if (indexedColumns.contains(col) || coveringColumns.contains(col)) {
         throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
                                              + Bytes.toStringBinary(col) + "'");
       }
@@ -466,7 +645,7 @@ public class IndexedTable extends AbstractDataset implements Table {
   @Override
   public void increment(Increment increment) {
     for (byte[] col : increment.getValues().keySet()) {
-      if (indexedColumns.contains(col)) {
+      if (indexedColumns.contains(col) || coveringColumns.contains(col)) {
         throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
                                              + Bytes.toStringBinary(col) + "'");
       }
@@ -522,32 +701,85 @@ public class IndexedTable extends AbstractDataset implements Table {
     // scanner over index table
     private final Scanner baseScanner;
     private final byte[] rowKeyPrefix;
-
-    public IndexScanner(Scanner baseScanner, byte[] rowKeyPrefix) {
+    private final byte[] column;
+    private final byte[] value;
+    // columns to return, or null for all columns
+    private final byte[][] columns;
+    // whether all columns to return are stored in the index rows
+    private final boolean covered;
+
+    private Iterator<Row> bufferedRows = Iterators.emptyIterator();
+    private boolean indexExhausted;
+
+    public IndexScanner(Scanner baseScanner, byte[] rowKeyPrefix, byte[] column, byte[] value,
+                        @Nullable byte[][] columns, boolean covered) {
       this.baseScanner = baseScanner;
       this.rowKeyPrefix = rowKeyPrefix;
+      this.column = column;
+      this.value = value;
+      this.columns = columns;
+      this.covered = covered;
     }
 
     @Nullable
     @Override
     public Row next() {
-      // TODO: retrieve results in batches to minimize RPC overhead (requires multi-get support in table)
-      Row dataRow = null;
       // keep going until we hit a non-null, non-empty data row, or we exhaust the index
-      while (dataRow == null) {
+      while (!bufferedRows.hasNext()) {
+        if (indexExhausted) {
+          return null;
+        }
+        bufferedRows = readBatch().iterator();
+      }
+      return bufferedRows.next();
+    }
+
+    /**
+     * Reads the next batch of index entries and resolves them to rows, either from the index rows if the
+     * columns are covered, or with one multi-get on the data table.
+     */
+    private List<Row> readBatch() {
+      List<Row> rows = Lists.newArrayList();
+      List<Get> gets = Lists.newArrayList();
+      while (rows.size() + gets.size() < INDEX_READ_BATCH_SIZE) {
         Row indexRow = baseScanner.next();
         if (indexRow == null) {
           // end of index
-          return null;
+          indexExhausted = true;
+          break;
         }
         byte[] rowkey = indexRow.get(IDX_COL);
         // verify that datarow matches the expected row key to avoid issues with column name or value
         // containing the delimiter used
-        if (rowkey != null && Bytes.equals(indexRow.getRow(), Bytes.add(rowKeyPrefix, rowkey))) {
-          dataRow = table.get(rowkey);
+        if (rowkey == null || !Bytes.equals(indexRow.getRow(), Bytes.add(rowKeyPrefix, rowkey))) {
+          continue;
+        }
+        if (covered) {
+          rows.add(toCoveredRow(rowkey, indexRow));
+        } else {
+          gets.add(columns == null ? new Get(rowkey) : new Get(rowkey, columns));
+        }
+      }
+      if (!gets.isEmpty()) {
+        for (Row dataRow : table.get(gets)) {
+          if (dataRow != null && !dataRow.isEmpty()) {
+            rows.add(dataRow);
+          }
+        }
+      }
+      return rows;
+    }
+
+    private Row toCoveredRow(byte[] rowkey, Row indexRow) {
+      NavigableMap<byte[], byte[]> values = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (byte[] col : columns) {
+        byte[] colValue = Bytes.equals(col, column)
+          ? value : indexRow.get(Bytes.add(COVERING_COL_PREFIX, col));
+        if (colValue != null) {
+          values.put(col, colValue);
         }
       }
-      return dataRow;
+      return new Result(rowkey, values);
     }
 
     @Override
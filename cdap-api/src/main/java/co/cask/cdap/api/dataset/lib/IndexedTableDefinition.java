@@ -43,6 +43,13 @@ public class IndexedTableDefinition
    */
   public static final String INDEX_COLUMNS_CONF_KEY = "columnsToIndex";
 
+  /**
+   * Configuration key for defining column names whose values are stored in the index, in the
+   * DatasetSpecification properties. Reads by index that only request these columns and the indexed column are
+   * served from the index. Multiple column names should be listed as a comma-separated string. Optional.
+   */
+  public static final String COVERING_COLUMNS_CONF_KEY = "coveringColumns";
+
   private final DatasetDefinition<? extends Table, ?> tableDef;
 
   public IndexedTableDefinition(String name, DatasetDefinition<? extends Table, ?> tableDef) {
@@ -80,15 +87,24 @@ public class IndexedTableDefinition
 
     String columnNamesToIndex = spec.getProperty(INDEX_COLUMNS_CONF_KEY);
     Preconditions.checkNotNull(columnNamesToIndex, "columnsToIndex must be specified");
-    String[] columns = columnNamesToIndex.split(",");
-    byte[][] columnsToIndex = new byte[columns.length][];
-    for (int i = 0; i < columns.length; i++) {
-      columnsToIndex[i] = Bytes.toBytes(columns[i]);
-    }
+    byte[][] columnsToIndex = parseColumns(columnNamesToIndex);
+
+    String coveringColumnNames = spec.getProperty(COVERING_COLUMNS_CONF_KEY);
+    byte[][] coveringColumns = coveringColumnNames == null || coveringColumnNames.isEmpty()
+      ? new byte[0][] : parseColumns(coveringColumnNames);
 
     // TODO: add support for setting index key delimiter
 
-    return new IndexedTable(spec.getName(), table, index, columnsToIndex);
+    return new IndexedTable(spec.getName(), table, index, columnsToIndex, coveringColumns);
+  }
+
+  private byte[][] parseColumns(String columnNames) {
+    String[] columns = columnNames.split(",");
+    byte[][] result = new byte[columns.length][];
+    for (int i = 0; i < columns.length; i++) {
+      result[i] = Bytes.toBytes(columns[i]);
+    }
+    return result;
   }
 
 }
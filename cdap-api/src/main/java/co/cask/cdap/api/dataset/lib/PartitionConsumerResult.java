@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.lib;
+
+import co.cask.cdap.api.annotation.Beta;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * The result of consuming partitions incrementally from a {@link PartitionedFileSet}: the partitions added
+ * since the previous state of the consumer, and the new state to pass to the next call.
+ */
+@Beta
+public final class PartitionConsumerResult {
+
+  private final PartitionConsumerState partitionConsumerState;
+  private final List<Partition> partitions;
+
+  public PartitionConsumerResult(PartitionConsumerState partitionConsumerState, List<Partition> partitions) {
+    this.partitionConsumerState = partitionConsumerState;
+    this.partitions = ImmutableList.copyOf(partitions);
+  }
+
+  /**
+   * @return the state of the consumer after consuming the partitions of this result
+   */
+  public PartitionConsumerState getPartitionConsumerState() {
+    return partitionConsumerState;
+  }
+
+  /**
+   * @return the consumed partitions, in the order they were added
+   */
+  public List<Partition> getPartitions() {
+    return partitions;
+  }
+}
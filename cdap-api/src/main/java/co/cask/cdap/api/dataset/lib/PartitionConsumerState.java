@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.lib;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * The position of an incremental consumer of a {@link PartitionedFileSet}, as returned by
+ * {@link PartitionedFileSet#consumePartitions(PartitionConsumerState)}. Partitions are consumed in the order of
+ * the transactions that added them. Because transactions do not commit in the order they start, the state
+ * consists of the first transaction version that has not been consumed yet, plus the versions of earlier
+ * transactions that were still in progress, and whose partitions may therefore still become visible.
+ */
+@Beta
+public final class PartitionConsumerState {
+
+  /**
+   * The state of a consumer that has not consumed any partition yet.
+   */
+  public static final PartitionConsumerState FROM_BEGINNING =
+    new PartitionConsumerState(0, ImmutableList.<Long>of());
+
+  private final long startVersion;
+  private final List<Long> versionsToCheck;
+
+  public PartitionConsumerState(long startVersion, List<Long> versionsToCheck) {
+    this.startVersion = startVersion;
+    this.versionsToCheck = ImmutableList.copyOf(versionsToCheck);
+  }
+
+  /**
+   * @return the smallest transaction version whose partitions have not been consumed yet
+   */
+  public long getStartVersion() {
+    return startVersion;
+  }
+
+  /**
+   * @return the transaction versions smaller than the start version whose partitions have not been consumed yet
+   */
+  public List<Long> getVersionsToCheck() {
+    return versionsToCheck;
+  }
+
+  /**
+   * @return the serialized form of this state, which can be passed to {@link #fromBytes(byte[])}
+   */
+  public byte[] toBytes() {
+    byte[] bytes = new byte[Bytes.SIZEOF_LONG * (1 + versionsToCheck.size())];
+    int offset = Bytes.putLong(bytes, 0, startVersion);
+    for (long version : versionsToCheck) {
+      offset = Bytes.putLong(bytes, offset, version);
+    }
+    return bytes;
+  }
+
+  /**
+   * Deserializes a state that was serialized with {@link #toBytes()}.
+   */
+  public static PartitionConsumerState fromBytes(byte[] bytes) {
+    Preconditions.checkArgument(bytes.length > 0 && bytes.length % Bytes.SIZEOF_LONG == 0,
+                                "Invalid serialized partition consumer state of length %s", bytes.length);
+    long startVersion = Bytes.toLong(bytes, 0);
+    ImmutableList.Builder<Long> versionsToCheck = ImmutableList.builder();
+    for (int offset = Bytes.SIZEOF_LONG; offset < bytes.length; offset += Bytes.SIZEOF_LONG) {
+      versionsToCheck.add(Bytes.toLong(bytes, offset));
+    }
+    return new PartitionConsumerState(startVersion, versionsToCheck.build());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PartitionConsumerState that = (PartitionConsumerState) o;
+    return startVersion == that.startVersion && versionsToCheck.equals(that.versionsToCheck);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(startVersion, versionsToCheck);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("startVersion", startVersion)
+      .add("versionsToCheck", versionsToCheck)
+      .toString();
+  }
+}
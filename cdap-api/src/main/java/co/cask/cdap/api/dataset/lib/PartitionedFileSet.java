@@ -45,6 +45,7 @@ public interface PartitionedFileSet extends Dataset, InputFormatProvider, Output
 
   /**
    * Add a partition for a given partition key, stored at a given path (relative to the file set's base path).
+   * This must be called in a transaction, because the partition is also recorded in the index of the dataset.
    */
   void addPartition(PartitionKey key, String path);
 
@@ -66,6 +67,25 @@ public interface PartitionedFileSet extends Dataset, InputFormatProvider, Output
    */
   Set<Partition> getPartitions(@Nullable PartitionFilter filter);
 
+  /**
+   * Incrementally consume the partitions of this dataset: return the partitions that were added since the
+   * given consumer state was returned by a previous call, together with the new state of the consumer.
+   * Partitions are returned in the order of the transactions that added them.
+   *
+   * @param partitionConsumerState the state returned by the previous call, or
+   *                               {@link PartitionConsumerState#FROM_BEGINNING} to consume all partitions
+   */
+  PartitionConsumerResult consumePartitions(PartitionConsumerState partitionConsumerState);
+
+  /**
+   * Incrementally consume the partitions of this dataset, using a consumer state that is kept in this dataset
+   * under the given consumer name. The new state of the consumer is stored in the current transaction; therefore
+   * the returned partitions are only marked as consumed if the transaction commits.
+   *
+   * @param consumerName the name of the consumer
+   */
+  PartitionConsumerResult consumePartitions(String consumerName);
+
   /**
    * Return a partition output for a specific partition key, in preparation for creating a new partition.
    * Obtain the location to write from the PartitionOutput, then call the {@link PartitionOutput#addPartition}
@@ -32,6 +32,7 @@ public class PartitionedFileSetArguments {
   public static final String INPUT_PARTITION_LOWER_PREFIX = "input.filter.lower.";
   public static final String INPUT_PARTITION_UPPER_PREFIX = "input.filter.upper.";
   public static final String INPUT_PARTITION_VALUE_PREFIX = "input.filter.value.";
+  public static final String INPUT_PARTITION_CONSUMER = "input.partition.consumer";
 
   /**
    * Set the partition key  of the output partition when using PartitionedFileSet as an OutputFormatProvider.
@@ -130,6 +131,28 @@ public class PartitionedFileSetArguments {
     return builder.build();
   }
 
+  /**
+   * Set the name of a partition consumer, to read only the partitions that were added since the last successful
+   * run of a batch job that used the same consumer name. If a consumer is given, the input partition filter
+   * is ignored. See {@link PartitionedFileSet#consumePartitions(String)}.
+   *
+   * @param arguments the runtime arguments for a partitioned dataset
+   * @param consumerName the name of the partition consumer
+   */
+  public static void setInputPartitionConsumer(Map<String, String> arguments, String consumerName) {
+    arguments.put(INPUT_PARTITION_CONSUMER, consumerName);
+  }
+
+  /**
+   * @return the name of the partition consumer for the input to be read, or null if none was given
+   *
+   * @param arguments the runtime arguments for a partitioned dataset
+   */
+  @Nullable
+  public static String getInputPartitionConsumer(Map<String, String> arguments) {
+    return arguments.get(INPUT_PARTITION_CONSUMER);
+  }
+
   // helper to convert a string value into a field value in a partition key or filter
   public static Comparable convertFieldValue(String where, String kind, String fieldName,
                                              FieldType fieldType, String stringValue, boolean acceptNull) {
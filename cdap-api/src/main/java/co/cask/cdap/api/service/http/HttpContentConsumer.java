@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.service.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consumes the content of a HTTP request in chunks, so that large request bodies do not need to be held in memory.
+ *
+ * <p>
+ * A handler method of a {@link HttpServiceHandler} that returns a {@link HttpContentConsumer} receives the
+ * request content through the consumer instead of through {@link HttpServiceRequest#getContent()}:
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * {@literal @}POST
+ * {@literal @}Path("/upload")
+ * public HttpContentConsumer upload(HttpServiceRequest request, HttpServiceResponder responder) {
+ *   return new HttpContentConsumer() {
+ *     {@literal @}Override
+ *     public void onReceived(ByteBuffer chunk) throws Exception {
+ *       ...
+ *     }
+ *
+ *     {@literal @}Override
+ *     public void onFinish(HttpServiceResponder responder) throws Exception {
+ *       responder.sendStatus(200);
+ *     }
+ *   };
+ * }
+ * </code>
+ * </pre>
+ *
+ * <p>
+ * Transactions: the handler method that returns the consumer runs in its own transaction, which is committed
+ * before the first chunk is received. {@link #onReceived(ByteBuffer)} is called without a transaction, so that
+ * a long upload does not hold a transaction open. {@link #onFinish(HttpServiceResponder)} and
+ * {@link #onError(Throwable)} each run in a new transaction of the same kind as the one of the handler method.
+ * If the handler method returns {@code null}, the response sent by the handler method is used.
+ * </p>
+ */
+public abstract class HttpContentConsumer {
+
+  /**
+   * Called for every chunk of the request content, in order. The buffer is only valid during this call.
+   *
+   * @param chunk the next chunk of the content
+   * @throws Exception if the chunk cannot be processed. The request then fails and {@link #onError(Throwable)}
+   *                   is called.
+   */
+  public abstract void onReceived(ByteBuffer chunk) throws Exception;
+
+  /**
+   * Called once the request content has been received completely.
+   *
+   * @param responder the responder for sending the response
+   * @throws Exception if the request cannot be completed. The transaction is aborted and an error response is sent.
+   */
+  public abstract void onFinish(HttpServiceResponder responder) throws Exception;
+
+  /**
+   * Called if the request fails while receiving the content. An error response is sent to the client.
+   * By default this method does nothing.
+   *
+   * @param failureCause the reason of the failure
+   */
+  public void onError(Throwable failureCause) {
+    // no-op
+  }
+}
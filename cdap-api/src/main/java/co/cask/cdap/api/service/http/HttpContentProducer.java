@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.service.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Produces the content of a HTTP response in chunks, so that large response bodies do not need to be held in memory.
+ * A producer is sent with {@link HttpServiceResponder#send(int, HttpContentProducer, String,
+ * com.google.common.collect.Multimap)}, and the response is sent with chunked transfer encoding.
+ *
+ * <p>
+ * Transactions: {@link #nextChunk()} is called after the handler method returned and its transaction completed,
+ * and is called without a transaction. {@link #onFinish()} and {@link #onError(Throwable)} each run in a new
+ * transaction of the same kind as the one of the handler method.
+ * </p>
+ */
+public abstract class HttpContentProducer {
+
+  /**
+   * Returns the next chunk of the content. The content of the returned buffer is copied, so the buffer can be
+   * reused by the next call.
+   *
+   * @return the next chunk, or an empty buffer if there is no more content
+   * @throws Exception if the content cannot be produced. The response is then truncated and
+   *                   {@link #onError(Throwable)} is called.
+   */
+  public abstract ByteBuffer nextChunk() throws Exception;
+
+  /**
+   * Called once all chunks have been sent. By default this method does nothing.
+   *
+   * @throws Exception if the completion fails. Since the response was already sent, the failure is only logged.
+   */
+  public void onFinish() throws Exception {
+    // no-op
+  }
+
+  /**
+   * Called if the content cannot be produced or sent. By default this method does nothing.
+   *
+   * @param failureCause the reason of the failure
+   */
+  public void onError(Throwable failureCause) {
+    // no-op
+  }
+}
@@ -101,4 +101,15 @@ public interface HttpServiceResponder {
    * @param headers headers to be sent back
    */
   void send(int status, ByteBuffer content, String contentType, Multimap<String, String> headers);
+
+  /**
+   * Sends response back to client, with the content produced in chunks by the given {@link HttpContentProducer}.
+   * The content is only produced after the handler method returned.
+   *
+   * @param status status of the response
+   * @param producer producer of the content to be sent back
+   * @param contentType type of content
+   * @param headers headers to be sent back
+   */
+  void send(int status, HttpContentProducer producer, String contentType, Multimap<String, String> headers);
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.service.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates a handler method of a {@link HttpServiceHandler} to indicate that it is invoked without a transaction.
+ *
+ * <p>
+ * By default, every handler method is invoked within its own transaction. Methods that do not access any
+ * transactional datasets, such as health checks, can use this annotation to avoid the cost of starting and
+ * committing a transaction:
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * {@literal @}NoTransaction
+ * {@literal @}GET
+ * {@literal @}Path("/ping")
+ * public void ping(HttpServiceRequest request, HttpServiceResponder responder) {
+ *   responder.sendStatus(200);
+ * }
+ * </code>
+ * </pre>
+ *
+ * <p>
+ * A method annotated with {@link NoTransaction} must not use transactional datasets.
+ * </p>
+ *
+ * @see ReadOnlyTransaction
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface NoTransaction {
+}
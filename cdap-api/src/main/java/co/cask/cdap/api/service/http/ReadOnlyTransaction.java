@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.service.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates a handler method of a {@link HttpServiceHandler} to indicate that it only reads from datasets.
+ *
+ * <p>
+ * The method is invoked with a read-only transaction snapshot. Because nothing is written, the transaction
+ * does not need to be committed and no conflict detection is performed. Multiple calls may share the same
+ * snapshot, as long as it is not older than {@link #maxStalenessMillis()}:
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * {@literal @}ReadOnlyTransaction(maxStalenessMillis = 1000)
+ * {@literal @}GET
+ * {@literal @}Path("/users/{id}")
+ * public void getUser(HttpServiceRequest request, HttpServiceResponder responder,
+ *                     {@literal @}PathParam("id") String id) {
+ *   responder.sendJson(users.read(id));
+ * }
+ * </code>
+ * </pre>
+ *
+ * <p>
+ * If the method modifies any dataset, the changes are discarded and the call fails with an error response.
+ * </p>
+ *
+ * @see NoTransaction
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnlyTransaction {
+
+  // CHECKSTYLE OFF: Unused Javadoc tag
+
+  /**
+   * Maximum age in milliseconds of a transaction snapshot that is shared with other calls. Default is {@code 0},
+   * which means every call gets a new snapshot.
+   *
+   * @return The maximum staleness in milliseconds.
+   */
+  long maxStalenessMillis() default 0L;
+
+  // CHECKSTYLE ON
+}
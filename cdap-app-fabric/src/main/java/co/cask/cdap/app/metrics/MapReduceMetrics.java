@@ -28,6 +28,7 @@ public final class MapReduceMetrics {
   public static final String METRIC_TASK_COMPLETION = "process.completion.task";
   public static final String METRIC_USED_CONTAINERS = "resources.used.containers";
   public static final String METRIC_USED_MEMORY = "resources.used.memory";
+  public static final String METRIC_PEAK_BUFFERED_BYTES = "dataset.buffer.peak.bytes";
 
   /**
    * Type of map reduce task.
@@ -63,7 +63,22 @@ public final class DefaultProgram implements Program {
    */
   DefaultProgram(Location programJarLocation,
                  @Nullable File expandFolder, ClassLoader parentClassLoader) throws IOException {
+    this(programJarLocation, expandFolder, parentClassLoader, false);
+  }
+
+  /**
+   * Creates a program instance.
+   *
+   * @param programJarLocation Location of the program jar file.
+   * @param expandFolder Local directory for expanding the jar file into. If it is {@code null},
+   *                     the {@link #getClassLoader()} methods would throw exception.
+   * @param parentClassLoader Parent classloader for the program class.
+   * @param expanded {@code true} if the jar file is already expanded into the expand folder.
+   */
+  DefaultProgram(Location programJarLocation, @Nullable File expandFolder,
+                 ClassLoader parentClassLoader, boolean expanded) throws IOException {
     this.programJarLocation = programJarLocation;
+    this.expanded = expanded;
     this.expandFolder = expandFolder;
     this.parentClassLoader = parentClassLoader;
 
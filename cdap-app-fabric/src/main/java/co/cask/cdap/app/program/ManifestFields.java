@@ -40,6 +40,9 @@ public final class ManifestFields {
   public static final Attributes.Name APPLICATION_ID = new Attributes.Name("Application-Id");
   public static final Attributes.Name PROGRAM_NAME = new Attributes.Name("Program-Name");
 
+  // Hash over the application archive and specification that a program jar is generated from
+  public static final Attributes.Name CONTENT_HASH = new Attributes.Name("Content-Hash");
+
   // This following are attributes for OSGI bundle
   public static final Attributes.Name BUNDLE_VERSION = new Attributes.Name("Bundle-Version");
   public static final Attributes.Name EXPORT_PACKAGE = new Attributes.Name("Export-Package");
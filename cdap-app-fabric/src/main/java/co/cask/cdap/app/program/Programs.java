@@ -39,6 +39,14 @@ public final class Programs {
     return Programs.createWithUnpack(location, destinationUnpackedJarDir, getClassLoader());
   }
 
+  /**
+   * Creates a {@link Program} from a jar that is already expanded into the given directory. The directory
+   * may be shared with other programs that are generated from the same content.
+   */
+  public static Program createFromUnpacked(Location location, File unpackedJarDir) throws IOException {
+    return new DefaultProgram(location, unpackedJarDir, getClassLoader(), true);
+  }
+
   /**
    * Creates a {@link Program} without expanding the location jar. The {@link Program#getClassLoader()}
    * will be the given ClassLoader.
@@ -17,6 +17,7 @@
 package co.cask.cdap.internal.app.deploy;
 
 import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.app.deploy.Manager;
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -72,6 +73,7 @@ public class LocalApplicationManager<I, O> implements Manager<I, O> {
   private final DatasetFramework inMemoryDatasetFramework;
   private final MetricStore metricStore;
   private final UsageRegistry usageRegistry;
+  private final MetricsCollectionService metricsCollectionService;
 
   @Inject
   public LocalApplicationManager(CConfiguration configuration, PipelineFactory pipelineFactory,
@@ -82,7 +84,7 @@ public class LocalApplicationManager<I, O> implements Manager<I, O> {
                                  StreamAdmin streamAdmin, ExploreFacade exploreFacade,
                                  Scheduler scheduler, AdapterService adapterService,
                                  @Assisted ProgramTerminator programTerminator, MetricStore metricStore,
-                                 UsageRegistry usageRegistry) {
+                                 UsageRegistry usageRegistry, MetricsCollectionService metricsCollectionService) {
     this.configuration = configuration;
     this.namespacedLocationFactory = namespacedLocationFactory;
     this.pipelineFactory = pipelineFactory;
@@ -99,6 +101,7 @@ public class LocalApplicationManager<I, O> implements Manager<I, O> {
     this.exploreEnabled = configuration.getBoolean(Constants.Explore.EXPLORE_ENABLED);
     this.adapterService = adapterService;
     this.usageRegistry = usageRegistry;
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -112,7 +115,8 @@ public class LocalApplicationManager<I, O> implements Manager<I, O> {
     pipeline.addLast(new CreateStreamsStage(namespace, streamAdmin, exploreFacade, exploreEnabled));
     pipeline.addLast(new DeletedProgramHandlerStage(store, programTerminator, streamConsumerFactory,
                                                     queueAdmin, metricStore));
-    pipeline.addLast(new ProgramGenerationStage(configuration, namespacedLocationFactory));
+    pipeline.addLast(new ProgramGenerationStage(configuration, namespacedLocationFactory,
+                                                metricsCollectionService));
     pipeline.addLast(new ApplicationRegistrationStage(store, usageRegistry));
     pipeline.addLast(new CreateSchedulesStage(scheduler));
     return pipeline.execute(input);
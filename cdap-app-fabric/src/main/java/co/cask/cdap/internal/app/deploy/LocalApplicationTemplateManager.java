@@ -17,6 +17,7 @@
 package co.cask.cdap.internal.app.deploy;
 
 import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.app.deploy.Manager;
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -71,6 +72,7 @@ public class LocalApplicationTemplateManager implements Manager<DeploymentInfo,
   private final PreferencesStore preferencesStore;
   private final MetricStore metricStore;
   private final UsageRegistry usageRegistry;
+  private final MetricsCollectionService metricsCollectionService;
 
   @Inject
   public LocalApplicationTemplateManager(CConfiguration configuration, PipelineFactory pipelineFactory,
@@ -82,7 +84,8 @@ public class LocalApplicationTemplateManager implements Manager<DeploymentInfo,
                                          AdapterService adapterService,
                                          PreferencesStore preferencesStore,
                                          @Assisted ProgramTerminator programTerminator, MetricStore metricStore,
-                                         UsageRegistry usageRegistry) {
+                                         UsageRegistry usageRegistry,
+                                         MetricsCollectionService metricsCollectionService) {
     this.configuration = configuration;
     this.namespacedLocationFactory = namespacedLocationFactory;
     this.pipelineFactory = pipelineFactory;
@@ -99,6 +102,7 @@ public class LocalApplicationTemplateManager implements Manager<DeploymentInfo,
     this.adapterService = adapterService;
     this.preferencesStore = preferencesStore;
     this.usageRegistry = usageRegistry;
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -113,7 +117,8 @@ public class LocalApplicationTemplateManager implements Manager<DeploymentInfo,
     pipeline.addLast(new CreateStreamsStage(namespace, streamAdmin, exploreFacade, exploreEnabled));
     pipeline.addLast(new DeletedProgramHandlerStage(store, programTerminator, streamConsumerFactory,
                                                     queueAdmin, metricStore));
-    pipeline.addLast(new ProgramGenerationStage(configuration, namespacedLocationFactory));
+    pipeline.addLast(new ProgramGenerationStage(configuration, namespacedLocationFactory,
+                                                metricsCollectionService));
     pipeline.addLast(new ApplicationRegistrationStage(store, usageRegistry));
     pipeline.addLast(new EnableConcurrentRunsStage(preferencesStore));
     return pipeline.execute(input);
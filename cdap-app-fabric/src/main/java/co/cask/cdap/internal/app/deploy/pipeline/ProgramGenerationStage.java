@@ -17,6 +17,8 @@
 package co.cask.cdap.internal.app.deploy.pipeline;
 
 import co.cask.cdap.api.ProgramSpecification;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.api.webapp.WebappSpecification;
 import co.cask.cdap.app.ApplicationSpecification;
 import co.cask.cdap.app.program.Program;
@@ -34,6 +36,7 @@ import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.ProgramTypes;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
@@ -43,6 +46,8 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
@@ -50,18 +55,33 @@ import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 
 /**
- *
+ * Generates the program jars of an application. Program jars are identified by a content hash over the application
+ * archive and specification, so that jars of programs that did not change since the last deployment are kept
+ * instead of being written again.
  */
 public class ProgramGenerationStage extends AbstractStage<ApplicationDeployable> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProgramGenerationStage.class);
+
   private final CConfiguration configuration;
   private final NamespacedLocationFactory namespacedLocationFactory;
+  private final MetricsCollectionService metricsCollectionService;
 
   public ProgramGenerationStage(CConfiguration configuration, NamespacedLocationFactory namespacedLocationFactory) {
+    this(configuration, namespacedLocationFactory, null);
+  }
+
+  public ProgramGenerationStage(CConfiguration configuration, NamespacedLocationFactory namespacedLocationFactory,
+                                @Nullable MetricsCollectionService metricsCollectionService) {
     super(TypeToken.of(ApplicationDeployable.class));
     this.configuration = configuration;
     this.namespacedLocationFactory = namespacedLocationFactory;
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -71,6 +91,7 @@ public class ProgramGenerationStage extends AbstractStage<ApplicationDeployable>
     final String applicationName = appSpec.getName();
 
     final ArchiveBundler bundler = new ArchiveBundler(input.getLocation());
+    final String contentHash = ProgramBundle.computeContentHash(input.getLocation(), appSpec);
 
     // Make sure the namespace directory exists
     Id.Namespace namespaceId = input.getId().getNamespace();
@@ -106,6 +127,10 @@ public class ProgramGenerationStage extends AbstractStage<ApplicationDeployable>
     ListeningExecutorService executorService = MoreExecutors.listeningDecorator(
       Executors.newFixedThreadPool(10, Threads.createDaemonThreadFactory("program-gen-%d"))
     );
+    final AtomicInteger jarsWritten = new AtomicInteger();
+    final AtomicInteger jarsReused = new AtomicInteger();
+    final AtomicLong bytesWritten = new AtomicLong();
+    final AtomicLong bytesReused = new AtomicLong();
     try {
       List<ListenableFuture<Location>> futures = Lists.newArrayList();
       for (final ProgramSpecification spec: specifications) {
@@ -120,8 +145,15 @@ public class ProgramGenerationStage extends AbstractStage<ApplicationDeployable>
               programDir.mkdirs();
             }
             Location output = programDir.append(String.format("%s.jar", spec.getName()));
-            return ProgramBundle.create(input.getId(), bundler, output, spec.getName(),
-                                        spec.getClassName(), type, appSpec);
+            if (ProgramBundle.createIfChanged(input.getId(), bundler, output, spec.getName(),
+                                              spec.getClassName(), type, appSpec, contentHash)) {
+              jarsWritten.incrementAndGet();
+              bytesWritten.addAndGet(output.length());
+            } else {
+              jarsReused.incrementAndGet();
+              bytesReused.addAndGet(output.length());
+            }
+            return output;
             }
         });
         futures.add(future);
@@ -134,6 +166,18 @@ public class ProgramGenerationStage extends AbstractStage<ApplicationDeployable>
       executorService.shutdown();
     }
 
+    LOG.info("Generated programs of application {}: {} jars written ({} bytes), {} unchanged jars kept ({} bytes)",
+             input.getId(), jarsWritten.get(), bytesWritten.get(), jarsReused.get(), bytesReused.get());
+    if (metricsCollectionService != null) {
+      MetricsCollector collector = metricsCollectionService.getCollector(ImmutableMap.of(
+        Constants.Metrics.Tag.NAMESPACE, namespaceId.getId(),
+        Constants.Metrics.Tag.APP, applicationName));
+      collector.increment("deploy.program.jars.written", jarsWritten.get());
+      collector.increment("deploy.program.bytes.written", bytesWritten.get());
+      collector.increment("deploy.program.jars.reused", jarsReused.get());
+      collector.increment("deploy.program.bytes.reused", bytesReused.get());
+    }
+
     // moves the <appfabricdir>/archive/<app-name>.jar to <appfabricdir>/<app-name>/archive/<app-name>.jar
     // Cannot do this before starting the deploy pipeline because appId could be null at that time.
     // However, it is guaranteed to be non-null from VerificationsStage onwards
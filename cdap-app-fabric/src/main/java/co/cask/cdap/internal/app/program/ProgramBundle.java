@@ -19,6 +19,8 @@ package co.cask.cdap.internal.app.program;
 import co.cask.cdap.app.ApplicationSpecification;
 import co.cask.cdap.app.program.ManifestFields;
 import co.cask.cdap.archive.ArchiveBundler;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.lang.jar.BundleJarUtil;
 import co.cask.cdap.internal.app.ApplicationSpecificationAdapter;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
 import co.cask.cdap.proto.Id;
@@ -26,6 +28,8 @@ import co.cask.cdap.proto.ProgramType;
 import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.InputSupplier;
 import org.apache.twill.filesystem.Location;
 
@@ -36,6 +40,7 @@ import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.Manifest;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -51,7 +56,8 @@ public final class ProgramBundle {
 
   /**
    * Clones a give application archive using the {@link co.cask.cdap.archive.ArchiveBundler}.
-   * A new manifest file will be amended to the jar.
+   * A new manifest file will be amended to the jar. The jar carries no content hash, hence it is never shared with
+   * other programs.
    *
    * @return An instance of {@link Location} containing the program JAR.
    *
@@ -66,6 +72,63 @@ public final class ProgramBundle {
   public static Location create(Id.Application id, ArchiveBundler bundler, Location output, String programName,
                                String className, ProgramType type, ApplicationSpecification appSpec,
                                Manifest other) throws IOException {
+    Manifest manifest = createManifest(id, programName, className, type, null, other);
+    bundler.clone(output, manifest, ImmutableMap.of(APPLICATION_META_ENTRY, getInputSupplier(appSpec)), META_IGNORE);
+    return output;
+  }
+
+  /**
+   * Same as {@link #create(Id.Application, ArchiveBundler, Location, String, String, ProgramType,
+   * ApplicationSpecification)}, except that an existing program jar at the output location is kept if it was
+   * generated for the same program from the same content, as identified by the given content hash. New jars are
+   * written to a temporary location first, so that a failed write never leaves a partial jar at the output location.
+   *
+   * @param contentHash hash of the application archive and specification, as returned by
+   *                    {@link #computeContentHash(Location, ApplicationSpecification)}
+   * @return {@code true} if the program jar was written, {@code false} if the existing one was kept
+   *
+   * @throws java.io.IOException in case of any issue related to copying jars.
+   */
+  public static boolean createIfChanged(Id.Application id, ArchiveBundler bundler, Location output,
+                                        String programName, String className, ProgramType type,
+                                        ApplicationSpecification appSpec, String contentHash) throws IOException {
+    Manifest manifest = createManifest(id, programName, className, type, contentHash, null);
+    if (output.exists() && isGeneratedWith(output, manifest)) {
+      return false;
+    }
+
+    Location tmpOutput = output.getTempFile(".tmp");
+    try {
+      bundler.clone(tmpOutput, manifest, ImmutableMap.of(APPLICATION_META_ENTRY, getInputSupplier(appSpec)),
+                    META_IGNORE);
+      if (output.exists()) {
+        output.delete();
+      }
+      if (tmpOutput.renameTo(output) == null) {
+        throw new IOException(String.format("Could not move program jar from location: %s, to location: %s",
+                                            tmpOutput.toURI(), output.toURI()));
+      }
+    } finally {
+      if (tmpOutput.exists()) {
+        tmpOutput.delete();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the hash that identifies the content of program jars generated from the given application archive
+   * and specification. All programs of an application generated from the same archive and specification
+   * share the same content hash.
+   */
+  public static String computeContentHash(Location archive, ApplicationSpecification appSpec) throws IOException {
+    byte[] archiveHash = ByteStreams.hash(Locations.newInputSupplier(archive), Hashing.sha1()).asBytes();
+    byte[] specHash = ByteStreams.hash(getInputSupplier(appSpec), Hashing.sha1()).asBytes();
+    return Hashing.sha1().newHasher().putBytes(archiveHash).putBytes(specHash).hash().toString();
+  }
+
+  private static Manifest createManifest(Id.Application id, String programName, String className, ProgramType type,
+                                         @Nullable String contentHash, @Nullable Manifest other) {
     // Create a MANIFEST file
     Manifest manifest = new Manifest();
 
@@ -85,9 +148,33 @@ public final class ProgramBundle {
     manifest.getMainAttributes().put(ManifestFields.APPLICATION_ID, id.getId());
     manifest.getMainAttributes().put(ManifestFields.PROGRAM_NAME, programName);
     manifest.getMainAttributes().put(ManifestFields.PROGRAM_TYPE, type.name());
+    if (contentHash != null) {
+      manifest.getMainAttributes().put(ManifestFields.CONTENT_HASH, contentHash);
+    }
+    return manifest;
+  }
 
-    bundler.clone(output, manifest, ImmutableMap.of(APPLICATION_META_ENTRY, getInputSupplier(appSpec)), META_IGNORE);
-    return output;
+  /**
+   * Returns whether the main attributes of the manifest of the given jar contain all main attributes of the
+   * expected manifest.
+   */
+  private static boolean isGeneratedWith(Location jarLocation, Manifest expected) {
+    Manifest manifest;
+    try {
+      manifest = BundleJarUtil.getManifest(jarLocation);
+    } catch (IOException e) {
+      // The existing jar is not readable, hence it will be regenerated
+      return false;
+    }
+    if (manifest == null) {
+      return false;
+    }
+    for (Map.Entry<Object, Object> entry : expected.getMainAttributes().entrySet()) {
+      if (!entry.getValue().equals(manifest.getMainAttributes().get(entry.getKey()))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private static InputSupplier<InputStream> getInputSupplier(final ApplicationSpecification appSpec) {
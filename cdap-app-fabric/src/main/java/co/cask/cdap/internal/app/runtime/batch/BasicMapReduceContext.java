@@ -34,6 +34,7 @@ import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.Arguments;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.data.dataset.DatasetInstantiator;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.internal.app.runtime.AbstractContext;
 import co.cask.cdap.internal.app.runtime.adapter.PluginInstantiator;
@@ -310,9 +311,15 @@ public class BasicMapReduceContext extends AbstractContext implements MapReduceC
     return reducerResources;
   }
 
+  /**
+   * Persists the writes buffered by the datasets of this context. The writes remain part of the transaction of the
+   * job. This can be called more than once to persist writes incrementally.
+   */
   public void flushOperations() throws Exception {
-    for (TransactionAware txAware : getDatasetInstantiator().getTransactionAware()) {
+    DatasetInstantiator instantiator = getDatasetInstantiator();
+    for (TransactionAware txAware : instantiator.getTransactionAware()) {
       txAware.commitTx();
     }
+    instantiator.resetWriteCounts();
   }
 }
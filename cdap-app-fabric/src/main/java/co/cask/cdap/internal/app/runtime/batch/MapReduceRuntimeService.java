@@ -18,6 +18,7 @@ package co.cask.cdap.internal.app.runtime.batch;
 import co.cask.cdap.api.Resources;
 import co.cask.cdap.api.data.batch.BatchReadable;
 import co.cask.cdap.api.data.batch.BatchWritable;
+import co.cask.cdap.api.data.batch.DatasetInputCommitter;
 import co.cask.cdap.api.data.batch.DatasetOutputCommitter;
 import co.cask.cdap.api.data.batch.InputFormatProvider;
 import co.cask.cdap.api.data.batch.OutputFormatProvider;
@@ -67,8 +68,10 @@ import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.inject.ProvisionException;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapred.LocalJobRunnerWithFix;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.OutputFormat;
@@ -229,6 +232,16 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
       setVirtualCores(mapredConf, reducerResources.getVirtualCores(), "REDUCE");
     }
 
+    if (MRConfig.LOCAL_FRAMEWORK_NAME.equals(mapredConf.get(MRConfig.FRAMEWORK_NAME,
+                                                             MRConfig.LOCAL_FRAMEWORK_NAME))) {
+      setLocalTaskConcurrency(mapredConf, LocalJobRunnerWithFix.LOCAL_MAX_MAPS,
+                              cConf.getInt(Constants.AppFabric.MAPREDUCE_LOCAL_MAX_MAPS,
+                                           Constants.AppFabric.DEFAULT_MAPREDUCE_LOCAL_MAX_MAPS));
+      setLocalTaskConcurrency(mapredConf, LocalJobRunnerWithFix.LOCAL_MAX_REDUCES,
+                              cConf.getInt(Constants.AppFabric.MAPREDUCE_LOCAL_MAX_REDUCES,
+                                           Constants.AppFabric.DEFAULT_MAPREDUCE_LOCAL_MAX_REDUCES));
+    }
+
     // replace user's Mapper & Reducer's with our wrappers in job config
     MapperWrapper.wrap(job);
     ReducerWrapper.wrap(job);
@@ -407,6 +420,22 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
     }
   }
 
+  /**
+   * Sets the number of tasks of one type that the local job runner executes concurrently, unless the job
+   * configuration already contains it.
+   *
+   * @param conf The job configuration
+   * @param key Either {@link LocalJobRunnerWithFix#LOCAL_MAX_MAPS} or {@link LocalJobRunnerWithFix#LOCAL_MAX_REDUCES}
+   * @param maxTasks Maximum number of concurrent tasks, or 0 to use the number of available processors
+   */
+  private void setLocalTaskConcurrency(Configuration conf, String key, int maxTasks) {
+    if (conf.get(key) != null) {
+      return;
+    }
+    conf.setInt(key, maxTasks > 0 ? maxTasks : Runtime.getRuntime().availableProcessors());
+    LOG.debug("Local job runner concurrency {} = {}", key, conf.get(key));
+  }
+
   /**
    * Calls the {@link MapReduce#beforeSubmit(co.cask.cdap.api.mapreduce.MapReduceContext)} method.
    */
@@ -444,6 +473,20 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
               success = false;
             }
           }
+          Dataset inputDataset = getInputDatasetIfNeeded();
+          if (inputDataset instanceof DatasetInputCommitter) {
+            try {
+              if (succeeded) {
+                ((DatasetInputCommitter) inputDataset).onInputSuccess();
+              } else {
+                ((DatasetInputCommitter) inputDataset).onInputFailure();
+              }
+            } catch (Throwable t) {
+              LOG.error(String.format("Error from %s method of input dataset %s.",
+                        succeeded ? "onInputSuccess" : "onInputFailure", context.getInputDatasetName()), t);
+              success = false;
+            }
+          }
           mapReduce.onFinish(success, context);
         } finally {
           ClassLoaders.setContextClassLoader(oldClassLoader);
@@ -480,6 +523,18 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
     }
   }
 
+  /**
+   * Returns the input dataset of the job, or {@code null} if the input is not a dataset.
+   */
+  @Nullable
+  private Dataset getInputDatasetIfNeeded() {
+    String inputDatasetName = context.getInputDatasetName();
+    if (inputDatasetName != null && inputDatasetName.startsWith(Constants.Stream.URL_PREFIX)) {
+      return null;
+    }
+    return context.getInputDataset();
+  }
+
   @SuppressWarnings("unchecked")
   private void setInputDatasetIfNeeded(Job job) throws IOException {
     String inputDatasetName = context.getInputDatasetName();
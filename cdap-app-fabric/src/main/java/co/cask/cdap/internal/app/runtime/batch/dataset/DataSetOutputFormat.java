@@ -41,6 +41,22 @@ public final class DataSetOutputFormat<KEY, VALUE> extends OutputFormat<KEY, VAL
   private static final Logger LOG = LoggerFactory.getLogger(DataSetOutputFormat.class);
   public static final String HCONF_ATTR_OUTPUT_DATASET = "output.dataset.name";
 
+  /**
+   * Number of buffered writes to the output dataset after which they are persisted, or 0 for no limit.
+   * See {@link DataSetRecordWriter} for why this is not safe with task retries or speculative execution.
+   */
+  public static final String HCONF_ATTR_FLUSH_MAX_WRITES = "output.dataset.flush.max.writes";
+
+  /**
+   * Size in bytes of buffered writes to the output dataset after which they are persisted, or 0 for no limit.
+   * See {@link DataSetRecordWriter} for why this is not safe with task retries or speculative execution.
+   */
+  public static final String HCONF_ATTR_FLUSH_MAX_BYTES = "output.dataset.flush.max.bytes";
+
+  // Writes are only persisted when the task finishes, unless a limit is configured
+  static final long DEFAULT_FLUSH_MAX_WRITES = 0L;
+  static final long DEFAULT_FLUSH_MAX_BYTES = 0L;
+
   public static void setOutput(Job job, String outputDatasetName) {
     job.setOutputFormatClass(DataSetOutputFormat.class);
     job.getConfiguration().set(HCONF_ATTR_OUTPUT_DATASET, outputDatasetName);
@@ -59,7 +75,9 @@ public final class DataSetOutputFormat<KEY, VALUE> extends OutputFormat<KEY, VAL
     BatchWritable<KEY, VALUE> dataset = (BatchWritable<KEY, VALUE>) mrContext.getDataset(getOutputDataSet(conf));
 
     // the record writer now owns the context and will close it
-    return new DataSetRecordWriter<KEY, VALUE>(dataset, mrContext);
+    return new DataSetRecordWriter<KEY, VALUE>(dataset, mrContext, context,
+                                               conf.getLong(HCONF_ATTR_FLUSH_MAX_WRITES, DEFAULT_FLUSH_MAX_WRITES),
+                                               conf.getLong(HCONF_ATTR_FLUSH_MAX_BYTES, DEFAULT_FLUSH_MAX_BYTES));
   }
 
   private String getOutputDataSet(Configuration conf) {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,9 +17,13 @@
 package co.cask.cdap.internal.app.runtime.batch.dataset;
 
 import co.cask.cdap.api.data.batch.BatchWritable;
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.app.metrics.MapReduceMetrics;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
+import co.cask.cdap.data.dataset.DatasetInstantiator;
 import co.cask.cdap.internal.app.runtime.batch.BasicMapReduceContext;
 import com.google.common.base.Throwables;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.slf4j.Logger;
@@ -28,15 +32,48 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * A {@link RecordWriter} that writes to a dataset.
+ *
+ * Datasets buffer their writes in memory until they are persisted when the task finishes. To bound the memory used
+ * by a task, the writes can also be persisted whenever more than a maximum number of writes or bytes is buffered, as
+ * configured by {@link DataSetOutputFormat#HCONF_ATTR_FLUSH_MAX_WRITES} and
+ * {@link DataSetOutputFormat#HCONF_ATTR_FLUSH_MAX_BYTES}. Persisted writes are still part of the transaction of the
+ * job, and become visible when the job succeeds.
+ *
+ * This is off by default, because it is not safe with task retries or speculative execution: the writes that a task
+ * attempt persisted are not undone if the attempt fails or is killed. If the job fails, the transaction is invalidated
+ * and all writes are hidden. But if the job succeeds, the writes of the failed attempt remain in addition to the writes
+ * of the attempt that succeeded, and increments are counted twice.
+ */
 final class DataSetRecordWriter<KEY, VALUE> extends RecordWriter<KEY, VALUE> {
   private static final Logger LOG = LoggerFactory.getLogger(DataSetRecordWriter.class);
 
+  /**
+   * Task counters for the flushes of buffered writes. The largest size of the buffered writes at a flush is not a
+   * counter, since counters are summed across tasks. It is emitted as a task metric instead.
+   */
+  enum Counters {
+    FLUSHES,
+    FLUSHED_BYTES
+  }
+
   private final BatchWritable<KEY, VALUE> batchWritable;
   private final BasicMapReduceContext mrContext;
+  private final long maxBufferedWrites;
+  private final long maxBufferedBytes;
+  private final Counter flushes;
+  private final Counter flushedBytes;
+  private long peakBufferedBytes;
 
-  public DataSetRecordWriter(final BatchWritable<KEY, VALUE> batchWritable, BasicMapReduceContext mrContext) {
+  public DataSetRecordWriter(final BatchWritable<KEY, VALUE> batchWritable, BasicMapReduceContext mrContext,
+                             TaskAttemptContext taskContext, long maxBufferedWrites, long maxBufferedBytes) {
     this.batchWritable = batchWritable;
     this.mrContext = mrContext;
+    this.maxBufferedWrites = maxBufferedWrites;
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.flushes = taskContext.getCounter(Counters.FLUSHES);
+    this.flushedBytes = taskContext.getCounter(Counters.FLUSHED_BYTES);
     // hack: making sure logging context is set on the thread that accesses the runtime context
     LoggingContextAccessor.setLoggingContext(mrContext.getLoggingContext());
   }
@@ -44,6 +81,18 @@ final class DataSetRecordWriter<KEY, VALUE> extends RecordWriter<KEY, VALUE> {
   @Override
   public void write(final KEY key, final VALUE value) throws IOException {
     batchWritable.write(key, value);
+
+    DatasetInstantiator instantiator = mrContext.getDatasetInstantiator();
+    if ((maxBufferedWrites > 0 && instantiator.getWriteOps() >= maxBufferedWrites)
+      || (maxBufferedBytes > 0 && instantiator.getWriteBytes() >= maxBufferedBytes)) {
+      try {
+        flush();
+      } catch (Exception e) {
+        LOG.error("Failed to flush operations of " + mrContext.toString(), e);
+        Throwables.propagateIfInstanceOf(e, IOException.class);
+        throw new IOException(e);
+      }
+    }
   }
 
   @Override
@@ -51,7 +100,7 @@ final class DataSetRecordWriter<KEY, VALUE> extends RecordWriter<KEY, VALUE> {
     // transaction is not finished, but we want all operations to be dispatched (some could be buffered in memory by tx
     // agent)
     try {
-      mrContext.flushOperations();
+      flush();
     } catch (Exception e) {
       LOG.error("Failed to flush operations at the end of reducer of " + mrContext.toString());
       throw Throwables.propagate(e);
@@ -62,4 +111,19 @@ final class DataSetRecordWriter<KEY, VALUE> extends RecordWriter<KEY, VALUE> {
       mrContext.getMetricsCollectionService().stop();
     }
   }
+
+  private void flush() throws Exception {
+    long bytes = mrContext.getDatasetInstantiator().getWriteBytes();
+    mrContext.flushOperations();
+
+    flushes.increment(1);
+    flushedBytes.increment(bytes);
+    if (bytes > peakBufferedBytes) {
+      peakBufferedBytes = bytes;
+      MetricsCollector metrics = mrContext.getProgramMetrics();
+      if (metrics != null) {
+        metrics.gauge(MapReduceMetrics.METRIC_PEAK_BUFFERED_BYTES, bytes);
+      }
+    }
+  }
 }
@@ -30,11 +30,13 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.exception.NotFoundException;
 import co.cask.cdap.common.stream.notification.StreamSizeNotification;
+import co.cask.cdap.data.stream.service.heartbeat.StreamWriterHeartbeat;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.schedule.store.DatasetBasedStreamSizeScheduleStore;
 import co.cask.cdap.internal.app.services.ProgramLifecycleService;
 import co.cask.cdap.internal.app.services.PropertiesResolver;
 import co.cask.cdap.internal.schedule.StreamSizeSchedule;
+import co.cask.cdap.notifications.feeds.NotificationFeedException;
 import co.cask.cdap.notifications.service.NotificationContext;
 import co.cask.cdap.notifications.service.NotificationHandler;
 import co.cask.cdap.notifications.service.NotificationService;
@@ -66,6 +68,7 @@ import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -82,8 +85,17 @@ public class StreamSizeScheduler implements Scheduler {
   private static final Logger LOG = LoggerFactory.getLogger(StreamSizeScheduler.class);
   private static final int STREAM_POLLING_THREAD_POOL_SIZE = 10;
   private static final int POLLING_AFTER_NOTIFICATION_RETRY = 3;
+  private static final long HEARTBEATS_SUBSCRIPTION_RETRY_SECONDS = 1;
+  private static final long HEARTBEATS_SUBSCRIPTION_MAX_RETRY_SECONDS = 300;
+  private static final Id.NotificationFeed HEARTBEATS_FEED = new Id.NotificationFeed.Builder()
+    .setNamespaceId(Constants.SYSTEM_NAMESPACE)
+    .setCategory(Constants.Notification.Stream.STREAM_INTERNAL_FEED_CATEGORY)
+    .setName(Constants.Notification.Stream.STREAM_HEARTBEAT_FEED_NAME)
+    .build();
 
   private final long pollingDelay;
+  // If true, stream sizes are estimated from the stream writers heartbeats instead of the stream size notifications
+  private final boolean useHeartbeats;
   private final NotificationService notificationService;
   private final MetricStore metricStore;
   private final Provider<Store> storeProvider;
@@ -108,12 +120,19 @@ public class StreamSizeScheduler implements Scheduler {
   private ListeningExecutorService taskExecutorService;
   private boolean schedulerStarted;
 
+  // Single threaded, so that the heartbeats of one stream writer are processed in order
+  private ExecutorService heartbeatsExecutor;
+  private volatile Cancellable heartbeatsSubscription;
+  // Time, in milliseconds, at which the last stream writer heartbeat was received
+  private volatile long lastHeartbeatTime;
+
   @Inject
   public StreamSizeScheduler(CConfiguration cConf, NotificationService notificationService, MetricStore metricStore,
                              Provider<Store> storeProvider, ProgramLifecycleService lifecycleService,
                              PropertiesResolver propertiesResolver, DatasetBasedStreamSizeScheduleStore scheduleStore) {
     this.pollingDelay = TimeUnit.SECONDS.toMillis(
       cConf.getLong(Constants.Notification.Stream.STREAM_SIZE_SCHEDULE_POLLING_DELAY));
+    this.useHeartbeats = cConf.getBoolean(Constants.Notification.Stream.STREAM_SIZE_SCHEDULE_HEARTBEATS, false);
     this.notificationService = notificationService;
     this.metricStore = metricStore;
     this.storeProvider = storeProvider;
@@ -138,6 +157,12 @@ public class StreamSizeScheduler implements Scheduler {
     store = storeProvider.get();
 
     initializeScheduleStore();
+
+    if (useHeartbeats) {
+      heartbeatsExecutor = Executors.newSingleThreadExecutor(
+        Threads.createDaemonThreadFactory("stream-size-scheduler-heartbeats"));
+      subscribeToHeartbeats(HEARTBEATS_SUBSCRIPTION_RETRY_SECONDS);
+    }
   }
 
   void lazyStart() throws SchedulerException {
@@ -148,6 +173,10 @@ public class StreamSizeScheduler implements Scheduler {
     return schedulerStarted;
   }
 
+  boolean isSubscribedToHeartbeats() {
+    return heartbeatsSubscription != null;
+  }
+
   /**
    * Initialize the stream size schedule store, and restart all the schedule tasks that were persisted in it.
    *
@@ -205,6 +234,12 @@ public class StreamSizeScheduler implements Scheduler {
     if (pollBookingExecutor != null) {
       pollBookingExecutor.shutdownNow();
     }
+    if (heartbeatsSubscription != null) {
+      heartbeatsSubscription.cancel();
+    }
+    if (heartbeatsExecutor != null) {
+      heartbeatsExecutor.shutdownNow();
+    }
     if (streamPollingExecutor != null) {
       streamPollingExecutor.shutdownNow();
     }
@@ -443,6 +478,54 @@ public class StreamSizeScheduler implements Scheduler {
     return streamSubscriber;
   }
 
+  /**
+   * Subscribe to the heartbeats feed of the stream writers. The feed is created by the stream service, which might
+   * not be running yet, or might never be created if no stream writer sends heartbeats, in which case subscribing
+   * is retried later, with an exponential backoff.
+   *
+   * @param retryDelaySeconds delay before retrying if subscribing fails
+   */
+  private void subscribeToHeartbeats(long retryDelaySeconds) {
+    NotificationHandler<StreamWriterHeartbeat> handler = new NotificationHandler<StreamWriterHeartbeat>() {
+      @Override
+      public Type getNotificationType() {
+        return StreamWriterHeartbeat.class;
+      }
+
+      @Override
+      public void received(StreamWriterHeartbeat heartbeat, NotificationContext notificationContext) {
+        lastHeartbeatTime = System.currentTimeMillis();
+        for (Map.Entry<Id.Stream, Long> entry : heartbeat.getStreamsSizes().entrySet()) {
+          StreamSubscriber streamSubscriber = streamSubscribers.get(entry.getKey());
+          if (streamSubscriber != null) {
+            streamSubscriber.heartbeatReceived(heartbeat.getInstanceId(), entry.getValue());
+          }
+        }
+      }
+    };
+
+    try {
+      heartbeatsSubscription = notificationService.subscribe(HEARTBEATS_FEED, handler, heartbeatsExecutor);
+      LOG.debug("Subscribed to stream writers heartbeats");
+    } catch (NotFoundException e) {
+      retrySubscribeToHeartbeats(retryDelaySeconds, e);
+    } catch (NotificationFeedException e) {
+      retrySubscribeToHeartbeats(retryDelaySeconds, e);
+    }
+  }
+
+  private void retrySubscribeToHeartbeats(long retryDelaySeconds, Exception e) {
+    // Until subscribing succeeds, the stream subscribers poll the stream size as if there were no heartbeats
+    LOG.debug("Could not subscribe to stream writers heartbeats, retrying in {} seconds", retryDelaySeconds, e);
+    final long nextRetryDelaySeconds = Math.min(retryDelaySeconds * 2, HEARTBEATS_SUBSCRIPTION_MAX_RETRY_SECONDS);
+    pollBookingExecutor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        subscribeToHeartbeats(nextRetryDelaySeconds);
+      }
+    }, retryDelaySeconds, TimeUnit.SECONDS);
+  }
+
   private static long toBytes(int mb) {
     return ((long) mb) * 1024 * 1024;
   }
@@ -453,6 +536,10 @@ public class StreamSizeScheduler implements Scheduler {
    * stream for its size whenever the schedules it references need the information.
    * The {@link StreamSizeScheduler} communicates with this class, which in turn communicates to the schedules
    * it contains to perform operations on the schedules - suspend, resume, etc.
+   *
+   * If stream sizes are estimated from heartbeats, this instance does not subscribe to the size notification of the
+   * stream. It instead adds the bytes reported by the stream writers heartbeats since the last polling to the size
+   * given by that polling. Scheduled polling is then skipped, unless no heartbeat was received for the polling delay.
    */
   private final class StreamSubscriber extends AbstractScheduledService
     implements NotificationHandler<StreamSizeNotification> {
@@ -469,17 +556,37 @@ public class StreamSizeScheduler implements Scheduler {
     // delta represents the gap between notifications for the stream and the stream size metric
     private Long delta;
 
+    // Heartbeats state, guarded by the heartbeatsLock.
+    // Last size reported by each stream writer instance, which is the number of bytes it wrote since it started
+    private final Map<Integer, Long> writerSizes;
+    private final Object heartbeatsLock;
+    // Total number of bytes reported by the heartbeats
+    private long heartbeatBytes;
+    // Stream size given by the last polling, and value of heartbeatBytes at that time
+    private StreamSize calibrationPollingInfo;
+    private long calibrationHeartbeatBytes;
+    // Whether a polling is scheduled to account for the bytes written by a new stream writer instance
+    private final AtomicBoolean recalibrationScheduled;
+    // Whether a polling is scheduled to confirm a stream size estimated from heartbeats
+    private final AtomicBoolean confirmationScheduled;
+
     private StreamSubscriber(Id.Stream streamId) {
       this.streamId = streamId;
       this.scheduleTasks = Maps.newConcurrentMap();
       this.activeTasks = new AtomicInteger(0);
       this.delta = null;
       this.deltaLock = new Object();
+      this.writerSizes = Maps.newHashMap();
+      this.heartbeatsLock = new Object();
+      this.recalibrationScheduled = new AtomicBoolean(false);
+      this.confirmationScheduled = new AtomicBoolean(false);
     }
 
     @Override
     protected void startUp() throws Exception {
-      notificationSubscription = notificationService.subscribe(getFeed(), this, sendPollingInfoExecutor);
+      if (!useHeartbeats) {
+        notificationSubscription = notificationService.subscribe(getFeed(), this, sendPollingInfoExecutor);
+      }
     }
 
     @Override
@@ -494,6 +601,10 @@ public class StreamSizeScheduler implements Scheduler {
       if (activeTasks.get() == 0) {
         return;
       }
+      if (useHeartbeats && System.currentTimeMillis() - lastHeartbeatTime < pollingDelay) {
+        // Stream writers are alive, and the stream size is estimated from their heartbeats
+        return;
+      }
 
       try {
         StreamSize streamSize = pollOnce();
@@ -553,6 +664,106 @@ public class StreamSizeScheduler implements Scheduler {
       }
     }
 
+    /**
+     * Handle the size of the stream reported in a stream writer heartbeat. If the estimated stream size is enough
+     * to trigger one of the schedule tasks, the stream is polled to confirm it. The estimate can be too high, since
+     * the polled size it is based on might already include some of the bytes reported by the following heartbeats.
+     *
+     * @param instanceId ID of the stream writer instance which sent the heartbeat
+     * @param size number of bytes written to the stream by that instance since it started
+     */
+    public void heartbeatReceived(int instanceId, long size) {
+      long estimate;
+      synchronized (heartbeatsLock) {
+        Long previousSize = writerSizes.put(instanceId, size);
+        if (previousSize == null) {
+          // The bytes written by an instance before its first heartbeat are not part of the heartbeat bytes
+          scheduleRecalibration();
+          return;
+        }
+        // A smaller size means that the instance restarted, and has written size bytes since then
+        heartbeatBytes += size >= previousSize ? size - previousSize : size;
+        if (calibrationPollingInfo == null || activeTasks.get() <= 0) {
+          return;
+        }
+        estimate = calibrationPollingInfo.getSize() + heartbeatBytes - calibrationHeartbeatBytes;
+      }
+
+      for (StreamSizeScheduleTask task : scheduleTasks.values()) {
+        if (task.shouldTriggerProgram(estimate)) {
+          pollAfterHeartbeat(estimate);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Poll the stream size using metrics to confirm a stream size estimated from heartbeats, which will trigger the
+     * execution of a program in one of the {@link StreamSizeScheduleTask}. Polling is retried while the estimate
+     * is not reached, since the metrics might not include the bytes reported by the heartbeats yet.
+     *
+     * @param estimate size of data present in the stream, in bytes, estimated from the heartbeats
+     */
+    private void pollAfterHeartbeat(final long estimate) {
+      if (!confirmationScheduled.compareAndSet(false, true)) {
+        return;
+      }
+      final AtomicInteger pollRetry = new AtomicInteger(POLLING_AFTER_NOTIFICATION_RETRY);
+      pollBookingExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          boolean retry = false;
+          try {
+            StreamSize streamSize = pollOnce();
+            sendPollingInfoToActiveTasks(streamSize);
+            if (streamSize.getSize() < estimate && pollRetry.decrementAndGet() >= 0) {
+              retry = true;
+            } else if (streamSize.getSize() < estimate) {
+              LOG.debug("Heartbeats estimate {} was not reached for stream {} after {} retries",
+                        estimate, streamId.getId(), POLLING_AFTER_NOTIFICATION_RETRY);
+            }
+          } catch (IOException e) {
+            LOG.error("Could not poll stream {}", streamId.getId(), e);
+          } catch (Throwable t) {
+            LOG.error("Error when polling stream {} and sending info to active tasks", streamId.getId(), t);
+          }
+          if (retry) {
+            pollBookingExecutor.schedule(this, Constants.MetricsCollector.DEFAULT_FREQUENCY_SECONDS,
+                                         TimeUnit.SECONDS);
+          } else {
+            confirmationScheduled.set(false);
+          }
+        }
+      });
+    }
+
+    /**
+     * Poll the stream to recalibrate the size estimated from heartbeats, after a new stream writer instance
+     * sent its first heartbeat. Polling is delayed by the metrics collection frequency, so that the polled size
+     * includes the bytes written by that instance before its first heartbeat.
+     */
+    private void scheduleRecalibration() {
+      if (!recalibrationScheduled.compareAndSet(false, true)) {
+        return;
+      }
+      pollBookingExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          recalibrationScheduled.set(false);
+          if (activeTasks.get() <= 0) {
+            return;
+          }
+          try {
+            sendPollingInfoToActiveTasks(pollOnce());
+          } catch (IOException e) {
+            LOG.error("Could not poll stream {}", streamId.getId(), e);
+          } catch (Throwable t) {
+            LOG.error("Error when polling stream {} and sending info to active tasks", streamId.getId(), t);
+          }
+        }
+      }, Constants.MetricsCollector.DEFAULT_FREQUENCY_SECONDS, TimeUnit.SECONDS);
+    }
+
     /**
      * @return number of active schedule tasks for this {@link StreamSubscriber}
      */
@@ -818,6 +1029,15 @@ public class StreamSizeScheduler implements Scheduler {
         }
       }
       lastPollingInfo = streamSize;
+      if (useHeartbeats) {
+        // Bytes reported by heartbeats during the query might not be part of the polled size yet. Not counting them
+        // can only delay a trigger until the next heartbeats. Bytes reported by the next heartbeats might already be
+        // part of the polled size, which is why an estimate is always confirmed by polling before triggering
+        synchronized (heartbeatsLock) {
+          calibrationPollingInfo = streamSize;
+          calibrationHeartbeatBytes = heartbeatBytes;
+        }
+      }
       return streamSize;
     }
 
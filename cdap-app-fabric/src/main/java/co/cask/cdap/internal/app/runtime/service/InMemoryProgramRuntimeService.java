@@ -16,6 +16,7 @@
 
 package co.cask.cdap.internal.app.runtime.service;
 
+import co.cask.cdap.app.program.ManifestFields;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.program.Programs;
 import co.cask.cdap.app.runtime.AbstractProgramRuntimeService;
@@ -24,6 +25,7 @@ import co.cask.cdap.app.runtime.ProgramOptions;
 import co.cask.cdap.common.async.ExecutorUtils;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.lang.jar.BundleJarUtil;
 import co.cask.cdap.internal.app.runtime.AbstractListener;
 import co.cask.cdap.internal.app.runtime.ProgramRunnerFactory;
 import co.cask.cdap.proto.Id;
@@ -39,6 +41,7 @@ import com.google.inject.Inject;
 import org.apache.commons.io.FileUtils;
 import org.apache.twill.api.RunId;
 import org.apache.twill.common.Threads;
+import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +53,9 @@ import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.Manifest;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -58,61 +64,98 @@ public final class InMemoryProgramRuntimeService extends AbstractProgramRuntimeS
 
   private static final Logger LOG = LoggerFactory.getLogger(InMemoryProgramRuntimeService.class);
 
-  private final CConfiguration cConf;
+  private final File tmpDir;
+  private final UnpackedProgramCache unpackedProgramCache;
 
   @Inject
   public InMemoryProgramRuntimeService(ProgramRunnerFactory programRunnerFactory, CConfiguration cConf) {
     super(programRunnerFactory);
-    this.cConf = cConf;
+    this.tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cConf.get(Constants.AppFabric.TEMP_DIR));
+    this.unpackedProgramCache = new UnpackedProgramCache(tmpDir);
   }
 
   @Override
   public synchronized RuntimeInfo run(Program program, ProgramOptions options) {
+    final Runnable cleanup;
+    Program bundleJarProgram;
     try {
-      File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cConf.get(Constants.AppFabric.TEMP_DIR));
-      final File destinationUnpackedJarDir = new File(tmpDir, String.format("%s.%s",
-                                                                      program.getName(), UUID.randomUUID().toString()));
-      Preconditions.checkState(!destinationUnpackedJarDir.exists());
-      destinationUnpackedJarDir.mkdirs();
-
-      Program bundleJarProgram = Programs.createWithUnpack(program.getJarLocation(), destinationUnpackedJarDir);
-      RuntimeInfo info = super.run(bundleJarProgram, options);
-      final ProgramController controller = info.getController();
-      controller.addListener(new AbstractListener() {
-
-        @Override
-        public void killed() {
-          try {
-            FileUtils.deleteDirectory(destinationUnpackedJarDir);
-          } catch (IOException e) {
-            LOG.warn("Failed to cleanup temporary program directory {}.", destinationUnpackedJarDir, e);
+      // Programs generated from the same content share one unpacked directory
+      final String contentHash = getContentHash(program.getJarLocation());
+      if (contentHash != null) {
+        File unpackedJarDir = unpackedProgramCache.acquire(contentHash, program.getJarLocation());
+        cleanup = new Runnable() {
+          @Override
+          public void run() {
+            unpackedProgramCache.release(contentHash);
           }
-        }
-
-        @Override
-        public void completed() {
-          try {
-            FileUtils.deleteDirectory(destinationUnpackedJarDir);
-          } catch (IOException e) {
-            LOG.warn("Failed to cleanup temporary program directory {}.", destinationUnpackedJarDir, e);
+        };
+        bundleJarProgram = Programs.createFromUnpacked(program.getJarLocation(), unpackedJarDir);
+      } else {
+        final File destinationUnpackedJarDir = new File(tmpDir, String.format("%s.%s", program.getName(),
+                                                                              UUID.randomUUID().toString()));
+        Preconditions.checkState(!destinationUnpackedJarDir.exists());
+        destinationUnpackedJarDir.mkdirs();
+        cleanup = new Runnable() {
+          @Override
+          public void run() {
+            try {
+              FileUtils.deleteDirectory(destinationUnpackedJarDir);
+            } catch (IOException e) {
+              LOG.warn("Failed to cleanup temporary program directory {}.", destinationUnpackedJarDir, e);
+            }
           }
-        }
+        };
+        bundleJarProgram = Programs.createWithUnpack(program.getJarLocation(), destinationUnpackedJarDir);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Error unpackaging program " + program.getName());
+    }
 
-        @Override
-        public void error(Throwable cause) {
-          try {
-            FileUtils.deleteDirectory(destinationUnpackedJarDir);
-          } catch (IOException e) {
-            LOG.warn("Failed to cleanup temporary program directory {}.", destinationUnpackedJarDir, e);
-          }
+    RuntimeInfo info;
+    try {
+      info = super.run(bundleJarProgram, options);
+    } catch (RuntimeException e) {
+      cleanup.run();
+      throw e;
+    }
+    final ProgramController controller = info.getController();
+    controller.addListener(new AbstractListener() {
+
+      // Guards against cleaning up more than once, as the unpacked directory may be shared
+      private final AtomicBoolean cleanedUp = new AtomicBoolean();
+
+      @Override
+      public void killed() {
+        cleanupOnce();
+      }
+
+      @Override
+      public void completed() {
+        cleanupOnce();
+      }
+
+      @Override
+      public void error(Throwable cause) {
+        cleanupOnce();
+      }
+
+      private void cleanupOnce() {
+        if (cleanedUp.compareAndSet(false, true)) {
+          cleanup.run();
         }
-      }, ExecutorUtils.newThreadExecutor(Threads.createDaemonThreadFactory("program-clean-up-%d")));
+      }
+    }, ExecutorUtils.newThreadExecutor(Threads.createDaemonThreadFactory("program-clean-up-%d")));
 
-      return info;
+    return info;
+  }
 
-    } catch (IOException e) {
-      throw new RuntimeException("Error unpackaging program " + program.getName());
-    }
+  /**
+   * Returns the content hash of the given program jar, or {@code null} if the jar does not have one.
+   */
+  @Nullable
+  private String getContentHash(Location programJarLocation) throws IOException {
+    Manifest manifest = BundleJarUtil.getManifest(programJarLocation);
+    return manifest == null ? null : manifest.getMainAttributes().getValue(ManifestFields.CONTENT_HASH);
   }
 
   @Override
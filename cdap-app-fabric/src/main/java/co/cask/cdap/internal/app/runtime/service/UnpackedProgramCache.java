@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service;
+
+import co.cask.cdap.app.program.ManifestFields;
+import co.cask.cdap.common.lang.jar.BundleJarUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Keeps track of the local directories that program jars are unpacked into. Program jars generated from the same
+ * content, as identified by their {@link ManifestFields#CONTENT_HASH}, share one directory across all programs and
+ * runs. A directory is unpacked by the first run that acquires it, and deleted once the last run releases it.
+ */
+final class UnpackedProgramCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UnpackedProgramCache.class);
+
+  private final File baseDir;
+  private final Map<String, UnpackedProgram> unpackedPrograms = Maps.newHashMap();
+
+  UnpackedProgramCache(File baseDir) {
+    this.baseDir = baseDir;
+  }
+
+  /**
+   * Returns the directory that contains the given program jar unpacked, unpacking the jar if it is not unpacked
+   * already. Every call must be followed by a call to {@link #release(String)} with the same content hash once
+   * the directory is no longer used.
+   *
+   * @param contentHash content hash of the program jar
+   * @param jarLocation location of the program jar
+   * @return the directory that contains the unpacked program jar
+   * @throws IOException if failed to unpack the program jar
+   */
+  synchronized File acquire(String contentHash, Location jarLocation) throws IOException {
+    UnpackedProgram unpackedProgram = unpackedPrograms.get(contentHash);
+    if (unpackedProgram == null) {
+      File dir = new File(baseDir, String.format("program.%s", contentHash));
+      // Remove leftovers, e.g. from a previous process that did not shut down cleanly
+      if (dir.exists()) {
+        FileUtils.deleteDirectory(dir);
+      }
+      if (!dir.mkdirs()) {
+        throw new IOException("Failed to create directory " + dir);
+      }
+      try {
+        BundleJarUtil.unpackProgramJar(jarLocation, dir);
+      } catch (IOException e) {
+        deleteDirectory(dir);
+        throw e;
+      }
+      LOG.debug("Unpacked program jar {} to {}", jarLocation.toURI(), dir);
+      unpackedProgram = new UnpackedProgram(dir);
+      unpackedPrograms.put(contentHash, unpackedProgram);
+    }
+    unpackedProgram.references++;
+    return unpackedProgram.dir;
+  }
+
+  /**
+   * Releases a directory acquired by {@link #acquire(String, Location)}. The directory is deleted if it is not used
+   * by any other run.
+   */
+  synchronized void release(String contentHash) {
+    UnpackedProgram unpackedProgram = unpackedPrograms.get(contentHash);
+    Preconditions.checkState(unpackedProgram != null, "Unpacked program %s was not acquired.", contentHash);
+    if (--unpackedProgram.references == 0) {
+      unpackedPrograms.remove(contentHash);
+      deleteDirectory(unpackedProgram.dir);
+    }
+  }
+
+  private void deleteDirectory(File dir) {
+    try {
+      FileUtils.deleteDirectory(dir);
+    } catch (IOException e) {
+      LOG.warn("Failed to cleanup temporary program directory {}.", dir, e);
+    }
+  }
+
+  /**
+   * A program jar unpacked into a directory, with the number of runs using it.
+   */
+  private static final class UnpackedProgram {
+    private final File dir;
+    private int references;
+
+    UnpackedProgram(File dir) {
+      this.dir = dir;
+    }
+  }
+}
@@ -17,17 +17,25 @@
 package co.cask.cdap.internal.app.runtime.service.http;
 
 import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.service.http.HttpContentConsumer;
 import co.cask.cdap.api.service.http.HttpServiceContext;
 import co.cask.cdap.api.service.http.HttpServiceHandler;
 import co.cask.cdap.api.service.http.HttpServiceRequest;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.http.BodyConsumer;
 import co.cask.http.HandlerContext;
 import co.cask.http.HttpHandler;
 import co.cask.http.HttpResponder;
 import co.cask.tephra.TransactionContext;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.apache.twill.common.Cancellable;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
 /**
  * An abstract base class for all {@link HttpHandler} generated through the {@link HttpHandlerGenerator}.
  *
@@ -38,6 +46,9 @@ public abstract class AbstractHttpHandlerDelegator<T extends HttpServiceHandler>
 
   private final DelegatorContext<T> context;
   private MetricsCollector metricsCollector;
+  private volatile MetricsCollector handlerMetricsCollector;
+  // per handler method collectors, for emitting latency metrics
+  private final ConcurrentMap<String, MetricsCollector> methodCollectors = Maps.newConcurrentMap();
 
   protected AbstractHttpHandlerDelegator(DelegatorContext<T> context, MetricsCollector metricsCollector) {
     this.context = context;
@@ -62,22 +73,98 @@ public abstract class AbstractHttpHandlerDelegator<T extends HttpServiceHandler>
     return context.getServiceContext();
   }
 
+  @Override
+  public final Cancellable detachHandler() {
+    return context.detachHandler();
+  }
+
+  @Nullable
+  @Override
+  public final ChannelWritabilityHandler.Writability getWritability(HttpRequest request) {
+    return context.getWritability(request);
+  }
+
   protected final TransactionContext getTransactionContext() {
     Preconditions.checkState(context.getServiceContext() instanceof TransactionalHttpServiceContext,
                              "This instance of HttpServiceContext does not support transactions.");
     return ((TransactionalHttpServiceContext) context.getServiceContext()).getTransactionContext();
   }
 
+  protected final TransactionContext getReadOnlyTransactionContext(long maxStalenessMillis) {
+    Preconditions.checkState(context.getServiceContext() instanceof TransactionalHttpServiceContext,
+                             "This instance of HttpServiceContext does not support transactions.");
+    return ((TransactionalHttpServiceContext) context.getServiceContext())
+      .getReadOnlyTransactionContext(maxStalenessMillis);
+  }
+
+  protected final TransactionContext getNoTransactionContext() {
+    return NoTransactionContext.INSTANCE;
+  }
+
   protected final HttpServiceRequest wrapRequest(HttpRequest request) {
     return new DefaultHttpServiceRequest(request);
   }
 
-  protected final DelayedHttpServiceResponder wrapResponder(HttpResponder responder) {
-    MetricsCollector collector = this.metricsCollector;
-    if (context.getServiceContext() != null && context.getServiceContext().getSpecification() != null) {
-      collector = metricsCollector.childCollector(Constants.Metrics.Tag.HANDLER,
-                                                  context.getServiceContext().getSpecification().getName());
+  protected final DelayedHttpServiceResponder wrapResponder(HttpRequest request, HttpResponder responder,
+                                                            TransactionContext txContext) {
+    HandlerCallbackRunner callbackRunner = new HandlerCallbackRunner(txContext,
+                                                                     getHandler().getClass().getClassLoader());
+    return new DelayedHttpServiceResponder(responder, getHandlerMetricsCollector(), callbackRunner,
+                                           getWritability(request));
+  }
+
+  /**
+   * Wraps the {@link HttpContentConsumer} returned by a handler method into a {@link BodyConsumer} for receiving
+   * the request content. If the handler method did not return a consumer, the response of the handler method
+   * is sent instead. Since the consumer callbacks run after the handler method returned, possibly on other threads,
+   * the handler and its context are detached from the current thread until the request completes.
+   *
+   * @param consumer the consumer returned by the handler method, or {@code null}
+   * @param responder the responder of the call
+   * @return a {@link BodyConsumer} or {@code null} if the response has been sent
+   */
+  @Nullable
+  protected final BodyConsumer wrapContentConsumer(@Nullable HttpContentConsumer consumer,
+                                                   DelayedHttpServiceResponder responder) {
+    if (consumer == null) {
+      responder.execute();
+      return null;
+    }
+    return new HttpContentConsumerAdapter(consumer, responder, responder.getCallbackRunner(), detachHandler());
+  }
+
+  /**
+   * Emits the latency of a call to the given handler method, as the total latency and the number of calls,
+   * tagged with the method name.
+   *
+   * @param methodName name of the handler method
+   * @param startNanos value of {@link System#nanoTime()} when the call started
+   */
+  protected final void emitLatencyMetrics(String methodName, long startNanos) {
+    long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    MetricsCollector collector = methodCollectors.get(methodName);
+    if (collector == null) {
+      collector = getHandlerMetricsCollector().childCollector(Constants.Metrics.Tag.METHOD, methodName);
+      MetricsCollector existing = methodCollectors.putIfAbsent(methodName, collector);
+      if (existing != null) {
+        collector = existing;
+      }
+    }
+    collector.increment("response.latency.ms", latencyMillis);
+    collector.increment("response.latency.count", 1);
+  }
+
+  private MetricsCollector getHandlerMetricsCollector() {
+    // Cached, since the context of the current thread may have been detached by wrapContentConsumer()
+    MetricsCollector collector = handlerMetricsCollector;
+    if (collector == null) {
+      collector = metricsCollector;
+      if (context.getServiceContext() != null && context.getServiceContext().getSpecification() != null) {
+        collector = metricsCollector.childCollector(Constants.Metrics.Tag.HANDLER,
+                                                    context.getServiceContext().getSpecification().getName());
+      }
+      handlerMetricsCollector = collector;
     }
-    return new DelayedHttpServiceResponder(responder, collector);
+    return collector;
   }
 }
@@ -43,6 +43,7 @@ public class BasicHttpServiceContext extends AbstractContext implements Transact
 
   private final HttpServiceHandlerSpecification spec;
   private final TransactionContext txContext;
+  private final ReadOnlyTransactionContext readOnlyTxContext;
   private final Metrics userMetrics;
   private final int instanceId;
   private final AtomicInteger instanceCount;
@@ -65,6 +66,22 @@ public class BasicHttpServiceContext extends AbstractContext implements Transact
                                  Arguments runtimeArgs, MetricsCollectionService metricsCollectionService,
                                  DatasetFramework dsFramework, DiscoveryServiceClient discoveryServiceClient,
                                  TransactionSystemClient txClient) {
+    this(spec, program, runId, instanceId, instanceCount, runtimeArgs, metricsCollectionService, dsFramework,
+         discoveryServiceClient, txClient, new TransactionSnapshotCache(txClient));
+  }
+
+  /**
+   * Creates a BasicHttpServiceContext that shares transaction snapshots for read-only calls with other contexts.
+   *
+   * @param snapshotCache cache of transaction snapshots for read-only calls.
+   * @see #BasicHttpServiceContext(HttpServiceHandlerSpecification, Program, RunId, int, AtomicInteger, Arguments,
+   *      MetricsCollectionService, DatasetFramework, DiscoveryServiceClient, TransactionSystemClient)
+   */
+  public BasicHttpServiceContext(HttpServiceHandlerSpecification spec,
+                                 Program program, RunId runId, int instanceId, AtomicInteger instanceCount,
+                                 Arguments runtimeArgs, MetricsCollectionService metricsCollectionService,
+                                 DatasetFramework dsFramework, DiscoveryServiceClient discoveryServiceClient,
+                                 TransactionSystemClient txClient, TransactionSnapshotCache snapshotCache) {
     super(program, runId, runtimeArgs, spec.getDatasets(),
           getMetricCollector(metricsCollectionService, program, spec.getName(), runId.getId(), instanceId),
           dsFramework, discoveryServiceClient);
@@ -72,6 +89,8 @@ public class BasicHttpServiceContext extends AbstractContext implements Transact
     this.instanceId = instanceId;
     this.instanceCount = instanceCount;
     this.txContext = new TransactionContext(txClient, getDatasetInstantiator().getTransactionAware());
+    this.readOnlyTxContext = new ReadOnlyTransactionContext(txClient, snapshotCache,
+                                                            getDatasetInstantiator().getTransactionAware());
     this.userMetrics =
       new ProgramUserMetrics(getMetricCollector(metricsCollectionService, program,
                                                 spec.getName(), runId.getId(), instanceId));
@@ -105,6 +124,11 @@ public class BasicHttpServiceContext extends AbstractContext implements Transact
     return txContext;
   }
 
+  @Override
+  public TransactionContext getReadOnlyTransactionContext(long maxStalenessMillis) {
+    return readOnlyTxContext.setMaxStaleness(maxStalenessMillis);
+  }
+
   private static MetricsCollector getMetricCollector(MetricsCollectionService service,
                                                      Program program, String handlerName,
                                                      String runId, int instanceId) {
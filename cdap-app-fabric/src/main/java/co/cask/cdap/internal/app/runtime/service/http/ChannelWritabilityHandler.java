@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * A channel handler that remembers the channel of each HTTP request, so that content producers can stop writing
+ * response chunks while the channel is not writable. It must be added to the pipeline before the request router,
+ * so that it runs in the I/O thread of the channel.
+ */
+public final class ChannelWritabilityHandler extends SimpleChannelUpstreamHandler {
+
+  private final Map<HttpRequest, Writability> requests =
+    Collections.synchronizedMap(new WeakHashMap<HttpRequest, Writability>());
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    if (e.getMessage() instanceof HttpRequest) {
+      requests.put((HttpRequest) e.getMessage(), new Writability(e.getChannel(), Thread.currentThread()));
+    }
+    super.messageReceived(ctx, e);
+  }
+
+  @Override
+  public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    notifyWaiters(e.getChannel());
+    super.channelInterestChanged(ctx, e);
+  }
+
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    notifyWaiters(e.getChannel());
+    super.channelClosed(ctx, e);
+  }
+
+  /**
+   * Returns the {@link Writability} of the channel the given request was received on, or {@code null} if the
+   * request was not received through this handler. Each request can only be looked up once.
+   */
+  @Nullable
+  public Writability getWritability(HttpRequest request) {
+    return requests.remove(request);
+  }
+
+  private void notifyWaiters(Channel channel) {
+    synchronized (channel) {
+      channel.notifyAll();
+    }
+  }
+
+  /**
+   * Allows waiting until the channel of a request becomes writable.
+   */
+  public static final class Writability {
+
+    private final Channel channel;
+    private final Thread ioThread;
+
+    private Writability(Channel channel, Thread ioThread) {
+      this.channel = channel;
+      this.ioThread = ioThread;
+    }
+
+    /**
+     * Blocks until the channel is writable or closed. Returns immediately if called from the I/O thread of the
+     * channel, since that thread is the one that drains the pending writes.
+     */
+    public void awaitWritable() throws InterruptedException {
+      if (Thread.currentThread() == ioThread) {
+        return;
+      }
+      synchronized (channel) {
+        while (channel.isOpen() && !channel.isWritable()) {
+          // Timed wait, in case the interest change happened on a channel event that was not seen by this handler
+          channel.wait(100);
+        }
+      }
+    }
+  }
+}
@@ -34,8 +34,9 @@ import java.util.Map;
 final class DefaultHttpServiceRequest implements HttpServiceRequest {
 
   private final HttpRequest request;
-  private final ByteBuffer content;
   private final Multimap<String, String> headers;
+  // converted lazily, since handler methods that consume the content in chunks never read it
+  private ByteBuffer content;
 
   /**
    * Instantiates the class from a {@link HttpRequest}
@@ -44,7 +45,6 @@ final class DefaultHttpServiceRequest implements HttpServiceRequest {
    */
   DefaultHttpServiceRequest(HttpRequest request) {
     this.request = request;
-    this.content = request.getContent().toByteBuffer();
 
     final ImmutableMultimap.Builder<String, String> builder = ImmutableMultimap.builder();
     for (Map.Entry<String, String> header : request.getHeaders()) {
@@ -74,6 +74,9 @@ final class DefaultHttpServiceRequest implements HttpServiceRequest {
    */
   @Override
   public ByteBuffer getContent() {
+    if (content == null) {
+      content = request.getContent().toByteBuffer();
+    }
     return content.duplicate().asReadOnlyBuffer();
   }
 
@@ -17,15 +17,21 @@
 package co.cask.cdap.internal.app.runtime.service.http;
 
 import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.service.http.HttpContentProducer;
 import co.cask.cdap.api.service.http.HttpServiceResponder;
+import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
+import co.cask.tephra.TransactionFailureException;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.io.Closeables;
 import com.google.gson.Gson;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,28 +39,40 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link HttpServiceResponder} which delegates calls to
  * the HttpServiceResponder's methods to the matching methods for a {@link HttpResponder}.
  * A response is buffered until execute() is called. This allows you to send the correct response upon
  * a transaction failure, and to not always delegating to the user response.
+ * For a response with a {@link HttpContentProducer}, only the producer is buffered, and the content is produced
+ * and sent in chunks when execute() is called.
  */
 public final class DelayedHttpServiceResponder implements HttpServiceResponder {
   private static final Logger LOG = LoggerFactory.getLogger(DelayedHttpServiceResponder.class);
   private static final Gson GSON = new Gson();
   private final HttpResponder responder;
   private final MetricsCollector metricsCollector;
+  private final HandlerCallbackRunner callbackRunner;
+  private final ChannelWritabilityHandler.Writability writability;
   private BufferedResponse bufferedResponse;
 
   /**
    * Instantiates the class from a {@link HttpResponder}
    *
    * @param responder the responder which will be bound to
+   * @param callbackRunner runner for the callbacks of {@link HttpContentProducer}s
+   * @param writability writability of the response channel, used to throttle produced content,
+   *                    or {@code null} if unknown
    */
-  public DelayedHttpServiceResponder(HttpResponder responder, MetricsCollector metricsCollector) {
+  DelayedHttpServiceResponder(HttpResponder responder, MetricsCollector metricsCollector,
+                              HandlerCallbackRunner callbackRunner,
+                              @Nullable ChannelWritabilityHandler.Writability writability) {
     this.responder = responder;
     this.metricsCollector = metricsCollector;
+    this.callbackRunner = callbackRunner;
+    this.writability = writability;
   }
 
   /**
@@ -158,6 +176,22 @@ public final class DelayedHttpServiceResponder implements HttpServiceResponder {
     send(status, content, contentType, headers, true);
   }
 
+  /**
+   * Sends response back to client, with the content produced in chunks by the given producer.
+   *
+   * @param status the status of the response
+   * @param producer the producer of the content to be sent back
+   * @param contentType the type of content
+   * @param headers the headers to be sent back
+   */
+  @Override
+  public void send(int status, HttpContentProducer producer, String contentType, Multimap<String, String> headers) {
+    if (bufferedResponse != null) {
+      LOG.warn("Multiple calls to one of the 'send*' methods has been made. Only the last response will be sent.");
+    }
+    bufferedResponse = new BufferedResponse(status, null, contentType, headers, producer);
+  }
+
   private void send(int status, ByteBuffer content, String contentType,
                     Multimap<String, String> headers, boolean copy) {
     if (bufferedResponse != null) {
@@ -169,7 +203,7 @@ public final class DelayedHttpServiceResponder implements HttpServiceResponder {
       channelBuffer = copy ? ChannelBuffers.copiedBuffer(content) : ChannelBuffers.wrappedBuffer(content);
     }
 
-    bufferedResponse = new BufferedResponse(status, channelBuffer, contentType, headers);
+    bufferedResponse = new BufferedResponse(status, channelBuffer, contentType, headers, null);
   }
 
   /**
@@ -180,7 +214,7 @@ public final class DelayedHttpServiceResponder implements HttpServiceResponder {
     ByteBuffer buffer = Charsets.UTF_8.encode("Transaction failure when committing changes. Aborted transaction.");
     bufferedResponse = new BufferedResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR.getCode(),
                                             ChannelBuffers.wrappedBuffer(buffer),
-                                            "text/plain; charset=" + Charsets.UTF_8.name(), null);
+                                            "text/plain; charset=" + Charsets.UTF_8.name(), null, null);
   }
 
   /**
@@ -190,11 +224,86 @@ public final class DelayedHttpServiceResponder implements HttpServiceResponder {
   public void execute() {
     Preconditions.checkState(bufferedResponse != null,
                              "Can not call execute before one of the other responder methods are called.");
+    if (bufferedResponse.getContentProducer() != null) {
+      executeChunked(bufferedResponse);
+      return;
+    }
     responder.sendContent(HttpResponseStatus.valueOf(bufferedResponse.getStatus()), bufferedResponse.getChannelBuffer(),
                           bufferedResponse.getContentType(), bufferedResponse.getHeaders());
     emitMetrics(bufferedResponse.getStatus());
   }
 
+  /**
+   * Sends the response status and headers, followed by all chunks produced by the content producer of the response.
+   * Since the status is sent before the first chunk is produced, a failure while producing the content truncates
+   * the response. No chunk is produced while the channel is not writable, so that a slow client does not cause
+   * the whole content to be buffered in memory.
+   */
+  private void executeChunked(BufferedResponse response) {
+    final HttpContentProducer producer = response.getContentProducer();
+    Multimap<String, String> headers = LinkedListMultimap.create();
+    if (response.getHeaders() != null) {
+      headers.putAll(response.getHeaders());
+    }
+    if (response.getContentType() != null) {
+      headers.put(HttpHeaders.Names.CONTENT_TYPE, response.getContentType());
+    }
+
+    final ChunkResponder chunkResponder = responder.sendChunkStart(HttpResponseStatus.valueOf(response.getStatus()),
+                                                                   headers);
+    try {
+      callbackRunner.run(new HandlerCallbackRunner.Callback() {
+        @Override
+        public void call() throws Exception {
+          ByteBuffer chunk = producer.nextChunk();
+          while (chunk.hasRemaining()) {
+            // copy, since the producer may reuse the buffer while netty is still writing it
+            chunkResponder.sendChunk(ChannelBuffers.copiedBuffer(chunk));
+            if (writability != null) {
+              writability.awaitWritable();
+            }
+            chunk = producer.nextChunk();
+          }
+        }
+      });
+    } catch (final Throwable t) {
+      LOG.error("Failed to produce response content", t);
+      Closeables.closeQuietly(chunkResponder);
+      try {
+        callbackRunner.runInTransaction(new HandlerCallbackRunner.Callback() {
+          @Override
+          public void call() throws Exception {
+            producer.onError(t);
+          }
+        });
+      } catch (TransactionFailureException e) {
+        LOG.error("Transaction failure: ", e);
+      }
+      emitMetrics(HttpResponseStatus.INTERNAL_SERVER_ERROR.getCode());
+      return;
+    }
+
+    Closeables.closeQuietly(chunkResponder);
+    try {
+      callbackRunner.runInTransaction(new HandlerCallbackRunner.Callback() {
+        @Override
+        public void call() throws Exception {
+          producer.onFinish();
+        }
+      });
+    } catch (TransactionFailureException e) {
+      LOG.error("Transaction failure after sending response content: ", e);
+    }
+    emitMetrics(response.getStatus());
+  }
+
+  /**
+   * Returns the runner for callbacks of user content producers and consumers of the current call.
+   */
+  HandlerCallbackRunner getCallbackRunner() {
+    return callbackRunner;
+  }
+
   private void emitMetrics(int status) {
     StringBuilder builder = new StringBuilder(50);
     builder.append("response.");
@@ -225,13 +334,16 @@ public final class DelayedHttpServiceResponder implements HttpServiceResponder {
     private final ChannelBuffer channelBuffer;
     private final String contentType;
     private final Multimap<String, String> headers;
+    private final HttpContentProducer contentProducer;
 
     private BufferedResponse(int status, ChannelBuffer channelBuffer,
-                             String contentType, Multimap<String, String> headers) {
+                             String contentType, Multimap<String, String> headers,
+                             HttpContentProducer contentProducer) {
       this.status = status;
       this.channelBuffer = channelBuffer;
       this.contentType = contentType;
       this.headers = headers == null ? null : Multimaps.unmodifiableMultimap(headers);
+      this.contentProducer = contentProducer;
     }
 
     public int getStatus() {
@@ -249,5 +361,9 @@ public final class DelayedHttpServiceResponder implements HttpServiceResponder {
     public Multimap<String, String> getHeaders() {
       return headers;
     }
+
+    public HttpContentProducer getContentProducer() {
+      return contentProducer;
+    }
   }
 }
@@ -18,6 +18,10 @@ package co.cask.cdap.internal.app.runtime.service.http;
 
 import co.cask.cdap.api.service.http.HttpServiceContext;
 import co.cask.cdap.api.service.http.HttpServiceHandler;
+import org.apache.twill.common.Cancellable;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+
+import javax.annotation.Nullable;
 
 /**
  * Context object for carrying context information used by generated handler delegator classes.
@@ -35,4 +39,18 @@ public interface DelegatorContext<T extends HttpServiceHandler> {
    * Returns an instance of the service context.
    */
   HttpServiceContext getServiceContext();
+
+  /**
+   * Detaches the handler and the service context used by the current thread, so that they can be used by
+   * callbacks of a request that outlives the handler method call. Later calls on the current thread get
+   * new instances. The detached instances are released when the returned {@link Cancellable} is cancelled.
+   */
+  Cancellable detachHandler();
+
+  /**
+   * Returns the {@link ChannelWritabilityHandler.Writability} of the channel the given request was received on,
+   * or {@code null} if it is not known.
+   */
+  @Nullable
+  ChannelWritabilityHandler.Writability getWritability(HttpRequest request);
 }
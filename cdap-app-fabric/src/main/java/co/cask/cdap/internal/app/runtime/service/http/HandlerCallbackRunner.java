@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.cdap.common.lang.ClassLoaders;
+import co.cask.tephra.TransactionContext;
+import co.cask.tephra.TransactionFailureException;
+
+/**
+ * Runs callbacks of user {@link co.cask.cdap.api.service.http.HttpContentConsumer} and
+ * {@link co.cask.cdap.api.service.http.HttpContentProducer} objects after the handler method returned.
+ * Callbacks run with the ClassLoader of the user handler as context ClassLoader, and optionally in a transaction
+ * of the same {@link TransactionContext} that was used for the handler method.
+ */
+final class HandlerCallbackRunner {
+
+  private final TransactionContext txContext;
+  private final ClassLoader classLoader;
+
+  HandlerCallbackRunner(TransactionContext txContext, ClassLoader classLoader) {
+    this.txContext = txContext;
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Runs the given callback without a transaction.
+   */
+  void run(Callback callback) throws Exception {
+    ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(classLoader);
+    try {
+      callback.call();
+    } finally {
+      ClassLoaders.setContextClassLoader(oldClassLoader);
+    }
+  }
+
+  /**
+   * Runs the given callback in a new transaction. If the callback fails, the transaction is aborted.
+   *
+   * @throws TransactionFailureException if the callback or the transaction failed
+   */
+  void runInTransaction(Callback callback) throws TransactionFailureException {
+    txContext.start();
+    try {
+      run(callback);
+    } catch (Throwable t) {
+      txContext.abort(new TransactionFailureException("User callback exception: ", t));
+    }
+    txContext.finish();
+  }
+
+  /**
+   * A callback to user code.
+   */
+  interface Callback {
+    void call() throws Exception;
+  }
+}
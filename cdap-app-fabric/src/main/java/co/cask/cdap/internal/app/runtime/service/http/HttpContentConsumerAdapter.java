@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.cdap.api.service.http.HttpContentConsumer;
+import co.cask.http.BodyConsumer;
+import co.cask.http.HttpResponder;
+import co.cask.tephra.TransactionFailureException;
+import com.google.common.base.Throwables;
+import org.apache.twill.common.Cancellable;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BodyConsumer} that forwards the chunks of a request to a user {@link HttpContentConsumer}.
+ * Chunks are forwarded without a transaction, while the completion and the failure callbacks run in a transaction.
+ * The handler instance and its context are detached from the handler thread, and are released once the
+ * completion or the failure callback returned.
+ */
+final class HttpContentConsumerAdapter extends BodyConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HttpContentConsumerAdapter.class);
+
+  private final HttpContentConsumer delegate;
+  private final DelayedHttpServiceResponder responder;
+  private final HandlerCallbackRunner callbackRunner;
+  private final Cancellable releaseHandler;
+
+  HttpContentConsumerAdapter(HttpContentConsumer delegate, DelayedHttpServiceResponder responder,
+                             HandlerCallbackRunner callbackRunner, Cancellable releaseHandler) {
+    this.delegate = delegate;
+    this.responder = responder;
+    this.callbackRunner = callbackRunner;
+    this.releaseHandler = releaseHandler;
+  }
+
+  @Override
+  public void chunk(final ChannelBuffer request, HttpResponder responder) {
+    try {
+      callbackRunner.run(new HandlerCallbackRunner.Callback() {
+        @Override
+        public void call() throws Exception {
+          delegate.onReceived(request.toByteBuffer().asReadOnlyBuffer());
+        }
+      });
+    } catch (Exception e) {
+      // netty-http calls handleError() and responds with an error
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Override
+  public void finished(HttpResponder responder) {
+    try {
+      try {
+        callbackRunner.runInTransaction(new HandlerCallbackRunner.Callback() {
+          @Override
+          public void call() throws Exception {
+            delegate.onFinish(HttpContentConsumerAdapter.this.responder);
+          }
+        });
+      } catch (TransactionFailureException e) {
+        LOG.error("Transaction failure: ", e);
+        this.responder.setTransactionFailureResponse();
+      }
+      this.responder.execute();
+    } finally {
+      releaseHandler.cancel();
+    }
+  }
+
+  @Override
+  public void handleError(final Throwable cause) {
+    LOG.error("Failed to receive request content", cause);
+    try {
+      callbackRunner.runInTransaction(new HandlerCallbackRunner.Callback() {
+        @Override
+        public void call() throws Exception {
+          delegate.onError(cause);
+        }
+      });
+    } catch (TransactionFailureException e) {
+      LOG.error("Transaction failure: ", e);
+    } finally {
+      releaseHandler.cancel();
+    }
+  }
+}
@@ -17,13 +17,17 @@
 package co.cask.cdap.internal.app.runtime.service.http;
 
 import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.service.http.HttpContentConsumer;
 import co.cask.cdap.api.service.http.HttpServiceHandler;
 import co.cask.cdap.api.service.http.HttpServiceRequest;
 import co.cask.cdap.api.service.http.HttpServiceResponder;
+import co.cask.cdap.api.service.http.NoTransaction;
+import co.cask.cdap.api.service.http.ReadOnlyTransaction;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.internal.asm.ClassDefinition;
 import co.cask.cdap.internal.asm.Methods;
 import co.cask.cdap.internal.asm.Signatures;
+import co.cask.http.BodyConsumer;
 import co.cask.http.HttpResponder;
 import co.cask.tephra.TransactionContext;
 import co.cask.tephra.TransactionFailureException;
@@ -59,6 +63,7 @@ import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
@@ -74,6 +79,12 @@ import javax.ws.rs.Path;
  * {@link co.cask.http.HttpHandler} for the netty http service to inspect.
  *
  * Also, the generated class can impose transaction boundary for calls to those {@link Path @Path} methods.
+ * Methods annotated with {@link ReadOnlyTransaction} are called with a read-only transaction snapshot, and methods
+ * annotated with {@link NoTransaction} are called without any transaction. The latency of every call is emitted
+ * as metrics tagged with the method name.
+ *
+ * Handler methods that return a {@link HttpContentConsumer} are copied as methods that return a {@link BodyConsumer},
+ * so that the netty http service streams the request content to the consumer instead of aggregating it.
  *
  * The generated class has a skeleton looks like this:
  *
@@ -248,6 +259,26 @@ final class HttpHandlerGenerator {
     mg.endMethod();
   }
 
+  /**
+   * Returns the value of the {@link ReadOnlyTransaction#maxStalenessMillis()} attribute of the given annotation.
+   */
+  private long getMaxStalenessMillis(AnnotationNode readOnlyAnnotation) {
+    if (readOnlyAnnotation.values != null) {
+      // values is a list of alternating attribute names and values
+      for (int i = 0; i < readOnlyAnnotation.values.size(); i += 2) {
+        if ("maxStalenessMillis".equals(readOnlyAnnotation.values.get(i))) {
+          return ((Number) readOnlyAnnotation.values.get(i + 1)).longValue();
+        }
+      }
+    }
+    try {
+      return (Long) ReadOnlyTransaction.class.getMethod("maxStalenessMillis").getDefaultValue();
+    } catch (NoSuchMethodException e) {
+      // Shouldn't happen
+      throw Throwables.propagate(e);
+    }
+  }
+
   /**
    * Returns true if the annotation is of type {@link javax.ws.rs.HttpMethod} annotations.
    */
@@ -387,11 +418,13 @@ final class HttpHandlerGenerator {
 
       argTypes[0] = Type.getType(HttpRequest.class);
       argTypes[1] = Type.getType(HttpResponder.class);
+      Type generatedReturnType = returnType.equals(Type.getType(HttpContentConsumer.class))
+        ? Type.getType(BodyConsumer.class) : returnType;
 
       preserveParameterClasses(argTypes);
 
       // Copy the method signature with the first two parameter types changed
-      String methodDesc = Type.getMethodDescriptor(returnType, argTypes);
+      String methodDesc = Type.getMethodDescriptor(generatedReturnType, argTypes);
       MethodVisitor methodVisitor = classWriter.visitMethod(access, name, methodDesc,
                                                             rewriteMethodSignature(signature), exceptions);
       final GeneratorAdapter mg = new GeneratorAdapter(methodVisitor, access, name, desc);
@@ -407,11 +440,32 @@ final class HttpHandlerGenerator {
       }
 
       // Each request method is wrapped by a transaction lifecycle.
-      generateTransactionalDelegateBody(mg, new Method(name, desc));
+      generateTransactionalDelegateBody(mg, new Method(name, desc), getTransactionAnnotation());
 
       super.visitEnd();
     }
 
+    /**
+     * Returns the {@link ReadOnlyTransaction} or {@link NoTransaction} annotation of the method, or {@code null}
+     * if the method has neither.
+     */
+    @Nullable
+    private AnnotationNode getTransactionAnnotation() {
+      AnnotationNode txAnnotation = null;
+      for (AnnotationNode annotation : annotations) {
+        Type type = Type.getType(annotation.desc);
+        if (type.equals(Type.getType(ReadOnlyTransaction.class)) || type.equals(Type.getType(NoTransaction.class))) {
+          if (txAnnotation != null) {
+            throw new IllegalArgumentException(
+              String.format("Method %s of %s can only have one of @%s and @%s", name, delegateType,
+                            ReadOnlyTransaction.class.getSimpleName(), NoTransaction.class.getSimpleName()));
+          }
+          txAnnotation = annotation;
+        }
+      }
+      return txAnnotation;
+    }
+
     /**
      * Preserves method parameter classes for class loading. The first two parameters are always
      * {@link HttpServiceRequest} and {@link HttpServiceResponder}, which don't need to be preserved since
@@ -445,7 +499,8 @@ final class HttpHandlerGenerator {
     /**
      * Rewrite the handler method signature to have the first two parameters rewritten from
      * {@link HttpServiceRequest} and {@link HttpServiceResponder} into
-     * {@link HttpRequest} and {@link HttpResponder}.
+     * {@link HttpRequest} and {@link HttpResponder}, and the return type rewritten from
+     * {@link HttpContentConsumer} into {@link BodyConsumer}.
      */
     private String rewriteMethodSignature(String signature) {
       if (signature == null) {
@@ -464,6 +519,10 @@ final class HttpHandlerGenerator {
             super.visitClassType(Type.getInternalName(HttpResponder.class));
             return;
           }
+          if (name.equals(Type.getInternalName(HttpContentConsumer.class))) {
+            super.visitClassType(Type.getInternalName(BodyConsumer.class));
+            return;
+          }
           super.visitClassType(name);
         }
       };
@@ -481,9 +540,10 @@ final class HttpHandlerGenerator {
      *
      * <pre>{@code
      *   public void handle(HttpRequest request, HttpResponder responder, ...) {
+     *     long startTime = System.nanoTime();
      *     T handler = getHandler();
-     *     TransactionContext txContext = getTransactionContext();
-     *     DelayedHttpServiceResponder wrappedResponder = wrapResponder(responder);
+     *     TransactionContext txContext = getTransactionContext();  // or one of the alternatives below
+     *     DelayedHttpServiceResponder wrappedResponder = wrapResponder(request, responder, txContext);
      *     try {
      *       txContext.start();
      *       try {
@@ -503,17 +563,30 @@ final class HttpHandlerGenerator {
      *        wrappedResponder.setTransactionFailureResponse();
      *     }
      *     wrappedResponder.execute();
+     *     emitLatencyMetrics("handle", startTime);
      *   }
      * }
      * </pre>
+     *
+     * If the user method returns a {@link HttpContentConsumer}, the consumer returned by the user method is kept
+     * in a local variable, which is reset to {@code null} on transaction failure. Instead of calling
+     * {@code wrappedResponder.execute()}, the generated method returns
+     * {@code wrapContentConsumer(contentConsumer, wrappedResponder)}.
+     *
+     * If the method is annotated with {@link ReadOnlyTransaction}, the transaction context is obtained through
+     * {@code getReadOnlyTransactionContext(maxStalenessMillis)}. If it is annotated with {@link NoTransaction},
+     * it is obtained through {@code getNoTransactionContext()}.
      */
-    private void generateTransactionalDelegateBody(GeneratorAdapter mg, Method method) {
+    private void generateTransactionalDelegateBody(GeneratorAdapter mg, Method method,
+                                                   @Nullable AnnotationNode txAnnotation) {
       Type handlerType = Type.getType(delegateType.getRawType());
       Type txContextType = Type.getType(TransactionContext.class);
       Type txFailureExceptionType = Type.getType(TransactionFailureException.class);
       Type loggerType = Type.getType(Logger.class);
       Type throwableType = Type.getType(Throwable.class);
       Type delayedHttpServiceResponderType = Type.getType(DelayedHttpServiceResponder.class);
+      Type contentConsumerType = Type.getType(HttpContentConsumer.class);
+      Type bodyConsumerType = Type.getType(BodyConsumer.class);
 
       Label txTryBegin = mg.newLabel();
       Label txTryEnd = mg.newLabel();
@@ -528,6 +601,11 @@ final class HttpHandlerGenerator {
       mg.visitTryCatchBlock(txTryBegin, txTryEnd, txCatch, txFailureExceptionType.getInternalName());
       mg.visitTryCatchBlock(handlerTryBegin, handlerTryEnd, handlerCatch, throwableType.getInternalName());
 
+      // long startTime = System.nanoTime();
+      int startTime = mg.newLocal(Type.LONG_TYPE);
+      mg.invokeStatic(Type.getType(System.class), Methods.getMethod(long.class, "nanoTime"));
+      mg.storeLocal(startTime, Type.LONG_TYPE);
+
       // T handler = getHandler();
       int handler = mg.newLocal(handlerType);
       mg.loadThis();
@@ -539,18 +617,38 @@ final class HttpHandlerGenerator {
       // TransactionContext txContext = getTransactionContext();
       int txContext = mg.newLocal(txContextType);
       mg.loadThis();
-      mg.invokeVirtual(classType,
-                       Methods.getMethod(TransactionContext.class, "getTransactionContext"));
+      if (txAnnotation == null) {
+        mg.invokeVirtual(classType,
+                         Methods.getMethod(TransactionContext.class, "getTransactionContext"));
+      } else if (Type.getType(txAnnotation.desc).equals(Type.getType(ReadOnlyTransaction.class))) {
+        mg.push(getMaxStalenessMillis(txAnnotation));
+        mg.invokeVirtual(classType,
+                         Methods.getMethod(TransactionContext.class, "getReadOnlyTransactionContext", long.class));
+      } else {
+        mg.invokeVirtual(classType,
+                         Methods.getMethod(TransactionContext.class, "getNoTransactionContext"));
+      }
       mg.storeLocal(txContext, txContextType);
 
-      // DelayedHttpServiceResponder wrappedResponder = wrapResponder(responder);
+      // DelayedHttpServiceResponder wrappedResponder = wrapResponder(request, responder, txContext);
       int wrappedResponder = mg.newLocal(delayedHttpServiceResponderType);
       mg.loadThis();
+      mg.loadArg(0);
       mg.loadArg(1);
+      mg.loadLocal(txContext, txContextType);
       mg.invokeVirtual(classType,
-                       Methods.getMethod(DelayedHttpServiceResponder.class, "wrapResponder", HttpResponder.class));
+                       Methods.getMethod(DelayedHttpServiceResponder.class, "wrapResponder",
+                                         HttpRequest.class, HttpResponder.class, TransactionContext.class));
       mg.storeLocal(wrappedResponder, delayedHttpServiceResponderType);
 
+      // HttpContentConsumer contentConsumer = null;
+      int contentConsumer = -1;
+      if (method.getReturnType().equals(contentConsumerType)) {
+        contentConsumer = mg.newLocal(contentConsumerType);
+        mg.visitInsn(Opcodes.ACONST_NULL);
+        mg.storeLocal(contentConsumer, contentConsumerType);
+      }
+
       // try {  // Outer try for transaction failure
       mg.mark(txTryBegin);
 
@@ -562,7 +660,7 @@ final class HttpHandlerGenerator {
       mg.mark(handlerTryBegin);
 
       // this.getHandler(wrapRequest(request), wrappedResponder, ...);
-      generateInvokeDelegate(mg, handler, method, wrappedResponder);
+      generateInvokeDelegate(mg, handler, method, wrappedResponder, contentConsumer);
 
       // } // end of inner try
       mg.mark(handlerTryEnd);
@@ -616,12 +714,40 @@ final class HttpHandlerGenerator {
       mg.loadLocal(wrappedResponder);
       mg.invokeVirtual(delayedHttpServiceResponderType, Methods.getMethod(void.class, "setTransactionFailureResponse"));
 
+      if (contentConsumer >= 0) {
+        // contentConsumer = null;
+        mg.visitInsn(Opcodes.ACONST_NULL);
+        mg.storeLocal(contentConsumer, contentConsumerType);
+      }
+
       mg.mark(txFinish);
 
-      // wrappedResponder.execute()
-      mg.loadLocal(wrappedResponder);
-      mg.invokeVirtual(delayedHttpServiceResponderType, Methods.getMethod(void.class, "execute"));
+      int bodyConsumer = -1;
+      if (contentConsumer >= 0) {
+        // BodyConsumer bodyConsumer = wrapContentConsumer(contentConsumer, wrappedResponder);
+        bodyConsumer = mg.newLocal(bodyConsumerType);
+        mg.loadThis();
+        mg.loadLocal(contentConsumer, contentConsumerType);
+        mg.loadLocal(wrappedResponder);
+        mg.invokeVirtual(classType, Methods.getMethod(BodyConsumer.class, "wrapContentConsumer",
+                                                      HttpContentConsumer.class, DelayedHttpServiceResponder.class));
+        mg.storeLocal(bodyConsumer, bodyConsumerType);
+      } else {
+        // wrappedResponder.execute()
+        mg.loadLocal(wrappedResponder);
+        mg.invokeVirtual(delayedHttpServiceResponderType, Methods.getMethod(void.class, "execute"));
+      }
+
+      // emitLatencyMetrics("methodName", startTime);
+      mg.loadThis();
+      mg.push(method.getName());
+      mg.loadLocal(startTime, Type.LONG_TYPE);
+      mg.invokeVirtual(classType, Methods.getMethod(void.class, "emitLatencyMetrics", String.class, long.class));
 
+      if (bodyConsumer >= 0) {
+        // return bodyConsumer;
+        mg.loadLocal(bodyConsumer, bodyConsumerType);
+      }
       mg.returnValue();
       mg.endMethod();
     }
@@ -629,8 +755,11 @@ final class HttpHandlerGenerator {
     /**
      * Generates the code block for setting context ClassLoader, calling user handler method
      * and resetting context ClassLoader.
+     *
+     * @param result local variable for storing the value returned by the user method, or {@code -1} if the value
+     *               is not needed
      */
-    private void generateInvokeDelegate(GeneratorAdapter mg, int handler, Method method, int responder) {
+    private void generateInvokeDelegate(GeneratorAdapter mg, int handler, Method method, int responder, int result) {
       Type classLoaderType = Type.getType(ClassLoader.class);
       Type handlerType = Type.getType(delegateType.getRawType());
 
@@ -676,6 +805,16 @@ final class HttpHandlerGenerator {
 
       mg.invokeVirtual(Type.getType(delegateType.getRawType()), method);
 
+      // Store or discard the returned value
+      Type returnType = method.getReturnType();
+      if (result >= 0) {
+        mg.storeLocal(result, returnType);
+      } else if (returnType.getSize() == 2) {
+        mg.pop2();
+      } else if (returnType.getSize() == 1) {
+        mg.pop();
+      }
+
       // }
       mg.mark(contextTryEnd);
 
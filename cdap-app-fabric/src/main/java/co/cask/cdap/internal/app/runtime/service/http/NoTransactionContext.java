@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionContext;
+import co.cask.tephra.TransactionFailureException;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link TransactionContext} for handler methods annotated with {@link co.cask.cdap.api.service.http.NoTransaction}.
+ * It never talks to the transaction system.
+ */
+final class NoTransactionContext extends TransactionContext {
+
+  static final NoTransactionContext INSTANCE = new NoTransactionContext();
+
+  private NoTransactionContext() {
+    super(null, ImmutableList.<TransactionAware>of());
+  }
+
+  @Override
+  public void addTransactionAware(TransactionAware txAware) {
+    // no-op
+  }
+
+  @Override
+  public void start() throws TransactionFailureException {
+    // no-op
+  }
+
+  @Override
+  public void finish() throws TransactionFailureException {
+    // no-op
+  }
+
+  @Override
+  public void abort() throws TransactionFailureException {
+    // no-op
+  }
+
+  @Override
+  public void abort(TransactionFailureException cause) throws TransactionFailureException {
+    if (cause != null) {
+      throw cause;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionContext;
+import co.cask.tephra.TransactionFailureException;
+import co.cask.tephra.TransactionSystemClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TransactionContext} for handler methods annotated with
+ * {@link co.cask.cdap.api.service.http.ReadOnlyTransaction}. It starts all datasets with a transaction snapshot
+ * from a {@link TransactionSnapshotCache} and never commits. If any dataset has changes when the call finishes,
+ * the changes are discarded and the call fails.
+ */
+final class ReadOnlyTransactionContext extends TransactionContext {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyTransactionContext.class);
+
+  private final TransactionSnapshotCache snapshotCache;
+  private final Iterable<TransactionAware> txAwares;
+  private long maxStalenessMillis;
+  private Transaction currentTx;
+
+  ReadOnlyTransactionContext(TransactionSystemClient txClient, TransactionSnapshotCache snapshotCache,
+                             Iterable<TransactionAware> txAwares) {
+    super(txClient, txAwares);
+    this.snapshotCache = snapshotCache;
+    this.txAwares = txAwares;
+  }
+
+  /**
+   * Sets the maximum staleness of the snapshot used by the next call to {@link #start()}.
+   */
+  ReadOnlyTransactionContext setMaxStaleness(long maxStalenessMillis) {
+    this.maxStalenessMillis = maxStalenessMillis;
+    return this;
+  }
+
+  @Override
+  public void addTransactionAware(TransactionAware txAware) {
+    // Datasets are tracked by the live view given in the constructor
+  }
+
+  @Override
+  public void start() throws TransactionFailureException {
+    currentTx = snapshotCache.get(maxStalenessMillis);
+    for (TransactionAware txAware : txAwares) {
+      try {
+        txAware.startTx(currentTx);
+      } catch (Throwable t) {
+        abort(new TransactionFailureException(
+          String.format("Unable to start transaction-aware '%s' for transaction %d",
+                        txAware.getTransactionAwareName(), currentTx.getWritePointer()), t));
+      }
+    }
+  }
+
+  @Override
+  public void finish() throws TransactionFailureException {
+    for (TransactionAware txAware : txAwares) {
+      if (!txAware.getTxChanges().isEmpty()) {
+        abort(new TransactionFailureException(
+          String.format("Transaction-aware '%s' has changes in a read-only transaction",
+                        txAware.getTransactionAwareName())));
+      }
+    }
+    currentTx = null;
+  }
+
+  @Override
+  public void abort() throws TransactionFailureException {
+    abort(null);
+  }
+
+  @Override
+  public void abort(TransactionFailureException cause) throws TransactionFailureException {
+    if (currentTx != null) {
+      // Nothing was persisted, this only discards the buffered changes of the datasets
+      for (TransactionAware txAware : txAwares) {
+        try {
+          txAware.rollbackTx();
+        } catch (Throwable t) {
+          LOG.warn("Failed to discard changes of transaction-aware '{}'", txAware.getTransactionAwareName(), t);
+        }
+      }
+      currentTx = null;
+    }
+    if (cause != null) {
+      throw cause;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TransactionFailureException;
+import co.cask.tephra.TransactionSystemClient;
+
+/**
+ * Provides transaction snapshots for read-only handler calls, and shares a snapshot between calls as long as it is
+ * not older than the staleness the caller accepts.
+ *
+ * A snapshot is taken by starting a short transaction and aborting it right away. Since a read-only call never
+ * writes, only the read pointer and the excluded transactions of the snapshot matter for the call.
+ */
+public final class TransactionSnapshotCache {
+
+  private final TransactionSystemClient txClient;
+  private Transaction snapshot;
+  private long snapshotTime;
+
+  public TransactionSnapshotCache(TransactionSystemClient txClient) {
+    this.txClient = txClient;
+  }
+
+  /**
+   * Returns a transaction snapshot that was taken at most the given number of milliseconds ago.
+   */
+  Transaction get(long maxStalenessMillis) throws TransactionFailureException {
+    if (maxStalenessMillis <= 0) {
+      return takeSnapshot();
+    }
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      if (snapshot == null || now - snapshotTime > maxStalenessMillis) {
+        snapshot = takeSnapshot();
+        snapshotTime = now;
+      }
+      return snapshot;
+    }
+  }
+
+  private Transaction takeSnapshot() throws TransactionFailureException {
+    try {
+      Transaction tx = txClient.startShort();
+      txClient.abort(tx);
+      return tx;
+    } catch (Throwable t) {
+      throw new TransactionFailureException("Failed to take transaction snapshot", t);
+    }
+  }
+}
@@ -30,4 +30,12 @@ public interface TransactionalHttpServiceContext extends HttpServiceContext {
    */
   TransactionContext getTransactionContext();
 
+  /**
+   * Get a {@link TransactionContext} for a read-only call of a HttpServiceHandler. The context may use a
+   * transaction snapshot that is shared with other calls.
+   *
+   * @param maxStalenessMillis maximum age in milliseconds of a shared transaction snapshot
+   */
+  TransactionContext getReadOnlyTransactionContext(long maxStalenessMillis);
+
 }
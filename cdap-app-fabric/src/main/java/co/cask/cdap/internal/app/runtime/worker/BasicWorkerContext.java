@@ -36,6 +36,7 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.data2.dataset2.DatasetCacheKey;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.DatasetInstancePool;
 import co.cask.cdap.data2.dataset2.DynamicDatasetContext;
 import co.cask.cdap.internal.app.runtime.AbstractContext;
 import co.cask.cdap.internal.app.runtime.adapter.PluginInstantiator;
@@ -47,11 +48,7 @@ import co.cask.tephra.TransactionFailureException;
 import co.cask.tephra.TransactionSystemClient;
 import co.cask.tephra.TxConstants;
 import com.google.common.base.Throwables;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
 import org.apache.twill.api.RunId;
 import org.apache.twill.discovery.DiscoveryServiceClient;
@@ -64,7 +61,6 @@ import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
-import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
  * Default implementation of {@link WorkerContext}
@@ -79,7 +75,7 @@ public class BasicWorkerContext extends AbstractContext implements WorkerContext
   private final int instanceId;
   private final LoggingContext loggingContext;
   private volatile int instanceCount;
-  private final LoadingCache<Long, Map<DatasetCacheKey, Dataset>> datasetsCache;
+  private final DatasetInstancePool datasetPool;
   private final Program program;
   private final Map<String, String> runtimeArgs;
   private final StreamWriter streamWriter;
@@ -111,38 +107,14 @@ public class BasicWorkerContext extends AbstractContext implements WorkerContext
     this.runtimeArgs = runtimeArgs.asMap();
     this.streamWriter = streamWriterFactory.create(program.getId().getNamespace(), getOwners());
 
-    // The cache expiry should be greater than (2 * transaction.timeout) and at least 2 hours.
-    // This ensures that when a dataset instance is requested multiple times during a single transaction,
-    // the same instance is always returned.
-    long cacheExpiryTimeout =
-      Math.max(2, 2 * TimeUnit.SECONDS.toHours(cConf.getInt(TxConstants.Manager.CFG_TX_TIMEOUT,
-                                                            TxConstants.Manager.DEFAULT_TX_TIMEOUT)));
-    // A cache of datasets by threadId. Repeated requests for a dataset from the same thread returns the same
-    // instance, thus avoiding the overhead of creating a new instance for every request.
-    this.datasetsCache = CacheBuilder.newBuilder()
-      .expireAfterAccess(cacheExpiryTimeout, TimeUnit.HOURS)
-      .removalListener(new RemovalListener<Long, Map<DatasetCacheKey, Dataset>>() {
-        @Override
-        @ParametersAreNonnullByDefault
-        public void onRemoval(RemovalNotification<Long, Map<DatasetCacheKey, Dataset>> notification) {
-          if (notification.getValue() != null) {
-            for (Map.Entry<DatasetCacheKey, Dataset> entry : notification.getValue().entrySet()) {
-              try {
-                entry.getValue().close();
-              } catch (IOException e) {
-                LOG.error("Error closing dataset: {}", entry.getKey(), e);
-              }
-            }
-          }
-        }
-      })
-      .build(new CacheLoader<Long, Map<DatasetCacheKey, Dataset>>() {
-        @Override
-        @ParametersAreNonnullByDefault
-        public Map<DatasetCacheKey, Dataset> load(Long key) throws Exception {
-          return Maps.newHashMap();
-        }
-      });
+    // Datasets are reused by the transactions of all threads, thus avoiding the overhead of creating new
+    // instances for every transaction. Idle instances expire after (2 * transaction.timeout), and at least 2 hours.
+    int txTimeoutSecs = cConf.getInt(TxConstants.Manager.CFG_TX_TIMEOUT, TxConstants.Manager.DEFAULT_TX_TIMEOUT);
+    long idleTimeoutMillis = Math.max(TimeUnit.HOURS.toMillis(2), 2 * TimeUnit.SECONDS.toMillis(txTimeoutSecs));
+    this.datasetPool = new DatasetInstancePool(datasetFramework, program.getClassLoader(), getOwners(),
+                                               cConf.getInt(Constants.AppFabric.DATASET_POOL_MAX_IDLE,
+                                                            Constants.AppFabric.DEFAULT_DATASET_POOL_MAX_IDLE),
+                                               idleTimeoutMillis, getProgramMetrics());
   }
 
   private LoggingContext createLoggingContext(Id.Program programId, RunId runId,
@@ -186,21 +158,33 @@ public class BasicWorkerContext extends AbstractContext implements WorkerContext
   @Override
   public void execute(TxRunnable runnable) {
     final TransactionContext context = new TransactionContext(transactionSystemClient);
+    DynamicDatasetContext datasetContext = new DynamicDatasetContext(Id.Namespace.from(program.getNamespaceId()),
+                                                                     context, datasetFramework,
+                                                                     getProgram().getClassLoader(), runtimeArgs,
+                                                                     null, getOwners()) {
+      @Nullable
+      @Override
+      protected LoadingCache<Long, Map<DatasetCacheKey, Dataset>> getDatasetsCache() {
+        return null;
+      }
+
+      @Override
+      protected DatasetInstancePool getDatasetPool() {
+        return datasetPool;
+      }
+    };
+    boolean committed = false;
     try {
       context.start();
-      runnable.run(new DynamicDatasetContext(Id.Namespace.from(program.getNamespaceId()),
-                                             context, datasetFramework,
-                                             getProgram().getClassLoader(), runtimeArgs, null, getOwners()) {
-        @Override
-        protected LoadingCache<Long, Map<DatasetCacheKey, Dataset>> getDatasetsCache() {
-          return datasetsCache;
-        }
-      });
+      runnable.run(datasetContext);
       context.finish();
+      committed = true;
     } catch (TransactionFailureException e) {
       abortTransaction(e, "Failed to commit. Aborting transaction.", context);
     } catch (Exception e) {
       abortTransaction(e, "Exception occurred running user code. Aborting transaction.", context);
+    } finally {
+      datasetContext.releaseDatasets(committed);
     }
   }
 
@@ -221,9 +205,8 @@ public class BasicWorkerContext extends AbstractContext implements WorkerContext
   @Override
   public void close() {
     super.close();
-    // Close all existing datasets that haven't been invalidated by the cache already.
-    datasetsCache.invalidateAll();
-    datasetsCache.cleanUp();
+    // Close all idle datasets
+    datasetPool.close();
   }
 
   private void abortTransaction(Exception e, String message, TransactionContext context) {
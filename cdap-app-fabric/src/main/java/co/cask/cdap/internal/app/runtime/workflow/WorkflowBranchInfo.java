@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.workflow;
+
+import co.cask.cdap.api.schedule.SchedulableProgramType;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timeline entry of the execution of one branch of a fork in a Workflow run, together with the actions executed
+ * by the branch. Actions of forks nested in the branch are recorded in the entries of the nested branches.
+ */
+final class WorkflowBranchInfo {
+
+  /**
+   * Status of the branch execution.
+   */
+  enum Status {
+    RUNNING, COMPLETED, FAILED
+  }
+
+  private final String forkNodeId;
+  private final int branch;
+  private final String nodes;
+  private final long startTime;
+  private volatile long endTime;
+  private volatile Status status;
+  private final List<ActionInfo> actions = new CopyOnWriteArrayList<ActionInfo>();
+
+  WorkflowBranchInfo(String forkNodeId, int branch, String nodes) {
+    this.forkNodeId = forkNodeId;
+    this.branch = branch;
+    this.nodes = nodes;
+    this.startTime = System.currentTimeMillis();
+    this.status = Status.RUNNING;
+  }
+
+  /**
+   * Marks the branch execution as finished.
+   */
+  void finished(boolean succeeded) {
+    endTime = System.currentTimeMillis();
+    status = succeeded ? Status.COMPLETED : Status.FAILED;
+  }
+
+  String getForkNodeId() {
+    return forkNodeId;
+  }
+
+  int getBranch() {
+    return branch;
+  }
+
+  String getNodes() {
+    return nodes;
+  }
+
+  long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Returns the end time in milliseconds, or {@code 0} if the branch is still running.
+   */
+  long getEndTime() {
+    return endTime;
+  }
+
+  Status getStatus() {
+    return status;
+  }
+
+  /**
+   * Records the start of an action executed by the branch.
+   */
+  ActionInfo actionStarted(String name, SchedulableProgramType programType) {
+    ActionInfo actionInfo = new ActionInfo(name, programType);
+    actions.add(actionInfo);
+    return actionInfo;
+  }
+
+  List<ActionInfo> getActions() {
+    return actions;
+  }
+
+  @Override
+  public String toString() {
+    return "WorkflowBranchInfo{" +
+      "forkNodeId='" + forkNodeId + '\'' +
+      ", branch=" + branch +
+      ", startTime=" + startTime +
+      ", endTime=" + endTime +
+      ", status=" + status +
+      ", actions=" + actions +
+      '}';
+  }
+
+  /**
+   * Timeline entry of the execution of one action of a branch. For a program action, the start time is the time
+   * the program got to run, after waiting for the maximum number of concurrent programs of its type.
+   */
+  static final class ActionInfo {
+    private final String name;
+    private final SchedulableProgramType programType;
+    private final long startTime;
+    private volatile long endTime;
+    private volatile Status status;
+
+    private ActionInfo(String name, SchedulableProgramType programType) {
+      this.name = name;
+      this.programType = programType;
+      this.startTime = System.currentTimeMillis();
+      this.status = Status.RUNNING;
+    }
+
+    /**
+     * Marks the action execution as finished.
+     */
+    void finished(boolean succeeded) {
+      endTime = System.currentTimeMillis();
+      status = succeeded ? Status.COMPLETED : Status.FAILED;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    SchedulableProgramType getProgramType() {
+      return programType;
+    }
+
+    long getStartTime() {
+      return startTime;
+    }
+
+    /**
+     * Returns the end time in milliseconds, or {@code 0} if the action is still running.
+     */
+    long getEndTime() {
+      return endTime;
+    }
+
+    Status getStatus() {
+      return status;
+    }
+
+    @Override
+    public String toString() {
+      return "ActionInfo{" +
+        "name='" + name + '\'' +
+        ", programType=" + programType +
+        ", startTime=" + startTime +
+        ", endTime=" + endTime +
+        ", status=" + status +
+        '}';
+    }
+  }
+}
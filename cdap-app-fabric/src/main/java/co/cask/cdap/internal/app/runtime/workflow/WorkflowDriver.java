@@ -34,6 +34,8 @@ import co.cask.cdap.app.ApplicationSpecification;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.Arguments;
 import co.cask.cdap.app.runtime.ProgramOptions;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.lang.InstantiatorFactory;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
@@ -50,6 +52,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,21 +62,35 @@ import java.net.InetSocketAddress;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Core of Workflow engine that drives the execution of Workflow.
+ *
+ * The branches of all forks of a Workflow run, including nested forks, are executed by one bounded thread pool.
+ * If all threads of the pool are busy, a fork executes the branch in its own thread, so that nested forks
+ * cannot deadlock waiting for threads. The number of MapReduce and Spark programs running concurrently in a
+ * Workflow run can be limited through configuration.
  */
 final class WorkflowDriver extends AbstractExecutionThreadService {
 
@@ -84,6 +102,12 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
   private final WorkflowSpecification workflowSpec;
   private final long logicalStartTime;
   private final ProgramWorkflowRunnerFactory workflowProgramRunnerFactory;
+  private final int forkThreads;
+  private final Map<SchedulableProgramType, Semaphore> programPermits;
+  private final List<WorkflowBranchInfo> timeline = new CopyOnWriteArrayList<WorkflowBranchInfo>();
+  // The branch executed by the current thread, to record the actions of the branch in the timeline
+  private final ThreadLocal<WorkflowBranchInfo> currentBranch = new ThreadLocal<WorkflowBranchInfo>();
+  private ExecutorService branchExecutor;
   private NettyHttpService httpService;
   private volatile Thread runningThread;
   private final Map<String, WorkflowActionNode> status = new ConcurrentHashMap<String, WorkflowActionNode>();
@@ -92,7 +116,8 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
   private Condition condition;
 
   WorkflowDriver(Program program, ProgramOptions options, InetAddress hostname,
-                 WorkflowSpecification workflowSpec, ProgramRunnerFactory programRunnerFactory) {
+                 WorkflowSpecification workflowSpec, ProgramRunnerFactory programRunnerFactory,
+                 CConfiguration cConf) {
     this.program = program;
     this.hostname = hostname;
     this.runtimeArgs = createRuntimeArgs(options.getUserArguments());
@@ -103,10 +128,25 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
       : System.currentTimeMillis();
     this.workflowProgramRunnerFactory = new ProgramWorkflowRunnerFactory(workflowSpec, programRunnerFactory, program,
                                                                          options);
+    this.forkThreads = cConf.getInt(Constants.AppFabric.WORKFLOW_FORK_THREADS,
+                                    Constants.AppFabric.DEFAULT_WORKFLOW_FORK_THREADS);
+    this.programPermits = Maps.newEnumMap(SchedulableProgramType.class);
+    addProgramPermits(SchedulableProgramType.MAPREDUCE,
+                      cConf.getInt(Constants.AppFabric.WORKFLOW_MAX_CONCURRENT_MAPREDUCE,
+                                   Constants.AppFabric.DEFAULT_WORKFLOW_MAX_CONCURRENT_MAPREDUCE));
+    addProgramPermits(SchedulableProgramType.SPARK,
+                      cConf.getInt(Constants.AppFabric.WORKFLOW_MAX_CONCURRENT_SPARK,
+                                   Constants.AppFabric.DEFAULT_WORKFLOW_MAX_CONCURRENT_SPARK));
     lock = new ReentrantLock();
     condition = lock.newCondition();
   }
 
+  private void addProgramPermits(SchedulableProgramType programType, int maxConcurrent) {
+    if (maxConcurrent > 0) {
+      programPermits.put(programType, new Semaphore(maxConcurrent, true));
+    }
+  }
+
   @Override
   protected void startUp() throws Exception {
     LOG.info("Starting Workflow {}", workflowSpec);
@@ -116,10 +156,14 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
       .setWorkerThreadPoolSize(2)
       .setExecThreadPoolSize(4)
       .setHost(hostname.getHostName())
-      .addHttpHandlers(ImmutableList.of(new WorkflowServiceHandler(createStatusSupplier())))
+      .addHttpHandlers(ImmutableList.of(new WorkflowServiceHandler(createStatusSupplier(),
+                                                                   createTimelineSupplier())))
       .build();
 
     httpService.startAndWait();
+    branchExecutor = new ThreadPoolExecutor(0, Math.max(1, forkThreads), 60L, TimeUnit.SECONDS,
+                                            new SynchronousQueue<Runnable>(),
+                                            Threads.createDaemonThreadFactory("workflow-branch-%d"));
     runningThread = Thread.currentThread();
   }
 
@@ -168,6 +212,7 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
 
   @Override
   protected void shutDown() throws Exception {
+    branchExecutor.shutdownNow();
     httpService.stopAndWait();
   }
 
@@ -199,49 +244,97 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
         throw new IllegalStateException("Workflow stopped without executing all tasks");
     }
 
-    status.put(node.getNodeId(), node);
-
-    WorkflowAction action = initialize(actionSpec, classLoader, instantiator, token);
+    Semaphore permits = programPermits.get(actionInfo.getProgramType());
+    if (permits != null && !permits.tryAcquire()) {
+      LOG.debug("Waiting to run {}, the maximum number of concurrent {} programs are running",
+                actionInfo.getProgramName(), actionInfo.getProgramType());
+      permits.acquire();
+    }
+    WorkflowBranchInfo branchInfo = currentBranch.get();
+    WorkflowBranchInfo.ActionInfo actionTimeline = branchInfo == null
+      ? null : branchInfo.actionStarted(actionInfo.getProgramName(), actionInfo.getProgramType());
+    boolean succeeded = false;
     try {
-      ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(action.getClass().getClassLoader());
+      status.put(node.getNodeId(), node);
+
+      WorkflowAction action = initialize(actionSpec, classLoader, instantiator, token);
       try {
-        action.run();
+        ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(action.getClass().getClassLoader());
+        try {
+          action.run();
+          succeeded = true;
+        } finally {
+          ClassLoaders.setContextClassLoader(oldClassLoader);
+        }
+      } catch (Throwable t) {
+        LOG.error("Exception on WorkflowAction.run(), aborting Workflow. {}", actionSpec);
+        Throwables.propagateIfPossible(t, Exception.class);
+        throw Throwables.propagate(t);
       } finally {
-        ClassLoaders.setContextClassLoader(oldClassLoader);
+        // Destroy the action.
+        destroy(actionSpec, action);
+        status.remove(node.getNodeId());
       }
-    } catch (Throwable t) {
-      LOG.error("Exception on WorkflowAction.run(), aborting Workflow. {}", actionSpec);
-      Throwables.propagateIfPossible(t, Exception.class);
-      throw Throwables.propagate(t);
     } finally {
-      // Destroy the action.
-      destroy(actionSpec, action);
-      status.remove(node.getNodeId());
+      if (actionTimeline != null) {
+        actionTimeline.finished(succeeded);
+      }
+      if (permits != null) {
+        permits.release();
+      }
     }
   }
 
-  private void executeFork(final ApplicationSpecification appSpec, WorkflowForkNode fork,
+  private void executeFork(final ApplicationSpecification appSpec, final WorkflowForkNode fork,
                            final InstantiatorFactory instantiator, final ClassLoader classLoader,
                            final WorkflowToken token) throws Exception {
-    ExecutorService executorService = Executors.newFixedThreadPool(fork.getBranches().size());
+    List<List<WorkflowNode>> branches = fork.getBranches();
+
+    // Branches that do not get a thread from the branch executor are deferred until every branch is submitted,
+    // then run by the current thread, so that a fork nested in a branch never waits for a thread it occupies.
+    final Queue<Runnable> deferred = Lists.newLinkedList();
     CompletionService<Map.Entry<String, WorkflowToken>> completionService =
-      new ExecutorCompletionService<Map.Entry<String, WorkflowToken>>(executorService);
+      new ExecutorCompletionService<Map.Entry<String, WorkflowToken>>(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          try {
+            branchExecutor.execute(command);
+          } catch (RejectedExecutionException e) {
+            deferred.add(command);
+          }
+        }
+      });
+
+    // Whoever claims the started flag of a branch counts down the latch for it, so that the branches still
+    // running when the fork fails can be waited for, without waiting for the ones that never started.
+    final CountDownLatch branchesDone = new CountDownLatch(branches.size());
+    List<AtomicBoolean> branchStarted = Lists.newArrayListWithCapacity(branches.size());
+    List<Future<Map.Entry<String, WorkflowToken>>> branchFutures = Lists.newArrayListWithCapacity(branches.size());
 
     try {
-      for (final List<WorkflowNode> branch : fork.getBranches()) {
-        completionService.submit(new Callable<Map.Entry<String, WorkflowToken>>() {
+      for (final List<WorkflowNode> branch : branches) {
+        final int branchIndex = branchFutures.size();
+        final AtomicBoolean started = new AtomicBoolean();
+        branchStarted.add(started);
+        branchFutures.add(completionService.submit(new Callable<Map.Entry<String, WorkflowToken>>() {
           @Override
           public Map.Entry<String, WorkflowToken> call() throws Exception {
-            WorkflowToken copiedToken = ((BasicWorkflowToken) token).deepCopy();
-            executeAll(branch.iterator(), appSpec, instantiator, classLoader, copiedToken);
-            return Maps.immutableEntry(branch.toString(), copiedToken);
+            if (!started.compareAndSet(false, true)) {
+              throw new CancellationException("Execution of fork " + fork.getNodeId() + " aborted");
+            }
+            try {
+              return executeBranch(fork, branchIndex, branch, appSpec, instantiator, classLoader, token);
+            } finally {
+              branchesDone.countDown();
+            }
           }
-        });
+        }));
       }
 
       boolean assignedCounters = false;
-      for (int i = 0; i < fork.getBranches().size(); i++) {
+      for (int i = 0; i < branches.size(); i++) {
         try {
+          runDeferredBranch(deferred);
           Future<Map.Entry<String, WorkflowToken>> f = completionService.take();
           Map.Entry<String, WorkflowToken> retValue = f.get();
           String branchInfo = retValue.getKey();
@@ -267,8 +360,60 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
         }
       }
     } finally {
-      executorService.shutdownNow();
-      executorService.awaitTermination(Integer.MAX_VALUE, TimeUnit.NANOSECONDS);
+      // Cancel the branches that are still running or deferred, then wait for the running ones to finish.
+      // Cancelling a future only interrupts the thread running that branch.
+      for (int i = 0; i < branches.size(); i++) {
+        if (i >= branchStarted.size() || branchStarted.get(i).compareAndSet(false, true)) {
+          branchesDone.countDown();
+        }
+        if (i < branchFutures.size()) {
+          branchFutures.get(i).cancel(true);
+        }
+      }
+      Uninterruptibles.awaitUninterruptibly(branchesDone);
+    }
+  }
+
+  /**
+   * Runs the first deferred branch, in the branch executor if it has a free thread by now, otherwise in the
+   * current thread.
+   */
+  private void runDeferredBranch(Queue<Runnable> deferred) {
+    Runnable command = deferred.poll();
+    if (command == null) {
+      return;
+    }
+    try {
+      branchExecutor.execute(command);
+    } catch (RejectedExecutionException e) {
+      command.run();
+    }
+  }
+
+  /**
+   * Executes one branch of a fork with a copy of the given token and records the execution in the timeline.
+   */
+  private Map.Entry<String, WorkflowToken> executeBranch(WorkflowForkNode fork, int branchIndex,
+                                                         List<WorkflowNode> branch,
+                                                         ApplicationSpecification appSpec,
+                                                         InstantiatorFactory instantiator, ClassLoader classLoader,
+                                                         WorkflowToken token) {
+    WorkflowBranchInfo branchInfo = new WorkflowBranchInfo(fork.getNodeId(), branchIndex, branch.toString());
+    timeline.add(branchInfo);
+    // A branch that contains a fork can run nested branches in its own thread
+    WorkflowBranchInfo parentBranch = currentBranch.get();
+    currentBranch.set(branchInfo);
+    boolean succeeded = false;
+    try {
+      WorkflowToken copiedToken = ((BasicWorkflowToken) token).deepCopy();
+      executeAll(branch.iterator(), appSpec, instantiator, classLoader, copiedToken);
+      succeeded = true;
+      return Maps.immutableEntry(branch.toString(), copiedToken);
+    } finally {
+      currentBranch.set(parentBranch);
+      branchInfo.finished(succeeded);
+      LOG.debug("Branch {} of fork {} finished after {} ms", branchIndex, fork.getNodeId(),
+                branchInfo.getEndTime() - branchInfo.getStartTime());
     }
   }
 
@@ -402,6 +547,15 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
     return builder.build();
   }
 
+  private Supplier<List<WorkflowBranchInfo>> createTimelineSupplier() {
+    return new Supplier<List<WorkflowBranchInfo>>() {
+      @Override
+      public List<WorkflowBranchInfo> get() {
+        return ImmutableList.copyOf(timeline);
+      }
+    };
+  }
+
   private Supplier<List<WorkflowActionNode>> createStatusSupplier() {
     return new Supplier<List<WorkflowActionNode>>() {
       @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -43,9 +43,12 @@ public final class WorkflowServiceHandler extends AbstractHttpHandler {
                                     .create();
 
   private final Supplier<List<WorkflowActionNode>> statusSupplier;
+  private final Supplier<List<WorkflowBranchInfo>> timelineSupplier;
 
-  WorkflowServiceHandler(Supplier<List<WorkflowActionNode>> statusSupplier) {
+  WorkflowServiceHandler(Supplier<List<WorkflowActionNode>> statusSupplier,
+                         Supplier<List<WorkflowBranchInfo>> timelineSupplier) {
     this.statusSupplier = statusSupplier;
+    this.timelineSupplier = timelineSupplier;
   }
 
   /**
@@ -57,4 +60,15 @@ public final class WorkflowServiceHandler extends AbstractHttpHandler {
     Type type = new TypeToken<List<WorkflowActionNode>>() { }.getType();
     responder.sendJson(HttpResponseStatus.OK, statusSupplier.get(), type, GSON);
   }
+
+  /**
+   * Provides response to {@code /timeline} call to give the start and end times of the fork branches, and of the
+   * actions of the branches, executed so far by this workflow.
+   */
+  @GET
+  @Path("/timeline")
+  public void handleTimeline(HttpRequest request, HttpResponder responder) {
+    Type type = new TypeToken<List<WorkflowBranchInfo>>() { }.getType();
+    responder.sendJson(HttpResponseStatus.OK, timelineSupplier.get(), type, GSON);
+  }
 }
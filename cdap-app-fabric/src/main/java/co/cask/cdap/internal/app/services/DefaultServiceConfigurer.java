@@ -25,6 +25,7 @@ import co.cask.cdap.api.service.http.HttpServiceContext;
 import co.cask.cdap.api.service.http.HttpServiceHandler;
 import co.cask.cdap.api.service.http.HttpServiceHandlerSpecification;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.internal.app.runtime.service.http.ChannelWritabilityHandler;
 import co.cask.cdap.internal.app.runtime.service.http.DelegatorContext;
 import co.cask.cdap.internal.app.runtime.service.http.HttpHandlerFactory;
 import co.cask.http.HttpHandler;
@@ -34,12 +35,15 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.reflect.TypeToken;
+import org.apache.twill.common.Cancellable;
+import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * A default implementation of {@link ServiceConfigurer}.
@@ -162,5 +166,17 @@ public class DefaultServiceConfigurer implements ServiceConfigurer {
       // Never used. (It's only used during server runtime, which we don't verify).
       return null;
     }
+
+    @Override
+    public Cancellable detachHandler() {
+      // Never used. (It's only used during server runtime, which we don't verify).
+      return null;
+    }
+
+    @Nullable
+    @Override
+    public ChannelWritabilityHandler.Writability getWritability(HttpRequest request) {
+      return null;
+    }
   }
 }
@@ -35,8 +35,10 @@ import co.cask.cdap.internal.app.runtime.DataFabricFacadeFactory;
 import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.service.http.BasicHttpServiceContext;
+import co.cask.cdap.internal.app.runtime.service.http.ChannelWritabilityHandler;
 import co.cask.cdap.internal.app.runtime.service.http.DelegatorContext;
 import co.cask.cdap.internal.app.runtime.service.http.HttpHandlerFactory;
+import co.cask.cdap.internal.app.runtime.service.http.TransactionSnapshotCache;
 import co.cask.cdap.internal.lang.Reflections;
 import co.cask.cdap.logging.context.UserServiceLoggingContext;
 import co.cask.cdap.proto.Id;
@@ -45,6 +47,7 @@ import co.cask.http.HttpHandler;
 import co.cask.http.NettyHttpService;
 import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionSystemClient;
+import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
@@ -56,6 +59,8 @@ import org.apache.twill.api.RunId;
 import org.apache.twill.api.ServiceAnnouncer;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +75,8 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /**
  * A guava Service which runs a {@link NettyHttpService} with a list of {@link HttpServiceHandler}s.
@@ -97,6 +104,8 @@ public class ServiceHttpServer extends AbstractIdleService {
   private final TransactionSystemClient txClient;
   private final DiscoveryServiceClient discoveryServiceClient;
   private final BasicHttpServiceContextFactory contextFactory;
+  private final TransactionSnapshotCache txSnapshotCache;
+  private final ChannelWritabilityHandler writabilityHandler = new ChannelWritabilityHandler();
 
   private NettyHttpService service;
   private Cancellable cancelDiscovery;
@@ -121,6 +130,7 @@ public class ServiceHttpServer extends AbstractIdleService {
     this.txClient = txClient;
     this.discoveryServiceClient = discoveryServiceClient;
 
+    this.txSnapshotCache = new TransactionSnapshotCache(txClient);
     this.contextFactory = createHttpServiceContextFactory();
     this.handlerReferences = Maps.newConcurrentMap();
     this.handlerReferenceQueue = new ReferenceQueue<Supplier<HandlerContextPair>>();
@@ -162,7 +172,7 @@ public class ServiceHttpServer extends AbstractIdleService {
       public BasicHttpServiceContext create(HttpServiceHandlerSpecification spec) {
         return new BasicHttpServiceContext(spec, program, runId, instanceId, instanceCount, runtimeArgs,
                                            metricsCollectionService, datasetFramework,
-                                           discoveryServiceClient, txClient);
+                                           discoveryServiceClient, txClient, txSnapshotCache);
       }
     };
   }
@@ -309,6 +319,13 @@ public class ServiceHttpServer extends AbstractIdleService {
     return NettyHttpService.builder().setHost(host)
       .setPort(0)
       .addHttpHandlers(nettyHttpHandlers)
+      .modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+        @Override
+        public ChannelPipeline apply(ChannelPipeline input) {
+          input.addBefore("router", "writability", writabilityHandler);
+          return input;
+        }
+      })
       .build();
   }
 
@@ -383,6 +400,26 @@ public class ServiceHttpServer extends AbstractIdleService {
       return getHandlerContextPair().getContext();
     }
 
+    @Override
+    public Cancellable detachHandler() {
+      // Keeps the supplier reachable until cancelled, after which the handler is destroyed through GC of the supplier
+      final AtomicReference<Supplier<HandlerContextPair>> supplier =
+        new AtomicReference<Supplier<HandlerContextPair>>(handlerThreadLocal.get());
+      handlerThreadLocal.remove();
+      return new Cancellable() {
+        @Override
+        public void cancel() {
+          supplier.set(null);
+        }
+      };
+    }
+
+    @Nullable
+    @Override
+    public ChannelWritabilityHandler.Writability getWritability(HttpRequest request) {
+      return writabilityHandler.getWritability(request);
+    }
+
     /**
      * If either a {@link HttpServiceHandler} or a {@link BasicHttpServiceContext} is requested and they aren't
      * set in the ThreadLocal, then create both and set to the ThreadLocal.
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.proto.RunRecord;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of values deserialized from the app metadata table, such as {@link ApplicationMeta} and
+ * {@link RunRecord}s, shared by all transactions of a {@link DefaultStore}.
+ *
+ * Entries are keyed by row key, and are versioned by the serialized value they were parsed from: a cached value is
+ * only returned if the row read by the transaction still holds the same bytes. This keeps the cache consistent with
+ * what each transaction sees, including writes by other processes and by the transaction itself. Entries are also
+ * invalidated when their rows are written or deleted through the store, to release memory early.
+ */
+final class AppMetadataCache {
+
+  private final Cache<ByteBuffer, Entry> cache;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private volatile MetricsCollector metricsCollector;
+
+  /**
+   * Creates a cache holding values up to the given total size of their serialized form.
+   */
+  AppMetadataCache(long maxSerializedBytes) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSerializedBytes)
+      .weigher(new Weigher<ByteBuffer, Entry>() {
+        @Override
+        public int weigh(ByteBuffer key, Entry entry) {
+          return key.remaining() + entry.serialized.length;
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Sets the collector to emit hit and miss counts to.
+   */
+  void setMetricsCollector(MetricsCollector metricsCollector) {
+    this.metricsCollector = metricsCollector;
+  }
+
+  /**
+   * Returns the value cached for the given row if it was deserialized from the same bytes to the same type,
+   * or {@code null} otherwise.
+   */
+  @Nullable
+  Object get(byte[] rowKey, byte[] serialized, Type type) {
+    Entry entry = cache.getIfPresent(ByteBuffer.wrap(rowKey));
+    boolean hit = entry != null && entry.type.equals(type) && Arrays.equals(entry.serialized, serialized);
+    (hit ? hits : misses).incrementAndGet();
+    MetricsCollector collector = metricsCollector;
+    if (collector != null) {
+      collector.increment(hit ? "store.cache.hits" : "store.cache.misses", 1);
+    }
+    return hit ? entry.value : null;
+  }
+
+  /**
+   * Caches the value deserialized from the given row.
+   */
+  void put(byte[] rowKey, byte[] serialized, Type type, Object value) {
+    cache.put(ByteBuffer.wrap(rowKey), new Entry(serialized, type, value));
+  }
+
+  /**
+   * Removes the entry of the given row.
+   */
+  void invalidate(byte[] rowKey) {
+    cache.invalidate(ByteBuffer.wrap(rowKey));
+  }
+
+  /**
+   * Removes the entries of all rows with the given row key prefix.
+   */
+  void invalidatePrefix(byte[] prefix) {
+    Iterator<ByteBuffer> iterator = cache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      ByteBuffer key = iterator.next();
+      if (key.remaining() >= prefix.length
+        && Bytes.equals(key.array(), key.arrayOffset() + key.position(), prefix.length, prefix, 0, prefix.length)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the number of lookups that returned a cached value.
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of lookups that did not find an up-to-date value.
+   */
+  long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * A cached value with the bytes it was deserialized from.
+   */
+  private static final class Entry {
+    private final byte[] serialized;
+    private final Type type;
+    private final Object value;
+
+    Entry(byte[] serialized, Type type, Object value) {
+      this.serialized = serialized;
+      this.type = type;
+      this.value = value;
+    }
+  }
+}
@@ -65,8 +65,15 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static final String TYPE_NAMESPACE = "namespace";
   private static final String TYPE_ADAPTER = "adapter";
 
+  private final AppMetadataCache cache;
+
   public AppMetadataStore(Table table) {
+    this(table, null);
+  }
+
+  AppMetadataStore(Table table, @Nullable AppMetadataCache cache) {
     super(table);
+    this.cache = cache;
   }
 
   @Override
@@ -79,6 +86,37 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return GSON.fromJson(Bytes.toString(serialized), typeOfT);
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  protected <T> T deserialize(byte[] rowKey, byte[] serialized, Type typeOfT) {
+    // Only application specs and run records are read often enough to be worth caching
+    if (cache == null || !(ApplicationMeta.class.equals(typeOfT) || RunRecord.class.equals(typeOfT))) {
+      return deserialize(serialized, typeOfT);
+    }
+    T value = (T) cache.get(rowKey, serialized, typeOfT);
+    if (value == null) {
+      value = deserialize(serialized, typeOfT);
+      cache.put(rowKey, serialized, typeOfT, value);
+    }
+    return value;
+  }
+
+  @Override
+  public <T> void write(MDSKey id, T value) {
+    super.write(id, value);
+    if (cache != null) {
+      cache.invalidate(id.getKey());
+    }
+  }
+
+  @Override
+  public void deleteAll(MDSKey id) {
+    super.deleteAll(id);
+    if (cache != null) {
+      cache.invalidatePrefix(id.getKey());
+    }
+  }
+
   @Nullable
   public ApplicationMeta getApplication(String namespaceId, String appId) {
     return getFirst(new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId).build(), ApplicationMeta.class);
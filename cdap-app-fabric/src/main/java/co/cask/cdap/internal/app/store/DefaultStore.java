@@ -25,6 +25,7 @@ import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.flow.FlowSpecification;
 import co.cask.cdap.api.flow.FlowletConnection;
 import co.cask.cdap.api.flow.FlowletDefinition;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.schedule.SchedulableProgramType;
 import co.cask.cdap.api.schedule.ScheduleSpecification;
 import co.cask.cdap.api.service.ServiceSpecification;
@@ -93,6 +94,7 @@ public class DefaultStore implements Store {
   private final NamespacedLocationFactory namespacedLocationFactory;
   private final CConfiguration configuration;
   private final DatasetFramework dsFramework;
+  private final AppMetadataCache appMetadataCache;
 
   private Transactional<AppMds, AppMetadataStore> txnl;
 
@@ -106,6 +108,8 @@ public class DefaultStore implements Store {
     this.locationFactory = locationFactory;
     this.namespacedLocationFactory = namespacedLocationFactory;
     this.dsFramework = framework;
+    this.appMetadataCache = new AppMetadataCache(
+      conf.getLong(Constants.AppFabric.STORE_CACHE_SIZE_MB, Constants.AppFabric.DEFAULT_STORE_CACHE_SIZE_MB) << 20);
 
     txnl = Transactional.of(txExecutorFactory, new Supplier<AppMds>() {
       @Override
@@ -114,7 +118,7 @@ public class DefaultStore implements Store {
           Table mdsTable = DatasetsUtil.getOrCreateDataset(dsFramework, appMetaDatasetInstanceId, "table",
                                                            DatasetProperties.EMPTY,
                                                            DatasetDefinition.NO_ARGUMENTS, null);
-          return new AppMds(mdsTable);
+          return new AppMds(mdsTable, appMetadataCache);
         } catch (Exception e) {
           LOG.error("Failed to access app.meta table", e);
           throw Throwables.propagate(e);
@@ -123,6 +127,14 @@ public class DefaultStore implements Store {
     });
   }
 
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    appMetadataCache.setMetricsCollector(metricsCollectionService.getCollector(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, Constants.SYSTEM_NAMESPACE,
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.APP_FABRIC_HTTP)));
+  }
+
   /**
    * Adds datasets and types to the given {@link DatasetFramework} used by app mds.
    *
@@ -883,6 +895,15 @@ public class DefaultStore implements Store {
     if (admin != null) {
       admin.truncate();
     }
+    appMetadataCache.invalidateAll();
+  }
+
+  /**
+   * Returns the number of application metadata and run record lookups that reused a cached value.
+   */
+  @VisibleForTesting
+  long getCacheHits() {
+    return appMetadataCache.getHits();
   }
 
   /**
@@ -1123,8 +1144,8 @@ public class DefaultStore implements Store {
   private static final class AppMds implements Iterable<AppMetadataStore> {
     private final AppMetadataStore apps;
 
-    private AppMds(Table mdsTable) {
-      this.apps = new AppMetadataStore(mdsTable);
+    private AppMds(Table mdsTable, AppMetadataCache cache) {
+      this.apps = new AppMetadataStore(mdsTable, cache);
     }
 
     @Override
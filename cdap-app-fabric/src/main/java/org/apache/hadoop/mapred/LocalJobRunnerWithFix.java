@@ -200,6 +200,8 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
 
     protected abstract class RunnableWithThrowable implements Runnable {
       public volatile Throwable storedException;
+      // Time spent running the task, in milliseconds
+      public volatile long elapsedMillis;
     }
 
     /**
@@ -226,6 +228,7 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
       }
 
       public void run() {
+        long startTime = System.currentTimeMillis();
         try {
           TaskAttemptID mapId = new TaskAttemptID(new TaskID(
             jobId, TaskType.MAP, taskId), 0);
@@ -254,8 +257,10 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
             map_tasks.getAndDecrement();
           }
 
-          LOG.info("Finishing task: {}", mapId);
+          elapsedMillis = System.currentTimeMillis() - startTime;
+          LOG.info("Finishing task: {} in {} ms", mapId, elapsedMillis);
         } catch (Throwable e) {
+          elapsedMillis = System.currentTimeMillis() - startTime;
           this.storedException = e;
         }
       }
@@ -304,6 +309,7 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
       }
 
       public void run() {
+        long startTime = System.currentTimeMillis();
         try {
           TaskAttemptID reduceId = new TaskAttemptID(new TaskID(
             jobId, TaskType.REDUCE, taskId), 0);
@@ -330,11 +336,13 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
               reduce_tasks.getAndDecrement();
             }
 
-            LOG.info("Finishing task: {}", reduceId);
+            elapsedMillis = System.currentTimeMillis() - startTime;
+            LOG.info("Finishing task: {} in {} ms", reduceId, elapsedMillis);
           } else {
             throw new InterruptedException();
           }
         } catch (Throwable t) {
+          elapsedMillis = System.currentTimeMillis() - startTime;
           // store this to be rethrown in the initial thread context.
           this.storedException = t;
         }
@@ -445,6 +453,7 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
     /** Run a set of tasks and waits for them to complete. */
     private void runTasks(List<RunnableWithThrowable> runnables,
                           ExecutorService service, String taskType) throws Exception {
+      long startTime = System.currentTimeMillis();
       // Start populating the executor with work units.
       // They may begin running immediately (in other threads).
       for (Runnable r : runnables) {
@@ -464,7 +473,15 @@ public class LocalJobRunnerWithFix implements ClientProtocol {
         throw ie;
       }
 
-      LOG.info("{} task executor complete", taskType);
+      // Report the time of the tasks. If tasks ran in parallel, the total time of the tasks exceeds the elapsed time.
+      long totalTaskMillis = 0;
+      long maxTaskMillis = 0;
+      for (RunnableWithThrowable r : runnables) {
+        totalTaskMillis += r.elapsedMillis;
+        maxTaskMillis = Math.max(maxTaskMillis, r.elapsedMillis);
+      }
+      LOG.info("{} task executor complete in {} ms: {} tasks, {} ms total task time, {} ms longest task",
+               taskType, System.currentTimeMillis() - startTime, runnables.size(), totalTaskMillis, maxTaskMillis);
 
       // After waiting for the tasks to complete, if any of these
       // have thrown an exception, rethrow it now in the main thread context.
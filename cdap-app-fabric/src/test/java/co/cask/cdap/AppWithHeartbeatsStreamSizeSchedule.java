@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap;
+
+import co.cask.cdap.api.app.AbstractApplication;
+import co.cask.cdap.api.data.stream.Stream;
+import co.cask.cdap.api.schedule.Schedules;
+import co.cask.cdap.api.workflow.AbstractWorkflow;
+import co.cask.cdap.api.workflow.AbstractWorkflowAction;
+import co.cask.cdap.internal.schedule.StreamSizeSchedule;
+
+/**
+ * Application with a workflow scheduled by a {@link StreamSizeSchedule} of 1MB, used to test the stream size
+ * estimated from the stream writers heartbeats.
+ */
+public class AppWithHeartbeatsStreamSizeSchedule extends AbstractApplication {
+
+  @Override
+  public void configure() {
+    setName("AppWithHeartbeatsStreamSizeSchedule");
+    setDescription("Application with a stream size schedule");
+    addStream(new Stream("heartbeatsStream"));
+    addWorkflow(new NoOpWorkflow());
+    scheduleWorkflow(Schedules.createDataSchedule("HeartbeatsSchedule", "", Schedules.Source.STREAM,
+                                                  "heartbeatsStream", 1),
+                     "NoOpWorkflow");
+  }
+
+  /**
+   *
+   */
+  public static class NoOpWorkflow extends AbstractWorkflow {
+
+    @Override
+    public void configure() {
+      setName("NoOpWorkflow");
+      setDescription("Workflow which does nothing");
+      addAction(new NoOpAction());
+    }
+  }
+
+  /**
+   *
+   */
+  public static class NoOpAction extends AbstractWorkflowAction {
+    @Override
+    public void run() {
+      // No-op
+    }
+  }
+}
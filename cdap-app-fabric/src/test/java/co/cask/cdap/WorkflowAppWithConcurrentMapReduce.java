@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap;
+
+import co.cask.cdap.api.app.AbstractApplication;
+import co.cask.cdap.api.mapreduce.AbstractMapReduce;
+import co.cask.cdap.api.mapreduce.MapReduceContext;
+import co.cask.cdap.api.workflow.AbstractWorkflow;
+import co.cask.cdap.api.workflow.AbstractWorkflowAction;
+import co.cask.cdap.internal.app.runtime.batch.WordCount;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App with a Workflow that has a fork of two MapReduce programs, followed by an action that waits for a file to be
+ * created, so that the Workflow keeps running until the test is done with it.
+ */
+public class WorkflowAppWithConcurrentMapReduce extends AbstractApplication {
+
+  @Override
+  public void configure() {
+    setName("WorkflowAppWithConcurrentMapReduce");
+    setDescription("Workflow App containing a fork of MapReduce programs");
+    addMapReduce(new FirstWordCount());
+    addMapReduce(new SecondWordCount());
+    addWorkflow(new ConcurrentMapReduceWorkflow());
+  }
+
+  /**
+   *
+   */
+  private static class ConcurrentMapReduceWorkflow extends AbstractWorkflow {
+
+    @Override
+    public void configure() {
+      setName("ConcurrentMapReduceWorkflow");
+      setDescription("Workflow with a fork of MapReduce programs");
+      fork()
+        .addMapReduce("FirstWordCount")
+      .also()
+        .addMapReduce("SecondWordCount")
+      .join();
+      addAction(new WaitForFileAction("waitForDone"));
+    }
+  }
+
+  /**
+   * WordCount that writes to a directory named after the program under the {@code outputPath} runtime argument.
+   */
+  public abstract static class AbstractWordCount extends AbstractMapReduce {
+
+    private final String name;
+
+    AbstractWordCount(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void configure() {
+      setName(name);
+      setDescription("WordCount job from Hadoop examples");
+    }
+
+    @Override
+    public void beforeSubmit(MapReduceContext context) throws Exception {
+      Map<String, String> args = context.getRuntimeArguments();
+      String outputPath = new File(args.get("outputPath"), context.getSpecification().getName()).getAbsolutePath();
+      WordCount.configureJob((Job) context.getHadoopJob(), args.get("inputPath"), outputPath);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class FirstWordCount extends AbstractWordCount {
+    public FirstWordCount() {
+      super("FirstWordCount");
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class SecondWordCount extends AbstractWordCount {
+    public SecondWordCount() {
+      super("SecondWordCount");
+    }
+  }
+
+  /**
+   * Action that waits for the file given by the {@code doneFile} runtime argument to exist.
+   */
+  private static class WaitForFileAction extends AbstractWorkflowAction {
+
+    WaitForFileAction(String name) {
+      super(name);
+    }
+
+    @Override
+    public void run() {
+      File doneFile = new File(getContext().getRuntimeArguments().get("doneFile"));
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+      try {
+        while (!doneFile.exists() && System.currentTimeMillis() < deadline) {
+          TimeUnit.MILLISECONDS.sleep(100);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
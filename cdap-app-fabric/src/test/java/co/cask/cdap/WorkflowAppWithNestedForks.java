@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap;
+
+import co.cask.cdap.api.app.AbstractApplication;
+import co.cask.cdap.api.workflow.AbstractWorkflow;
+import co.cask.cdap.api.workflow.AbstractWorkflowAction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App with a Workflow that has forks nested in the branches of another fork.
+ */
+public class WorkflowAppWithNestedForks extends AbstractApplication {
+
+  @Override
+  public void configure() {
+    setName("WorkflowAppWithNestedForks");
+    setDescription("Workflow App containing nested forks");
+    addWorkflow(new NestedForksWorkflow());
+  }
+
+  /**
+   *
+   */
+  private static class NestedForksWorkflow extends AbstractWorkflow {
+
+    @Override
+    public void configure() {
+      setName("NestedForksWorkflow");
+      setDescription("Workflow with forks nested in the branches of a fork");
+      fork()
+        .fork()
+          .addAction(new SleepAction("first"))
+        .also()
+          .addAction(new SleepAction("second"))
+        .join()
+      .also()
+        .fork()
+          .addAction(new SleepAction("third"))
+        .also()
+          .addAction(new SleepAction("fourth"))
+        .join()
+      .also()
+        .addAction(new SleepAction("fifth"))
+      .join();
+    }
+  }
+
+  /**
+   * Action that takes a little while, so that the branches of the forks overlap.
+   */
+  private static class SleepAction extends AbstractWorkflowAction {
+
+    SleepAction(String name) {
+      super(name);
+    }
+
+    @Override
+    public void run() {
+      try {
+        TimeUnit.MILLISECONDS.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
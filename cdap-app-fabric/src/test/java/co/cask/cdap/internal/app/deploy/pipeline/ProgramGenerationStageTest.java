@@ -18,6 +18,7 @@ package co.cask.cdap.internal.app.deploy.pipeline;
 
 import co.cask.cdap.ToyApp;
 import co.cask.cdap.app.ApplicationSpecification;
+import co.cask.cdap.app.program.ManifestFields;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
@@ -28,7 +29,12 @@ import co.cask.cdap.internal.app.Specifications;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
 import co.cask.cdap.internal.pipeline.StageContext;
 import co.cask.cdap.internal.test.AppJarHelper;
+import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.test.internal.DefaultId;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 import org.apache.twill.filesystem.LocalLocationFactory;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
@@ -37,6 +43,12 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarFile;
+
 /**
  * Tests the program generation stage of the deploy pipeline.
  */
@@ -67,4 +79,75 @@ public class ProgramGenerationStageTest {
     Assert.assertTrue(true);
   }
 
+  @Test
+  public void testUnchangedProgramJarsAreKept() throws Exception {
+    configuration.set(Constants.AppFabric.OUTPUT_DIR, "programs");
+    LocationFactory lf = new LocalLocationFactory(TEMP_FOLDER.newFolder());
+    NamespacedLocationFactory namespacedLocationFactory = new DefaultNamespacedLocationFactory(configuration, lf);
+    Location namespaceLocation = namespacedLocationFactory.get(DefaultId.APPLICATION.getNamespace());
+    Locations.mkdirsIfNotExists(namespaceLocation);
+    Location appArchive = AppJarHelper.createDeploymentJar(new LocalLocationFactory(TEMP_FOLDER.newFolder()),
+                                                           ToyApp.class);
+    // The stage moves the archive, hence keep a copy with the same content for the second deployment
+    Location appArchiveCopy = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create(appArchive.getName());
+    ByteStreams.copy(Locations.newInputSupplier(appArchive), Locations.newOutputSupplier(appArchiveCopy));
+
+    ApplicationSpecification appSpec = Specifications.from(new ToyApp());
+    ApplicationSpecificationAdapter adapter = ApplicationSpecificationAdapter.create(new ReflectionSchemaGenerator());
+    ApplicationSpecification newSpec = adapter.fromJson(adapter.toJson(appSpec));
+
+    generatePrograms(namespacedLocationFactory, newSpec, appArchive);
+    List<File> jars = getProgramJars(new File(namespaceLocation.append("programs").append(newSpec.getName()).toURI()));
+    Assert.assertFalse(jars.isEmpty());
+
+    // All program jars of the deployment share the same content hash
+    String contentHash = getContentHash(jars.get(0));
+    Assert.assertNotNull(contentHash);
+    for (File jar : jars) {
+      Assert.assertEquals(contentHash, getContentHash(jar));
+      Assert.assertTrue(jar.setLastModified(1000L));
+    }
+
+    // A jar that is not readable must be generated again
+    File corrupted = jars.get(0);
+    Files.write("corrupted".getBytes(Charsets.UTF_8), corrupted);
+
+    generatePrograms(namespacedLocationFactory, newSpec, appArchiveCopy);
+    for (File jar : jars) {
+      Assert.assertEquals(contentHash, getContentHash(jar));
+      if (jar.equals(corrupted)) {
+        Assert.assertNotEquals(1000L, jar.lastModified());
+      } else {
+        Assert.assertEquals(1000L, jar.lastModified());
+      }
+    }
+  }
+
+  private void generatePrograms(NamespacedLocationFactory namespacedLocationFactory,
+                                ApplicationSpecification appSpec, Location appArchive) throws Exception {
+    ProgramGenerationStage pgmStage = new ProgramGenerationStage(configuration, namespacedLocationFactory);
+    pgmStage.process(new StageContext(Object.class));
+    pgmStage.process(new ApplicationDeployable(DefaultId.APPLICATION, appSpec, null,
+                                               ApplicationDeployScope.USER, appArchive));
+  }
+
+  private List<File> getProgramJars(File appDir) {
+    List<File> jars = Lists.newArrayList();
+    for (ProgramType type : ProgramType.values()) {
+      File[] files = new File(appDir, type.toString()).listFiles();
+      if (files != null) {
+        jars.addAll(Arrays.asList(files));
+      }
+    }
+    return jars;
+  }
+
+  private String getContentHash(File jar) throws IOException {
+    JarFile jarFile = new JarFile(jar);
+    try {
+      return jarFile.getManifest().getMainAttributes().getValue(ManifestFields.CONTENT_HASH);
+    } finally {
+      jarFile.close();
+    }
+  }
 }
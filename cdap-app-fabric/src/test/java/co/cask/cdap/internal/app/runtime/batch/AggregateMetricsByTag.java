@@ -106,6 +106,9 @@ public class AggregateMetricsByTag {
 
     private Table countersFromContext;
 
+    private int failAfter;
+    private int reduced;
+
     public void reduce(BytesWritable key, Iterable<LongWritable> values, Context context)
       throws IOException, InterruptedException {
 
@@ -118,6 +121,9 @@ public class AggregateMetricsByTag {
       }
       byte[] tag = key.copyBytes();
       context.write(tag, new TimeseriesTable.Entry(BY_TAGS, Bytes.toBytes(sum), System.currentTimeMillis(), tag));
+      if (++reduced == failAfter) {
+        throw new RuntimeException("Intentional exception: reducer fails after writing output");
+      }
       metrics.count("in.reduce", 1);
     }
 
@@ -125,6 +131,7 @@ public class AggregateMetricsByTag {
     protected void setup(Reducer.Context context) throws IOException, InterruptedException {
       metrics.gauge("in.reduce.setup", 1);
       LOG.info("in reducer: setup()");
+      failAfter = context.getConfiguration().getInt("c.reducer.fail.after", 0);
       long reducersCount = counters.incrementAndGet(new Increment("reducer", "count", 1L)).getLong("count", 0);
       Assert.assertEquals(reducersCount, countersFromContext.incrementAndGet(new Increment("reducer", "count", 1L))
                                                                                                   .getLong("count", 0));
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -100,6 +100,16 @@ public class AppWithMapReduce extends AbstractApplication {
         hadoopJob.getConfiguration().setInt("c.mapper.flush.freq", 1);
         hadoopJob.getConfiguration().setInt("c.reducer.flush.freq", 1);
       }
+      String reducers = context.getRuntimeArguments().get("reducers");
+      if (reducers != null) {
+        hadoopJob.setNumReduceTasks(Integer.parseInt(reducers));
+      }
+      String failReducerAfter = context.getRuntimeArguments().get("failReducerAfter");
+      if (failReducerAfter != null) {
+        // persist every output write right away, so that the reducer fails after its output was flushed
+        hadoopJob.getConfiguration().setLong("output.dataset.flush.max.writes", 1L);
+        hadoopJob.getConfiguration().setInt("c.reducer.fail.after", Integer.parseInt(failReducerAfter));
+      }
       metrics.count("beforeSubmit", 1);
     }
 
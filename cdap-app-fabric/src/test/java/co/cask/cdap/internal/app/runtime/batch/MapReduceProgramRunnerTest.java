@@ -59,6 +59,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Injector;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
@@ -389,7 +390,17 @@ public class MapReduceProgramRunnerTest {
     testSuccess(true);
   }
 
+  @Test
+  public void testJobSuccessWithMultipleReducers() throws Exception {
+    // reducers write to the same output dataset concurrently in the local job runner
+    testSuccess(false, 3);
+  }
+
   private void testSuccess(boolean frequentFlushing) throws Exception {
+    testSuccess(frequentFlushing, 1);
+  }
+
+  private void testSuccess(boolean frequentFlushing, int reducers) throws Exception {
     final ApplicationWithPrograms app = AppFabricTestHelper.deployApplicationWithManager(AppWithMapReduce.class,
                                                                                          TEMP_FOLDER_SUPPLIER);
 
@@ -405,7 +416,7 @@ public class MapReduceProgramRunnerTest {
 
     // 2) run job
     final long start = System.currentTimeMillis();
-    runProgram(app, AppWithMapReduce.AggregateTimeseriesByTag.class, frequentFlushing);
+    runProgram(app, AppWithMapReduce.AggregateTimeseriesByTag.class, frequentFlushing, reducers);
     final long stop = System.currentTimeMillis();
 
     // 3) verify results
@@ -503,6 +514,49 @@ public class MapReduceProgramRunnerTest {
     });
   }
 
+  @Test
+  public void testReducerFailureAfterFlushedOutput() throws Exception {
+    // The reducer persists every output write, and fails after writing output for two of the three tags. The output
+    // it persisted before failing must not be visible after the job failed.
+    final ApplicationWithPrograms app = AppFabricTestHelper.deployApplicationWithManager(AppWithMapReduce.class,
+                                                                                         TEMP_FOLDER_SUPPLIER);
+    final TimeseriesTable table = datasetInstantiator.getDataset("timeSeries");
+    fillTestInputData(txExecutorFactory, datasetInstantiator, table, false);
+
+    Map<String, String> userArgs = Maps.newHashMap();
+    userArgs.put("metric", "metric");
+    userArgs.put("startTs", "1");
+    userArgs.put("stopTs", "3");
+    userArgs.put("tag", "tag1");
+    userArgs.put("failReducerAfter", "2");
+
+    final long start = System.currentTimeMillis();
+    ProgramController controller = submit(app, AppWithMapReduce.AggregateTimeseriesByTag.class,
+                                          new BasicArguments(userArgs));
+    final SettableFuture<Boolean> failed = SettableFuture.create();
+    controller.addListener(new AbstractListener() {
+      @Override
+      public void completed() {
+        failed.set(false);
+      }
+
+      @Override
+      public void error(Throwable cause) {
+        failed.set(true);
+      }
+    }, Threads.SAME_THREAD_EXECUTOR);
+    Assert.assertTrue(failed.get(5, TimeUnit.MINUTES));
+    final long stop = System.currentTimeMillis();
+
+    txExecutorFactory.createExecutor(datasetInstantiator.getTransactionAware()).execute(
+      new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() {
+          Assert.assertFalse(table.read(AggregateMetricsByTag.BY_TAGS, start, stop).hasNext());
+        }
+      });
+  }
+
   private void fillTestInputData(TransactionExecutorFactory txExecutorFactory,
                                  DatasetInstantiator datasetInstantiator,
                                  final TimeseriesTable table,
@@ -535,7 +589,12 @@ public class MapReduceProgramRunnerTest {
 
   private void runProgram(ApplicationWithPrograms app, Class<?> programClass, boolean frequentFlushing)
     throws Exception {
-    waitForCompletion(submit(app, programClass, frequentFlushing));
+    runProgram(app, programClass, frequentFlushing, 1);
+  }
+
+  private void runProgram(ApplicationWithPrograms app, Class<?> programClass, boolean frequentFlushing,
+                          int reducers) throws Exception {
+    waitForCompletion(submit(app, programClass, frequentFlushing, reducers));
   }
 
   private void runProgram(ApplicationWithPrograms app, Class<?> programClass, Arguments args)
@@ -561,8 +620,8 @@ public class MapReduceProgramRunnerTest {
     completion.await(5, TimeUnit.MINUTES);
   }
 
-  private ProgramController submit(ApplicationWithPrograms app, Class<?> programClass, boolean frequentFlushing)
-    throws ClassNotFoundException {
+  private ProgramController submit(ApplicationWithPrograms app, Class<?> programClass, boolean frequentFlushing,
+                                   int reducers) throws ClassNotFoundException {
     HashMap<String, String> userArgs = Maps.newHashMap();
     userArgs.put("metric", "metric");
     userArgs.put("startTs", "1");
@@ -571,6 +630,7 @@ public class MapReduceProgramRunnerTest {
     if (frequentFlushing) {
       userArgs.put("frequentFlushing", "true");
     }
+    userArgs.put("reducers", Integer.toString(reducers));
     return submit(app, programClass, new BasicArguments(userArgs));
   }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.schedule;
+
+import co.cask.cdap.AppWithHeartbeatsStreamSizeSchedule;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.schedule.SchedulableProgramType;
+import co.cask.cdap.app.store.Store;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.data.stream.service.heartbeat.StreamWriterHeartbeat;
+import co.cask.cdap.notifications.feeds.NotificationFeedManager;
+import co.cask.cdap.notifications.service.NotificationService;
+import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.ProgramRunStatus;
+import co.cask.cdap.proto.ProgramType;
+import co.cask.cdap.test.XSlowTests;
+import co.cask.cdap.test.internal.AppFabricTestHelper;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link StreamSizeScheduler} when stream sizes are estimated from the stream writers heartbeats.
+ * No stream size notification is published, and the polling delay is too long for polling to trigger the schedules.
+ */
+@Category(XSlowTests.class)
+public class StreamSizeSchedulerHeartbeatsTest extends SchedulerTestBase {
+
+  private static final Id.NotificationFeed HEARTBEATS_FEED = new Id.NotificationFeed.Builder()
+    .setNamespaceId(Constants.SYSTEM_NAMESPACE)
+    .setCategory(Constants.Notification.Stream.STREAM_INTERNAL_FEED_CATEGORY)
+    .setName(Constants.Notification.Stream.STREAM_HEARTBEAT_FEED_NAME)
+    .build();
+
+  private static NotificationService notificationService;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    CCONF.setBoolean(Constants.Notification.Stream.STREAM_SIZE_SCHEDULE_HEARTBEATS, true);
+    CCONF.setLong(Constants.Notification.Stream.STREAM_SIZE_SCHEDULE_POLLING_DELAY, 3600);
+    SchedulerTestBase.init();
+
+    notificationService = injector.getInstance(NotificationService.class);
+    injector.getInstance(NotificationFeedManager.class).createFeed(HEARTBEATS_FEED);
+    final StreamSizeScheduler streamSizeScheduler = injector.getInstance(StreamSizeScheduler.class);
+    Tasks.waitFor(true, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return streamSizeScheduler.isSubscribedToHeartbeats();
+      }
+    }, 10, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected StreamMetricsPublisher createMetricsPublisher(final Id.Stream streamId) {
+    return new StreamMetricsPublisher() {
+
+      long totalSize;
+
+      {
+        // The first heartbeat of a stream writer instance is only used as a base for the following ones
+        publishHeartbeat();
+      }
+
+      @Override
+      public void increment(long size) throws Exception {
+        addStreamMetric(streamId, size);
+        totalSize += size;
+        publishHeartbeat();
+      }
+
+      private void publishHeartbeat() {
+        StreamSizeSchedulerHeartbeatsTest.publishHeartbeat(0, streamId, totalSize);
+      }
+    };
+  }
+
+  @Test
+  public void testMetricPolledBeforeHeartbeat() throws Exception {
+    Id.Application appId = Id.Application.from(Constants.DEFAULT_NAMESPACE_ID, "AppWithHeartbeatsStreamSizeSchedule");
+    Id.Program programId = Id.Program.from(appId, ProgramType.WORKFLOW, "NoOpWorkflow");
+    Id.Stream streamId = Id.Stream.from(Constants.DEFAULT_NAMESPACE_ID, "heartbeatsStream");
+    StreamSizeScheduler streamSizeScheduler = injector.getInstance(StreamSizeScheduler.class);
+    Store store = injector.getInstance(Store.class);
+
+    AppFabricTestHelper.deployApplication(AppWithHeartbeatsStreamSizeSchedule.class);
+    streamSizeScheduler.resumeSchedule(programId, SchedulableProgramType.WORKFLOW, "HeartbeatsSchedule");
+    publishHeartbeat(1, streamId, 0);
+
+    // The metric is polled when resuming the schedule, before the heartbeat reporting the same bytes arrives.
+    // Adding the bytes of that heartbeat to the polled size would wrongly estimate 1.2MB, and trigger the schedule
+    long size = 600 * 1024;
+    addStreamMetric(streamId, size);
+    streamSizeScheduler.suspendSchedule(programId, SchedulableProgramType.WORKFLOW, "HeartbeatsSchedule");
+    streamSizeScheduler.resumeSchedule(programId, SchedulableProgramType.WORKFLOW, "HeartbeatsSchedule");
+    publishHeartbeat(1, streamId, size);
+
+    // Wait for the polling retries done to confirm the estimate
+    TimeUnit.SECONDS.sleep(Constants.MetricsCollector.DEFAULT_FREQUENCY_SECONDS * 5);
+    Assert.assertEquals(0, store.getRuns(programId, ProgramRunStatus.ALL, 0, Long.MAX_VALUE, 100).size());
+
+    // The stream now really has 1.2MB
+    addStreamMetric(streamId, size);
+    publishHeartbeat(1, streamId, 2 * size);
+    waitForCompletedRuns(store, programId, 1);
+
+    streamSizeScheduler.suspendSchedule(programId, SchedulableProgramType.WORKFLOW, "HeartbeatsSchedule");
+    streamSizeScheduler.deleteSchedules(programId, SchedulableProgramType.WORKFLOW);
+  }
+
+  private static void waitForCompletedRuns(final Store store, final Id.Program programId,
+                                           int expectedRuns) throws Exception {
+    Tasks.waitFor(expectedRuns, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return store.getRuns(programId, ProgramRunStatus.COMPLETED, 0, Long.MAX_VALUE, 100).size();
+      }
+    }, 10, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+  }
+
+  private static void addStreamMetric(Id.Stream streamId, long size) throws Exception {
+    metricStore.add(new MetricValues(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, streamId.getNamespaceId(),
+                                                    Constants.Metrics.Tag.STREAM, streamId.getId()),
+                                    "collect.bytes", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
+                                    size, MetricType.COUNTER));
+  }
+
+  private static void publishHeartbeat(int instanceId, Id.Stream streamId, long size) {
+    try {
+      notificationService.publish(HEARTBEATS_FEED, new StreamWriterHeartbeat(System.currentTimeMillis(), instanceId,
+                                                                             ImmutableMap.of(streamId, size)))
+        .get();
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+}
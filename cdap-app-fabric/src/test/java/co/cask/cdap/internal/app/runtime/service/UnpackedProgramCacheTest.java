@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.service;
+
+import com.google.common.base.Charsets;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Tests for {@link UnpackedProgramCache}.
+ */
+public class UnpackedProgramCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharedDirectory() throws IOException {
+    Location jar = createJar("test.txt", "content");
+    UnpackedProgramCache cache = new UnpackedProgramCache(TEMP_FOLDER.newFolder());
+
+    File dir = cache.acquire("hash", jar);
+    Assert.assertTrue(new File(dir, "test.txt").isFile());
+
+    // Acquiring the same content hash again shares the directory
+    Assert.assertEquals(dir, cache.acquire("hash", jar));
+
+    // The directory is kept until the last reference is released
+    cache.release("hash");
+    Assert.assertTrue(new File(dir, "test.txt").isFile());
+    cache.release("hash");
+    Assert.assertFalse(dir.exists());
+
+    // Acquiring after the last release unpacks the jar again
+    dir = cache.acquire("hash", jar);
+    Assert.assertTrue(new File(dir, "test.txt").isFile());
+    cache.release("hash");
+    Assert.assertFalse(dir.exists());
+  }
+
+  @Test
+  public void testDifferentContent() throws IOException {
+    Location jar1 = createJar("one.txt", "one");
+    Location jar2 = createJar("two.txt", "two");
+    UnpackedProgramCache cache = new UnpackedProgramCache(TEMP_FOLDER.newFolder());
+
+    File dir1 = cache.acquire("hash1", jar1);
+    File dir2 = cache.acquire("hash2", jar2);
+    Assert.assertNotEquals(dir1, dir2);
+    Assert.assertTrue(new File(dir1, "one.txt").isFile());
+    Assert.assertTrue(new File(dir2, "two.txt").isFile());
+
+    // Releasing one directory does not affect the other
+    cache.release("hash1");
+    Assert.assertFalse(dir1.exists());
+    Assert.assertTrue(new File(dir2, "two.txt").isFile());
+    cache.release("hash2");
+    Assert.assertFalse(dir2.exists());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReleaseWithoutAcquire() throws IOException {
+    UnpackedProgramCache cache = new UnpackedProgramCache(TEMP_FOLDER.newFolder());
+    cache.release("hash");
+  }
+
+  private Location createJar(String entryName, String content) throws IOException {
+    Location jar = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("program.jar");
+    JarOutputStream output = new JarOutputStream(jar.getOutputStream());
+    try {
+      output.putNextEntry(new JarEntry(entryName));
+      output.write(content.getBytes(Charsets.UTF_8));
+      output.closeEntry();
+    } finally {
+      output.close();
+    }
+    return jar;
+  }
+}
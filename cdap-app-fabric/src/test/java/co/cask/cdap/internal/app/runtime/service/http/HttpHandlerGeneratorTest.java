@@ -20,11 +20,15 @@ import co.cask.cdap.api.data.DatasetInstantiationException;
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.api.service.http.AbstractHttpServiceHandler;
+import co.cask.cdap.api.service.http.HttpContentConsumer;
+import co.cask.cdap.api.service.http.HttpContentProducer;
 import co.cask.cdap.api.service.http.HttpServiceContext;
 import co.cask.cdap.api.service.http.HttpServiceHandler;
 import co.cask.cdap.api.service.http.HttpServiceHandlerSpecification;
 import co.cask.cdap.api.service.http.HttpServiceRequest;
 import co.cask.cdap.api.service.http.HttpServiceResponder;
+import co.cask.cdap.api.service.http.NoTransaction;
+import co.cask.cdap.api.service.http.ReadOnlyTransaction;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.http.HttpHandler;
 import co.cask.http.NettyHttpService;
@@ -35,14 +39,20 @@ import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
+import org.apache.twill.common.Cancellable;
+import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -53,6 +63,9 @@ import javax.ws.rs.PathParam;
  */
 public class HttpHandlerGeneratorTest {
 
+  // Staleness passed to the last call of NoOpHttpServiceContext.getReadOnlyTransactionContext()
+  private static final AtomicLong LAST_READ_ONLY_STALENESS = new AtomicLong(-1L);
+
   @Path("/p1")
   public abstract static class BaseHttpHandler extends AbstractHttpServiceHandler {
 
@@ -78,6 +91,67 @@ public class HttpHandlerGeneratorTest {
     }
   }
 
+  @Path("/tx")
+  public static final class TransactionPolicyHandler extends AbstractHttpServiceHandler {
+
+    @ReadOnlyTransaction(maxStalenessMillis = 500)
+    @GET
+    @Path("/readonly")
+    public void readOnly(HttpServiceRequest request, HttpServiceResponder responder) {
+      responder.sendString("readonly");
+    }
+
+    @NoTransaction
+    @GET
+    @Path("/none")
+    public void noTransaction(HttpServiceRequest request, HttpServiceResponder responder) {
+      responder.sendString("none");
+    }
+  }
+
+  @Path("/stream")
+  public static final class StreamingHandler extends AbstractHttpServiceHandler {
+
+    @POST
+    @Path("/upload")
+    public HttpContentConsumer upload(HttpServiceRequest request, HttpServiceResponder responder) {
+      return new HttpContentConsumer() {
+        private long size;
+
+        @Override
+        public void onReceived(ByteBuffer chunk) throws Exception {
+          size += chunk.remaining();
+        }
+
+        @Override
+        public void onFinish(HttpServiceResponder responder) throws Exception {
+          responder.sendString(Long.toString(size));
+        }
+      };
+    }
+
+    @GET
+    @Path("/download/{chunks}")
+    public void download(HttpServiceRequest request, HttpServiceResponder responder,
+                         @PathParam("chunks") final int chunks) {
+      responder.send(200, new HttpContentProducer() {
+        // reuse the same buffer for all chunks
+        private final ByteBuffer buffer = ByteBuffer.allocate(10);
+        private int count;
+
+        @Override
+        public ByteBuffer nextChunk() throws Exception {
+          buffer.clear();
+          if (count++ < chunks) {
+            buffer.put("0123456789".getBytes(Charsets.UTF_8));
+          }
+          buffer.flip();
+          return buffer;
+        }
+      }, "text/plain", null);
+    }
+  }
+
   // Omit class-level PATH annotation, to verify that prefix is still prepended to handled path.
   public static final class NoAnnotationHandler extends AbstractHttpServiceHandler {
 
@@ -149,6 +223,99 @@ public class HttpHandlerGeneratorTest {
     }
   }
 
+  @Test
+  public void testTransactionPolicies() throws Exception {
+    MetricsCollector noOpsMetricsCollector =
+      new NoOpMetricsCollectionService().getCollector(new HashMap<String, String>());
+    HttpHandlerFactory factory = new HttpHandlerFactory("/prefix", noOpsMetricsCollector);
+
+    HttpHandler httpHandler = factory.createHttpHandler(
+      TypeToken.of(TransactionPolicyHandler.class), new AbstractDelegatorContext<TransactionPolicyHandler>() {
+      @Override
+      protected TransactionPolicyHandler createHandler() {
+        return new TransactionPolicyHandler();
+      }
+    });
+
+    NettyHttpService service = NettyHttpService.builder()
+      .addHttpHandlers(ImmutableList.of(httpHandler))
+      .build();
+
+    service.startAndWait();
+    try {
+      InetSocketAddress bindAddress = service.getBindAddress();
+
+      // The read-only method must get a read-only transaction context with the staleness of the annotation
+      LAST_READ_ONLY_STALENESS.set(-1L);
+      URLConnection urlConn = new URL(String.format("http://%s:%d/prefix/tx/readonly",
+                                                    bindAddress.getHostName(), bindAddress.getPort())).openConnection();
+      urlConn.setReadTimeout(2000);
+      Assert.assertEquals("readonly", new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
+      Assert.assertEquals(500L, LAST_READ_ONLY_STALENESS.get());
+
+      // The method without transaction must not touch any transaction context of the service context
+      LAST_READ_ONLY_STALENESS.set(-1L);
+      urlConn = new URL(String.format("http://%s:%d/prefix/tx/none",
+                                      bindAddress.getHostName(), bindAddress.getPort())).openConnection();
+      urlConn.setReadTimeout(2000);
+      Assert.assertEquals("none", new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
+      Assert.assertEquals(-1L, LAST_READ_ONLY_STALENESS.get());
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testStreamingContent() throws Exception {
+    MetricsCollector noOpsMetricsCollector =
+      new NoOpMetricsCollectionService().getCollector(new HashMap<String, String>());
+    HttpHandlerFactory factory = new HttpHandlerFactory("/prefix", noOpsMetricsCollector);
+
+    HttpHandler httpHandler = factory.createHttpHandler(
+      TypeToken.of(StreamingHandler.class), new AbstractDelegatorContext<StreamingHandler>() {
+      @Override
+      protected StreamingHandler createHandler() {
+        return new StreamingHandler();
+      }
+    });
+
+    NettyHttpService service = NettyHttpService.builder()
+      .addHttpHandlers(ImmutableList.of(httpHandler))
+      .build();
+
+    service.startAndWait();
+    try {
+      InetSocketAddress bindAddress = service.getBindAddress();
+
+      // Upload 1MB in chunks
+      HttpURLConnection urlConn = (HttpURLConnection) new URL(
+        String.format("http://%s:%d/prefix/stream/upload", bindAddress.getHostName(), bindAddress.getPort()))
+        .openConnection();
+      urlConn.setReadTimeout(2000);
+      urlConn.setDoOutput(true);
+      urlConn.setRequestMethod("POST");
+      urlConn.setChunkedStreamingMode(4096);
+      byte[] data = new byte[1024];
+      for (int i = 0; i < 1024; i++) {
+        urlConn.getOutputStream().write(data);
+      }
+      Assert.assertEquals("1048576", new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
+
+      // Download 100 chunks
+      urlConn = (HttpURLConnection) new URL(
+        String.format("http://%s:%d/prefix/stream/download/100", bindAddress.getHostName(), bindAddress.getPort()))
+        .openConnection();
+      urlConn.setReadTimeout(2000);
+      String content = new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8);
+      Assert.assertEquals(1000, content.length());
+      for (int i = 0; i < 100; i++) {
+        Assert.assertEquals("0123456789", content.substring(i * 10, i * 10 + 10));
+      }
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   private abstract static class AbstractDelegatorContext<T extends HttpServiceHandler> implements DelegatorContext<T> {
 
     private final ThreadLocal<T> threadLocal = new ThreadLocal<T>() {
@@ -168,6 +335,23 @@ public class HttpHandlerGeneratorTest {
       return new NoOpHttpServiceContext();
     }
 
+    @Override
+    public final Cancellable detachHandler() {
+      threadLocal.remove();
+      return new Cancellable() {
+        @Override
+        public void cancel() {
+          // no-op
+        }
+      };
+    }
+
+    @Nullable
+    @Override
+    public ChannelWritabilityHandler.Writability getWritability(HttpRequest request) {
+      return null;
+    }
+
     protected abstract T createHandler();
   }
 
@@ -208,6 +392,12 @@ public class HttpHandlerGeneratorTest {
         String.format("Dataset '%s' cannot be instantiated. Operation not supported", name));
     }
 
+    @Override
+    public TransactionContext getReadOnlyTransactionContext(long maxStalenessMillis) {
+      LAST_READ_ONLY_STALENESS.set(maxStalenessMillis);
+      return getTransactionContext();
+    }
+
     @Override
     public TransactionContext getTransactionContext() {
       return new TransactionContext(null, ImmutableList.<TransactionAware>of()) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionFailureException;
+import co.cask.tephra.inmemory.MinimalTxSystemClient;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests for {@link ReadOnlyTransactionContext}.
+ */
+public class ReadOnlyTransactionContextTest {
+
+  @Test
+  public void testNoChanges() throws Exception {
+    RecordingTxAware txAware = new RecordingTxAware();
+    ReadOnlyTransactionContext txContext = createContext(txAware);
+
+    txContext.start();
+    Assert.assertNotNull(txAware.tx);
+    txContext.finish();
+
+    // a read-only transaction is never committed
+    Assert.assertFalse(txAware.committed);
+    Assert.assertFalse(txAware.rolledBack);
+  }
+
+  @Test
+  public void testWriteRejected() throws Exception {
+    RecordingTxAware txAware = new RecordingTxAware();
+    ReadOnlyTransactionContext txContext = createContext(txAware);
+
+    txContext.start();
+    txAware.changes.add(new byte[] { 'r' });
+    try {
+      txContext.finish();
+      Assert.fail("Finishing a read-only transaction with changes should fail");
+    } catch (TransactionFailureException e) {
+      // expected
+    }
+
+    // the changes are discarded and nothing is committed
+    Assert.assertFalse(txAware.committed);
+    Assert.assertTrue(txAware.rolledBack);
+  }
+
+  private ReadOnlyTransactionContext createContext(TransactionAware txAware) {
+    MinimalTxSystemClient txClient = new MinimalTxSystemClient();
+    return new ReadOnlyTransactionContext(txClient, new TransactionSnapshotCache(txClient),
+                                          ImmutableList.of(txAware)).setMaxStaleness(1000L);
+  }
+
+  /**
+   * A {@link TransactionAware} that records the calls it receives.
+   */
+  private static final class RecordingTxAware implements TransactionAware {
+
+    private final List<byte[]> changes = Lists.newArrayList();
+    private Transaction tx;
+    private boolean committed;
+    private boolean rolledBack;
+
+    @Override
+    public void startTx(Transaction tx) {
+      this.tx = tx;
+    }
+
+    @Override
+    public Collection<byte[]> getTxChanges() {
+      return changes;
+    }
+
+    @Override
+    public boolean commitTx() throws Exception {
+      committed = true;
+      return true;
+    }
+
+    @Override
+    public void postTxCommit() {
+      // no-op
+    }
+
+    @Override
+    public boolean rollbackTx() throws Exception {
+      rolledBack = true;
+      changes.clear();
+      return true;
+    }
+
+    @Override
+    public String getTransactionAwareName() {
+      return "recording";
+    }
+  }
+}
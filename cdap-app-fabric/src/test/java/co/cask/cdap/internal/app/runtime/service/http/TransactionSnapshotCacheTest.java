@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.tephra.Transaction;
+import co.cask.tephra.inmemory.MinimalTxSystemClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link TransactionSnapshotCache}.
+ */
+public class TransactionSnapshotCacheTest {
+
+  @Test
+  public void testSharedSnapshot() throws Exception {
+    TransactionSnapshotCache cache = new TransactionSnapshotCache(new MinimalTxSystemClient());
+
+    // a snapshot is shared while it is not older than the accepted staleness
+    Transaction snapshot = cache.get(TimeUnit.MINUTES.toMillis(1));
+    Assert.assertSame(snapshot, cache.get(TimeUnit.MINUTES.toMillis(1)));
+
+    // a caller that accepts no staleness always gets a new snapshot
+    Transaction fresh = cache.get(0L);
+    Assert.assertNotSame(snapshot, fresh);
+    Assert.assertTrue(fresh.getWritePointer() > snapshot.getWritePointer());
+  }
+
+  @Test
+  public void testStaleSnapshotRefreshed() throws Exception {
+    TransactionSnapshotCache cache = new TransactionSnapshotCache(new MinimalTxSystemClient());
+
+    Transaction snapshot = cache.get(50L);
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    // the snapshot is older than the accepted staleness, so a new one is taken and shared from then on
+    Transaction refreshed = cache.get(50L);
+    Assert.assertTrue(refreshed.getWritePointer() > snapshot.getWritePointer());
+    Assert.assertSame(refreshed, cache.get(TimeUnit.MINUTES.toMillis(1)));
+  }
+}
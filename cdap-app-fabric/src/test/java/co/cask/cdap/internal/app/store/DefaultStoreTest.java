@@ -489,6 +489,27 @@ public class DefaultStoreTest {
     Assert.assertEquals(10, serviceSpec.getInstances());
   }
 
+  @Test
+  public void testCachedApplicationMeta() throws Exception {
+    Id.Application id = new Id.Application(new Id.Namespace("account1"), "application1");
+    store.addApplication(id, Specifications.from(new FooApp()), new LocalLocationFactory().create("/foo"));
+
+    // The second read reuses the parsed specification
+    Assert.assertNotNull(store.getApplication(id));
+    long hits = store.getCacheHits();
+    Assert.assertNotNull(store.getApplication(id).getMapReduce().get("mrJob1"));
+    Assert.assertEquals(hits + 1, store.getCacheHits());
+
+    // Updates are visible right away
+    store.addApplication(id, Specifications.from(new ChangedFooApp()), new LocalLocationFactory().create("/foo"));
+    ApplicationSpecification spec = store.getApplication(id);
+    Assert.assertNull(spec.getMapReduce().get("mrJob1"));
+    Assert.assertEquals(hits + 1, store.getCacheHits());
+
+    store.removeApplication(id);
+    Assert.assertNull(store.getApplication(id));
+  }
+
   @Test
   public void testSetFlowletInstances() throws Exception {
     AppFabricTestHelper.deployApplication(WordCountApp.class);
@@ -20,11 +20,17 @@ import co.cask.cdap.MissingSparkWorkflowApp;
 import co.cask.cdap.OneActionWorkflowApp;
 import co.cask.cdap.ScheduleAppWithMissingWorkflow;
 import co.cask.cdap.WorkflowApp;
+import co.cask.cdap.WorkflowAppWithConcurrentMapReduce;
+import co.cask.cdap.WorkflowAppWithNestedForks;
 import co.cask.cdap.WorkflowSchedulesWithSameNameApp;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.ProgramOptions;
 import co.cask.cdap.app.runtime.ProgramRunner;
 import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.discovery.EndpointStrategy;
+import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.internal.app.deploy.pipeline.ApplicationWithPrograms;
 import co.cask.cdap.internal.app.runtime.AbstractListener;
 import co.cask.cdap.internal.app.runtime.BasicArguments;
@@ -34,13 +40,23 @@ import co.cask.cdap.internal.app.runtime.SimpleProgramOptions;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.test.XSlowTests;
 import co.cask.cdap.test.internal.AppFabricTestHelper;
+import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.twill.api.RunId;
 import org.apache.twill.common.Threads;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -53,6 +69,11 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -201,6 +222,159 @@ public class WorkflowTest {
     Assert.assertEquals("Completed", run);
   }
 
+  @Test(timeout = 120 * 1000L)
+  public void testNestedForksWithFewerThreadsThanBranches() throws Exception {
+    final ApplicationWithPrograms app = AppFabricTestHelper.deployApplicationWithManager(
+      WorkflowAppWithNestedForks.class, TEMP_FOLDER_SUPPLIER);
+    ProgramRunnerFactory runnerFactory = AppFabricTestHelper.getInjector().getInstance(ProgramRunnerFactory.class);
+    ProgramRunner programRunner = runnerFactory.create(ProgramRunnerFactory.Type.WORKFLOW);
+
+    Program program = Iterators.filter(app.getPrograms().iterator(), new Predicate<Program>() {
+      @Override
+      public boolean apply(Program input) {
+        return input.getType() == ProgramType.WORKFLOW;
+      }
+    }).next();
+
+    BasicArguments systemArgs = new BasicArguments(ImmutableMap.of(ProgramOptionConstants.RUN_ID,
+                                                                   RunIds.generate().getId()));
+    ProgramOptions options = new SimpleProgramOptions(program.getName(), systemArgs, new BasicArguments());
+
+    // Use a single branch thread, so that both the outer fork and the nested forks have more branches than threads
+    CConfiguration cConf = AppFabricTestHelper.getInjector().getInstance(CConfiguration.class);
+    int forkThreads = cConf.getInt(Constants.AppFabric.WORKFLOW_FORK_THREADS,
+                                   Constants.AppFabric.DEFAULT_WORKFLOW_FORK_THREADS);
+    cConf.setInt(Constants.AppFabric.WORKFLOW_FORK_THREADS, 1);
+    try {
+      final SettableFuture<String> completion = SettableFuture.create();
+      programRunner.run(program, options).addListener(new AbstractListener() {
+        @Override
+        public void completed() {
+          LOG.info("Completed");
+          completion.set("Completed");
+        }
+
+        @Override
+        public void error(Throwable cause) {
+          LOG.info("Error", cause);
+          completion.setException(cause);
+        }
+      }, Threads.SAME_THREAD_EXECUTOR);
+
+      String run = completion.get();
+      Assert.assertEquals("Completed", run);
+    } finally {
+      cConf.setInt(Constants.AppFabric.WORKFLOW_FORK_THREADS, forkThreads);
+    }
+  }
+
+  @Test(timeout = 120 * 1000L)
+  public void testMaxConcurrentMapReduce() throws Exception {
+    final ApplicationWithPrograms app = AppFabricTestHelper.deployApplicationWithManager(
+      WorkflowAppWithConcurrentMapReduce.class, TEMP_FOLDER_SUPPLIER);
+    ProgramRunnerFactory runnerFactory = AppFabricTestHelper.getInjector().getInstance(ProgramRunnerFactory.class);
+    ProgramRunner programRunner = runnerFactory.create(ProgramRunnerFactory.Type.WORKFLOW);
+
+    Program program = Iterators.filter(app.getPrograms().iterator(), new Predicate<Program>() {
+      @Override
+      public boolean apply(Program input) {
+        return input.getType() == ProgramType.WORKFLOW;
+      }
+    }).next();
+
+    String inputPath = createInput();
+    String outputPath = tmpFolder.newFolder().getAbsolutePath();
+    File doneFile = new File(tmpFolder.newFolder(), "done");
+    RunId runId = RunIds.generate();
+    BasicArguments systemArgs = new BasicArguments(ImmutableMap.of(ProgramOptionConstants.RUN_ID, runId.getId()));
+    BasicArguments userArgs = new BasicArguments(ImmutableMap.of("inputPath", inputPath, "outputPath", outputPath,
+                                                                 "doneFile", doneFile.getAbsolutePath()));
+    ProgramOptions options = new SimpleProgramOptions(program.getName(), systemArgs, userArgs);
+
+    // Allow a single MapReduce program at a time, so that the two branches of the fork cannot run theirs together
+    CConfiguration cConf = AppFabricTestHelper.getInjector().getInstance(CConfiguration.class);
+    int maxConcurrent = cConf.getInt(Constants.AppFabric.WORKFLOW_MAX_CONCURRENT_MAPREDUCE,
+                                     Constants.AppFabric.DEFAULT_WORKFLOW_MAX_CONCURRENT_MAPREDUCE);
+    cConf.setInt(Constants.AppFabric.WORKFLOW_MAX_CONCURRENT_MAPREDUCE, 1);
+    try {
+      final SettableFuture<String> completion = SettableFuture.create();
+      programRunner.run(program, options).addListener(new AbstractListener() {
+        @Override
+        public void completed() {
+          LOG.info("Completed");
+          completion.set("Completed");
+        }
+
+        @Override
+        public void error(Throwable cause) {
+          LOG.info("Error", cause);
+          completion.setException(cause);
+        }
+      }, Threads.SAME_THREAD_EXECUTOR);
+
+      // The workflow waits for the done file after the fork, so the timeline can be fetched once both branches are done
+      URL url = getWorkflowServiceURL(program, runId, "timeline");
+      JsonArray timeline = getTimeline(url);
+      while (timeline.size() != 2 || !isCompleted(timeline.get(0)) || !isCompleted(timeline.get(1))) {
+        TimeUnit.MILLISECONDS.sleep(100);
+        timeline = getTimeline(url);
+      }
+
+      List<JsonObject> actions = Lists.newArrayList();
+      for (JsonElement branch : timeline) {
+        JsonArray branchActions = branch.getAsJsonObject().getAsJsonArray("actions");
+        Assert.assertEquals(1, branchActions.size());
+        JsonObject action = branchActions.get(0).getAsJsonObject();
+        Assert.assertEquals("MAPREDUCE", action.get("programType").getAsString());
+        Assert.assertEquals("COMPLETED", action.get("status").getAsString());
+        actions.add(action);
+      }
+
+      // The MapReduce programs of the two branches must not have run at the same time
+      long firstStart = actions.get(0).get("startTime").getAsLong();
+      long firstEnd = actions.get(0).get("endTime").getAsLong();
+      long secondStart = actions.get(1).get("startTime").getAsLong();
+      long secondEnd = actions.get(1).get("endTime").getAsLong();
+      Assert.assertTrue("MapReduce programs overlap: " + actions, firstEnd <= secondStart || secondEnd <= firstStart);
+
+      Assert.assertTrue(doneFile.createNewFile());
+      Assert.assertEquals("Completed", completion.get());
+    } finally {
+      cConf.setInt(Constants.AppFabric.WORKFLOW_MAX_CONCURRENT_MAPREDUCE, maxConcurrent);
+    }
+  }
+
+  private URL getWorkflowServiceURL(Program program, RunId runId, String path) throws Exception {
+    DiscoveryServiceClient discoveryServiceClient =
+      AppFabricTestHelper.getInjector().getInstance(DiscoveryServiceClient.class);
+    EndpointStrategy endpointStrategy = new RandomEndpointStrategy(discoveryServiceClient.discover(
+      String.format("workflow.%s.%s.%s.%s",
+                    program.getNamespaceId(), program.getApplicationId(), program.getName(), runId.getId())));
+    Discoverable discoverable = endpointStrategy.pick(10, TimeUnit.SECONDS);
+    Assert.assertNotNull("Workflow service not discovered", discoverable);
+    return new URL(String.format("http://%s:%d/%s", discoverable.getSocketAddress().getHostName(),
+                                 discoverable.getSocketAddress().getPort(), path));
+  }
+
+  private JsonArray getTimeline(URL url) throws IOException {
+    HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+    try {
+      Assert.assertEquals(200, urlConn.getResponseCode());
+      InputStream is = urlConn.getInputStream();
+      try {
+        return new JsonParser().parse(new String(ByteStreams.toByteArray(is), Charsets.UTF_8)).getAsJsonArray();
+      } finally {
+        is.close();
+      }
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  private boolean isCompleted(JsonElement branch) {
+    return "COMPLETED".equals(branch.getAsJsonObject().get("status").getAsString());
+  }
+
   private String createInput() throws IOException {
     File inputDir = tmpFolder.newFolder();
 
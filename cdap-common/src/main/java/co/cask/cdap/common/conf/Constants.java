@@ -95,6 +95,13 @@ public final class Constants {
     public static final String APP_TEMPLATE_DIR = "app.template.dir";
     public static final String APP_SCHEDULER_QUEUE = "apps.scheduler.queue";
     public static final String MAPREDUCE_JOB_CLIENT_CONNECT_MAX_RETRIES = "mapreduce.jobclient.connect.max.retries";
+    public static final String STORE_CACHE_SIZE_MB = "app.store.cache.size.mb";
+    public static final String DATASET_POOL_MAX_IDLE = "app.program.dataset.pool.max.idle";
+    public static final String WORKFLOW_FORK_THREADS = "app.program.workflow.fork.threads";
+    public static final String WORKFLOW_MAX_CONCURRENT_MAPREDUCE = "app.program.workflow.max.concurrent.mapreduce";
+    public static final String WORKFLOW_MAX_CONCURRENT_SPARK = "app.program.workflow.max.concurrent.spark";
+    public static final String MAPREDUCE_LOCAL_MAX_MAPS = "app.program.mapreduce.local.max.maps";
+    public static final String MAPREDUCE_LOCAL_MAX_REDUCES = "app.program.mapreduce.local.max.reduces";
 
     /**
      * Guice named bindings.
@@ -108,6 +115,13 @@ public final class Constants {
     public static final int DEFAULT_EXEC_THREADS = 20;
     public static final int DEFAULT_BOSS_THREADS = 1;
     public static final int DEFAULT_WORKER_THREADS = 10;
+    public static final int DEFAULT_STORE_CACHE_SIZE_MB = 32;
+    public static final int DEFAULT_DATASET_POOL_MAX_IDLE = 64;
+    public static final int DEFAULT_WORKFLOW_FORK_THREADS = 32;
+    public static final int DEFAULT_WORKFLOW_MAX_CONCURRENT_MAPREDUCE = 0;
+    public static final int DEFAULT_WORKFLOW_MAX_CONCURRENT_SPARK = 0;
+    public static final int DEFAULT_MAPREDUCE_LOCAL_MAX_MAPS = 0;
+    public static final int DEFAULT_MAPREDUCE_LOCAL_MAX_REDUCES = 0;
 
     /**
      * Query parameter to indicate start time.
@@ -192,6 +206,10 @@ public final class Constants {
 
     public static final String DATASET_UNCHECKED_UPGRADE = "dataset.unchecked.upgrade";
 
+    /** Time in seconds that dataset instance and type metadata is cached by clients, 0 disables caching. */
+    public static final String CLIENT_META_CACHE_TTL_SECS = "dataset.client.meta.cache.ttl.secs";
+    public static final long DEFAULT_CLIENT_META_CACHE_TTL_SECS = 60;
+
     /**
      * DatasetManager service configuration.
      */
@@ -263,6 +281,7 @@ public final class Constants {
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
+    public static final String BATCH_AVRO_MAX_BLOCK_SIZE = "stream.batch.avro.max.block.size";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
 
     // Stream http service configurations.
@@ -340,6 +359,9 @@ public final class Constants {
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
+    public static final String BACKEND_MAX_CONNECTIONS = "router.backend.max.connections";
+    public static final String BACKEND_IDLE_TIMEOUT_SECS = "router.backend.idle.timeout.secs";
+    public static final String BACKEND_BORROW_TIMEOUT_MS = "router.backend.borrow.timeout.ms";
 
     /**
      * Defaults.
@@ -356,6 +378,9 @@ public final class Constants {
     public static final int DEFAULT_SERVER_WORKER_THREADS = 10;
     public static final int DEFAULT_CLIENT_BOSS_THREADS = 1;
     public static final int DEFAULT_CLIENT_WORKER_THREADS = 10;
+    public static final int DEFAULT_BACKEND_MAX_CONNECTIONS = 100;
+    public static final int DEFAULT_BACKEND_IDLE_TIMEOUT_SECS = 15;
+    public static final long DEFAULT_BACKEND_BORROW_TIMEOUT_MS = 30000L;
 
     public static final String GATEWAY_DISCOVERY_NAME = Service.GATEWAY;
     public static final String WEBAPP_DISCOVERY_NAME = "webapp/$HOST";
@@ -401,6 +426,14 @@ public final class Constants {
     public static final String KAFKA_META_TABLE = "metrics.kafka.meta.table";
 
     public static final String DEFAULT_KAFKA_META_TABLE = "metrics.kafka.meta";
+
+    /** Max time (in milliseconds) that increments of an HBase metrics table are coalesced in memory */
+    public static final String INCREMENT_FLUSH_INTERVAL_MS = "metrics.table.increment.flush.interval.ms";
+    /** Max number of distinct cells with coalesced increments of an HBase metrics table before flushing */
+    public static final String INCREMENT_FLUSH_MAX_CELLS = "metrics.table.increment.flush.max.cells";
+
+    public static final long DEFAULT_INCREMENT_FLUSH_INTERVAL_MS = 0;
+    public static final int DEFAULT_INCREMENT_FLUSH_MAX_CELLS = 10000;
     public static final String DEFAULT_KAFKA_TOPIC_PREFIX = "metrics";
 
     // NOTE: "v2" to avoid conflict with data of older metrics system
@@ -721,6 +754,15 @@ public final class Constants {
       public static final String STREAM_INTERNAL_FEED_CATEGORY = "streamInternal";
       public static final String STREAM_HEARTBEAT_FEED_NAME = "heartbeat";
       public static final String STREAM_SIZE_SCHEDULE_POLLING_DELAY = "stream.size.schedule.polling.delay";
+      public static final String STREAM_SIZE_SCHEDULE_HEARTBEATS = "stream.size.schedule.heartbeats";
+    }
+
+    /**
+     * Notifications in Datasets constants.
+     */
+    public static final class Dataset {
+      public static final String DATASET_INTERNAL_FEED_CATEGORY = "datasetInternal";
+      public static final String DATASET_META_CHANGES_FEED_NAME = "metaChanges";
     }
   }
 
@@ -748,6 +790,8 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_GROUP_COMMIT_WINDOW_MICROS =
+    "data.local.storage.group.commit.window.micros";
 
 
   /**
@@ -758,6 +802,7 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final long DEFAULT_DATA_LEVELDB_GROUP_COMMIT_WINDOW_MICROS = 0L;
 
   /**
    * Configuration for Metadata service.
@@ -0,0 +1,297 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link Decoder} for binary-format data that decodes directly from a {@link ByteBuffer}, without going
+ * through an {@link java.io.InputStream}. It reads the same format as written by {@link BinaryEncoder}.
+ * Decoding advances the position of the buffer.
+ *
+ * By default, {@link #readBytes()} returns a copy of the bytes. With zero copy, it returns a slice of the
+ * buffer instead, which is only valid as long as the content of the buffer is not modified.
+ *
+ * Short strings can be decoded through a cache of recently decoded strings. Decoding a string that is
+ * in the cache returns the cached instance without any allocation, which is useful for values that repeat
+ * a lot, such as header names or metric tags.
+ */
+@NotThreadSafe
+public final class ByteBufferDecoder implements Decoder {
+
+  // Only strings up to this number of encoded bytes are cached
+  private static final int MAX_CACHED_STRING_BYTES = 128;
+
+  private final boolean zeroCopy;
+  private final byte[][] cachedBytes;
+  private final String[] cachedStrings;
+  private ByteBuffer buffer;
+
+  /**
+   * Creates a decoder that copies bytes and doesn't cache strings.
+   *
+   * @param buffer the buffer to decode from
+   */
+  public ByteBufferDecoder(ByteBuffer buffer) {
+    this(buffer, false, 0);
+  }
+
+  /**
+   * Creates a decoder.
+   *
+   * @param buffer the buffer to decode from
+   * @param zeroCopy if {@code true}, {@link #readBytes()} returns slices of the buffer instead of copies
+   * @param stringCacheSize number of decoded strings to cache; {@code 0} to disable caching. It is rounded up to
+   *                        a power of two.
+   */
+  public ByteBufferDecoder(ByteBuffer buffer, boolean zeroCopy, int stringCacheSize) {
+    Preconditions.checkArgument(stringCacheSize >= 0, "String cache size must be >= 0");
+    this.buffer = buffer;
+    this.zeroCopy = zeroCopy;
+    if (stringCacheSize > 0) {
+      int size = Integer.highestOneBit(stringCacheSize);
+      size = size < stringCacheSize ? size << 1 : size;
+      this.cachedBytes = new byte[size][];
+      this.cachedStrings = new String[size];
+    } else {
+      this.cachedBytes = null;
+      this.cachedStrings = null;
+    }
+  }
+
+  /**
+   * Sets the buffer to decode from. The string cache is kept.
+   *
+   * @return this decoder
+   */
+  public ByteBufferDecoder reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    return this;
+  }
+
+  /**
+   * Returns the buffer this decoder is decoding from.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public Object readNull() throws IOException {
+    // No-op
+    return null;
+  }
+
+  @Override
+  public boolean readBool() throws IOException {
+    return readByte() == 1;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    int val = 0;
+    int shift = 0;
+    int b = readByte();
+    while (b > 0x7f) {
+      val ^= (b & 0x7f) << shift;
+      shift += 7;
+      b = readByte();
+    }
+    val ^= b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    long val = 0;
+    int shift = 0;
+    int b = readByte();
+    while (b > 0x7f) {
+      val ^= (long) (b & 0x7f) << shift;
+      shift += 7;
+      b = readByte();
+    }
+    val ^= (long) b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    ensureRemaining(4);
+    return Float.intBitsToFloat(readIntLE());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    ensureRemaining(8);
+    int low = readIntLE();
+    int high = readIntLE();
+    return Double.longBitsToDouble(((long) high << 32) | (low & 0xffffffffL));
+  }
+
+  @Override
+  public String readString() throws IOException {
+    int len = readLength();
+    int pos = buffer.position();
+    String str;
+    if (cachedStrings != null && len <= MAX_CACHED_STRING_BYTES) {
+      str = readCachedString(pos, len);
+    } else if (buffer.hasArray()) {
+      str = new String(buffer.array(), buffer.arrayOffset() + pos, len, Charsets.UTF_8);
+    } else {
+      byte[] bytes = new byte[len];
+      buffer.get(bytes);
+      return new String(bytes, Charsets.UTF_8);
+    }
+    buffer.position(pos + len);
+    return str;
+  }
+
+  @Override
+  public ByteBuffer readBytes() throws IOException {
+    int len = readLength();
+    if (zeroCopy) {
+      ByteBuffer slice = buffer.slice();
+      slice.limit(len);
+      buffer.position(buffer.position() + len);
+      return slice;
+    }
+    byte[] bytes = new byte[len];
+    buffer.get(bytes);
+    return ByteBuffer.wrap(bytes);
+  }
+
+  @Override
+  public void skipFloat() throws IOException {
+    skip(4);
+  }
+
+  @Override
+  public void skipDouble() throws IOException {
+    skip(8);
+  }
+
+  @Override
+  public void skipString() throws IOException {
+    skipBytes();
+  }
+
+  @Override
+  public void skipBytes() throws IOException {
+    skip(readLength());
+  }
+
+  /**
+   * Decodes a string of the given length at the given position through the string cache.
+   * It doesn't change the position of the buffer.
+   */
+  private String readCachedString(int pos, int len) {
+    byte[] bytes;
+    int off;
+    if (buffer.hasArray()) {
+      bytes = buffer.array();
+      off = buffer.arrayOffset() + pos;
+    } else {
+      bytes = new byte[len];
+      off = 0;
+      for (int i = 0; i < len; i++) {
+        bytes[i] = buffer.get(pos + i);
+      }
+    }
+
+    int hash = len;
+    for (int i = off; i < off + len; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    int idx = (hash ^ (hash >>> 16)) & (cachedStrings.length - 1);
+
+    byte[] cached = cachedBytes[idx];
+    if (cached != null && cached.length == len && equals(cached, bytes, off)) {
+      return cachedStrings[idx];
+    }
+
+    cached = (off == 0 && bytes.length == len) ? bytes : Arrays.copyOfRange(bytes, off, off + len);
+    String str = new String(cached, Charsets.UTF_8);
+    cachedBytes[idx] = cached;
+    cachedStrings[idx] = str;
+    return str;
+  }
+
+  /**
+   * Returns {@code true} if the given cached bytes are the same as the bytes in the given array starting at the
+   * given offset.
+   */
+  private boolean equals(byte[] cached, byte[] bytes, int off) {
+    for (int i = 0; i < cached.length; i++) {
+      if (cached[i] != bytes[off + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the length of a string or byte array and makes sure the buffer has that many bytes remaining.
+   */
+  private int readLength() throws IOException {
+    int len = readInt();
+    if (len < 0) {
+      throw new IOException("Invalid length " + len);
+    }
+    ensureRemaining(len);
+    return len;
+  }
+
+  private void skip(int len) throws IOException {
+    ensureRemaining(len);
+    buffer.position(buffer.position() + len);
+  }
+
+  private void ensureRemaining(int len) throws EOFException {
+    if (buffer.remaining() < len) {
+      throw new EOFException("Expected " + len + " bytes but only " + buffer.remaining() + " bytes remaining");
+    }
+  }
+
+  /**
+   * Reads 4 bytes as a little endian int. The caller must make sure that there are enough bytes remaining.
+   */
+  private int readIntLE() {
+    return (buffer.get() & 0xff) ^ ((buffer.get() & 0xff) << 8)
+      ^ ((buffer.get() & 0xff) << 16) ^ ((buffer.get() & 0xff) << 24);
+  }
+
+  /**
+   * Reads a byte value.
+   *
+   * @return The byte value read.
+   * @throws EOFException If end of buffer reached.
+   */
+  private int readByte() throws EOFException {
+    if (!buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+    return buffer.get() & 0xff;
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * An {@link Encoder} for binary-format data that encodes directly into a growable byte array, without going
+ * through an {@link OutputStream}. It writes the same format as {@link BinaryEncoder}, and can be reused
+ * by calling {@link #reset()}, in which case encoding doesn't allocate once the array is large enough.
+ */
+@NotThreadSafe
+public final class ByteBufferEncoder implements Encoder {
+
+  private byte[] buffer;
+  private int size;
+
+  public ByteBufferEncoder() {
+    this(64);
+  }
+
+  public ByteBufferEncoder(int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity > 0, "Initial capacity must be > 0");
+    this.buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * Discards all encoded bytes, keeping the underlying array.
+   *
+   * @return this encoder
+   */
+  public ByteBufferEncoder reset() {
+    size = 0;
+    return this;
+  }
+
+  /**
+   * Returns the number of bytes encoded.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a {@link ByteBuffer} of the encoded bytes. It shares the underlying array with this encoder, hence
+   * it is only valid until the next write or reset.
+   */
+  public ByteBuffer getBuffer() {
+    return ByteBuffer.wrap(buffer, 0, size);
+  }
+
+  /**
+   * Returns a copy of the encoded bytes.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Writes all the encoded bytes into the given {@link OutputStream}.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  /**
+   * Writes raw bytes without encoding.
+   *
+   * @param rawBytes The bytes to write.
+   * @param off Offset to start in the byte array.
+   * @param len Number of bytes to write starting from the offset.
+   * @return this encoder
+   */
+  public ByteBufferEncoder writeRaw(byte[] rawBytes, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(rawBytes, off, buffer, size, len);
+    size += len;
+    return this;
+  }
+
+  @Override
+  public Encoder writeNull() throws IOException {
+    // No-op
+    return this;
+  }
+
+  @Override
+  public Encoder writeBool(boolean b) throws IOException {
+    ensureCapacity(1);
+    buffer[size++] = (byte) (b ? 1 : 0);
+    return this;
+  }
+
+  @Override
+  public Encoder writeInt(int i) throws IOException {
+    ensureCapacity(5);
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    int val = (i << 1) ^ (i >> 31);
+    while ((val & ~0x7f) != 0) {
+      buffer[size++] = (byte) (0x80 | val & 0x7f);
+      val >>>= 7;
+    }
+    buffer[size++] = (byte) val;
+    return this;
+  }
+
+  @Override
+  public Encoder writeLong(long l) throws IOException {
+    ensureCapacity(10);
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    long val = (l << 1) ^ (l >> 63);
+    while ((val & ~0x7fL) != 0) {
+      buffer[size++] = (byte) (0x80 | val & 0x7f);
+      val >>>= 7;
+    }
+    buffer[size++] = (byte) val;
+    return this;
+  }
+
+  @Override
+  public Encoder writeFloat(float f) throws IOException {
+    ensureCapacity(4);
+    writeIntLE(Float.floatToIntBits(f));
+    return this;
+  }
+
+  @Override
+  public Encoder writeDouble(double d) throws IOException {
+    ensureCapacity(8);
+    long bits = Double.doubleToLongBits(d);
+    writeIntLE((int) bits);
+    writeIntLE((int) (bits >> 32));
+    return this;
+  }
+
+  @Override
+  public Encoder writeString(String s) throws IOException {
+    int len = s.length();
+    int utf8Length = utf8Length(s);
+    writeInt(utf8Length);
+    ensureCapacity(utf8Length);
+
+    // Encodes the string as UTF-8 directly into the buffer.
+    // Unpaired surrogates are replaced with '?', the same as done by the UTF-8 charset encoder.
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        buffer[size++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[size++] = (byte) (0xc0 | (c >> 6));
+        buffer[size++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        buffer[size++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[size++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (isSurrogate(c)) {
+        buffer[size++] = '?';
+      } else {
+        buffer[size++] = (byte) (0xe0 | (c >> 12));
+        buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[size++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes) throws IOException {
+    return writeBytes(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes, int off, int len) throws IOException {
+    writeInt(len);
+    return writeRaw(bytes, off, len);
+  }
+
+  @Override
+  public Encoder writeBytes(ByteBuffer bytes) throws IOException {
+    int len = bytes.remaining();
+    writeInt(len);
+    ensureCapacity(len);
+    bytes.duplicate().get(buffer, size, len);
+    size += len;
+    return this;
+  }
+
+  /**
+   * Returns the number of bytes of the UTF-8 encoding of the given string.
+   */
+  private int utf8Length(String s) {
+    int len = s.length();
+    int utf8Length = len;
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          utf8Length++;
+        } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+          // Two chars for four bytes
+          utf8Length += 2;
+          i++;
+        } else if (!isSurrogate(c)) {
+          utf8Length += 2;
+        }
+      }
+    }
+    return utf8Length;
+  }
+
+  private boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  /**
+   * Writes an int as 4 bytes in little endian. The caller must make sure that the buffer has enough capacity.
+   */
+  private void writeIntLE(int bits) {
+    buffer[size++] = (byte) bits;
+    buffer[size++] = (byte) (bits >> 8);
+    buffer[size++] = (byte) (bits >> 16);
+    buffer[size++] = (byte) (bits >> 24);
+  }
+
+  private void ensureCapacity(int len) {
+    if (buffer.length - size < len) {
+      buffer = Arrays.copyOf(buffer, Math.max(size + len, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * It serves as an in memory cache for {@link DatumReader} classes generated with ASM, one for each combination of
+ * data type, schema and source schema. If no class can be generated for a combination,
+ * {@link ReflectionDatumReader} is used instead.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMDatumReaderFactory.class);
+
+  private final LoadingCache<CacheKey, Optional<DatumReader<?>>> datumReaders;
+
+  @Inject
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this.datumReaders = CacheBuilder.newBuilder().build(new ASMCacheLoader(fieldAccessorFactory));
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode the given data type with the given {@link Schema}.
+   * The source schema is only known when reading, hence the {@link DatumReader} returned resolves the generated
+   * class when it reads with a source schema for the first time.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return new SchemaResolvingDatumReader<T>(type, schema);
+  }
+
+  /**
+   * A {@link DatumReader} that delegates to the reader for the source schema of the last read, which is the same
+   * source schema for most reads.
+   *
+   * @param <T> type T reader
+   */
+  private final class SchemaResolvingDatumReader<T> implements DatumReader<T> {
+
+    private final TypeToken<T> type;
+    private final Schema schema;
+    private volatile ResolvedReader<T> resolved;
+
+    private SchemaResolvingDatumReader(TypeToken<T> type, Schema schema) {
+      this.type = type;
+      this.schema = schema;
+    }
+
+    @Override
+    public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+      ResolvedReader<T> reader = resolved;
+      if (reader == null || (reader.sourceSchema != sourceSchema && !reader.sourceSchema.equals(sourceSchema))) {
+        reader = new ResolvedReader<T>(sourceSchema, getReader(sourceSchema));
+        resolved = reader;
+      }
+      return reader.reader.read(decoder, sourceSchema);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DatumReader<T> getReader(Schema sourceSchema) {
+      Optional<DatumReader<?>> reader = datumReaders.getUnchecked(new CacheKey(type, schema, sourceSchema));
+      if (reader.isPresent()) {
+        return (DatumReader<T>) reader.get();
+      }
+      return new ReflectionDatumReader<T>(schema, type);
+    }
+  }
+
+  /**
+   * A {@link DatumReader} for one source schema.
+   *
+   * @param <T> type T reader
+   */
+  private static final class ResolvedReader<T> {
+    private final Schema sourceSchema;
+    private final DatumReader<T> reader;
+
+    private ResolvedReader(Schema sourceSchema, DatumReader<T> reader) {
+      this.sourceSchema = sourceSchema;
+      this.reader = reader;
+    }
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader} {@link Class} and creating
+   * an instance of it. Generated readers are stateless, hence one instance is shared by all users.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, Optional<DatumReader<?>>> {
+
+    private final FieldAccessorFactory fieldAccessorFactory;
+    private final InstantiatorFactory instantiatorFactory = new InstantiatorFactory(true);
+    private final Map<TypeToken<?>, ByteCodeClassLoader> classloaders = Maps.newIdentityHashMap();
+
+    private ASMCacheLoader(FieldAccessorFactory fieldAccessorFactory) {
+      this.fieldAccessorFactory = fieldAccessorFactory;
+    }
+
+    @Override
+    public Optional<DatumReader<?>> load(CacheKey key) throws Exception {
+      try {
+        DatumReaderGenerator generator = new DatumReaderGenerator(fieldAccessorFactory, instantiatorFactory);
+        ClassDefinition classDef = generator.generate(key.getType(), key.getSchema(), key.getSourceSchema());
+
+        ByteCodeClassLoader classloader;
+        synchronized (classloaders) {
+          classloader = classloaders.get(key.getType());
+          if (classloader == null) {
+            // The ClassLoader of the generated DatumReader has CDAP system ClassLoader as parent.
+            // The generated class never refers to the data type directly, hence no class needs to be preserved.
+            classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+            classloaders.put(key.getType(), classloader);
+          }
+        }
+
+        Class<?> readerClass = classloader.addClass(classDef).loadClass(classDef.getClassName());
+        DatumReader<?> reader = (DatumReader<?>) readerClass.getConstructor(Object[].class)
+                                                            .newInstance(new Object[] {generator.getConstants()});
+        return Optional.<DatumReader<?>>of(reader);
+      } catch (Throwable t) {
+        // Also catches errors from loading the generated class, in which case the reflection reader is used.
+        LOG.debug("Failed to generate DatumReader for type {} with schema {} and source schema {}",
+                  key.getType(), key.getSchema(), key.getSourceSchema(), t);
+        return Optional.absent();
+      }
+    }
+  }
+
+  private static final class CacheKey {
+    private final TypeToken<?> type;
+    private final Schema schema;
+    private final Schema sourceSchema;
+
+    private CacheKey(TypeToken<?> type, Schema schema, Schema sourceSchema) {
+      this.type = type;
+      this.schema = schema;
+      this.sourceSchema = sourceSchema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public Schema getSourceSchema() {
+      return sourceSchema;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return type.equals(cacheKey.type) && schema.equals(cacheKey.schema)
+        && sourceSchema.equals(cacheKey.sourceSchema);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(type, schema, sourceSchema);
+    }
+  }
+}
@@ -0,0 +1,1169 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.asm.Signatures;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. A generated class decodes data written with one
+ * source schema into one target type and schema. Schema resolution is done when the class is generated, with the
+ * same rules as {@link ReflectionDatumReader}:
+ * <ul>
+ *   <li>Record fields are decoded in the order of the source schema and set by name. Fields that are missing in
+ *       the target schema are skipped.</li>
+ *   <li>Numeric values are promoted to wider types, and simple values are converted to string if needed.</li>
+ *   <li>A source union is resolved branch by branch, and a non-union source is read as the first matching branch
+ *       of a target union.</li>
+ * </ul>
+ * The generated class will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName implements DatumReader<InputType> {
+ *    private final FieldAccessor c0;
+ *    private final Instantiator c1;
+ *    // More constants, such as enum values and component classes of arrays
+ *
+ *    public generatedClassName(Object[] constants) {
+ *      this.c0 = (FieldAccessor) constants[0];
+ *      this.c1 = (Instantiator) constants[1];
+ *    }
+ *
+ *    @Override
+ *    public Object read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedReadMethod(decoder);
+ *    }
+ *
+ *    private Object generatedReadMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the source schema and the target type.
+ *    }
+ *
+ *    // Could have more generatedReadMethods and generatedSkipMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * The generated class never refers to the type being decoded, which could be private or loaded by a different
+ * {@link ClassLoader}. Records are created with {@link Instantiator} and populated with {@link FieldAccessor}.
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
+
+  private final FieldAccessorFactory fieldAccessorFactory;
+  private final InstantiatorFactory instantiatorFactory;
+  private final Map<String, Method> readMethods = Maps.newHashMap();
+  private final Map<String, Method> skipMethods = Maps.newHashMap();
+  private final List<Object> constants = Lists.newArrayList();
+  private final List<Type> constantTypes = Lists.newArrayList();
+  private final Map<Object, Integer> constantIndices = Maps.newHashMap();
+  private ClassWriter classWriter;
+  private Type classType;
+
+  DatumReaderGenerator(FieldAccessorFactory fieldAccessorFactory, InstantiatorFactory instantiatorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.instantiatorFactory = instantiatorFactory;
+  }
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data written with the given source schema.
+   * The generated class has a public constructor that takes the array returned by {@link #getConstants()}.
+   *
+   * @param inputType Type information of the data type to decode to.
+   * @param targetSchema Schema of the data type to decode to.
+   * @param sourceSchema Schema that the data was written with.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema targetSchema, Schema sourceSchema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    TypeToken<?> interfaceType = getInterfaceType(inputType);
+
+    // Generate the class
+    String className = getClassName(interfaceType, targetSchema, sourceSchema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, Signatures.getClassSignature(interfaceType),
+                      Type.getInternalName(Object.class),
+                      new String[]{Type.getInternalName(interfaceType.getRawType())});
+
+    // Read method
+    generateRead(inputType, targetSchema, sourceSchema);
+
+    // Constructor, which initializes the constants collected while generating the read methods
+    generateConstructor();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Returns the constants to pass to the constructor of the class returned by the last call to {@link #generate}.
+   */
+  Object[] getConstants() {
+    return constants.toArray();
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature {@code (Object[])}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Object[].class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(); // Calling Object constructor
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(Object.class), getMethod(void.class, "<init>"));
+
+    // this.cN = (ConstantType) constants[N];
+    for (int i = 0; i < constantTypes.size(); i++) {
+      Type constantType = constantTypes.get(i);
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "c" + i,
+                             constantType.getDescriptor(), null, null).visitEnd();
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.push(i);
+      mg.arrayLoad(Type.getType(Object.class));
+      mg.checkCast(constantType);
+      mg.putField(classType, "c" + i, constantType);
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   */
+  private void generateRead(TypeToken<?> inputType, Schema targetSchema, Schema sourceSchema) {
+    Method readMethod = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // return generatedReadMethod(decoder);
+    Method method = getReadMethod(inputType, sourceSchema, targetSchema);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, method);
+    if (method.getReturnType().getSort() != Type.OBJECT) {
+      mg.valueOf(method.getReturnType());
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the read method for the given type and schemas. The same method will be returned if the same
+   * type and schemas has been passed to the method before. The method returns a primitive value if the
+   * given type is primitive, and an {@link Object} otherwise.
+   *
+   * @param inputType Type information of the data type to decode to.
+   * @param sourceSchema Schema that the data was written with.
+   * @param targetSchema Schema of the data type to decode to.
+   * @return A method for decoding the given type.
+   */
+  private Method getReadMethod(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+
+    Method method = readMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    // Generate the read method (decoder)
+    method = getMethod(getValueClass(inputType), String.format("read%s", key), Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    readMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+    generateReadBody(mg, inputType, sourceSchema, targetSchema);
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the read method body, which returns the decoded value or throws {@link IOException} if the
+   * source schema cannot be resolved to the target schema and type.
+   */
+  private void generateReadBody(GeneratorAdapter mg, TypeToken<?> inputType,
+                                Schema sourceSchema, Schema targetSchema) {
+    Schema.Type sourceType = sourceSchema.getType();
+
+    if (sourceType != Schema.Type.UNION && targetSchema.getType() == Schema.Type.UNION) {
+      // Read with the first target schema that the source schema resolves to.
+      Schema resolved = null;
+      for (Schema schema : targetSchema.getUnionSchemas()) {
+        if (isResolvable(sourceSchema, schema)) {
+          resolved = schema;
+          break;
+        }
+      }
+      if (resolved == null) {
+        failResolve(mg, String.format("No matching schema to resolve %s to %s", sourceSchema, targetSchema));
+        return;
+      }
+      targetSchema = resolved;
+    }
+
+    Schema.Type targetType = targetSchema.getType();
+    if (sourceType != Schema.Type.UNION && !isResolvable(sourceSchema, targetSchema)) {
+      failResolve(mg, String.format("Fails to resolve %s to %s", sourceSchema, targetSchema));
+      return;
+    }
+
+    switch (sourceType) {
+      case NULL:
+        readNull(mg, inputType);
+        break;
+      case BYTES:
+        readBytes(mg, inputType);
+        break;
+      case ENUM:
+        readEnum(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case ARRAY:
+        readArray(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case MAP:
+        readMap(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case RECORD:
+        readRecord(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case UNION:
+        readUnion(mg, inputType, sourceSchema, targetSchema);
+        break;
+      default:
+        readSimple(mg, inputType, sourceType, targetType);
+    }
+  }
+
+  /**
+   * Generates method body for reading a null value.
+   */
+  private void readNull(GeneratorAdapter mg, TypeToken<?> inputType) {
+    if (inputType.getRawType().isPrimitive()) {
+      failResolve(mg, "Cannot resolve null to primitive type " + inputType);
+      return;
+    }
+    // decoder.readNull();
+    // return null;
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+    mg.pop();
+    mg.visitInsn(Opcodes.ACONST_NULL);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading simple schema types, with promotion of numeric types and conversion to string.
+   */
+  private void readSimple(GeneratorAdapter mg, TypeToken<?> inputType,
+                          Schema.Type sourceType, Schema.Type targetType) {
+    Class<?> rawType = inputType.getRawType();
+    Class<?> unwrapped = Primitives.unwrap(rawType);
+
+    // Check if the value can be assigned to the input type
+    if (targetType == Schema.Type.STRING) {
+      if (rawType.isPrimitive()) {
+        failResolve(mg, "Cannot resolve string to primitive type " + inputType);
+        return;
+      }
+    } else if (unwrapped.isPrimitive() && (unwrapped == boolean.class) != (targetType == Schema.Type.BOOLEAN)) {
+      failResolve(mg, String.format("Cannot resolve %s to type %s", targetType, inputType));
+      return;
+    }
+
+    // value = decoder.readXXX();
+    String readMethod = sourceType == Schema.Type.BOOLEAN
+      ? "readBool" : "read" + sourceType.name().charAt(0) + sourceType.name().substring(1).toLowerCase();
+    Class<?> valueClass = getSimpleTypeClass(sourceType);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(valueClass, readMethod));
+    Type valueType = Type.getType(valueClass);
+
+    if (targetType == Schema.Type.STRING) {
+      if (sourceType != Schema.Type.STRING) {
+        // String.valueOf(value)
+        mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "valueOf", valueClass));
+      } else if (URI.class.equals(rawType)) {
+        mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+      } else if (URL.class.equals(rawType)) {
+        // new URL(value), with the value already on the stack
+        Type urlType = Type.getType(URL.class);
+        mg.newInstance(urlType);
+        mg.dupX1();
+        mg.swap();
+        mg.invokeConstructor(urlType, getMethod(void.class, "<init>", String.class));
+      }
+      mg.returnValue();
+      return;
+    }
+
+    // Promote to the target type. A INT target can also be byte, char or short.
+    Type promotedType = Type.getType(getSimpleTypeClass(targetType));
+    if (targetType == Schema.Type.INT && (unwrapped == byte.class || unwrapped == char.class
+                                          || unwrapped == short.class)) {
+      promotedType = Type.getType(unwrapped);
+    }
+    mg.cast(valueType, promotedType);
+
+    if (rawType.isPrimitive()) {
+      mg.cast(promotedType, Type.getType(rawType));
+    } else if (unwrapped.isPrimitive()) {
+      mg.cast(promotedType, Type.getType(unwrapped));
+      mg.valueOf(Type.getType(unwrapped));
+    } else {
+      mg.valueOf(promotedType);
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading bytes, which can be decoded as {@link ByteBuffer}, byte array or {@link UUID}.
+   */
+  private void readBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    if (rawType.isPrimitive()) {
+      failResolve(mg, "Cannot resolve bytes to primitive type " + inputType);
+      return;
+    }
+
+    Type byteBufferType = Type.getType(ByteBuffer.class);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+
+    if (byte[].class.equals(rawType)) {
+      /*
+        Use the backing array if it contains exactly the bytes read, otherwise copy
+        if (buffer.hasArray() && buffer.remaining() == buffer.array().length) {
+          return buffer.array();
+        }
+        return Bytes.toBytes(buffer);
+      */
+      int buffer = mg.newLocal(byteBufferType);
+      mg.storeLocal(buffer);
+      Label copy = mg.newLabel();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(boolean.class, "hasArray"));
+      mg.ifZCmp(GeneratorAdapter.EQ, copy);
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(int.class, "remaining"));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, new Method("array", Type.getType(byte[].class), new Type[0]));
+      mg.arrayLength();
+      mg.ifICmp(GeneratorAdapter.NE, copy);
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, new Method("array", Type.getType(byte[].class), new Type[0]));
+      mg.returnValue();
+
+      mg.mark(copy);
+      mg.loadLocal(buffer);
+      mg.invokeStatic(Type.getType(Bytes.class),
+                      new Method("toBytes", Type.getType(byte[].class), new Type[] {byteBufferType}));
+    } else if (UUID.class.equals(rawType)) {
+      /*
+        if (buffer.remaining() != Longs.BYTES * 2) {
+          throw new IOException(...);
+        }
+        return new UUID(buffer.getLong(), buffer.getLong());
+      */
+      int buffer = mg.newLocal(byteBufferType);
+      mg.storeLocal(buffer);
+      Label validSize = mg.newLabel();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(int.class, "remaining"));
+      mg.push(Longs.BYTES * 2);
+      mg.ifICmp(GeneratorAdapter.EQ, validSize);
+      mg.throwException(Type.getType(IOException.class), "Invalid number of bytes for UUID.");
+      mg.mark(validSize);
+
+      Type uuidType = Type.getType(UUID.class);
+      mg.newInstance(uuidType);
+      mg.dup();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.invokeConstructor(uuidType, getMethod(void.class, "<init>", long.class, long.class));
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading enum value. The enum constants are looked up by the source index
+   * from a table that is computed when the class is generated.
+   *
+   * <pre>
+   * {@code
+   *
+   * Object value = enumTable[decoder.readInt()];
+   * if (value == null) {
+   *   throw new IOException(...);
+   * }
+   * return value;
+   * }
+   * </pre>
+   */
+  @SuppressWarnings("unchecked")
+  private void readEnum(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Class<?> rawType = inputType.getRawType();
+    if (!rawType.isEnum()) {
+      failResolve(mg, "Cannot resolve enum to type " + inputType);
+      return;
+    }
+
+    // Maps from source enum index to the target enum value, or null if the target schema doesn't have the value
+    List<String> sourceValues = ImmutableList.copyOf(sourceSchema.getEnumValues());
+    Object[] enumTable = new Object[sourceValues.size()];
+    for (int i = 0; i < enumTable.length; i++) {
+      String value = sourceValues.get(i);
+      if (targetSchema.getEnumValues().contains(value)) {
+        enumTable[i] = Enum.valueOf((Class<Enum>) rawType, value);
+      }
+    }
+
+    loadConstant(mg, enumTable, OBJECT_ARRAY_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.arrayLoad(Type.getType(Object.class));
+    mg.dup();
+    Label found = mg.newLabel();
+    mg.ifNonNull(found);
+    mg.throwException(Type.getType(IOException.class), "Enum value missing in target.");
+    mg.mark(found);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading array value into either a {@link Collection} or an array.
+   */
+  private void readArray(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Schema sourceComponent = sourceSchema.getComponentSchema();
+    Schema targetComponent = targetSchema.getComponentSchema();
+
+    if (inputType.isArray()) {
+      readToArray(mg, inputType.getComponentType(), sourceComponent, targetComponent);
+    } else if (Collection.class.isAssignableFrom(inputType.getRawType())
+      && inputType.getType() instanceof ParameterizedType) {
+      TypeToken<?> componentType = TypeToken.of(((ParameterizedType) inputType.getType())
+                                                  .getActualTypeArguments()[0]);
+      readToCollection(mg, inputType, componentType, sourceComponent, targetComponent);
+    } else {
+      failResolve(mg, "Only array or parameterized collection type is supported for array value: " + inputType);
+    }
+  }
+
+  /**
+   * Generates method body for reading array value into a {@link Collection}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection collection = (Collection) instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(readElement(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return collection;
+   * }
+   * </pre>
+   */
+  private void readToCollection(GeneratorAdapter mg, TypeToken<?> inputType, TypeToken<?> componentType,
+                                Schema sourceComponent, Schema targetComponent) {
+    Type collectionType = Type.getType(Collection.class);
+    int collection = mg.newLocal(collectionType);
+    createInstance(mg, inputType);
+    mg.checkCast(collectionType);
+    mg.storeLocal(collection);
+
+    Method readElement = getReadMethod(componentType, sourceComponent, targetComponent);
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Label readBlock = mg.newLabel();
+    Label endBlocks = mg.newLabel();
+
+    readBlockLength(mg, len);
+    mg.mark(readBlock);
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endBlocks);
+
+    Label beginFor = forBegin(mg, idx);
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    mg.loadLocal(collection);
+    invokeRead(mg, readElement);
+    mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+    mg.pop();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    readBlockLength(mg, len);
+    mg.goTo(readBlock);
+
+    mg.mark(endBlocks);
+    mg.loadLocal(collection);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading array value into an array. The array is allocated with the size of the
+   * first block and grown for every following block. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * ComponentType[] array = new ComponentType[len];
+   * int size = 0;
+   * while (len != 0) {
+   *   if (size + len > array.length) {
+   *     array = Arrays.copyOf(array, size + len);
+   *   }
+   *   for (int i = 0; i < len; i++) {
+   *     array[size++] = readElement(decoder);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return array;
+   * }
+   * </pre>
+   */
+  private void readToArray(GeneratorAdapter mg, TypeToken<?> componentType,
+                           Schema sourceComponent, Schema targetComponent) {
+    Class<?> componentClass = componentType.getRawType();
+    Type elementType = componentClass.isPrimitive() ? Type.getType(componentClass) : Type.getType(Object.class);
+    Type arrayType = componentClass.isPrimitive()
+      ? Type.getType(Array.newInstance(componentClass, 0).getClass()) : OBJECT_ARRAY_TYPE;
+
+    Method readElement = getReadMethod(componentType, sourceComponent, targetComponent);
+    int len = mg.newLocal(Type.INT_TYPE);
+    int array = mg.newLocal(arrayType);
+    int size = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+
+    readBlockLength(mg, len);
+    if (componentClass.isPrimitive()) {
+      mg.loadLocal(len);
+      mg.newArray(elementType);
+    } else {
+      // The array component class might not be accessible, hence uses Array.newInstance(componentClass, len)
+      loadConstant(mg, componentClass, Type.getType(Class.class));
+      mg.loadLocal(len);
+      mg.invokeStatic(Type.getType(Array.class), getMethod(Object.class, "newInstance", Class.class, int.class));
+      mg.checkCast(arrayType);
+    }
+    mg.storeLocal(array);
+    mg.push(0);
+    mg.storeLocal(size);
+
+    Label readBlock = mg.newLabel();
+    Label endBlocks = mg.newLabel();
+    mg.mark(readBlock);
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endBlocks);
+
+    // Grow the array if needed
+    Label noGrow = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.loadLocal(array);
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.LE, noGrow);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.invokeStatic(Type.getType(Arrays.class), new Method("copyOf", arrayType, new Type[] {arrayType, Type.INT_TYPE}));
+    mg.storeLocal(array);
+    mg.mark(noGrow);
+
+    Label beginFor = forBegin(mg, idx);
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    // array[size++] = readElement(decoder);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    invokeRead(mg, readElement);
+    mg.arrayStore(elementType);
+    mg.iinc(size, 1);
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    readBlockLength(mg, len);
+    mg.goTo(readBlock);
+
+    mg.mark(endBlocks);
+    mg.loadLocal(array);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading map value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Map map = (Map) instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(readKey(decoder), readValue(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return map;
+   * }
+   * </pre>
+   */
+  private void readMap(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    if (!Map.class.isAssignableFrom(inputType.getRawType()) || !(inputType.getType() instanceof ParameterizedType)) {
+      failResolve(mg, "Only parameterized map type is supported for map value: " + inputType);
+      return;
+    }
+    java.lang.reflect.Type[] mapArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+    Map.Entry<Schema, Schema> sourceEntry = sourceSchema.getMapSchema();
+    Map.Entry<Schema, Schema> targetEntry = targetSchema.getMapSchema();
+
+    Type mapType = Type.getType(Map.class);
+    int map = mg.newLocal(mapType);
+    createInstance(mg, inputType);
+    mg.checkCast(mapType);
+    mg.storeLocal(map);
+
+    Method readKey = getReadMethod(TypeToken.of(mapArgs[0]), sourceEntry.getKey(), targetEntry.getKey());
+    Method readValue = getReadMethod(TypeToken.of(mapArgs[1]), sourceEntry.getValue(), targetEntry.getValue());
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Label readBlock = mg.newLabel();
+    Label endBlocks = mg.newLabel();
+
+    readBlockLength(mg, len);
+    mg.mark(readBlock);
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endBlocks);
+
+    Label beginFor = forBegin(mg, idx);
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    mg.loadLocal(map);
+    invokeRead(mg, readKey);
+    invokeRead(mg, readValue);
+    mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+    mg.pop();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    readBlockLength(mg, len);
+    mg.goTo(readBlock);
+
+    mg.mark(endBlocks);
+    mg.loadLocal(map);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading record. Fields are read in the order of the source schema. Fields that
+   * are not in the target schema are skipped. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Object record = instantiator.create();
+   * fieldAccessor1.setInt(record, readField1(decoder));
+   * skipField2(decoder);
+   * fieldAccessor3.set(record, readField3(decoder));
+   * return record;
+   * }
+   * </pre>
+   */
+  private void readRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    if (inputType.getRawType().isPrimitive() || inputType.getRawType().isArray()) {
+      failResolve(mg, "Cannot resolve record to type " + inputType);
+      return;
+    }
+
+    Type objectType = Type.getType(Object.class);
+    Type accessorType = Type.getType(FieldAccessor.class);
+    int record = mg.newLocal(objectType);
+    createInstance(mg, inputType);
+    mg.storeLocal(record);
+
+    try {
+      for (Schema.Field sourceField : sourceSchema.getFields()) {
+        Schema.Field targetField = targetSchema.getField(sourceField.getName());
+        if (targetField == null) {
+          skip(mg, sourceField.getSchema());
+          continue;
+        }
+
+        String fieldName = sourceField.getName();
+        TypeToken<?> fieldType = inputType.resolveType(Fields.findField(inputType, fieldName).getGenericType());
+        loadConstant(mg, fieldAccessorFactory.getFieldAccessor(inputType, fieldName), accessorType);
+        mg.loadLocal(record);
+        invokeRead(mg, getReadMethod(fieldType, sourceField.getSchema(), targetField.getSchema()));
+        mg.invokeInterface(accessorType, getSetterMethod(fieldType));
+      }
+    } catch (NoSuchFieldException e) {
+      throw Throwables.propagate(e);
+    }
+
+    mg.loadLocal(record);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading union. Each branch of the source union is resolved separately.
+   *
+   * <pre>
+   * {@code
+   *
+   * int idx = decoder.readInt();
+   * if (idx == 0) {
+   *   return readBranch0(decoder);
+   * }
+   * if (idx == 1) {
+   *   return readBranch1(decoder);
+   * }
+   * throw new IOException(...);
+   * }
+   * </pre>
+   */
+  private void readUnion(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(idx);
+
+    List<Schema> sourceSchemas = sourceSchema.getUnionSchemas();
+    for (int i = 0; i < sourceSchemas.size(); i++) {
+      Schema sourceValueSchema = sourceSchemas.get(i);
+      Schema targetValueSchema = resolveUnionBranch(i, sourceValueSchema, targetSchema);
+
+      Label nextBranch = mg.newLabel();
+      mg.loadLocal(idx);
+      mg.push(i);
+      mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+      if (targetValueSchema == null) {
+        mg.throwException(Type.getType(IOException.class),
+                          String.format("Fail to resolve %s to %s", sourceValueSchema, targetSchema));
+      } else {
+        invokeRead(mg, getReadMethod(inputType, sourceValueSchema, targetValueSchema));
+        mg.returnValue();
+      }
+      mg.mark(nextBranch);
+    }
+    mg.throwException(Type.getType(IOException.class), "Invalid union index for " + sourceSchema);
+  }
+
+  /**
+   * Returns the target schema for reading the given branch of a source union, or {@code null} if there is none.
+   */
+  @Nullable
+  private Schema resolveUnionBranch(int idx, Schema sourceValueSchema, Schema targetSchema) {
+    if (targetSchema.getType() != Schema.Type.UNION) {
+      return targetSchema;
+    }
+    // Try the branch with the same index first, then the first branch that the source value resolves to.
+    Schema targetValueSchema = targetSchema.getUnionSchema(idx);
+    if (targetValueSchema != null && targetValueSchema.getType() == sourceValueSchema.getType()) {
+      return targetValueSchema;
+    }
+    for (Schema schema : targetSchema.getUnionSchemas()) {
+      if (isResolvable(sourceValueSchema, schema)) {
+        return schema;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Generates code for skipping a value of the given schema. Simple values are skipped inline, others with a call
+   * to a generated skip method.
+   */
+  private void skip(GeneratorAdapter mg, Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(boolean.class, "readBool"));
+        mg.pop();
+        break;
+      case INT:
+      case ENUM:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        mg.pop();
+        break;
+      case LONG:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(long.class, "readLong"));
+        mg.pop2();
+        break;
+      case FLOAT:
+      case DOUBLE:
+      case BYTES:
+      case STRING:
+        String skipMethod = "skip" + schema.getType().name().charAt(0)
+                                   + schema.getType().name().substring(1).toLowerCase();
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(void.class, skipMethod));
+        break;
+      default:
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, getSkipMethod(schema));
+    }
+  }
+
+  /**
+   * Returns the method for skipping a value of the given array, map, record or union schema.
+   */
+  private Method getSkipMethod(Schema schema) {
+    String key = schema.getSchemaHash().toString();
+    Method method = skipMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    method = getMethod(void.class, String.format("skip%s", key), Decoder.class);
+    // Put the method into map first before generating the body in order to support recursive data type.
+    skipMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+    switch (schema.getType()) {
+      case ARRAY:
+        skipBlocks(mg, schema.getComponentSchema(), null);
+        break;
+      case MAP:
+        skipBlocks(mg, schema.getMapSchema().getKey(), schema.getMapSchema().getValue());
+        break;
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          skip(mg, field.getSchema());
+        }
+        break;
+      case UNION:
+        int idx = mg.newLocal(Type.INT_TYPE);
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        mg.storeLocal(idx);
+        List<Schema> schemas = schema.getUnionSchemas();
+        for (int i = 0; i < schemas.size(); i++) {
+          Label nextBranch = mg.newLabel();
+          mg.loadLocal(idx);
+          mg.push(i);
+          mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+          skip(mg, schemas.get(i));
+          mg.returnValue();
+          mg.mark(nextBranch);
+        }
+        mg.throwException(Type.getType(IOException.class), "Invalid union index for " + schema);
+        mg.endMethod();
+        return method;
+      default:
+        skip(mg, schema);
+    }
+    mg.returnValue();
+    mg.endMethod();
+    return method;
+  }
+
+  /**
+   * Generates code for skipping the blocks of an array or a map.
+   */
+  private void skipBlocks(GeneratorAdapter mg, Schema schema, @Nullable Schema valueSchema) {
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Label readBlock = mg.newLabel();
+    Label endBlocks = mg.newLabel();
+
+    readBlockLength(mg, len);
+    mg.mark(readBlock);
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endBlocks);
+
+    Label beginFor = forBegin(mg, idx);
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+    skip(mg, schema);
+    if (valueSchema != null) {
+      skip(mg, valueSchema);
+    }
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    readBlockLength(mg, len);
+    mg.goTo(readBlock);
+    mg.mark(endBlocks);
+  }
+
+  /**
+   * Generates code for {@code len = decoder.readInt();}.
+   */
+  private void readBlockLength(GeneratorAdapter mg, int len) {
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+  }
+
+  /**
+   * Generates code for {@code idx = 0} and marks the beginning of a for loop.
+   */
+  private Label forBegin(GeneratorAdapter mg, int idx) {
+    mg.push(0);
+    mg.storeLocal(idx);
+    return mg.mark();
+  }
+
+  /**
+   * Generates code for calling a read method, with the result left on the stack.
+   */
+  private void invokeRead(GeneratorAdapter mg, Method method) {
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, method);
+  }
+
+  /**
+   * Generates code for creating an instance of the given type with an {@link Instantiator}.
+   */
+  private void createInstance(GeneratorAdapter mg, TypeToken<?> type) {
+    Type instantiatorType = Type.getType(Instantiator.class);
+    loadConstant(mg, instantiatorFactory.get(type), instantiatorType);
+    mg.invokeInterface(instantiatorType, getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code for loading a constant of the generated class. Every distinct constant is stored in one field.
+   */
+  private void loadConstant(GeneratorAdapter mg, Object value, Type type) {
+    Integer idx = constantIndices.get(value);
+    if (idx == null || !constantTypes.get(idx).equals(type)) {
+      idx = constants.size();
+      constants.add(value);
+      constantTypes.add(type);
+      if (!(value instanceof Object[])) {
+        constantIndices.put(value, idx);
+      }
+    }
+    mg.loadThis();
+    mg.getField(classType, "c" + idx, type);
+  }
+
+  /**
+   * Generates code that throws {@link IOException} with the given message.
+   */
+  private void failResolve(GeneratorAdapter mg, String message) {
+    mg.throwException(Type.getType(IOException.class), message);
+  }
+
+  /**
+   * Returns whether a value of the source schema can be read with the target schema, following the same rules as
+   * {@link ReflectionReader}. A source union is always considered resolvable, as it is resolved per branch.
+   */
+  private boolean isResolvable(Schema sourceSchema, Schema targetSchema) {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetType = targetSchema.getType();
+
+    if (sourceType == Schema.Type.UNION) {
+      return true;
+    }
+    if (targetType == Schema.Type.UNION) {
+      for (Schema schema : targetSchema.getUnionSchemas()) {
+        if (isResolvable(sourceSchema, schema)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    switch (sourceType) {
+      case BOOLEAN:
+        return targetType == Schema.Type.BOOLEAN || targetType == Schema.Type.STRING;
+      case INT:
+        return targetType == Schema.Type.INT || targetType == Schema.Type.LONG || targetType == Schema.Type.FLOAT
+          || targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case LONG:
+        return targetType == Schema.Type.LONG || targetType == Schema.Type.FLOAT
+          || targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case FLOAT:
+        return targetType == Schema.Type.FLOAT || targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case DOUBLE:
+        return targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      default:
+        return sourceType == targetType;
+    }
+  }
+
+  /**
+   * Returns the class of the value returned by {@link Decoder} for the given simple schema type.
+   */
+  private Class<?> getSimpleTypeClass(Schema.Type type) {
+    switch (type) {
+      case BOOLEAN:
+        return boolean.class;
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      case STRING:
+        return String.class;
+    }
+    throw new IllegalArgumentException("Not a simple type: " + type);
+  }
+
+  /**
+   * Returns the class of the value returned by the read method for the given type, which is the type itself if it
+   * is primitive, or {@link Object} otherwise.
+   */
+  private Class<?> getValueClass(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    return rawType.isPrimitive() ? rawType : Object.class;
+  }
+
+  /**
+   * Returns the method for calling {@link FieldAccessor} to set a field based on the data type.
+   * @param type Data type.
+   * @return A {@link Method} for calling {@link FieldAccessor}.
+   */
+  private Method getSetterMethod(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive()) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    } else {
+      return getMethod(void.class, "set", Object.class, Object.class);
+    }
+  }
+
+  private <T> TypeToken<DatumReader<T>> getInterfaceType(TypeToken<T> type) {
+    return new TypeToken<DatumReader<T>>() {
+    }.where(new TypeParameter<T>() {
+    }, type);
+  }
+
+  private String getClassName(TypeToken<?> interfaceType, Schema targetSchema, Schema sourceSchema) {
+    return String.format("%s/%s%s%s%s",
+                         interfaceType.getRawType().getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(TypeToken.of(((ParameterizedType) interfaceType.getType())
+                                                          .getActualTypeArguments()[0])),
+                         interfaceType.getRawType().getSimpleName(),
+                         targetSchema.getSchemaHash(), sourceSchema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Bytes;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tests for decoding with {@link DatumReader} generated by {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMFieldAccessorFactory FIELD_ACCESSOR_FACTORY = new ASMFieldAccessorFactory();
+  private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY = new ASMDatumWriterFactory(FIELD_ACCESSOR_FACTORY);
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY = new ASMDatumReaderFactory(FIELD_ACCESSOR_FACTORY);
+
+  /**
+   *
+   */
+  public static enum TestEnum {
+    VALUE1, VALUE2, VALUE3, VALUE4
+  }
+
+  /**
+   *
+   */
+  public static final class Record {
+    private int i;
+    private Short s;
+    private boolean b;
+    private double d;
+    private String str;
+    private List<String> list;
+    private Map<String, Long> map;
+    private TestEnum e;
+    private byte[] bytes;
+    private UUID uuid;
+    private long[] longs;
+    private Record[] children;
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Record other = (Record) o;
+      return i == other.i && b == other.b && d == other.d && Objects.equal(s, other.s)
+        && Objects.equal(str, other.str) && Objects.equal(list, other.list) && Objects.equal(map, other.map)
+        && e == other.e && Arrays.equals(bytes, other.bytes) && Objects.equal(uuid, other.uuid)
+        && Arrays.equals(longs, other.longs) && Arrays.equals(children, other.children);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(i, s, b, d, str, list, map, e, uuid);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    private int data;
+    private Node left;
+    private Node right;
+
+    public Node(int data, Node left, Node right) {
+      this.data = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Node other = (Node) o;
+      return data == other.data && Objects.equal(left, other.left) && Objects.equal(right, other.right);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(data, left, right);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Source {
+    private int i;
+    private String name;
+    private Map<Integer, String> properties;
+    private int[] numbers;
+    private float f;
+    private URL url;
+    private List<String> dropped;
+  }
+
+  /**
+   *
+   */
+  public static final class Target {
+    private float f;
+    private Long i;
+    private String extra;
+    private long[] numbers;
+    private Map<String, String> properties;
+    private URI url;
+    private String name;
+  }
+
+  private <T> Schema getSchema(TypeToken<T> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  private <T> byte[] encode(TypeToken<T> type, T value) throws UnsupportedTypeException, IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DATUM_WRITER_FACTORY.create(type, getSchema(type)).encode(value, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private <T> T decode(TypeToken<T> type, Schema sourceSchema, byte[] bytes) throws UnsupportedTypeException,
+                                                                                   IOException {
+    DatumReader<T> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+  }
+
+  private <T> T roundTrip(TypeToken<T> type, T value) throws UnsupportedTypeException, IOException {
+    return decode(type, getSchema(type), encode(type, value));
+  }
+
+  @Test
+  public void testSimpleTypes() throws UnsupportedTypeException, IOException {
+    Assert.assertEquals((short) 3000, roundTrip(TypeToken.of(Short.class), (short) 3000).shortValue());
+    Assert.assertEquals(12234234, roundTrip(TypeToken.of(Integer.class), 12234234).intValue());
+    Assert.assertEquals(3.14d, roundTrip(TypeToken.of(Double.class), 3.14d), 0.000001d);
+    Assert.assertEquals(Boolean.TRUE, roundTrip(TypeToken.of(Boolean.class), true));
+    Assert.assertEquals("Testing message", roundTrip(TypeToken.of(String.class), "Testing message"));
+    Assert.assertEquals(URI.create("http://www.abc.com"),
+                        roundTrip(TypeToken.of(URI.class), URI.create("http://www.abc.com")));
+
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, roundTrip(TypeToken.of(UUID.class), uuid));
+
+    ByteBuffer buffer = ByteBuffer.wrap("Testing bytes".getBytes(Charsets.UTF_8));
+    Assert.assertEquals(buffer, roundTrip(TypeToken.of(ByteBuffer.class), buffer));
+  }
+
+  @Test
+  public void testEnum() throws UnsupportedTypeException, IOException {
+    TypeToken<TestEnum> type = TypeToken.of(TestEnum.class);
+    DatumReader<TestEnum> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(
+      Bytes.concat(encode(type, TestEnum.VALUE1), encode(type, TestEnum.VALUE4),
+                                                encode(type, TestEnum.VALUE3))));
+
+    Assert.assertEquals(TestEnum.VALUE1, reader.read(decoder, getSchema(type)));
+    Assert.assertEquals(TestEnum.VALUE4, reader.read(decoder, getSchema(type)));
+    Assert.assertEquals(TestEnum.VALUE3, reader.read(decoder, getSchema(type)));
+
+    // Source enum with values in different order and a value that is missing in the target
+    Schema sourceSchema = Schema.enumWith("VALUE3", "UNKNOWN", "VALUE1");
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new BinaryEncoder(os).writeInt(2).writeInt(0).writeInt(1);
+    decoder = new BinaryDecoder(new ByteArrayInputStream(os.toByteArray()));
+
+    Assert.assertEquals(TestEnum.VALUE1, reader.read(decoder, sourceSchema));
+    Assert.assertEquals(TestEnum.VALUE3, reader.read(decoder, sourceSchema));
+    try {
+      reader.read(decoder, sourceSchema);
+      Assert.fail("Expected IOException for enum value missing in target");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testContainers() throws UnsupportedTypeException, IOException {
+    int[] ints = {1, 2, 3, 4, -5, -6, -7, -8};
+    Assert.assertArrayEquals(ints, roundTrip(new TypeToken<int[]>() { }, ints));
+
+    String[] strings = {"1", "2", null, "3"};
+    Assert.assertArrayEquals(strings, roundTrip(new TypeToken<String[]>() { }, strings));
+
+    List<Long> list = ImmutableList.of(1L, 10L, 100L, 1000L);
+    Assert.assertEquals(list, roundTrip(new TypeToken<List<Long>>() { }, list));
+
+    Map<String, List<String>> map = ImmutableMap.<String, List<String>>of("k1", Lists.newArrayList("v1"),
+                                                                          "k2", Lists.newArrayList("v2", null));
+    Assert.assertEquals(map, roundTrip(new TypeToken<Map<String, List<String>>>() { }, map));
+
+    // Decode a list as set and as array
+    TypeToken<List<String>> listType = new TypeToken<List<String>>() { };
+    byte[] bytes = encode(listType, ImmutableList.of("1", "2", "3", "1"));
+    Assert.assertEquals(Sets.newHashSet("1", "2", "3"), decode(new TypeToken<Set<String>>() { },
+                                                                getSchema(listType), bytes));
+    Assert.assertArrayEquals(new String[] {"1", "2", "3", "1"},
+                             decode(new TypeToken<String[]>() { }, getSchema(listType), bytes));
+  }
+
+  @Test
+  public void testMultipleBlocks() throws UnsupportedTypeException, IOException {
+    // Arrays written in more than one block, followed by another value
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new BinaryEncoder(os).writeInt(2).writeInt(1).writeInt(2).writeInt(3).writeInt(3).writeInt(4).writeInt(5)
+                         .writeInt(0).writeInt(6);
+    byte[] bytes = os.toByteArray();
+
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("numbers", Schema.arrayOf(Schema.of(Schema.Type.INT))),
+                                    Schema.Field.of("last", Schema.of(Schema.Type.INT)));
+
+    TypeToken<IntArrayRecord> arrayType = TypeToken.of(IntArrayRecord.class);
+    IntArrayRecord arrayRecord = DATUM_READER_FACTORY.create(arrayType, schema)
+      .read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+    Assert.assertArrayEquals(new int[] {1, 2, 3, 4, 5}, arrayRecord.numbers);
+    Assert.assertEquals(6, arrayRecord.last);
+
+    // Skipping the array in the target schema
+    Schema lastOnly = Schema.recordOf("record", Schema.Field.of("last", Schema.of(Schema.Type.INT)));
+    arrayRecord = DATUM_READER_FACTORY.create(arrayType, lastOnly)
+      .read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+    Assert.assertNull(arrayRecord.numbers);
+    Assert.assertEquals(6, arrayRecord.last);
+  }
+
+  /**
+   *
+   */
+  public static final class IntArrayRecord {
+    private int[] numbers;
+    private int last;
+  }
+
+  @Test
+  public void testRecord() throws UnsupportedTypeException, IOException {
+    Record child = new Record();
+    child.str = "child";
+    child.list = ImmutableList.of();
+    child.map = ImmutableMap.of();
+    child.longs = new long[0];
+
+    Record record = new Record();
+    record.i = 10;
+    record.s = 20;
+    record.b = true;
+    record.d = 30.5d;
+    record.str = "testing";
+    record.list = ImmutableList.of("a", "b", "c");
+    record.map = ImmutableMap.of("x", 1L, "y", 2L);
+    record.e = TestEnum.VALUE2;
+    record.bytes = new byte[] {1, 2, 3};
+    record.uuid = UUID.randomUUID();
+    record.longs = new long[] {4L, 5L};
+    record.children = new Record[] {child, null};
+
+    Assert.assertEquals(record, roundTrip(TypeToken.of(Record.class), record));
+
+    List<Record> records = ImmutableList.of(record);
+    Assert.assertEquals(records, roundTrip(new TypeToken<List<Record>>() { }, records));
+
+    Record[][] recordArray = new Record[][] {{ record }};
+    Assert.assertArrayEquals(recordArray, roundTrip(new TypeToken<Record[][]>() { }, recordArray));
+  }
+
+  @Test
+  public void testTree() throws UnsupportedTypeException, IOException {
+    Node root = new Node(1, new Node(2, null, new Node(3, null, null)), new Node(4, new Node(5, null, null), null));
+    Assert.assertEquals(root, roundTrip(TypeToken.of(Node.class), root));
+  }
+
+  @Test
+  public void testStreamEvent() throws UnsupportedTypeException, IOException {
+    TypeToken<StreamEvent> type = TypeToken.of(StreamEvent.class);
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+    StreamEvent value = roundTrip(type, event);
+
+    Assert.assertEquals(event.getHeaders(), value.getHeaders());
+    Assert.assertEquals(event.getBody(), value.getBody());
+  }
+
+  @Test
+  public void testSchemaResolution() throws UnsupportedTypeException, IOException {
+    Source source = new Source();
+    source.i = 10;
+    source.name = "name";
+    source.properties = Maps.newHashMap();
+    source.properties.put(1, "one");
+    source.properties.put(2, null);
+    source.numbers = new int[] {1, 2};
+    source.f = 1.5f;
+    source.url = new URL("http://www.yahoo.com");
+    source.dropped = ImmutableList.of("dropped");
+
+    // The source is written with the reflection writer, to make sure the generated reader is compatible with it
+    Schema sourceSchema = getSchema(TypeToken.of(Source.class));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ReflectionDatumWriter<Source>(sourceSchema).encode(source, new BinaryEncoder(os));
+
+    Target target = decode(TypeToken.of(Target.class), sourceSchema, os.toByteArray());
+    Assert.assertEquals(1.5d, target.f, 0.000001d);
+    Assert.assertEquals(Long.valueOf(10L), target.i);
+    Assert.assertNull(target.extra);
+    Assert.assertArrayEquals(new long[] {1L, 2L}, target.numbers);
+    Assert.assertEquals(ImmutableMap.of("1", "one"), Maps.filterValues(target.properties, Predicates.notNull()));
+    Assert.assertTrue(target.properties.containsKey("2"));
+    Assert.assertEquals(URI.create("http://www.yahoo.com"), target.url);
+    Assert.assertEquals("name", target.name);
+  }
+
+  @Test
+  public void testUnionPromotion() throws UnsupportedTypeException, IOException {
+    // A non-union source resolves to the matching branch of a target union
+    Schema sourceSchema = Schema.of(Schema.Type.INT);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new BinaryEncoder(os).writeInt(1234);
+    Assert.assertEquals(Long.valueOf(1234L), DATUM_READER_FACTORY
+      .create(TypeToken.of(Long.class), Schema.nullableOf(Schema.of(Schema.Type.LONG)))
+      .read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())), sourceSchema));
+
+    // A source union resolves each branch separately
+    sourceSchema = Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.INT));
+    os.reset();
+    new BinaryEncoder(os).writeInt(1).writeInt(5678).writeInt(0);
+    DatumReader<String> reader = DATUM_READER_FACTORY.create(TypeToken.of(String.class),
+                                                             Schema.nullableOf(Schema.of(Schema.Type.STRING)));
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals("5678", reader.read(decoder, sourceSchema));
+    Assert.assertNull(reader.read(decoder, sourceSchema));
+  }
+}
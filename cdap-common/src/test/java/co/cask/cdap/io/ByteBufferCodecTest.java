@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests for {@link ByteBufferEncoder} and {@link ByteBufferDecoder}.
+ */
+public class ByteBufferCodecTest {
+
+  private static final String[] STRINGS = {
+    "", "This is a testing message",
+    Character.toString((char) 200) + Character.toString((char) 20000) + Character.toString((char) 40000),
+    // Surrogate pair
+    "a\ud83d\ude00b",
+    // Unpaired surrogates
+    "a\ud83db", "\ude00", "\ud83d"
+  };
+
+  private void encode(Encoder encoder) throws IOException {
+    encoder.writeNull();
+    encoder.writeBool(true).writeBool(false);
+    for (int i : new int[] { 0, -1, 1234, -1234, Short.MAX_VALUE, Short.MIN_VALUE,
+                             Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+      encoder.writeInt(i);
+    }
+    for (long l : new long[] { 0L, -20L, 600000L, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                               Long.MAX_VALUE, Long.MIN_VALUE }) {
+      encoder.writeLong(l);
+    }
+    encoder.writeFloat(3.14f).writeFloat(Float.MAX_VALUE).writeFloat(Float.MIN_VALUE);
+    encoder.writeDouble(Math.E).writeDouble(Double.MAX_VALUE).writeDouble(Double.MIN_VALUE);
+    for (String str : STRINGS) {
+      encoder.writeString(str);
+    }
+    encoder.writeBytes(new byte[] { 1, 2, 3 });
+    encoder.writeBytes(new byte[] { 1, 2, 3, 4, 5 }, 1, 3);
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 5, 6, 7, 8 });
+    buffer.position(1);
+    encoder.writeBytes(buffer);
+    Assert.assertEquals(1, buffer.position());
+  }
+
+  private void decode(Decoder decoder) throws IOException {
+    Assert.assertNull(decoder.readNull());
+    Assert.assertTrue(decoder.readBool());
+    Assert.assertFalse(decoder.readBool());
+    for (int i : new int[] { 0, -1, 1234, -1234, Short.MAX_VALUE, Short.MIN_VALUE,
+                             Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+      Assert.assertEquals(i, decoder.readInt());
+    }
+    for (long l : new long[] { 0L, -20L, 600000L, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                               Long.MAX_VALUE, Long.MIN_VALUE }) {
+      Assert.assertEquals(l, decoder.readLong());
+    }
+    Assert.assertEquals(3.14f, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Float.MAX_VALUE, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Float.MIN_VALUE, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Math.E, decoder.readDouble(), 0.0000001d);
+    Assert.assertEquals(Double.MAX_VALUE, decoder.readDouble(), 0.0000001d);
+    Assert.assertEquals(Double.MIN_VALUE, decoder.readDouble(), 0.0000001d);
+    for (String str : STRINGS) {
+      // Unpaired surrogates are encoded as '?'
+      Assert.assertEquals(new String(str.getBytes(Charsets.UTF_8), Charsets.UTF_8), decoder.readString());
+    }
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), decoder.readBytes());
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 2, 3, 4 }), decoder.readBytes());
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 6, 7, 8 }), decoder.readBytes());
+  }
+
+  @Test
+  public void testCompatibility() throws IOException {
+    // Encodes with BinaryEncoder and ByteBufferEncoder, the results should be the same
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    encode(new BinaryEncoder(os));
+    ByteBufferEncoder encoder = new ByteBufferEncoder(1);
+    encode(encoder);
+    Assert.assertArrayEquals(os.toByteArray(), encoder.toByteArray());
+    Assert.assertEquals(ByteBuffer.wrap(os.toByteArray()), encoder.getBuffer());
+
+    // Decodes with both BinaryDecoder and ByteBufferDecoder
+    decode(new BinaryDecoder(new ByteArrayInputStream(encoder.toByteArray())));
+
+    ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffer.wrap(encoder.toByteArray()));
+    decode(decoder);
+    Assert.assertFalse(decoder.getBuffer().hasRemaining());
+
+    // Decodes with zero copy and string cache from a direct buffer
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(encoder.size());
+    directBuffer.put(encoder.getBuffer()).flip();
+    decoder = new ByteBufferDecoder(directBuffer, true, 4);
+    decode(decoder);
+    Assert.assertFalse(decoder.getBuffer().hasRemaining());
+
+    // Encoder can be reused after reset
+    encoder.reset();
+    encode(encoder);
+    Assert.assertArrayEquals(os.toByteArray(), encoder.toByteArray());
+  }
+
+  @Test
+  public void testStringCache() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeString("tag1").writeString("tag2").writeString("tag1").writeString("tag2");
+
+    ByteBufferDecoder decoder = new ByteBufferDecoder(encoder.getBuffer(), false, 16);
+    String tag1 = decoder.readString();
+    String tag2 = decoder.readString();
+    Assert.assertEquals("tag1", tag1);
+    Assert.assertEquals("tag2", tag2);
+    Assert.assertSame(tag1, decoder.readString());
+    Assert.assertSame(tag2, decoder.readString());
+
+    // Cache is kept after reset
+    Assert.assertSame(tag1, decoder.reset(encoder.getBuffer()).readString());
+  }
+
+  @Test
+  public void testZeroCopy() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeBytes(new byte[] { 1, 2, 3 }).writeInt(10);
+    ByteBuffer buffer = encoder.getBuffer();
+
+    ByteBuffer bytes = new ByteBufferDecoder(buffer.duplicate(), true, 0).readBytes();
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), bytes);
+
+    // The slice shares content with the buffer
+    buffer.put(1, (byte) 10);
+    Assert.assertEquals(10, bytes.get(0));
+
+    // Without zero copy, the bytes are copied
+    ByteBufferDecoder decoder = new ByteBufferDecoder(buffer.duplicate());
+    bytes = decoder.readBytes();
+    buffer.put(1, (byte) 1);
+    Assert.assertEquals(10, bytes.get(0));
+    Assert.assertEquals(10, decoder.readInt());
+  }
+
+  @Test
+  public void testSkipAndEOF() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeFloat(1.0f).writeDouble(2.0d).writeString("skip").writeBytes(new byte[] { 1, 2 }).writeInt(5);
+
+    ByteBufferDecoder decoder = new ByteBufferDecoder(encoder.getBuffer());
+    decoder.skipFloat();
+    decoder.skipDouble();
+    decoder.skipString();
+    decoder.skipBytes();
+    Assert.assertEquals(5, decoder.readInt());
+
+    try {
+      decoder.readInt();
+      Assert.fail("Expected EOFException");
+    } catch (EOFException e) {
+      // Expected
+    }
+
+    // Truncated string
+    encoder.reset().writeString("truncated");
+    ByteBuffer buffer = encoder.getBuffer();
+    buffer.limit(buffer.limit() - 1);
+    try {
+      new ByteBufferDecoder(buffer).readString();
+      Assert.fail("Expected EOFException");
+    } catch (EOFException e) {
+      // Expected
+    }
+  }
+}
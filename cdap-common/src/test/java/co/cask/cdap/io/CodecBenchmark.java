@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Benchmark for encoding and decoding with the stream based {@link BinaryEncoder} and {@link BinaryDecoder},
+ * compared to the array based {@link ByteBufferEncoder} and {@link ByteBufferDecoder}. Each record is similar
+ * to a metric value: a timestamp, a few tags with values that repeat, a metric name and a value, plus a body.
+ *
+ * Usage: CodecBenchmark [records]
+ */
+public class CodecBenchmark {
+
+  private static final String[] TAG_NAMES = { "namespace", "app", "flow", "flowlet", "instance" };
+  private static final String[] TAG_VALUES = { "default", "PurchaseHistory", "PurchaseFlow", "reader", "0" };
+  private static final byte[] BODY = new byte[64];
+
+  private static void encode(Encoder encoder, int record) throws IOException {
+    encoder.writeLong(System.currentTimeMillis());
+    encoder.writeInt(TAG_NAMES.length);
+    for (int i = 0; i < TAG_NAMES.length; i++) {
+      encoder.writeString(TAG_NAMES[i]).writeString(TAG_VALUES[i]);
+    }
+    encoder.writeInt(0);
+    encoder.writeString("process.events.processed").writeLong(record).writeDouble(record * 0.5d);
+    encoder.writeBytes(BODY);
+  }
+
+  private static long decode(Decoder decoder) throws IOException {
+    long sum = decoder.readLong();
+    int len = decoder.readInt();
+    while (len != 0) {
+      for (int i = 0; i < len; i++) {
+        sum += decoder.readString().length() + decoder.readString().length();
+      }
+      len = decoder.readInt();
+    }
+    sum += decoder.readString().length() + decoder.readLong() + (long) decoder.readDouble();
+    return sum + decoder.readBytes().remaining();
+  }
+
+  private static long runBinaryEncoder(int records) throws IOException {
+    long start = System.nanoTime();
+    for (int i = 0; i < records; i++) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      encode(new BinaryEncoder(os), i);
+      os.toByteArray();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long runByteBufferEncoder(int records) throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    long start = System.nanoTime();
+    for (int i = 0; i < records; i++) {
+      encoder.reset();
+      encode(encoder, i);
+      encoder.toByteArray();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long runBinaryDecoder(byte[] data, int records) throws IOException {
+    long sum = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < records; i++) {
+      sum += decode(new BinaryDecoder(new ByteArrayInputStream(data)));
+    }
+    long time = System.nanoTime() - start;
+    checkSum(sum);
+    return time;
+  }
+
+  private static long runByteBufferDecoder(byte[] data, int records,
+                                           boolean zeroCopy, int stringCacheSize) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    ByteBufferDecoder decoder = new ByteBufferDecoder(buffer, zeroCopy, stringCacheSize);
+    long sum = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < records; i++) {
+      buffer.clear();
+      sum += decode(decoder.reset(buffer));
+    }
+    long time = System.nanoTime() - start;
+    checkSum(sum);
+    return time;
+  }
+
+  private static void checkSum(long sum) {
+    // Make sure the decoded values are used
+    if (sum == 0) {
+      throw new IllegalStateException("Nothing decoded");
+    }
+  }
+
+  private static void report(String name, int records, long nanos) {
+    System.out.printf("%-40s %10.2f ms %12.0f records/s%n", name, nanos / 1e6, records * 1e9 / nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encode(encoder, 1);
+    byte[] data = encoder.toByteArray();
+
+    // Run twice, the first run is for warm-up
+    for (int run = 0; run < 2; run++) {
+      System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+      report("BinaryEncoder", records, runBinaryEncoder(records));
+      report("ByteBufferEncoder", records, runByteBufferEncoder(records));
+      report("BinaryDecoder", records, runBinaryDecoder(data, records));
+      report("ByteBufferDecoder", records, runByteBufferDecoder(data, records, false, 0));
+      report("ByteBufferDecoder zero copy", records, runByteBufferDecoder(data, records, true, 0));
+      report("ByteBufferDecoder zero copy, string cache", records, runByteBufferDecoder(data, records, true, 64));
+    }
+  }
+}
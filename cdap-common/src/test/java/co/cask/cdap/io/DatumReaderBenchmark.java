@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark for decoding records with the {@link DatumReader} generated by {@link ASMDatumReaderFactory},
+ * compared to the {@link ReflectionDatumReader}. It measures records per second, both with the schema the records
+ * were written with and with a different target schema that requires schema resolution.
+ *
+ * Usage: DatumReaderBenchmark [records]
+ */
+public class DatumReaderBenchmark {
+
+  /**
+   * Record written by the benchmark.
+   */
+  public static final class Event {
+    private long timestamp;
+    private int count;
+    private double value;
+    private String name;
+    private List<String> tags;
+    private Map<String, String> headers;
+  }
+
+  /**
+   * Record read by the benchmark with schema resolution: fields are reordered, promoted and projected.
+   */
+  public static final class ProjectedEvent {
+    private Map<String, String> headers;
+    private String name;
+    private double count;
+    private long timestamp;
+    private List<String> tags;
+  }
+
+  private static <T> long run(DatumReader<T> reader, Schema sourceSchema, byte[] data, int records) throws Exception {
+    ByteArrayInputStream input = new ByteArrayInputStream(data);
+    BinaryDecoder decoder = new BinaryDecoder(input);
+    long start = System.nanoTime();
+    for (int i = 0; i < records; i++) {
+      input.reset();
+      if (reader.read(decoder, sourceSchema) == null) {
+        throw new IllegalStateException("Failed to decode record");
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void report(String name, int records, long nanos) {
+    System.out.printf("%-30s %10.2f ms %12.0f records/s%n", name, nanos / 1e6, records * 1e9 / nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    ReflectionSchemaGenerator schemaGenerator = new ReflectionSchemaGenerator();
+    TypeToken<Event> eventType = TypeToken.of(Event.class);
+    TypeToken<ProjectedEvent> projectedType = TypeToken.of(ProjectedEvent.class);
+    Schema schema = schemaGenerator.generate(eventType.getType());
+    Schema projectedSchema = schemaGenerator.generate(projectedType.getType());
+
+    Event event = new Event();
+    event.timestamp = System.currentTimeMillis();
+    event.count = 10;
+    event.value = 1.5d;
+    event.name = "event";
+    event.tags = ImmutableList.of("tag1", "tag2", "tag3");
+    event.headers = ImmutableMap.of("host", "localhost", "source", "benchmark");
+
+    ASMFieldAccessorFactory fieldAccessorFactory = new ASMFieldAccessorFactory();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ASMDatumWriterFactory(fieldAccessorFactory).create(eventType, schema).encode(event, new BinaryEncoder(os));
+    byte[] data = os.toByteArray();
+
+    ASMDatumReaderFactory readerFactory = new ASMDatumReaderFactory(fieldAccessorFactory);
+    DatumReader<Event> asmReader = readerFactory.create(eventType, schema);
+    DatumReader<Event> reflectionReader = new ReflectionDatumReader<Event>(schema, eventType);
+    DatumReader<ProjectedEvent> asmProjectedReader = readerFactory.create(projectedType, projectedSchema);
+    DatumReader<ProjectedEvent> reflectionProjectedReader = new ReflectionDatumReader<ProjectedEvent>(projectedSchema,
+                                                                                                     projectedType);
+
+    // Run twice, the first run is for warm-up
+    for (int run = 0; run < 2; run++) {
+      System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+      report("reflection", records, run(reflectionReader, schema, data, records));
+      report("asm", records, run(asmReader, schema, data, records));
+      report("reflection projected", records, run(reflectionProjectedReader, schema, data, records));
+      report("asm projected", records, run(asmProjectedReader, schema, data, records));
+    }
+  }
+}
@@ -64,6 +64,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -202,6 +203,58 @@ public class StreamInputFormatTest {
     Assert.assertEquals(1, output.get("1").intValue());
   }
 
+  @Test
+  public void testSplitPruning() throws Exception {
+    File inputDir = tmpFolder.newFolder();
+    File outputDir = tmpFolder.newFolder();
+
+    outputDir.delete();
+
+    // Write 1000 events in each of two partitions, which cover [0, 1000) and [1000, 2000) seconds
+    GenerateEvent generator = new GenerateEvent() {
+      @Override
+      public String generate(int index, long timestamp) {
+        return "Testing " + timestamp;
+      }
+    };
+    generateEvents(inputDir, 1000, 0, 1, generator);
+    generateEvents(inputDir, 1000, 1000000, 1, generator);
+
+    // Compute splits for events in [1000500, 1000600)
+    StreamInputSplitStats stats = new StreamInputSplitStats();
+    List<Long> splitStarts = StreamInputSplitFinder.builder(inputDir.toURI())
+      .setStartTime(1000500L)
+      .setEndTime(1000600L)
+      .build(new StreamInputSplitFactory<Long>() {
+        @Override
+        public Long createSplit(Path path, Path indexPath, long startTime, long endTime,
+                                long start, long length, @Nullable String[] locations) {
+          return start;
+        }
+      })
+      .getSplits(new Configuration(), stats);
+
+    // The first partition should be skipped entirely, and the head and tail of the event file in the second
+    // partition should be skipped by the index lookup.
+    File eventFile = new File(new File(inputDir, "1000.1000"), "bucket.1.0." + StreamFileType.EVENT.getSuffix());
+    long fileLength = eventFile.length();
+    Assert.assertEquals(1, stats.getPartitionsScanned());
+    Assert.assertEquals(1, stats.getPartitionsSkipped());
+    Assert.assertEquals(splitStarts.size(), stats.getSplits());
+    Assert.assertTrue(stats.getBytesSkipped() > 0);
+    Assert.assertTrue(splitStarts.get(0) > 0);
+    Assert.assertEquals(fileLength, stats.getBytesScanned() + stats.getBytesSkipped());
+
+    // Verify that no events in the time range are missed
+    runMR(inputDir, outputDir, 1000500, 1000600, 1000, Long.MAX_VALUE);
+    Map<String, Integer> output = loadMRResult(outputDir);
+    Assert.assertEquals(101, output.size());
+    Assert.assertEquals(100, output.get("Testing").intValue());
+    for (long i = 1000500; i < 1000600; i++) {
+      Assert.assertEquals(1, output.get(Long.toString(i)).intValue());
+    }
+  }
+
   @Test
   public void testLiveStream() throws Exception {
     File inputDir = tmpFolder.newFolder();
@@ -69,6 +69,7 @@ public class HBaseMetricsTableTest extends MetricsTableTest {
     testHBase.startHBase();
     CConfiguration conf = CConfiguration.create();
     conf.set(Constants.CFG_HDFS_USER, System.getProperty("user.name"));
+    conf.setLong(Constants.Metrics.INCREMENT_FLUSH_INTERVAL_MS, 1000L);
     Injector injector = Guice.createInjector(new DataFabricDistributedModule(),
                                              new ConfigModule(conf, testHBase.getConfiguration()),
                                              new ZKClientModule(),
@@ -121,6 +122,34 @@ public class HBaseMetricsTableTest extends MetricsTableTest {
     assertEquals(7 * rounds, Bytes.toLong(table.get(A, R)));
   }
 
+  @Test
+  public void testCoalescedIncrements() throws Exception {
+    HBaseMetricsTable table = (HBaseMetricsTable) getTable("testCoalescedIncrements");
+    try {
+      for (int i = 0; i < 100; i++) {
+        table.increment(A, ImmutableMap.of(X, 1L, Y, 2L));
+      }
+      // reads flush the pending increments
+      assertEquals(100L, Bytes.toLong(table.get(A, X)));
+      assertEquals(200L, Bytes.toLong(table.get(A, Y)));
+      // 200 cell increments were written as two cells
+      assertEquals(100d, table.getCoalescingRatio(), 0.001d);
+    } finally {
+      table.close();
+    }
+
+    // increments are flushed when the table is closed
+    table = (HBaseMetricsTable) getTable("testCoalescedIncrements");
+    table.increment(A, ImmutableMap.of(Z, 5L));
+    table.close();
+    table = (HBaseMetricsTable) getTable("testCoalescedIncrements");
+    try {
+      assertEquals(5L, Bytes.toLong(table.get(A, Z)));
+    } finally {
+      table.close();
+    }
+  }
+
   @Override
   protected MetricsTable getTable(String name) throws Exception {
     Id.DatasetInstance metricsDatasetInstanceId = Id.DatasetInstance.from(Constants.SYSTEM_NAMESPACE_ID, name);
@@ -24,6 +24,8 @@ import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.dataset.table.Tables;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -214,6 +216,76 @@ public class HBaseTableTest extends BufferingTableTest<BufferingTable> {
     }
   }
 
+  @Test
+  public void testParallelReads() throws Exception {
+    byte[][] splits = new byte[][] {Bytes.toBytes("b"), Bytes.toBytes("d"), Bytes.toBytes("f")};
+    DatasetProperties props = DatasetProperties.builder()
+      .add("hbase.splits", new Gson().toJson(splits))
+      .add(HBaseTable.PROPERTY_READ_PARALLELISM, "3")
+      .build();
+    String tableName = "parallelreads";
+    HBaseTableAdmin admin = getTableAdmin(CONTEXT1, tableName, props);
+    admin.create();
+    try {
+      DatasetSpecification spec = new HBaseTableDefinition("foo").configure(tableName, props);
+      HBaseTable table = new HBaseTable(CONTEXT1, spec, cConf, testHBase.getConfiguration(), hBaseTableUtil);
+      String[] rows = new String[] {"a", "b1", "c", "d", "e1", "e2", "f", "g"};
+
+      DetachedTxSystemClient txSystemClient = new DetachedTxSystemClient();
+      Transaction tx = txSystemClient.startShort();
+      table.startTx(tx);
+      for (String row : rows) {
+        table.put(b(row), b("col"), b("val-" + row));
+      }
+      table.commitTx();
+
+      tx = txSystemClient.startShort();
+      table.startTx(tx);
+      // multi-get spanning all regions, in an order that differs from the region order
+      List<Get> gets = Lists.newArrayList();
+      for (int i = rows.length - 1; i >= 0; i--) {
+        gets.add(new Get(rows[i]));
+      }
+      gets.add(new Get("unknown"));
+      List<Row> results = table.get(gets);
+      Assert.assertEquals(gets.size(), results.size());
+      for (int i = 0; i < rows.length; i++) {
+        Assert.assertEquals("val-" + rows[rows.length - 1 - i], results.get(i).getString("col"));
+      }
+      Assert.assertTrue(results.get(rows.length).isEmpty());
+
+      // full scan and scan over a range that spans two regions must return rows in order
+      verifyScan(table.scan(null, null), rows, 0, rows.length);
+      verifyScan(table.scan(b("b1"), b("e2")), rows, 1, 5);
+      table.commitTx();
+
+      // rows that are written in the current transaction but not yet persisted must be seen by the scan as well
+      tx = txSystemClient.startShort();
+      table.startTx(tx);
+      table.put(b("c1"), b("col"), b("val-c1"));
+      String[] expected = new String[] {"a", "b1", "c", "c1", "d", "e1", "e2", "f", "g"};
+      verifyScan(table.scan(null, null), expected, 0, expected.length);
+      table.commitTx();
+      table.close();
+    } finally {
+      admin.drop();
+    }
+  }
+
+  private void verifyScan(Scanner scanner, String[] rows, int start, int end) {
+    try {
+      for (int i = start; i < end; i++) {
+        Row row = scanner.next();
+        Assert.assertNotNull(row);
+        Assert.assertEquals(rows[i], Bytes.toString(row.getRow()));
+        Assert.assertEquals("val-" + rows[i], row.getString("col"));
+      }
+      Assert.assertNull(scanner.next());
+    } finally {
+      scanner.close();
+    }
+  }
+
   @Test
   public void testEnableIncrements() throws Exception {
     // setup a table with increments disabled and with it enabled
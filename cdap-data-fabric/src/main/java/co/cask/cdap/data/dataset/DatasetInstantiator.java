@@ -32,6 +32,7 @@ import com.google.common.collect.Sets;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -54,6 +55,9 @@ public class DatasetInstantiator implements DatasetContext {
   private final Set<TransactionAware> txAware = Sets.newIdentityHashSet();
   // in this collection we have only datasets initialized with getDataset() which is OK for now...
   private final Map<TransactionAware, String> txAwareToMetricNames = Maps.newIdentityHashMap();
+  // Number and size of the writes to datasets since the last call to resetWriteCounts()
+  private final AtomicLong writeOps = new AtomicLong();
+  private final AtomicLong writeBytes = new AtomicLong();
 
   private final MetricsCollector metricsCollector;
   private final Id.Namespace namespace;
@@ -112,7 +116,8 @@ public class DatasetInstantiator implements DatasetContext {
     }
 
     if (dataset instanceof MeteredDataset) {
-      ((MeteredDataset) dataset).setMetricsCollector(new MetricsCollectorImpl(name, metricsCollector));
+      ((MeteredDataset) dataset).setMetricsCollector(new MetricsCollectorImpl(name, metricsCollector,
+                                                                              writeOps, writeBytes));
     }
 
     return dataset;
@@ -134,14 +139,43 @@ public class DatasetInstantiator implements DatasetContext {
     txAware.remove(transactionAware);
   }
 
+  /**
+   * Returns the number of write operations on the datasets of this instantiator since the last call to
+   * {@link #resetWriteCounts()}.
+   */
+  public long getWriteOps() {
+    return writeOps.get();
+  }
+
+  /**
+   * Returns the size in bytes of the writes on the datasets of this instantiator since the last call to
+   * {@link #resetWriteCounts()}, as reported by the datasets.
+   */
+  public long getWriteBytes() {
+    return writeBytes.get();
+  }
+
+  /**
+   * Resets the write counts, for example after the buffered writes of the datasets were persisted.
+   */
+  public void resetWriteCounts() {
+    writeOps.set(0);
+    writeBytes.set(0);
+  }
+
   private static final class MetricsCollectorImpl implements MeteredDataset.MetricsCollector {
     private final MetricsCollector metricsCollector;
+    private final AtomicLong writeOps;
+    private final AtomicLong writeBytes;
 
     private MetricsCollectorImpl(String datasetName,
                                  @Nullable
-                                 MetricsCollector metricsCollector) {
+                                 MetricsCollector metricsCollector,
+                                 AtomicLong writeOps, AtomicLong writeBytes) {
       this.metricsCollector = metricsCollector == null ? null :
         metricsCollector.childCollector(Constants.Metrics.Tag.DATASET, datasetName);
+      this.writeOps = writeOps;
+      this.writeBytes = writeBytes;
     }
 
     @Override
@@ -157,6 +191,8 @@ public class DatasetInstantiator implements DatasetContext {
 
     @Override
     public void recordWrite(int opsCount, int dataSize) {
+      writeOps.addAndGet(opsCount);
+      writeBytes.addAndGet(dataSize);
       // todo: here we report duplicate metrics - need to change UI/docs and report once
       if (metricsCollector != null) {
         metricsCollector.increment("store.writes", 1);
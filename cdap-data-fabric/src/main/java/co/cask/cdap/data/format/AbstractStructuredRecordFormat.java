@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.format;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.FormatSpecification;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Base class for stream record formats that read the stream event body into a {@link StructuredRecord}.
+ *
+ * <p>
+ * A format can be restricted to a projection of the fields of its schema. Only the projected fields are decoded,
+ * and the records read have a schema of only those fields, in the same order as in the schema of the format.
+ * </p>
+ *
+ * <p>
+ * In reusable record mode, all records returned share their field values, so that reading an event overwrites the
+ * values of the record returned for the previous event. This is only safe if the caller is done with a record
+ * before reading the next one.
+ * </p>
+ */
+public abstract class AbstractStructuredRecordFormat extends StreamEventRecordFormat<StructuredRecord> {
+
+  // Maximum number of digits that can be parsed into an int or long without overflow
+  private static final int MAX_INT_DIGITS = 9;
+  private static final int MAX_LONG_DIGITS = 18;
+
+  private Schema readSchema;
+  private boolean[] projected;
+  private int lastProjectedIndex;
+  private boolean reuseRecord;
+  private StructuredRecord.Builder recordBuilder;
+
+  @Override
+  public void initialize(FormatSpecification formatSpecification) throws UnsupportedTypeException {
+    super.initialize(formatSpecification);
+    setProjection(null);
+  }
+
+  /**
+   * Restricts the fields read by this format. Must be called after the format is initialized.
+   *
+   * @param fieldNames names of the fields to read, or {@code null} to read all fields of the schema
+   * @throws IllegalArgumentException if a field is not in the schema of the format
+   */
+  public void setProjection(@Nullable Set<String> fieldNames) {
+    Preconditions.checkState(schema != null, "Format is not initialized.");
+    Set<String> remaining = fieldNames == null ? null : Sets.newHashSet(fieldNames);
+    List<Schema.Field> fields = schema.getFields();
+    List<Schema.Field> readFields = Lists.newArrayList();
+
+    projected = new boolean[fields.size()];
+    lastProjectedIndex = -1;
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      projected[i] = remaining == null || remaining.remove(field.getName());
+      if (projected[i]) {
+        readFields.add(field);
+        lastProjectedIndex = i;
+      }
+    }
+    if (remaining != null) {
+      Preconditions.checkArgument(remaining.isEmpty(), "Fields %s are not in the schema.", remaining);
+      Preconditions.checkArgument(!readFields.isEmpty(), "At least one field must be projected.");
+    }
+
+    readSchema = fieldNames == null ? schema : Schema.recordOf(schema.getRecordName(), readFields);
+    recordBuilder = null;
+  }
+
+  /**
+   * Sets whether records are reused, in which case reading an event overwrites the values of the record returned
+   * for the previous event.
+   */
+  public void setReuseRecord(boolean reuseRecord) {
+    this.reuseRecord = reuseRecord;
+    this.recordBuilder = null;
+  }
+
+  /**
+   * Returns the schema of the records read, which only contains the projected fields.
+   */
+  public Schema getReadSchema() {
+    return readSchema;
+  }
+
+  /**
+   * Returns {@code true} if the field at the given index of the schema is read.
+   */
+  protected final boolean isProjected(int fieldIndex) {
+    return projected[fieldIndex];
+  }
+
+  /**
+   * Returns the index in the schema of the last field that is read. Parsing can stop after that field.
+   */
+  protected final int getLastProjectedIndex() {
+    return lastProjectedIndex;
+  }
+
+  /**
+   * Returns a builder for the record of the next event. A format must set the value of every projected field,
+   * as in reusable record mode, the builder still holds the values of the previous record.
+   */
+  protected final StructuredRecord.Builder getRecordBuilder() {
+    if (!reuseRecord) {
+      return StructuredRecord.builder(readSchema);
+    }
+    // The builder hands its field values to the record it builds, so all records built by it share them
+    if (recordBuilder == null) {
+      recordBuilder = StructuredRecord.builder(readSchema);
+    }
+    return recordBuilder;
+  }
+
+  /**
+   * Returns the array holding the bytes of the given buffer. It is the backing array if the buffer has one,
+   * otherwise it is a copy of the remaining bytes. Use {@link #getArrayOffset(ByteBuffer, byte[])} to get the
+   * offset of the remaining bytes in the returned array.
+   */
+  protected static byte[] getArray(ByteBuffer buffer) {
+    return buffer.hasArray() ? buffer.array() : Bytes.toBytes(buffer);
+  }
+
+  /**
+   * Returns the offset of the remaining bytes of the given buffer in the array returned by
+   * {@link #getArray(ByteBuffer)}.
+   */
+  protected static int getArrayOffset(ByteBuffer buffer, byte[] array) {
+    return buffer.hasArray() && buffer.array() == array ? buffer.arrayOffset() + buffer.position() : 0;
+  }
+
+  /**
+   * Converts the given bytes into the type of the given field, and sets the value for that field. Integers and
+   * longs are parsed without decoding to a string first, everything else is converted the same way as
+   * {@link StructuredRecord.Builder#convertAndSet(String, String)} does. The charset must encode digits and
+   * the minus sign the same as ASCII.
+   */
+  protected static void convertAndSet(StructuredRecord.Builder builder, Schema.Field field,
+                                      byte[] bytes, int off, int len, Charset charset) {
+    Schema fieldSchema = field.getSchema();
+    Schema.Type type = fieldSchema.isNullable() ? fieldSchema.getNonNullable().getType() : fieldSchema.getType();
+    if (type == Schema.Type.INT && isNumber(bytes, off, len, MAX_INT_DIGITS)) {
+      builder.set(field.getName(), (int) parseNumber(bytes, off, len));
+    } else if (type == Schema.Type.LONG && isNumber(bytes, off, len, MAX_LONG_DIGITS)) {
+      builder.set(field.getName(), parseNumber(bytes, off, len));
+    } else {
+      builder.convertAndSet(field.getName(), new String(bytes, off, len, charset));
+    }
+  }
+
+  /**
+   * Returns {@code true} if the given bytes are an optional minus sign followed by at most the given number of
+   * decimal digits.
+   */
+  private static boolean isNumber(byte[] bytes, int off, int len, int maxDigits) {
+    int start = (len > 0 && bytes[off] == '-') ? off + 1 : off;
+    int end = off + len;
+    if (start == end || end - start > maxDigits) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (bytes[i] < '0' || bytes[i] > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses bytes that were verified by {@link #isNumber(byte[], int, int, int)}.
+   */
+  private static long parseNumber(byte[] bytes, int off, int len) {
+    boolean negative = bytes[off] == '-';
+    long value = 0;
+    for (int i = negative ? off + 1 : off; i < off + len; i++) {
+      value = value * 10 + (bytes[i] - '0');
+    }
+    return negative ? -value : value;
+  }
+}
@@ -22,8 +22,9 @@ import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
-import com.google.common.collect.Lists;
+import com.google.common.base.Charsets;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
 
@@ -35,28 +36,69 @@ import java.util.List;
  * "Mozilla/5.0 (compatible; Baiduspider/2.0; +http://www.baidu.com/search/spider.html)"
  *
  */
-public class CombinedLogRecordFormat extends StreamEventRecordFormat<StructuredRecord> {
+public class CombinedLogRecordFormat extends AbstractStructuredRecordFormat {
 
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
-    String bodyAsStr = Bytes.toString(event.getBody());
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    List<String> parts = getLogEntries(bodyAsStr);
+    // The log entry is parsed byte by byte, which is the same as parsing the decoded string,
+    // since all separators are ASCII characters.
+    ByteBuffer body = event.getBody();
+    byte[] bytes = getArray(body);
+    int off = getArrayOffset(body, bytes);
+    int end = off + body.remaining();
+
+    StructuredRecord.Builder builder = getRecordBuilder();
     List<Schema.Field> fields = schema.getFields();
-    int index = 0;
-    while (index < fields.size()) {
-      Schema.Field field = fields.get(index);
-      String val = (parts.size() < index || (parts.get(index).equals("-") &&
-                                             field.getSchema().getType() != Schema.Type.STRING))
-                    ? null : parts.get(index);
-      builder.convertAndSet(field.getName(), val);
-      index++;
+    int pos = off;
+    for (int i = 0; i <= getLastProjectedIndex(); i++) {
+      // Skip empty spaces
+      while (pos < end && bytes[pos] == ' ') {
+        pos++;
+      }
+
+      Schema.Field field = fields.get(i);
+      if (pos >= end) {
+        // no more entries
+        if (isProjected(i)) {
+          builder.convertAndSet(field.getName(), null);
+        }
+        continue;
+      }
+
+      int start;
+      int entryEnd;
+      if (bytes[pos] == '"') {
+        // Find the closing '"' and extract values within
+        start = pos + 1;
+        entryEnd = findNext(bytes, off, start, end, '"');
+      } else if (bytes[pos] == '[') {
+        // find the closing ']' and extract values
+        start = pos + 1;
+        entryEnd = findNext(bytes, off, start, end, ']');
+      } else {
+        // find the next ' ' and extract values
+        start = pos;
+        entryEnd = findNext(bytes, off, pos + 1, end, ' ');
+      }
+      if (entryEnd == -1) {
+        throw new UnexpectedFormatException(String.format("Could not parse data in CLF format. Entry %s",
+                                                          Bytes.toString(bytes, off, end - off)));
+      }
+
+      if (isProjected(i)) {
+        int len = entryEnd - start;
+        if (len == 1 && bytes[start] == '-' && field.getSchema().getType() != Schema.Type.STRING) {
+          builder.convertAndSet(field.getName(), null);
+        } else {
+          convertAndSet(builder, field, bytes, start, len, Charsets.UTF_8);
+        }
+      }
+      pos = entryEnd + 1;
     }
 
     return builder.build();
   }
 
-
   @Override
   protected Schema getDefaultSchema() {
     return Schema.recordOf("streamEvent",
@@ -87,51 +129,11 @@ public class CombinedLogRecordFormat extends StreamEventRecordFormat<StructuredR
     }
   }
 
-  // parse CLF logEvent and get the record values.
-  private List<String> getLogEntries(String logEvent) {
-    List<String> parts = Lists.newArrayList();
-    int start = 0;
-    while (start < logEvent.length()) {
-      if (logEvent.charAt(start) == ' ') {
-        // Skip empty spaces
-        start++;
-      } else {
-        start = addNextLogEntry(logEvent, start, parts);
-      }
-    }
-    return parts;
-  }
-
-  // addNextLogEntry and return the start position of next entry.
-  private int addNextLogEntry(String data, int start, List<String> parts) {
-    int end = -1;
-    if (data.charAt(start) == '"') {
-      // Find the closing '"' and extract values within
-      start = start + 1;
-      end = findNext(data, start, '"');
-    } else if (data.charAt(start) == '[') {
-      // find the closing ']' and extract values
-      start = start + 1;
-      end = findNext(data, start, ']');
-    } else {
-      // find the next ' ' and extract values
-      end = findNext(data, start + 1, ' ');
-    }
-
-    if (end == -1) {
-      throw new UnexpectedFormatException(String.format("Could not parse data in CLF format. Entry %s", data));
-    }
-
-    parts.add(data.substring(start, end));
-    return end + 1;
-  }
-
-  // Find the next character matching the "entry". Skip the entry that is escaped.
-  private int findNext(String data, int startPosition, char entry) {
+  // Find the next byte matching the "entry". Skip the entry that is escaped.
+  private int findNext(byte[] bytes, int off, int startPosition, int end, char entry) {
     int position = startPosition;
-    int length = data.length();
-    while (position < length) {
-      if (data.charAt(position) == entry && (position == 0 || data.charAt(position - 1) != '\\')) {
+    while (position < end) {
+      if (bytes[position] == entry && (position == off || bytes[position - 1] != '\\')) {
         return position;
       }
       position++;
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -24,12 +24,15 @@ import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Stream record format that interprets the body as string of delimited fields.
@@ -42,25 +45,89 @@ import java.util.Map;
  * In addition, the very last field can be an array of strings.
  * </p>
  */
-public class DelimitedStringsRecordFormat extends StreamEventRecordFormat<StructuredRecord> {
+public class DelimitedStringsRecordFormat extends AbstractStructuredRecordFormat {
   public static final String CHARSET = "charset";
   public static final String DELIMITER = "delimiter";
+
+  // Charsets in which a delimiter can be searched for byte by byte, and that encode digits the same as ASCII
+  private static final Set<Charset> BYTE_SEARCHABLE_CHARSETS = ImmutableSet.of(Charsets.UTF_8, Charsets.US_ASCII,
+                                                                                 Charsets.ISO_8859_1);
+
   private Charset charset = Charsets.UTF_8;
   private String delimiter = ",";
+  // The encoded delimiter if the body can be parsed byte by byte, null otherwise
+  private byte[] delimiterBytes;
+  private boolean[] stringArrayFields;
 
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
+    if (delimiterBytes == null) {
+      return readString(event);
+    }
+
+    ByteBuffer body = event.getBody();
+    byte[] bytes = getArray(body);
+    int off = getArrayOffset(body, bytes);
+    int end = off + body.remaining();
+
+    StructuredRecord.Builder builder = getRecordBuilder();
+    List<Schema.Field> fields = schema.getFields();
+    // Start of the next body field, or larger than end if there is no more field
+    int pos = off;
+    for (int i = 0; i <= getLastProjectedIndex(); i++) {
+      Schema.Field field = fields.get(i);
+      if (stringArrayFields[i]) {
+        List<String> values = Lists.newArrayList();
+        while (pos <= end) {
+          int fieldEnd = indexOfDelimiter(bytes, pos, end);
+          values.add(new String(bytes, pos, fieldEnd - pos, charset));
+          pos = fieldEnd + delimiterBytes.length;
+        }
+        builder.set(field.getName(), values.toArray(new String[values.size()]));
+        continue;
+      }
+
+      if (pos > end) {
+        if (isProjected(i)) {
+          builder.convertAndSet(field.getName(), null);
+        }
+        continue;
+      }
+      int fieldEnd = indexOfDelimiter(bytes, pos, end);
+      if (isProjected(i)) {
+        // if the body field is an empty string and the column is not a string type, interpret it as a null.
+        if (fieldEnd == pos && field.getSchema().getType() != Schema.Type.STRING) {
+          builder.convertAndSet(field.getName(), null);
+        } else {
+          convertAndSet(builder, field, bytes, pos, fieldEnd - pos, charset);
+        }
+      }
+      pos = fieldEnd + delimiterBytes.length;
+    }
+    return builder.build();
+  }
+
+  /**
+   * Reads the event by decoding the body into a string first. Used if the delimiter cannot be searched for
+   * byte by byte in the encoded body.
+   */
+  private StructuredRecord readString(StreamEvent event) {
     String bodyAsStr = Bytes.toString(event.getBody(), charset);
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    StructuredRecord.Builder builder = getRecordBuilder();
     Iterator<String> bodyFields = Splitter.on(delimiter).split(bodyAsStr).iterator();
-    for (Schema.Field field : schema.getFields()) {
+    List<Schema.Field> fields = schema.getFields();
+    for (int i = 0; i <= getLastProjectedIndex(); i++) {
+      Schema.Field field = fields.get(i);
       Schema fieldSchema = field.getSchema();
       String fieldName = field.getName();
-      if (isStringArray(fieldSchema)) {
-        List<String> fields = Lists.newArrayList(bodyFields);
-        builder.set(fieldName, fields.toArray(new String[fields.size()]));
+      if (stringArrayFields[i]) {
+        List<String> values = Lists.newArrayList(bodyFields);
+        builder.set(fieldName, values.toArray(new String[values.size()]));
       } else {
         String val = bodyFields.hasNext() ? bodyFields.next() : null;
+        if (!isProjected(i)) {
+          continue;
+        }
         // if the body field is an empty string and the column is not a string type, interpret it as a null.
         if (val != null && val.isEmpty() && (fieldSchema.getType() != Schema.Type.STRING)) {
           val = null;
@@ -71,6 +138,27 @@ public class DelimitedStringsRecordFormat extends StreamEventRecordFormat<Struct
     return builder.build();
   }
 
+  /**
+   * Returns the index of the next delimiter in the given range of bytes, or the end of the range if there is none.
+   */
+  private int indexOfDelimiter(byte[] bytes, int start, int end) {
+    byte first = delimiterBytes[0];
+    int last = end - delimiterBytes.length;
+    for (int i = start; i <= last; i++) {
+      if (bytes[i] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < delimiterBytes.length && bytes[i + j] == delimiterBytes[j]) {
+        j++;
+      }
+      if (j == delimiterBytes.length) {
+        return i;
+      }
+    }
+    return end;
+  }
+
   @Override
   protected Schema getDefaultSchema() {
     // default is a String[]
@@ -123,5 +211,20 @@ public class DelimitedStringsRecordFormat extends StreamEventRecordFormat<Struct
     if (delimiter != null) {
       this.delimiter = delimiter;
     }
+
+    // The body can be parsed byte by byte if the delimiter can be found in the encoded body by its encoding
+    this.delimiterBytes = null;
+    if (!this.delimiter.isEmpty() && BYTE_SEARCHABLE_CHARSETS.contains(charset)) {
+      byte[] encoded = this.delimiter.getBytes(charset);
+      if (new String(encoded, charset).equals(this.delimiter)) {
+        this.delimiterBytes = encoded;
+      }
+    }
+
+    List<Schema.Field> fields = schema.getFields();
+    this.stringArrayFields = new boolean[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      stringArrayFields[i] = isStringArray(fields.get(i).getSchema());
+    }
   }
 }
@@ -15,7 +15,6 @@
  */
 package co.cask.cdap.data.format;
 
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
@@ -33,13 +32,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
  * GrokRecordFormat. Grok parses a string and outputs a map of field name (string) to value (string).
  */
-public class GrokRecordFormat extends StreamEventRecordFormat<StructuredRecord> {
+public class GrokRecordFormat extends AbstractStructuredRecordFormat {
 
   private static final Logger LOG = LoggerFactory.getLogger(GrokRecordFormat.class);
   private static final String DEFAULT_PATTERN = "%{GREEDYDATA:body}";
@@ -54,18 +55,31 @@ public class GrokRecordFormat extends StreamEventRecordFormat<StructuredRecord>
 
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
-    String bodyAsStr = Bytes.toString(event.getBody(), Charsets.UTF_8);
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    // Grok matches on strings, hence the body has to be decoded
+    ByteBuffer body = event.getBody();
+    byte[] bytes = getArray(body);
+    String bodyAsStr = new String(bytes, getArrayOffset(body, bytes), body.remaining(), Charsets.UTF_8);
+    StructuredRecord.Builder builder = getRecordBuilder();
 
     Match gm = grok.match(bodyAsStr);
     gm.captures();
     Map<String, Object> x = gm.toMap();
 
-    for (Schema.Field field : schema.getFields()) {
+    List<Schema.Field> fields = schema.getFields();
+    for (int i = 0; i <= getLastProjectedIndex(); i++) {
+      if (!isProjected(i)) {
+        continue;
+      }
+      Schema.Field field = fields.get(i);
       String fieldName = field.getName();
       Object value = x.get(fieldName);
       if (value != null) {
         builder.convertAndSet(fieldName, value.toString());
+      } else if (field.getSchema().isNullable()) {
+        // Needs to be set explicitly, as the builder may still hold the value of the previous record
+        builder.set(fieldName, null);
+      } else {
+        throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
       }
     }
 
@@ -69,7 +69,7 @@ final class StreamDataFileIndex {
       timestamps = LongLists.unmodifiable(index.getKey());
       positions = LongLists.unmodifiable(index.getValue());
     } catch (IOException e) {
-      LOG.error("Failed to load stream index. Default to empty index.", e);
+      LOG.warn("Failed to load stream index. Default to empty index.", e);
       timestamps = LongLists.EMPTY_LIST;
       positions = LongLists.EMPTY_LIST;
     }
@@ -100,6 +100,29 @@ final class StreamDataFileIndex {
     return idx == -1 ? -1 : positions.getLong(-idx - 2);
   }
 
+  /**
+   * Finds an event file position recorded in the index that has timestamp larger than or equal to the given
+   * timestamp. Since events in a stream file are ordered by timestamp, all events at or after the returned position
+   * have timestamp larger than or equal to the given timestamp.
+   *
+   * @param timestamp Stream event timestamp to search for.
+   * @return The file position or {@code -1} if no record satisfied the requirement can be found.
+   */
+  long ceilingPositionByTime(long timestamp) {
+    if (timestamps.isEmpty()) {
+      return -1;
+    }
+
+    int idx = binarySearch(timestamps, timestamp);
+    if (idx >= 0) {
+      return positions.getLong(idx);
+    }
+
+    // Insertion point is the first index that has timestamp larger than the given one.
+    int insertionPoint = -idx - 1;
+    return insertionPoint == timestamps.size() ? -1 : positions.getLong(insertionPoint);
+  }
+
   /**
    * Finds the largest event file position recorded in the index that is smaller than or equal to a given offset.
    *
@@ -15,11 +15,14 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.common.io.Locations;
 import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
@@ -35,10 +38,13 @@ import java.util.List;
  * <br/><br/>
  *
  * Each split produced will also carries {@code startTime} and {@code endTime} so that only stream events within
- * the given time range will get processed.
+ * the given time range will get processed. When requested, the event index is consulted so that the portions of
+ * the file that are entirely outside of the time range are not covered by any split.
  */
 final class StreamDataFileSplitter {
 
+  private static final Logger LOG = LoggerFactory.getLogger(StreamDataFileSplitter.class);
+
   private final FileStatus eventFileStatus;
 
   StreamDataFileSplitter(FileStatus eventFileStatus) {
@@ -47,18 +53,52 @@ final class StreamDataFileSplitter {
 
   /**
    * Computes splits for the event file.
+   *
+   * @param useIndex if {@code true}, the event index will be used to skip the head and tail of the event file
+   *                 that are outside of the given time range
    */
   <T> void computeSplits(FileSystem fs, long minSplitSize, long maxSplitSize, long startTime, long endTime,
-                         List<T> splits, StreamInputSplitFactory<T> splitFactory) throws IOException {
+                         boolean useIndex, List<T> splits, StreamInputSplitFactory<T> splitFactory,
+                         StreamInputSplitStats stats) throws IOException {
 
     // Compute the splits based on the min/max size
     Path eventFile = eventFileStatus.getPath();
     Path indexFile = getIndexFile(eventFile);
 
-    BlockLocation[] blockLocations = fs.getFileBlockLocations(eventFile, 0, eventFileStatus.getLen());
-
     long length = eventFileStatus.getLen();
     long offset = 0;
+
+    // If the end offset is bounded by the index, all events after it are beyond the end time,
+    // hence no need to have the tail split for events that are still being written.
+    boolean bounded = false;
+
+    // The index file may not be there yet (e.g. the event file was just created), in which case splits cover
+    // the whole file.
+    if (useIndex && !fs.exists(indexFile)) {
+      LOG.debug("No index file {} for event file {}. Splits cover the whole file.", indexFile, eventFile);
+      useIndex = false;
+    }
+
+    if (useIndex) {
+      StreamDataFileIndex index = new StreamDataFileIndex(Locations.newInputSupplier(fs, indexFile));
+
+      // All events before a position that has timestamp smaller than the start time are not needed.
+      long startOffset = startTime > 0 ? index.floorPositionByTime(startTime - 1) : -1L;
+      if (startOffset > 0) {
+        offset = Math.min(startOffset, length);
+      }
+
+      // All events at or after a position that has timestamp larger than or equal to the end time are not needed.
+      long endOffset = index.ceilingPositionByTime(endTime);
+      if (endOffset >= 0 && endOffset <= length) {
+        length = Math.max(endOffset, offset);
+        bounded = true;
+      }
+      stats.addBytesSkipped(offset + eventFileStatus.getLen() - length);
+    }
+    stats.addBytesScanned(length - offset);
+
+    BlockLocation[] blockLocations = fs.getFileBlockLocations(eventFile, offset, length - offset);
     int blockIndex = 0;
 
     while (offset < length) {
@@ -70,13 +110,17 @@ final class StreamDataFileSplitter {
         blockIndex = 0;
       }
 
-      long splitSize = computeSplitSize(eventFileStatus, offset, minSplitSize, maxSplitSize);
+      long splitSize = computeSplitSize(eventFileStatus, offset, length, minSplitSize, maxSplitSize);
       splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, splitSize, hosts));
+      stats.splitAdded();
       offset += splitSize;
     }
 
-    // One extra split for the tail of the file.
-    splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+    if (!bounded) {
+      // One extra split for the tail of the file.
+      splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+      stats.splitAdded();
+    }
   }
 
   /**
@@ -109,14 +153,16 @@ final class StreamDataFileSplitter {
    *
    * @param fileStatus The FileStatus of the file to split on.
    * @param offset Starting offset for the split.
+   * @param length Ending offset (exclusive) of the region to split.
    * @param minSplitSize Minimum size for the split.
    * @param maxSplitSize Maximum size for the split.
    * @return
    */
-  private long computeSplitSize(FileStatus fileStatus, long offset, long minSplitSize, long maxSplitSize) {
+  private long computeSplitSize(FileStatus fileStatus, long offset, long length,
+                                long minSplitSize, long maxSplitSize) {
     long blockSize = fileStatus.getBlockSize();
     long splitSize = Math.max(minSplitSize, Math.min(maxSplitSize, blockSize));
-    return Math.min(splitSize, fileStatus.getLen() - offset);
+    return Math.min(splitSize, length - offset);
   }
 
   private Path getIndexFile(Path eventFile) {
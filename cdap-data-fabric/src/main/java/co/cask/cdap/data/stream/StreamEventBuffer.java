@@ -17,13 +17,11 @@
 package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.stream.StreamEventData;
-import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
 import co.cask.cdap.common.io.ByteBuffers;
-import co.cask.cdap.common.io.Decoder;
 import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.data.file.ReadFilter;
-import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.collect.Maps;
 
 import java.io.EOFException;
@@ -39,16 +37,15 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 final class StreamEventBuffer {
 
-  private final ByteBufferInputStream bufferInput;
-  private final Decoder decoder;
+  private final ByteBufferDecoder decoder;
 
   private ByteBuffer buffer;
   private long basePosition;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
-    this.bufferInput = new ByteBufferInputStream(buffer);
-    this.decoder = new BinaryDecoder(bufferInput);
+    // Event bodies are copied by the decoder, as the buffer is reused for the next data block
+    this.decoder = new ByteBufferDecoder(buffer);
     this.basePosition = -1L;
   }
 
@@ -75,7 +72,7 @@ final class StreamEventBuffer {
         bytesRead += len;
       }
       buffer.limit(size);
-      bufferInput.reset(buffer);
+      decoder.reset(buffer);
     } catch (IOException e) {
       // Make the buffer has nothing to read
       buffer.position(buffer.limit());
@@ -65,6 +65,19 @@ public class StreamInputSplitFinder<T> {
    * @throws InterruptedException
    */
   public List<T> getSplits(Configuration conf) throws IOException, InterruptedException {
+    return getSplits(conf, new StreamInputSplitStats());
+  }
+
+  /**
+   * Get the input splits for a stream.
+   *
+   * @param conf Configuration of the filesystem the stream resides on.
+   * @param stats {@link StreamInputSplitStats} to record statistics about partitions and bytes being pruned.
+   * @return List of input splits for the stream.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public List<T> getSplits(Configuration conf, StreamInputSplitStats stats) throws IOException, InterruptedException {
     List<T> splits = Lists.newArrayList();
 
     // Collects all stream event files timestamp, size and block locations information
@@ -83,15 +96,21 @@ public class StreamInputSplitFinder<T> {
       long partitionStartTime = StreamUtils.getPartitionStartTime(pathName);
       long partitionEndTime = StreamUtils.getPartitionEndTime(pathName);
       if (partitionStartTime > endTime || partitionEndTime <= startTime) {
+        stats.partitionSkipped();
         continue;
       }
+      stats.partitionScanned();
+
+      // Only need to consult the event index if the time range cuts into the partition.
+      boolean useIndex = partitionStartTime < startTime || partitionEndTime > endTime;
 
       // Collects all bucket file status in the partition.
       Collection<StreamDataFileSplitter> eventFiles = collectBuckets(fs, partitionStatus.getPath());
 
       // For each bucket inside the partition directory, compute the splits
       for (StreamDataFileSplitter splitter : eventFiles) {
-        splitter.computeSplits(fs, minSplitSize, maxSplitSize, startTime, endTime, splits, splitFactory);
+        splitter.computeSplits(fs, minSplitSize, maxSplitSize, startTime, endTime,
+                               useIndex, splits, splitFactory, stats);
       }
     }
 
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import com.google.common.base.Objects;
+
+/**
+ * Statistics collected by {@link StreamInputSplitFinder} while computing splits, describing how much of
+ * the stream was pruned by the time range.
+ */
+public final class StreamInputSplitStats {
+
+  private int partitionsScanned;
+  private int partitionsSkipped;
+  private int splits;
+  private long bytesScanned;
+  private long bytesSkipped;
+
+  /**
+   * Returns number of partition directories that overlap with the time range.
+   */
+  public int getPartitionsScanned() {
+    return partitionsScanned;
+  }
+
+  /**
+   * Returns number of partition directories that were skipped because they are outside of the time range.
+   */
+  public int getPartitionsSkipped() {
+    return partitionsSkipped;
+  }
+
+  /**
+   * Returns number of splits generated.
+   */
+  public int getSplits() {
+    return splits;
+  }
+
+  /**
+   * Returns number of event file bytes covered by the generated splits.
+   */
+  public long getBytesScanned() {
+    return bytesScanned;
+  }
+
+  /**
+   * Returns number of event file bytes inside scanned partitions that were skipped by looking up the event index.
+   */
+  public long getBytesSkipped() {
+    return bytesSkipped;
+  }
+
+  void partitionScanned() {
+    partitionsScanned++;
+  }
+
+  void partitionSkipped() {
+    partitionsSkipped++;
+  }
+
+  void splitAdded() {
+    splits++;
+  }
+
+  void addBytesScanned(long bytes) {
+    bytesScanned += bytes;
+  }
+
+  void addBytesSkipped(long bytes) {
+    bytesSkipped += bytes;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("partitionsScanned", partitionsScanned)
+      .add("partitionsSkipped", partitionsSkipped)
+      .add("splits", splits)
+      .add("bytesScanned", bytesScanned)
+      .add("bytesSkipped", bytesSkipped)
+      .toString();
+  }
+}
@@ -130,7 +130,8 @@ public final class StreamHandler extends AuthenticatedHttpHandler {
     this.streamMetaStore = streamMetaStore;
     this.sizeCollector = sizeCollector;
     this.batchBufferThreshold = cConf.getLong(Constants.Stream.BATCH_BUFFER_THRESHOLD);
-    this.streamBodyConsumerFactory = new StreamBodyConsumerFactory();
+    this.streamBodyConsumerFactory = new StreamBodyConsumerFactory(
+      cConf.getInt(Constants.Stream.BATCH_AVRO_MAX_BLOCK_SIZE));
     this.streamHandlerMetricsCollector = metricsCollectionService.getCollector(getStreamHandlerMetricsContext());
     streamMetricsCollectors = CacheBuilder.newBuilder()
       .build(new CacheLoader<Id.Namespace, MetricsCollector>() {
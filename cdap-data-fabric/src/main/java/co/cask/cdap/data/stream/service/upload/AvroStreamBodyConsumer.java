@@ -22,14 +22,12 @@ import co.cask.common.io.ByteBufferInputStream;
 import co.cask.http.BodyConsumer;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.hash.Hashing;
-import com.google.common.io.Closeables;
 import org.apache.avro.Schema;
-import org.apache.avro.file.DataFileStream;
 import org.apache.avro.io.BinaryDecoder;
-import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -37,273 +35,502 @@ import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xerial.snappy.Snappy;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A {@link BodyConsumer} that process Avro object file and write to stream.
+ *
+ * The Avro object file is decoded incrementally by the thread that delivers the chunks, without spawning a thread
+ * for the upload. Content that doesn't form a complete file header or data block yet is kept until more chunks
+ * arrive, up to a maximum size, so that a malformed or hostile upload cannot make the buffered content grow without
+ * bound. Datums are not decoded, only their boundaries are found, and each encoded datum is written
+ * to the {@link ContentWriter} as one stream event.
  */
 @NotThreadSafe
 final class AvroStreamBodyConsumer extends BodyConsumer {
 
   private static final Logger LOG = LoggerFactory.getLogger(AvroStreamBodyConsumer.class);
 
-  private final AsyncChannelBufferInputStream bufferInput;
-  private final ContentWriterThread writerThread;
+  private static final byte[] MAGIC = new byte[] { 'O', 'b', 'j', 1 };
+  private static final int SYNC_SIZE = 16;
+  private static final String SCHEMA_KEY = "avro.schema";
+  private static final String CODEC_KEY = "avro.codec";
+  private static final String NULL_CODEC = "null";
+  private static final String DEFLATE_CODEC = "deflate";
+  private static final String SNAPPY_CODEC = "snappy";
+  private static final Set<String> SUPPORTED_CODECS = ImmutableSet.of(NULL_CODEC, DEFLATE_CODEC, SNAPPY_CODEC);
+
   private final ContentWriterFactory contentWriterFactory;
+  // Maximum size of the file header and of a data block
+  private final int maxBlockSize;
+  // Content received but not yet processed, since it doesn't contain a complete header or data block
+  private final ChannelBuffer pending = ChannelBuffers.dynamicBuffer();
+  private final ByteBufferInputStream blockInput = new ByteBufferInputStream(ByteBuffers.EMPTY_BUFFER);
+  private BinaryDecoder decoder;
+  private Schema schema;
+  private String codec;
+  private byte[] sync;
+  private Inflater inflater;
+  private CRC32 crc32;
+  private ContentWriter contentWriter;
   private boolean failed;
 
-  AvroStreamBodyConsumer(ContentWriterFactory contentWriterFactory) {
+  /**
+   * Creates a consumer.
+   *
+   * @param contentWriterFactory factory of the {@link ContentWriter} for the uploaded content
+   * @param maxBlockSize maximum size in bytes of the file header and of a data block
+   */
+  AvroStreamBodyConsumer(ContentWriterFactory contentWriterFactory, int maxBlockSize) {
     this.contentWriterFactory = contentWriterFactory;
-    this.bufferInput = new AsyncChannelBufferInputStream();
-    this.writerThread = new ContentWriterThread(bufferInput, contentWriterFactory);
+    this.maxBlockSize = maxBlockSize;
   }
 
   @Override
   public void chunk(ChannelBuffer request, HttpResponder responder) {
-    if (failed || (failed = respondIfFailed(responder))) {
+    if (failed) {
       return;
     }
-    if (!writerThread.isAlive()) {
-      writerThread.start();
-    }
     try {
-      bufferInput.append(request);
+      if (pending.readable()) {
+        pending.writeBytes(request);
+        processContent(pending);
+        pending.discardReadBytes();
+      } else {
+        // Process the chunk directly and only keep what is left
+        processContent(request);
+        pending.clear();
+        pending.writeBytes(request);
+      }
     } catch (Exception e) {
-      throw Throwables.propagate(e);
+      fail(e, responder);
     }
   }
 
   @Override
   public void finished(HttpResponder responder) {
+    if (failed) {
+      return;
+    }
+    if (schema == null || pending.readable()) {
+      fail(new EOFException("Unexpected end of avro file"), responder);
+      return;
+    }
     try {
-      // Signal the end of input and wait for the writer thread to complete
-      bufferInput.append(ChannelBuffers.EMPTY_BUFFER);
-      writerThread.join();
-
-      if (!respondIfFailed(responder)) {
-        responder.sendStatus(HttpResponseStatus.OK);
-      }
-    } catch (InterruptedException e) {
-      // Just log and response. No need to propagate since it's the end of upload already.
-      LOG.warn("Join on writer thread interrupted", e);
-      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Failed to complete upload due to interruption");
+      contentWriter.close();
+      responder.sendStatus(HttpResponseStatus.OK);
     } catch (IOException e) {
       // Just log and response. No need to propagate since it's the end of upload already.
       LOG.error("Failed to write upload content to stream {}", contentWriterFactory.getStream(), e);
       responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Failed to write uploaded content");
+    } finally {
+      release();
     }
   }
 
   @Override
   public void handleError(Throwable cause) {
     LOG.warn("Failed to handle upload to stream {}", contentWriterFactory.getStream(), cause);
-    Closeables.closeQuietly(bufferInput);
-    try {
-      writerThread.join();
-    } catch (InterruptedException e) {
-      // Just log
-      LOG.warn("Join on writer thread interrupted", e);
+    if (!failed) {
+      failed = true;
+      cancel();
     }
   }
 
   /**
-   * Writes a failure status if the writer thread is failed.
+   * Marks the upload as failed and writes a failure status.
    */
-  private boolean respondIfFailed(HttpResponder responder) {
-    Throwable failure = writerThread.getFailure();
-    if (failure == null) {
-      return false;
-    }
+  private void fail(Throwable failure, HttpResponder responder) {
+    failed = true;
+    cancel();
     LOG.debug("Upload failed", failure);
     responder.sendString(HttpResponseStatus.BAD_REQUEST,
                          "Failed to process uploaded avro file: " + failure.getMessage());
-    return true;
   }
 
   /**
-   * The thread for reading Avro file and writing encoded Avro object to {@link ContentWriter}.
+   * Cancels the content writer, if it was created, and releases resources.
    */
-  private static final class ContentWriterThread extends Thread {
-    private static final AtomicLong id = new AtomicLong();
-
-    private final InputStream contentStream;
-    private final ContentWriterFactory contentWriterFactory;
-    private volatile Throwable failure;
-
-    public ContentWriterThread(InputStream contentStream, ContentWriterFactory contentWriterFactory) {
-      super("avro-uploader-" + contentWriterFactory.getStream() + "-" + id.getAndIncrement());
-      this.contentStream = contentStream;
-      this.contentWriterFactory = contentWriterFactory;
-    }
-
-    @Override
-    public void run() {
-      try {
-        // Create an Avro reader from the given content stream.
-        DataFileStream<Object> reader = new DataFileStream<Object>(contentStream, new DummyDatumReader());
-        try {
-          Schema schema = reader.getSchema();
-          DecoderFactory decoderFactory = DecoderFactory.get();
-          ByteBufferInputStream blockInput = new ByteBufferInputStream(ByteBuffers.EMPTY_BUFFER);
-          BinaryDecoder decoder = null;
-
-          // Create the {@link ContentWriter} for writing encoded Avro content to stream
-          String schemaStr = schema.toString();
-          ContentWriter contentWriter = contentWriterFactory.create(ImmutableMap.of(
-            Constants.Stream.Headers.SCHEMA, schemaStr,
-            Constants.Stream.Headers.SCHEMA_HASH, Hashing.md5().hashString(schemaStr, Charsets.UTF_8).toString()
-          ));
-
-          try {
-            while (reader.hasNext()) {
-              // Instead of decoding the whole object, we just keep finding the object boundary in
-              // an Avro raw data block.
-              ByteBuffer block = reader.nextBlock();
-              decoder = decoderFactory.directBinaryDecoder(blockInput.reset(block), decoder);
-              int limit = block.limit();
-
-              // Since we are depending on position in the block buffer, a direct binary decoder must be used
-              // to ensure no buffering happens in the decoder.
-              while (block.hasRemaining()) {
-                // Mark the beginning of the datum
-                block.mark();
-                skipDatum(schema, decoder);
-
-                // Mark the end of the datum
-                int pos = block.position();
-                block.reset();
-                block.limit(pos);
-
-                // Append the encoded datum to content writer.
-                // Need to tell content write that the buffer provided is not immutable.
-                contentWriter.append(block, false);
-
-                // Restore the position and limit for the next datum
-                block.position(pos);
-                block.limit(limit);
-              }
-            }
-            contentWriter.close();
-          } catch (Throwable t) {
-            contentWriter.cancel();
-            throw t;
-          }
-        } finally {
-          Closeables.closeQuietly(reader);
+  private void cancel() {
+    try {
+      if (contentWriter != null) {
+        contentWriter.cancel();
+      }
+    } finally {
+      release();
+    }
+  }
+
+  private void release() {
+    if (inflater != null) {
+      inflater.end();
+      inflater = null;
+    }
+  }
+
+  /**
+   * Processes the file header and all complete data blocks in the given content. Processed content is consumed
+   * from the buffer, the remaining content is the beginning of the header or of a data block.
+   */
+  private void processContent(ChannelBuffer content) throws IOException {
+    if (schema == null && !readHeader(content)) {
+      return;
+    }
+    while (readBlock(content)) {
+      // Empty loop
+    }
+  }
+
+  /**
+   * Reads the file header from the given content and creates the {@link ContentWriter} for it.
+   *
+   * @return {@code true} if the header was read, {@code false} if the content doesn't contain the complete header
+   */
+  private boolean readHeader(ChannelBuffer content) throws IOException {
+    Map<String, byte[]> metadata = Maps.newHashMap();
+    content.markReaderIndex();
+    try {
+      if (!Arrays.equals(MAGIC, readFixed(content, MAGIC.length))) {
+        throw new IOException("Content is not an avro file");
+      }
+      for (long count = readLong(content); count != 0; count = readLong(content)) {
+        if (count < 0) {
+          // A negative count is followed by the size of the map block in bytes
+          count = -count;
+          readLong(content);
+        }
+        for (long i = 0; i < count; i++) {
+          metadata.put(new String(readBytes(content), Charsets.UTF_8), readBytes(content));
         }
-      } catch (Throwable t) {
-        failure = t;
-      } finally {
-        Closeables.closeQuietly(contentStream);
       }
+      sync = readFixed(content, SYNC_SIZE);
+    } catch (EOFException e) {
+      content.resetReaderIndex();
+      if (content.readableBytes() > maxBlockSize) {
+        throw new IOException("Header of avro file exceeds the maximum size of " + maxBlockSize + " bytes");
+      }
+      return false;
+    }
+
+    byte[] schemaBytes = metadata.get(SCHEMA_KEY);
+    if (schemaBytes == null) {
+      throw new IOException("Missing schema in avro file");
+    }
+    byte[] codecBytes = metadata.get(CODEC_KEY);
+    codec = codecBytes == null ? NULL_CODEC : new String(codecBytes, Charsets.UTF_8);
+    if (!SUPPORTED_CODECS.contains(codec)) {
+      throw new IOException("Unsupported codec " + codec);
+    }
+    schema = new Schema.Parser().parse(new String(schemaBytes, Charsets.UTF_8));
+
+    // Create the {@link ContentWriter} for writing encoded Avro content to stream
+    String schemaStr = schema.toString();
+    contentWriter = contentWriterFactory.create(ImmutableMap.of(
+      Constants.Stream.Headers.SCHEMA, schemaStr,
+      Constants.Stream.Headers.SCHEMA_HASH, Hashing.md5().hashString(schemaStr, Charsets.UTF_8).toString()
+    ));
+    return true;
+  }
+
+  /**
+   * Reads one data block from the given content and writes all datums in it to the {@link ContentWriter}.
+   *
+   * @return {@code true} if a block was read, {@code false} if the content doesn't contain a complete block
+   */
+  private boolean readBlock(ChannelBuffer content) throws IOException {
+    if (!content.readable()) {
+      return false;
+    }
+    content.markReaderIndex();
+    long count;
+    long size;
+    try {
+      count = readLong(content);
+      size = readLong(content);
+    } catch (EOFException e) {
+      content.resetReaderIndex();
+      return false;
+    }
+    if (count < 0 || size < 0 || size > Integer.MAX_VALUE - SYNC_SIZE) {
+      throw new IOException("Invalid data block in avro file");
+    }
+    if (size > maxBlockSize) {
+      throw new IOException("Data block of " + size + " bytes in avro file exceeds the maximum size of "
+                              + maxBlockSize + " bytes");
+    }
+    if (content.readableBytes() < size + SYNC_SIZE) {
+      content.resetReaderIndex();
+      return false;
     }
 
-    public Throwable getFailure() {
-      return failure;
-    }
-
-    /**
-     * Skips a datum from the given decoder according to the given schema.
-     */
-    private void skipDatum(Schema schema, Decoder decoder) throws IOException {
-      switch (schema.getType()) {
-        case NULL:
-          decoder.readNull();
-          break;
-        case BOOLEAN:
-          decoder.readBoolean();
-          break;
-        case INT:
-          decoder.readInt();
-          break;
-        case LONG:
-          decoder.readLong();
-          break;
-        case FLOAT:
-          decoder.readFloat();
-          break;
-        case DOUBLE:
-          decoder.readDouble();
-          break;
-        case ENUM:
-          decoder.readEnum();
-          break;
-        case FIXED:
-          decoder.skipFixed(schema.getFixedSize());
-          break;
-        case STRING:
-          decoder.skipString();
-          break;
-        case BYTES:
-          decoder.skipBytes();
-          break;
-        case RECORD:
-          skipRecord(schema, decoder);
-          break;
-        case ARRAY:
-          skipArray(schema, decoder);
-          break;
-        case MAP:
-          skipMap(schema, decoder);
-          break;
-        case UNION:
-          skipDatum(schema.getTypes().get(decoder.readIndex()), decoder);
-          break;
+    ByteBuffer block = readBlockData(content, (int) size);
+    for (int i = 0; i < SYNC_SIZE; i++) {
+      if (content.readByte() != sync[i]) {
+        throw new IOException("Invalid sync in avro file");
       }
     }
+    // A decompressed block is not shared with anything else, hence datums can be written without copying
+    writeDatums(block, count, !NULL_CODEC.equals(codec));
+    return true;
+  }
 
-    /**
-     * Skips an array from the given decoder according to the given array schema.
-     */
-    private void skipArray(Schema schema, Decoder decoder) throws IOException {
-      for (long count = decoder.skipArray(); count != 0; count = decoder.skipArray()) {
-        while (count-- > 0) {
-          skipDatum(schema.getElementType(), decoder);
+  /**
+   * Reads and decompresses the data of a block from the given content.
+   */
+  private ByteBuffer readBlockData(ChannelBuffer content, int size) throws IOException {
+    if (NULL_CODEC.equals(codec)) {
+      ByteBuffer data = content.toByteBuffer(content.readerIndex(), size);
+      content.skipBytes(size);
+      return data;
+    }
+
+    byte[] input;
+    int offset;
+    if (content.hasArray()) {
+      input = content.array();
+      offset = content.arrayOffset() + content.readerIndex();
+    } else {
+      input = new byte[size];
+      content.getBytes(content.readerIndex(), input);
+      offset = 0;
+    }
+    content.skipBytes(size);
+    return DEFLATE_CODEC.equals(codec) ? inflate(input, offset, size) : uncompressSnappy(input, offset, size);
+  }
+
+  /**
+   * Decompresses a block written with the avro deflate codec, which is raw deflate data without zlib header.
+   */
+  private ByteBuffer inflate(byte[] input, int offset, int length) throws IOException {
+    if (inflater == null) {
+      inflater = new Inflater(true);
+    }
+    inflater.reset();
+    inflater.setInput(input, offset, length);
+
+    byte[] output = new byte[Math.max(length * 2, 64)];
+    int size = 0;
+    boolean paddingAdded = false;
+    try {
+      while (!inflater.finished()) {
+        if (size == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        size += inflater.inflate(output, size, output.length - size);
+        if (inflater.needsDictionary()) {
+          throw new IOException("Unsupported deflate block in avro file");
+        }
+        if (inflater.needsInput() && !inflater.finished()) {
+          // Inflater in nowrap mode may need an extra byte beyond the end of the compressed data
+          if (paddingAdded) {
+            throw new IOException("Truncated deflate block in avro file");
+          }
+          inflater.setInput(new byte[1]);
+          paddingAdded = true;
         }
       }
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid deflate block in avro file", e);
     }
+    return ByteBuffer.wrap(output, 0, size);
+  }
 
-    /**
-     * Skips a map from the given decoder according to the given map schema.
-     */
-    private void skipMap(Schema schema, Decoder decoder) throws IOException {
-      for (long count = decoder.skipMap(); count != 0; count = decoder.skipMap()) {
-        while (count-- > 0) {
-          // Skip key
-          decoder.skipString();
-          skipDatum(schema.getValueType(), decoder);
-        }
+  /**
+   * Decompresses a block written with the avro snappy codec, which is followed by the CRC32 of the
+   * uncompressed data.
+   */
+  private ByteBuffer uncompressSnappy(byte[] input, int offset, int length) throws IOException {
+    if (length < 4) {
+      throw new IOException("Invalid snappy block in avro file");
+    }
+    byte[] output = new byte[Snappy.uncompressedLength(input, offset, length - 4)];
+    int size = Snappy.uncompress(input, offset, length - 4, output, 0);
+
+    if (crc32 == null) {
+      crc32 = new CRC32();
+    }
+    crc32.reset();
+    crc32.update(output, 0, size);
+    if (ByteBuffer.wrap(input).getInt(offset + length - 4) != (int) crc32.getValue()) {
+      throw new IOException("Checksum failure in avro file");
+    }
+    return ByteBuffer.wrap(output, 0, size);
+  }
+
+  /**
+   * Writes each encoded datum in the given block to the {@link ContentWriter}.
+   */
+  private void writeDatums(ByteBuffer block, long count, boolean immutable) throws IOException {
+    // Since we are depending on position in the block buffer, a direct binary decoder must be used
+    // to ensure no buffering happens in the decoder.
+    decoder = DecoderFactory.get().directBinaryDecoder(blockInput.reset(block), decoder);
+    int limit = block.limit();
+
+    for (long i = 0; i < count; i++) {
+      // Instead of decoding the whole object, we just keep finding the object boundary.
+      int start = block.position();
+      skipDatum(schema, decoder);
+      int end = block.position();
+
+      if (immutable) {
+        ByteBuffer datum = block.duplicate();
+        datum.position(start);
+        datum.limit(end);
+        contentWriter.append(datum, true);
+      } else {
+        // Need to tell content write that the buffer provided is not immutable.
+        block.position(start);
+        block.limit(end);
+        contentWriter.append(block, false);
+
+        // Restore the position and limit for the next datum
+        block.position(end);
+        block.limit(limit);
       }
     }
+    if (block.hasRemaining()) {
+      throw new IOException("Data block in avro file contains more than " + count + " datums");
+    }
+  }
 
-    /**
-     * Skips a record from the given decoder according to the given record schema.
-     */
-    private void skipRecord(Schema schema, Decoder decoder) throws IOException {
-      for (Schema.Field field : schema.getFields()) {
-        skipDatum(field.schema(), decoder);
+  /**
+   * Reads a zig-zag encoded long from the given buffer.
+   *
+   * @throws EOFException if the buffer doesn't contain the complete long
+   */
+  private static long readLong(ChannelBuffer buffer) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (!buffer.readable()) {
+        throw new EOFException();
+      }
+      int b = buffer.readByte();
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return (value >>> 1) ^ -(value & 1);
       }
     }
+    throw new IOException("Invalid long encoding in avro file");
   }
 
   /**
-   * A dummy {@link DatumReader} that reads nothing.
+   * Reads length prefixed bytes from the given buffer.
+   *
+   * @throws EOFException if the buffer doesn't contain all the bytes
    */
-  private static final class DummyDatumReader implements DatumReader<Object> {
+  private static byte[] readBytes(ChannelBuffer buffer) throws IOException {
+    long length = readLong(buffer);
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new IOException("Invalid length in avro file");
+    }
+    return readFixed(buffer, (int) length);
+  }
 
-    @Override
-    public void setSchema(Schema schema) {
-      // No-op
+  /**
+   * Reads the given number of bytes from the given buffer.
+   *
+   * @throws EOFException if the buffer doesn't contain all the bytes
+   */
+  private static byte[] readFixed(ChannelBuffer buffer, int length) throws EOFException {
+    if (buffer.readableBytes() < length) {
+      throw new EOFException();
     }
+    byte[] bytes = new byte[length];
+    buffer.readBytes(bytes);
+    return bytes;
+  }
+
+  /**
+   * Skips a datum from the given decoder according to the given schema.
+   */
+  private static void skipDatum(Schema schema, Decoder decoder) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        decoder.readNull();
+        break;
+      case BOOLEAN:
+        decoder.readBoolean();
+        break;
+      case INT:
+        decoder.readInt();
+        break;
+      case LONG:
+        decoder.readLong();
+        break;
+      case FLOAT:
+        decoder.readFloat();
+        break;
+      case DOUBLE:
+        decoder.readDouble();
+        break;
+      case ENUM:
+        decoder.readEnum();
+        break;
+      case FIXED:
+        decoder.skipFixed(schema.getFixedSize());
+        break;
+      case STRING:
+        decoder.skipString();
+        break;
+      case BYTES:
+        decoder.skipBytes();
+        break;
+      case RECORD:
+        skipRecord(schema, decoder);
+        break;
+      case ARRAY:
+        skipArray(schema, decoder);
+        break;
+      case MAP:
+        skipMap(schema, decoder);
+        break;
+      case UNION:
+        skipDatum(schema.getTypes().get(decoder.readIndex()), decoder);
+        break;
+    }
+  }
 
-    @Override
-    public Object read(Object reuse, Decoder in) throws IOException {
-      return null;
+  /**
+   * Skips an array from the given decoder according to the given array schema.
+   */
+  private static void skipArray(Schema schema, Decoder decoder) throws IOException {
+    for (long count = decoder.skipArray(); count != 0; count = decoder.skipArray()) {
+      while (count-- > 0) {
+        skipDatum(schema.getElementType(), decoder);
+      }
+    }
+  }
+
+  /**
+   * Skips a map from the given decoder according to the given map schema.
+   */
+  private static void skipMap(Schema schema, Decoder decoder) throws IOException {
+    for (long count = decoder.skipMap(); count != 0; count = decoder.skipMap()) {
+      while (count-- > 0) {
+        // Skip key
+        decoder.skipString();
+        skipDatum(schema.getValueType(), decoder);
+      }
+    }
+  }
+
+  /**
+   * Skips a record from the given decoder according to the given record schema.
+   */
+  private static void skipRecord(Schema schema, Decoder decoder) throws IOException {
+    for (Schema.Field field : schema.getFields()) {
+      skipDatum(field.schema(), decoder);
     }
   }
 }
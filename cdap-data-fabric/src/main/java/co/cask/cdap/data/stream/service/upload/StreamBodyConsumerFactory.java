@@ -25,6 +25,17 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
  */
 public class StreamBodyConsumerFactory {
 
+  private final int maxAvroBlockSize;
+
+  /**
+   * Creates a factory.
+   *
+   * @param maxAvroBlockSize maximum size in bytes of the header and of a data block of an uploaded avro file
+   */
+  public StreamBodyConsumerFactory(int maxAvroBlockSize) {
+    this.maxAvroBlockSize = maxAvroBlockSize;
+  }
+
   /**
    * Creates a {@link BodyConsumer} to handle the given batch request.
    *
@@ -43,7 +54,7 @@ public class StreamBodyConsumerFactory {
       return new TextStreamBodyConsumer(contentWriterFactory);
     }
     if (contentType.equals("avro/binary")) {
-      return new AvroStreamBodyConsumer(contentWriterFactory);
+      return new AvroStreamBodyConsumer(contentWriterFactory, maxAvroBlockSize);
     }
     throw new UnsupportedOperationException("Unsupported content type " + contentType);
   }
@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset;
+
+import co.cask.cdap.notifications.feeds.NotificationFeedNotFoundException;
+import co.cask.cdap.notifications.service.NotificationContext;
+import co.cask.cdap.notifications.service.NotificationHandler;
+import co.cask.cdap.notifications.service.NotificationService;
+import co.cask.cdap.proto.DatasetMeta;
+import co.cask.cdap.proto.DatasetTypeMeta;
+import co.cask.cdap.proto.Id;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Provider;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Type;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * An in-process cache of the dataset instance and type metadata that {@link RemoteDatasetFramework}s fetch from the
+ * dataset service, shared by all frameworks in the JVM.
+ *
+ * Every framework only uses entries that are younger than its time to live. Entries are invalidated as soon as a
+ * dataset instance or module is changed through a framework or a dataset service in the same JVM, or when a
+ * {@link DatasetMetaChange} is received on the notification feed of the dataset service.
+ *
+ * The dataset service registers the owners of a dataset instance when its metadata is fetched, hence cached instance
+ * metadata is only returned for owners that were already registered by the process.
+ */
+public final class DatasetMetaCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetMetaCache.class);
+
+  // Maximum number of instance and type entries, each
+  private static final int MAX_ENTRIES = 10000;
+
+  public static final DatasetMetaCache INSTANCE = new DatasetMetaCache(MAX_ENTRIES);
+
+  private final Cache<Id.DatasetInstance, Entry<DatasetMeta>> instances;
+  private final Cache<Id.DatasetType, Entry<DatasetTypeMeta>> types;
+  // Incremented by every invalidation, to detect invalidations that happen while metadata is fetched
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong lastSubscribeAttempt = new AtomicLong();
+  private volatile Cancellable subscription;
+
+  DatasetMetaCache(int maxEntries) {
+    this.instances = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    this.types = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+  }
+
+  /**
+   * Returns the current generation of the cache. It must be obtained before fetching metadata that is put into
+   * the cache afterwards.
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Returns the cached metadata of a dataset instance if it is younger than the given time to live, and if all the
+   * given owners were registered with it, or {@code null} otherwise.
+   */
+  @Nullable
+  DatasetMeta getInstance(Id.DatasetInstance datasetInstanceId,
+                          @Nullable Iterable<? extends Id> owners, long ttlMillis) {
+    Entry<DatasetMeta> entry = instances.getIfPresent(datasetInstanceId);
+    if (entry == null || entry.isExpired(ttlMillis) || !entry.hasOwners(owners)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.value;
+  }
+
+  /**
+   * Caches the metadata of a dataset instance, fetched with the given owners, unless the cache was invalidated
+   * since the given generation.
+   */
+  void putInstance(Id.DatasetInstance datasetInstanceId, DatasetMeta meta,
+                   @Nullable Iterable<? extends Id> owners, long fetchGeneration) {
+    // Owners registered before stay registered with the dataset service, even if the metadata changed
+    ImmutableSet.Builder<Id> registered = ImmutableSet.builder();
+    Entry<DatasetMeta> existing = instances.getIfPresent(datasetInstanceId);
+    if (existing != null) {
+      registered.addAll(existing.owners);
+    }
+    if (owners != null) {
+      registered.addAll(owners);
+    }
+    instances.put(datasetInstanceId, new Entry<DatasetMeta>(meta, registered.build()));
+    // An invalidation that happened during the fetch must not be lost
+    if (generation.get() != fetchGeneration) {
+      instances.invalidate(datasetInstanceId);
+    }
+  }
+
+  /**
+   * Returns the cached metadata of a dataset type if it is younger than the given time to live, or {@code null}
+   * otherwise.
+   */
+  @Nullable
+  DatasetTypeMeta getType(Id.DatasetType datasetTypeId, long ttlMillis) {
+    Entry<DatasetTypeMeta> entry = types.getIfPresent(datasetTypeId);
+    if (entry == null || entry.isExpired(ttlMillis)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.value;
+  }
+
+  /**
+   * Caches the metadata of a dataset type, unless the cache was invalidated since the given generation.
+   */
+  void putType(Id.DatasetType datasetTypeId, DatasetTypeMeta meta, long fetchGeneration) {
+    types.put(datasetTypeId, new Entry<DatasetTypeMeta>(meta, ImmutableSet.<Id>of()));
+    if (generation.get() != fetchGeneration) {
+      types.invalidate(datasetTypeId);
+    }
+  }
+
+  /**
+   * Invalidates the cached metadata of a dataset instance.
+   */
+  void invalidate(Id.DatasetInstance datasetInstanceId) {
+    generation.incrementAndGet();
+    instances.invalidate(datasetInstanceId);
+  }
+
+  /**
+   * Invalidates all cached metadata. This is needed if dataset modules change, because instance metadata contains
+   * the modules of the instance's type, and types of one namespace can be used by instances of other namespaces.
+   */
+  void invalidateAll() {
+    generation.incrementAndGet();
+    instances.invalidateAll();
+    types.invalidateAll();
+  }
+
+  /**
+   * Invalidates the cached metadata affected by the given change.
+   */
+  public void changed(DatasetMetaChange change) {
+    if (change.getInstanceName() == null) {
+      invalidateAll();
+    } else {
+      invalidate(Id.DatasetInstance.from(change.getNamespaceId(), change.getInstanceName()));
+    }
+  }
+
+  /**
+   * Subscribes this cache to the dataset metadata changes feed, unless it is already subscribed. If subscribing
+   * fails, for example because the notification service is not running or the feed was not created yet, it is
+   * retried by the first call after the given delay.
+   */
+  void subscribe(Provider<NotificationService> notificationServiceProvider, long retryDelayMillis) {
+    if (subscription != null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long lastAttempt = lastSubscribeAttempt.get();
+    if ((lastAttempt != 0 && now - lastAttempt < retryDelayMillis)
+      || !lastSubscribeAttempt.compareAndSet(lastAttempt, now)) {
+      return;
+    }
+    try {
+      NotificationService notificationService = notificationServiceProvider.get();
+      if (!notificationService.isRunning()) {
+        return;
+      }
+      subscription = notificationService.subscribe(DatasetMetaChange.FEED, new ChangeHandler());
+    } catch (NotificationFeedNotFoundException e) {
+      LOG.debug("Notification feed {} does not exist yet", DatasetMetaChange.FEED);
+    } catch (Exception e) {
+      LOG.debug("Failed to subscribe to notification feed {}", DatasetMetaChange.FEED, e);
+    }
+  }
+
+  /**
+   * @return the number of lookups that were answered from the cache
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of lookups that required a call to the dataset service
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Invalidates cached metadata for the changes received on the dataset metadata changes feed.
+   */
+  private final class ChangeHandler implements NotificationHandler<DatasetMetaChange> {
+
+    @Override
+    public Type getNotificationType() {
+      return DatasetMetaChange.class;
+    }
+
+    @Override
+    public void received(DatasetMetaChange change, NotificationContext notificationContext) {
+      LOG.trace("Received dataset metadata change {}", change);
+      changed(change);
+    }
+  }
+
+  /**
+   * Cached metadata, with the time it was cached and the owners that were registered with it.
+   *
+   * @param <T> type of the metadata
+   */
+  private static final class Entry<T> {
+    private final T value;
+    private final Set<Id> owners;
+    private final long createTime = System.currentTimeMillis();
+
+    Entry(T value, Set<Id> owners) {
+      this.value = value;
+      this.owners = owners;
+    }
+
+    boolean isExpired(long ttlMillis) {
+      return System.currentTimeMillis() - createTime >= ttlMillis;
+    }
+
+    boolean hasOwners(@Nullable Iterable<? extends Id> owners) {
+      if (owners != null) {
+        for (Id owner : owners) {
+          if (!this.owners.contains(owner)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset;
+
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.proto.Id;
+import com.google.common.base.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Notification published by the dataset service when a dataset instance or the dataset modules of a namespace
+ * change, so that clients can invalidate the metadata they cached.
+ */
+public final class DatasetMetaChange {
+
+  public static final Id.NotificationFeed FEED = new Id.NotificationFeed.Builder()
+    .setNamespaceId(Constants.SYSTEM_NAMESPACE)
+    .setCategory(Constants.Notification.Dataset.DATASET_INTERNAL_FEED_CATEGORY)
+    .setName(Constants.Notification.Dataset.DATASET_META_CHANGES_FEED_NAME)
+    .setDescription("Dataset metadata changes feed.")
+    .build();
+
+  private final String namespaceId;
+  private final String instanceName;
+
+  private DatasetMetaChange(String namespaceId, @Nullable String instanceName) {
+    this.namespaceId = namespaceId;
+    this.instanceName = instanceName;
+  }
+
+  /**
+   * Creates a notification for a dataset instance that was created, updated or deleted.
+   */
+  public static DatasetMetaChange instanceChanged(Id.DatasetInstance datasetInstanceId) {
+    return new DatasetMetaChange(datasetInstanceId.getNamespaceId(), datasetInstanceId.getId());
+  }
+
+  /**
+   * Creates a notification for dataset modules that were added or deleted in a namespace. This affects the types
+   * of that namespace, and the instances of all namespaces that use them.
+   */
+  public static DatasetMetaChange modulesChanged(Id.Namespace namespaceId) {
+    return new DatasetMetaChange(namespaceId.getId(), null);
+  }
+
+  public String getNamespaceId() {
+    return namespaceId;
+  }
+
+  /**
+   * @return the name of the dataset instance that changed, or {@code null} if dataset modules changed
+   */
+  @Nullable
+  public String getInstanceName() {
+    return instanceName;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("namespaceId", namespaceId)
+      .add("instanceName", instanceName)
+      .toString();
+  }
+}
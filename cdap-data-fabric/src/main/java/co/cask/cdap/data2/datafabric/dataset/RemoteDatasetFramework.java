@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,6 +23,7 @@ import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.module.DatasetDefinitionRegistry;
 import co.cask.cdap.api.dataset.module.DatasetModule;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.utils.ApplicationBundler;
@@ -32,6 +33,7 @@ import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.dataset2.DatasetManagementException;
 import co.cask.cdap.data2.dataset2.SingleTypeModule;
 import co.cask.cdap.data2.dataset2.module.lib.DatasetModules;
+import co.cask.cdap.notifications.service.NotificationService;
 import co.cask.cdap.proto.DatasetMeta;
 import co.cask.cdap.proto.DatasetModuleMeta;
 import co.cask.cdap.proto.DatasetSpecificationSummary;
@@ -46,6 +48,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.apache.twill.filesystem.LocalLocationFactory;
 import org.apache.twill.filesystem.Location;
@@ -58,13 +61,17 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import javax.annotation.Nullable;
 
 /**
- * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service
+ * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service.
+ *
+ * Dataset instance and type metadata fetched from the service is kept in the {@link DatasetMetaCache} of the JVM for
+ * the configured time to live, so that repeated instantiation of the same datasets does not call the service.
  */
 @SuppressWarnings("unchecked")
 public class RemoteDatasetFramework implements DatasetFramework {
@@ -73,9 +80,12 @@ public class RemoteDatasetFramework implements DatasetFramework {
   private final LoadingCache<Id.Namespace, DatasetServiceClient> clientCache;
   private final DatasetDefinitionRegistryFactory registryFactory;
   private final DatasetTypeClassLoaderFactory typeLoader;
+  private final DatasetMetaCache metaCache = DatasetMetaCache.INSTANCE;
+  private final long metaCacheTTLMillis;
+  private Provider<NotificationService> notificationServiceProvider;
 
   @Inject
-  public RemoteDatasetFramework(final DiscoveryServiceClient discoveryClient,
+  public RemoteDatasetFramework(CConfiguration cConf, final DiscoveryServiceClient discoveryClient,
                                 DatasetDefinitionRegistryFactory registryFactory,
                                 DatasetTypeClassLoaderFactory typeLoader) {
     this.clientCache = CacheBuilder.newBuilder().build(new CacheLoader<Id.Namespace, DatasetServiceClient>() {
@@ -86,6 +96,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
     });
     this.registryFactory = registryFactory;
     this.typeLoader = typeLoader;
+    this.metaCacheTTLMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(
+      Constants.Dataset.CLIENT_META_CACHE_TTL_SECS, Constants.Dataset.DEFAULT_CLIENT_META_CACHE_TTL_SECS));
+  }
+
+  /**
+   * Sets the notification service used to receive changes of dataset metadata made by other processes. Without it,
+   * changes made by other processes are only seen after the cached metadata expired.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setNotificationService(Provider<NotificationService> notificationServiceProvider) {
+    // The notification service uses a dataset framework itself, hence it is only obtained when needed
+    this.notificationServiceProvider = notificationServiceProvider;
   }
 
   @Override
@@ -107,31 +130,51 @@ public class RemoteDatasetFramework implements DatasetFramework {
       typeClass = module.getClass();
     }
 
-    addModule(moduleId, typeClass);
+    try {
+      addModule(moduleId, typeClass);
+    } finally {
+      metaCache.invalidateAll();
+    }
   }
 
   @Override
   public void deleteModule(Id.DatasetModule moduleId) throws DatasetManagementException {
-    clientCache.getUnchecked(moduleId.getNamespace()).deleteModule(moduleId.getId());
+    try {
+      clientCache.getUnchecked(moduleId.getNamespace()).deleteModule(moduleId.getId());
+    } finally {
+      metaCache.invalidateAll();
+    }
   }
 
   @Override
   public void deleteAllModules(Id.Namespace namespaceId) throws DatasetManagementException {
-    clientCache.getUnchecked(namespaceId).deleteModules();
+    try {
+      clientCache.getUnchecked(namespaceId).deleteModules();
+    } finally {
+      metaCache.invalidateAll();
+    }
   }
 
   @Override
   public void addInstance(String datasetType, Id.DatasetInstance datasetInstanceId, DatasetProperties props)
     throws DatasetManagementException {
-    clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .addInstance(datasetInstanceId.getId(), datasetType, props);
+    try {
+      clientCache.getUnchecked(datasetInstanceId.getNamespace())
+        .addInstance(datasetInstanceId.getId(), datasetType, props);
+    } finally {
+      metaCache.invalidate(datasetInstanceId);
+    }
   }
 
   @Override
   public void updateInstance(Id.DatasetInstance datasetInstanceId, DatasetProperties props)
     throws DatasetManagementException {
-    clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .updateInstance(datasetInstanceId.getId(), props);
+    try {
+      clientCache.getUnchecked(datasetInstanceId.getNamespace())
+        .updateInstance(datasetInstanceId.getId(), props);
+    } finally {
+      metaCache.invalidate(datasetInstanceId);
+    }
   }
 
   @Override
@@ -143,14 +186,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Nullable
   @Override
   public DatasetSpecification getDatasetSpec(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    DatasetMeta meta = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta meta = getInstanceMeta(datasetInstanceId, null);
     return meta == null ? null : meta.getSpec();
   }
 
   @Override
   public boolean hasInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetInstanceId.getNamespace()).getInstance(datasetInstanceId.getId()) != null;
+    return getInstanceMeta(datasetInstanceId, null) != null;
   }
 
   @Override
@@ -160,12 +202,29 @@ public class RemoteDatasetFramework implements DatasetFramework {
 
   @Override
   public boolean hasType(Id.DatasetType datasetTypeId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetTypeId.getNamespace()).getType(datasetTypeId.getTypeName()) != null;
+    if (metaCacheTTLMillis <= 0) {
+      return clientCache.getUnchecked(datasetTypeId.getNamespace()).getType(datasetTypeId.getTypeName()) != null;
+    }
+    if (metaCache.getType(datasetTypeId, metaCacheTTLMillis) != null) {
+      return true;
+    }
+    subscribeToMetaChanges();
+    long generation = metaCache.getGeneration();
+    DatasetTypeMeta meta = clientCache.getUnchecked(datasetTypeId.getNamespace()).getType(datasetTypeId.getTypeName());
+    if (meta == null) {
+      return false;
+    }
+    metaCache.putType(datasetTypeId, meta, generation);
+    return true;
   }
 
   @Override
   public void deleteInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    clientCache.getUnchecked(datasetInstanceId.getNamespace()).deleteInstance(datasetInstanceId.getId());
+    try {
+      clientCache.getUnchecked(datasetInstanceId.getNamespace()).deleteInstance(datasetInstanceId.getId());
+    } finally {
+      metaCache.invalidate(datasetInstanceId);
+    }
   }
 
   @Override
@@ -180,8 +239,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public <T extends DatasetAdmin> T getAdmin(Id.DatasetInstance datasetInstanceId, ClassLoader classLoader)
     throws DatasetManagementException, IOException {
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta instanceInfo = getInstanceMeta(datasetInstanceId, null);
     if (instanceInfo == null) {
       return null;
     }
@@ -196,8 +254,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     @Nullable ClassLoader classLoader,
     @Nullable Iterable<? extends Id> owners) throws DatasetManagementException, IOException {
 
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId(), owners);
+    DatasetMeta instanceInfo = getInstanceMeta(datasetInstanceId, owners);
     if (instanceInfo == null) {
       return null;
     }
@@ -222,7 +279,53 @@ public class RemoteDatasetFramework implements DatasetFramework {
 
   @Override
   public void deleteNamespace(Id.Namespace namespaceId) throws DatasetManagementException {
-    clientCache.getUnchecked(namespaceId).deleteNamespace();
+    try {
+      clientCache.getUnchecked(namespaceId).deleteNamespace();
+    } finally {
+      metaCache.invalidateAll();
+    }
+  }
+
+  /**
+   * @return the number of dataset instance and type lookups of all frameworks in the JVM that were answered from
+   *         the cached metadata
+   */
+  public long getMetaCacheHits() {
+    return metaCache.getHits();
+  }
+
+  /**
+   * @return the number of dataset instance and type lookups of all frameworks in the JVM that called the dataset
+   *         service
+   */
+  public long getMetaCacheMisses() {
+    return metaCache.getMisses();
+  }
+
+  @Nullable
+  private DatasetMeta getInstanceMeta(Id.DatasetInstance datasetInstanceId,
+                                      @Nullable Iterable<? extends Id> owners) throws DatasetManagementException {
+    DatasetServiceClient client = clientCache.getUnchecked(datasetInstanceId.getNamespace());
+    if (metaCacheTTLMillis <= 0) {
+      return client.getInstance(datasetInstanceId.getId(), owners);
+    }
+    DatasetMeta meta = metaCache.getInstance(datasetInstanceId, owners, metaCacheTTLMillis);
+    if (meta != null) {
+      return meta;
+    }
+    subscribeToMetaChanges();
+    long generation = metaCache.getGeneration();
+    meta = client.getInstance(datasetInstanceId.getId(), owners);
+    if (meta != null) {
+      metaCache.putInstance(datasetInstanceId, meta, owners, generation);
+    }
+    return meta;
+  }
+
+  private void subscribeToMetaChanges() {
+    if (notificationServiceProvider != null) {
+      metaCache.subscribe(notificationServiceProvider, metaCacheTTLMillis);
+    }
   }
 
   private void addModule(Id.DatasetModule moduleId, Class<?> typeClass) throws DatasetManagementException {
@@ -84,16 +84,18 @@ public class DatasetInstanceHandler extends AbstractHttpHandler {
   private final ExploreFacade exploreFacade;
   private final boolean allowDatasetUncheckedUpgrade;
   private final UsageRegistry usageRegistry;
+  private final DatasetMetaChangePublisher changePublisher;
 
   @Inject
-  public DatasetInstanceHandler(DatasetTypeManager implManager, DatasetInstanceManager instanceManager,
-                                DatasetOpExecutor opExecutorClient, ExploreFacade exploreFacade, CConfiguration conf,
-                                UsageRegistry usageRegistry) {
+  DatasetInstanceHandler(DatasetTypeManager implManager, DatasetInstanceManager instanceManager,
+                         DatasetOpExecutor opExecutorClient, ExploreFacade exploreFacade, CConfiguration conf,
+                         UsageRegistry usageRegistry, DatasetMetaChangePublisher changePublisher) {
     this.opExecutorClient = opExecutorClient;
     this.implManager = implManager;
     this.instanceManager = instanceManager;
     this.exploreFacade = exploreFacade;
     this.usageRegistry = usageRegistry;
+    this.changePublisher = changePublisher;
     this.allowDatasetUncheckedUpgrade = conf.getBoolean(Constants.Dataset.DATASET_UNCHECKED_UPGRADE);
   }
 
@@ -262,6 +264,7 @@ public class DatasetInstanceHandler extends AbstractHttpHandler {
       throw new RuntimeException(msg, e);
     }
     instanceManager.add(namespace, spec);
+    changePublisher.instanceChanged(Id.DatasetInstance.from(namespace, name));
     return true;
   }
 
@@ -367,6 +370,7 @@ public class DatasetInstanceHandler extends AbstractHttpHandler {
     if (!instanceManager.delete(datasetInstanceId)) {
       return false;
     }
+    changePublisher.instanceChanged(datasetInstanceId);
 
     DatasetTypeMeta typeMeta = getTypeInfo(datasetInstanceId.getNamespace(), spec.getType());
     if (typeMeta == null) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset.service;
+
+import co.cask.cdap.data2.datafabric.dataset.DatasetMetaCache;
+import co.cask.cdap.data2.datafabric.dataset.DatasetMetaChange;
+import co.cask.cdap.notifications.feeds.NotificationFeedException;
+import co.cask.cdap.notifications.feeds.NotificationFeedManager;
+import co.cask.cdap.notifications.feeds.NotificationFeedNotFoundException;
+import co.cask.cdap.notifications.service.NotificationService;
+import co.cask.cdap.proto.Id;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Announces changes of dataset instances and modules, so that clients can invalidate the metadata they cached.
+ *
+ * The {@link DatasetMetaCache} of this JVM is invalidated directly. If a notification service is set, the change
+ * is also published on the dataset metadata changes feed for other processes. Publishing is best effort and happens
+ * asynchronously, hence it never fails or delays the operation that made the change.
+ */
+final class DatasetMetaChangePublisher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetMetaChangePublisher.class);
+
+  private final ExecutorService executor =
+    Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("dataset-meta-change-publisher"));
+  private volatile NotificationService notificationService;
+  private volatile NotificationFeedManager feedManager;
+  private boolean feedCreated;
+
+  void setNotificationService(NotificationService notificationService, NotificationFeedManager feedManager) {
+    this.notificationService = notificationService;
+    this.feedManager = feedManager;
+  }
+
+  /**
+   * Announces that a dataset instance was created, updated or deleted.
+   */
+  void instanceChanged(Id.DatasetInstance datasetInstanceId) {
+    publish(DatasetMetaChange.instanceChanged(datasetInstanceId));
+  }
+
+  /**
+   * Announces that dataset modules were added or deleted in a namespace.
+   */
+  void modulesChanged(Id.Namespace namespaceId) {
+    publish(DatasetMetaChange.modulesChanged(namespaceId));
+  }
+
+  void stop() {
+    executor.shutdownNow();
+  }
+
+  private void publish(final DatasetMetaChange change) {
+    DatasetMetaCache.INSTANCE.changed(change);
+    if (notificationService == null || feedManager == null) {
+      return;
+    }
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (!notificationService.isRunning()) {
+              return;
+            }
+            if (!feedCreated) {
+              createFeed();
+            }
+            notificationService.publish(DatasetMetaChange.FEED, change);
+          } catch (Exception e) {
+            LOG.debug("Failed to publish dataset metadata change {}", change, e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Not publishing dataset metadata change {} after stop", change);
+    }
+  }
+
+  // Only called from the executor thread
+  private void createFeed() throws NotificationFeedException {
+    try {
+      feedManager.getFeed(DatasetMetaChange.FEED);
+    } catch (NotificationFeedNotFoundException e) {
+      feedManager.createFeed(DatasetMetaChange.FEED);
+    }
+    feedCreated = true;
+  }
+}
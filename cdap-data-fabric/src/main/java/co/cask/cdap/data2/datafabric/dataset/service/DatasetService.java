@@ -30,6 +30,8 @@ import co.cask.cdap.data2.datafabric.dataset.type.DatasetTypeManager;
 import co.cask.cdap.data2.metrics.DatasetMetricsReporter;
 import co.cask.cdap.data2.registry.UsageRegistry;
 import co.cask.cdap.explore.client.ExploreFacade;
+import co.cask.cdap.notifications.feeds.NotificationFeedManager;
+import co.cask.cdap.notifications.service.NotificationService;
 import co.cask.http.NettyHttpService;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
@@ -67,6 +69,7 @@ public class DatasetService extends AbstractExecutionThreadService {
 
   private final DatasetTypeManager typeManager;
   private final MDSDatasetsRegistry mdsDatasets;
+  private final DatasetMetaChangePublisher changePublisher;
 
   private Cancellable opExecutorServiceWatch;
   private SettableFuture<ServiceDiscovered> opExecutorDiscovered;
@@ -88,10 +91,12 @@ public class DatasetService extends AbstractExecutionThreadService {
                         UsageRegistry usageRegistry) throws Exception {
 
     this.typeManager = typeManager;
-    DatasetTypeHandler datasetTypeHandler = new DatasetTypeHandler(typeManager, cConf, namespacedLocationFactory);
+    this.changePublisher = new DatasetMetaChangePublisher();
+    DatasetTypeHandler datasetTypeHandler = new DatasetTypeHandler(typeManager, cConf, namespacedLocationFactory,
+                                                                   changePublisher);
     DatasetInstanceHandler datasetInstanceHandler = new DatasetInstanceHandler(typeManager, instanceManager,
                                                                                opExecutorClient, exploreFacade, cConf,
-                                                                               usageRegistry);
+                                                                               usageRegistry, changePublisher);
     UnderlyingSystemNamespaceHandler underlyingSystemNamespaceHandler =
       new UnderlyingSystemNamespaceHandler(underlyingSystemNamespaceAdmin);
     NettyHttpService.Builder builder = new CommonNettyHttpServiceBuilder(cConf);
@@ -121,6 +126,15 @@ public class DatasetService extends AbstractExecutionThreadService {
     this.metricReporters = metricReporters;
   }
 
+  /**
+   * Sets the notification service used to announce changes of dataset metadata to other processes.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setNotificationService(NotificationService notificationService, NotificationFeedManager feedManager) {
+    changePublisher.setNotificationService(notificationService, feedManager);
+  }
+
   @Override
   protected void startUp() throws Exception {
     LOG.info("Starting DatasetService...");
@@ -241,6 +255,7 @@ public class DatasetService extends AbstractExecutionThreadService {
     }
 
     httpService.stopAndWait();
+    changePublisher.stop();
     opExecutorClient.stopAndWait();
   }
 
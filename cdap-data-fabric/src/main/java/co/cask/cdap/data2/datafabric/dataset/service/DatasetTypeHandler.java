@@ -65,13 +65,15 @@ public class DatasetTypeHandler extends AbstractHttpHandler {
   private final DatasetTypeManager manager;
   private final CConfiguration cConf;
   private final NamespacedLocationFactory namespacedLocationFactory;
+  private final DatasetMetaChangePublisher changePublisher;
 
   @Inject
-  public DatasetTypeHandler(DatasetTypeManager manager, CConfiguration conf,
-                            NamespacedLocationFactory namespacedLocationFactory) {
+  DatasetTypeHandler(DatasetTypeManager manager, CConfiguration conf,
+                     NamespacedLocationFactory namespacedLocationFactory, DatasetMetaChangePublisher changePublisher) {
     this.manager = manager;
     this.cConf = conf;
     this.namespacedLocationFactory = namespacedLocationFactory;
+    this.changePublisher = changePublisher;
   }
 
   @Override
@@ -109,6 +111,7 @@ public class DatasetTypeHandler extends AbstractHttpHandler {
     }
     try {
       manager.deleteModules(Id.Namespace.from(namespaceId));
+      changePublisher.modulesChanged(Id.Namespace.from(namespaceId));
       responder.sendStatus(HttpResponseStatus.OK);
     } catch (DatasetModuleConflictException e) {
       responder.sendString(HttpResponseStatus.CONFLICT, e.getMessage());
@@ -192,6 +195,7 @@ public class DatasetTypeHandler extends AbstractHttpHandler {
           }
 
           manager.addModule(datasetModuleId, className, archive);
+          changePublisher.modulesChanged(datasetModuleId.getNamespace());
           // todo: response with DatasetModuleMeta of just added module (and log this info)
           LOG.info("Added module {}", datasetModuleId);
           responder.sendStatus(HttpResponseStatus.OK);
@@ -235,6 +239,7 @@ public class DatasetTypeHandler extends AbstractHttpHandler {
       return;
     }
 
+    changePublisher.modulesChanged(Id.Namespace.from(namespaceId));
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
@@ -33,6 +33,14 @@ public final class DatasetCacheKey {
     this.arguments = arguments;
   }
 
+  public String getName() {
+    return name;
+  }
+
+  public Map<String, String> getArguments() {
+    return arguments;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
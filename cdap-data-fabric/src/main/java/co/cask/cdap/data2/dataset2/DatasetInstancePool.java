@@ -0,0 +1,288 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2;
+
+import co.cask.cdap.api.dataset.Dataset;
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.proto.Id;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of dataset instances of one program, to reuse instances across transactions instead of instantiating
+ * them for every transaction.
+ *
+ * An instance is acquired by one {@link DynamicDatasetContext} at a time, and released after the transaction of
+ * that context finished. A {@link co.cask.tephra.TransactionAware} instance is reset by the {@code startTx} of its
+ * next transaction. Instances used by transactions that failed should be discarded rather than released, because
+ * their state is unknown. At most the configured number of idle instances are kept, instances released to a full
+ * pool are closed. Instances that stay idle for longer than the configured idle timeout are closed as well, so that
+ * instances created before a change of the dataset, such as an update of its properties, are eventually replaced.
+ */
+public final class DatasetInstancePool implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetInstancePool.class);
+
+  private final DatasetFramework datasetFramework;
+  private final ClassLoader classLoader;
+  private final Iterable<? extends Id> owners;
+  private final int maxIdle;
+  private final long idleTimeoutNanos;
+  private final MetricsCollector metricsCollector;
+
+  // Idle instances by dataset and arguments, most recently released first, guarded by this
+  private final Map<Key, Deque<IdleInstance>> idle = Maps.newHashMap();
+  private int idleCount;
+  private boolean closed;
+
+  private final AtomicLong instantiations = new AtomicLong();
+  private final AtomicLong instantiationNanos = new AtomicLong();
+  private final AtomicLong reuses = new AtomicLong();
+
+  /**
+   * Creates a pool.
+   *
+   * @param datasetFramework the dataset framework for creating dataset instances
+   * @param classLoader the classloader to use when creating dataset instances
+   * @param owners the {@link Id}s which own the datasets of the pool
+   * @param maxIdle maximum number of idle instances kept by the pool
+   * @param idleTimeoutMillis time after which idle instances are closed
+   * @param metricsCollector the collector to report instantiations and reuses to, or {@code null}
+   */
+  public DatasetInstancePool(DatasetFramework datasetFramework, ClassLoader classLoader,
+                             @Nullable Iterable<? extends Id> owners, int maxIdle, long idleTimeoutMillis,
+                             @Nullable MetricsCollector metricsCollector) {
+    this.datasetFramework = datasetFramework;
+    this.classLoader = classLoader;
+    this.owners = owners;
+    this.maxIdle = maxIdle;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    this.metricsCollector = metricsCollector;
+  }
+
+  /**
+   * Acquires an instance of a dataset with the given arguments. It is an idle instance of the pool if there is one,
+   * or a new instance otherwise.
+   *
+   * @return the dataset instance, or {@code null} if the dataset does not exist
+   */
+  @Nullable
+  public Dataset acquire(Id.DatasetInstance datasetInstanceId,
+                         Map<String, String> arguments) throws DatasetManagementException, IOException {
+    Key key = new Key(datasetInstanceId, arguments);
+    Dataset reused = null;
+    List<Dataset> expired = Lists.newArrayList();
+    synchronized (this) {
+      evictExpired(expired);
+      Deque<IdleInstance> instances = idle.get(key);
+      if (instances != null && !instances.isEmpty()) {
+        idleCount--;
+        // Reuse the most recently released instance
+        reused = instances.pollFirst().dataset;
+      }
+    }
+    discardAll(expired);
+    if (reused != null) {
+      reuses.incrementAndGet();
+      if (metricsCollector != null) {
+        metricsCollector.increment("dataset.pool.reuses", 1);
+      }
+      return reused;
+    }
+
+    long startTime = System.nanoTime();
+    Dataset dataset = datasetFramework.getDataset(datasetInstanceId, key.arguments, classLoader, owners);
+    long nanos = System.nanoTime() - startTime;
+    if (dataset != null) {
+      instantiations.incrementAndGet();
+      instantiationNanos.addAndGet(nanos);
+      if (metricsCollector != null) {
+        metricsCollector.increment("dataset.pool.instantiations", 1);
+        metricsCollector.increment("dataset.pool.instantiation.ms", TimeUnit.NANOSECONDS.toMillis(nanos));
+      }
+    }
+    return dataset;
+  }
+
+  /**
+   * Releases an instance acquired from this pool, after the transaction that used it finished successfully.
+   */
+  public void release(Id.DatasetInstance datasetInstanceId, Map<String, String> arguments, Dataset dataset) {
+    Key key = new Key(datasetInstanceId, arguments);
+    boolean kept = false;
+    List<Dataset> expired = Lists.newArrayList();
+    synchronized (this) {
+      evictExpired(expired);
+      if (!closed && idleCount < maxIdle) {
+        Deque<IdleInstance> instances = idle.get(key);
+        if (instances == null) {
+          instances = new ArrayDeque<IdleInstance>();
+          idle.put(key, instances);
+        }
+        instances.addFirst(new IdleInstance(dataset, System.nanoTime()));
+        idleCount++;
+        kept = true;
+      }
+    }
+    discardAll(expired);
+    if (!kept) {
+      discard(dataset);
+    }
+  }
+
+  /**
+   * Discards an instance acquired from this pool, for example because the transaction that used it failed.
+   */
+  public void discard(Dataset dataset) {
+    try {
+      dataset.close();
+    } catch (Throwable t) {
+      LOG.error("Error closing dataset {}", dataset, t);
+    }
+  }
+
+  /**
+   * @return the number of dataset instances created by this pool
+   */
+  public long getInstantiations() {
+    return instantiations.get();
+  }
+
+  /**
+   * @return the total time in nanoseconds spent to create dataset instances
+   */
+  public long getInstantiationNanos() {
+    return instantiationNanos.get();
+  }
+
+  /**
+   * @return the number of times an idle dataset instance was reused
+   */
+  public long getReuses() {
+    return reuses.get();
+  }
+
+  /**
+   * @return the number of idle dataset instances in this pool
+   */
+  public synchronized int getIdleCount() {
+    return idleCount;
+  }
+
+  /**
+   * Closes all idle instances. Instances released after this are closed.
+   */
+  @Override
+  public void close() {
+    List<Dataset> instances = Lists.newArrayList();
+    synchronized (this) {
+      closed = true;
+      for (Deque<IdleInstance> datasets : idle.values()) {
+        for (IdleInstance instance : datasets) {
+          instances.add(instance.dataset);
+        }
+      }
+      idle.clear();
+      idleCount = 0;
+    }
+    discardAll(instances);
+  }
+
+  /**
+   * Removes the instances that are idle for longer than the idle timeout, collecting them into the given list.
+   * Must be called while holding the lock of this pool.
+   */
+  private void evictExpired(List<Dataset> expired) {
+    long now = System.nanoTime();
+    Iterator<Deque<IdleInstance>> iterator = idle.values().iterator();
+    while (iterator.hasNext()) {
+      Deque<IdleInstance> instances = iterator.next();
+      // Least recently released instances are last
+      while (!instances.isEmpty() && now - instances.peekLast().idleSince >= idleTimeoutNanos) {
+        expired.add(instances.pollLast().dataset);
+        idleCount--;
+      }
+      if (instances.isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void discardAll(List<Dataset> datasets) {
+    for (Dataset dataset : datasets) {
+      discard(dataset);
+    }
+  }
+
+  /**
+   * An idle instance together with the time it was released.
+   */
+  private static final class IdleInstance {
+    private final Dataset dataset;
+    private final long idleSince;
+
+    IdleInstance(Dataset dataset, long idleSince) {
+      this.dataset = dataset;
+      this.idleSince = idleSince;
+    }
+  }
+
+  /**
+   * Key of the idle instances of a dataset with the same arguments.
+   */
+  private static final class Key {
+    private final Id.DatasetInstance datasetInstanceId;
+    private final Map<String, String> arguments;
+
+    Key(Id.DatasetInstance datasetInstanceId, Map<String, String> arguments) {
+      this.datasetInstanceId = datasetInstanceId;
+      this.arguments = ImmutableMap.copyOf(arguments);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return datasetInstanceId.equals(other.datasetInstanceId) && arguments.equals(other.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(datasetInstanceId, arguments);
+    }
+  }
+}
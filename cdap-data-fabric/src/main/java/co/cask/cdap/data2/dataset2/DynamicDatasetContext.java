@@ -51,12 +51,25 @@ public abstract class DynamicDatasetContext implements DatasetContext {
   private final ClassLoader classLoader;
   private final Map<String, String> runtimeArguments;
   private final Set<DatasetCacheKey> txnInProgressDatasets = Sets.newHashSet();
+  // Datasets acquired from the dataset pool by this context
+  private final Map<DatasetCacheKey, Dataset> pooledDatasets = Maps.newHashMap();
   private final Id.Namespace namespace;
   private final List<Id> owners;
 
   @Nullable
   protected abstract LoadingCache<Long, Map<DatasetCacheKey, Dataset>> getDatasetsCache();
 
+  /**
+   * Returns the pool to acquire datasets from if {@link #getDatasetsCache()} returns {@code null}. Datasets acquired
+   * from the pool must be returned with {@link #releaseDatasets(boolean)} once the transaction finished.
+   *
+   * @return the pool, or {@code null} to create new dataset instances for this context
+   */
+  @Nullable
+  protected DatasetInstancePool getDatasetPool() {
+    return null;
+  }
+
   /**
    * Get the runtime arguments for a specific dataset. All runtime arguments are retained. Additional arguments
    * that are matching the current scope are included in runtime arguments with their scope extracted.
@@ -170,7 +183,18 @@ public abstract class DynamicDatasetContext implements DatasetContext {
           }
         }
       } else {
-        dataset = datasetFramework.getDataset(datasetInstanceId, dsArguments, classLoader, owners);
+        DatasetInstancePool pool = getDatasetPool();
+        if (pool != null) {
+          dataset = pooledDatasets.get(datasetCacheKey);
+          if (dataset == null) {
+            dataset = pool.acquire(datasetInstanceId, dsArguments);
+            if (dataset != null) {
+              pooledDatasets.put(datasetCacheKey, dataset);
+            }
+          }
+        } else {
+          dataset = datasetFramework.getDataset(datasetInstanceId, dsArguments, classLoader, owners);
+        }
       }
 
       if (dataset == null) {
@@ -193,5 +217,24 @@ public abstract class DynamicDatasetContext implements DatasetContext {
       throw new DatasetInstantiationException(String.format("Could not instantiate dataset '%s'", name), t);
     }
   }
-}
 
+  /**
+   * Returns the datasets acquired from the pool to it. This must be called once the transaction of this context
+   * finished, and the datasets must not be used after that.
+   *
+   * @param reuse whether the datasets can be reused by other transactions. It should be {@code false} if the
+   *              transaction failed, in which case the datasets are closed.
+   */
+  public synchronized void releaseDatasets(boolean reuse) {
+    DatasetInstancePool pool = getDatasetPool();
+    for (Map.Entry<DatasetCacheKey, Dataset> entry : pooledDatasets.entrySet()) {
+      if (reuse) {
+        DatasetCacheKey key = entry.getKey();
+        pool.release(Id.DatasetInstance.from(namespace, key.getName()), key.getArguments(), entry.getValue());
+      } else {
+        pool.discard(entry.getValue());
+      }
+    }
+    pooledDatasets.clear();
+  }
+}
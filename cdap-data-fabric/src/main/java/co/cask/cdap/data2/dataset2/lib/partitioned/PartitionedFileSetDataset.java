@@ -17,8 +17,10 @@
 package co.cask.cdap.data2.dataset2.lib.partitioned;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.DatasetInputCommitter;
 import co.cask.cdap.api.data.batch.DatasetOutputCommitter;
 import co.cask.cdap.api.dataset.DataSetException;
+import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
@@ -26,6 +28,8 @@ import co.cask.cdap.api.dataset.lib.FileSet;
 import co.cask.cdap.api.dataset.lib.FileSetArguments;
 import co.cask.cdap.api.dataset.lib.FileSetProperties;
 import co.cask.cdap.api.dataset.lib.Partition;
+import co.cask.cdap.api.dataset.lib.PartitionConsumerResult;
+import co.cask.cdap.api.dataset.lib.PartitionConsumerState;
 import co.cask.cdap.api.dataset.lib.PartitionFilter;
 import co.cask.cdap.api.dataset.lib.PartitionKey;
 import co.cask.cdap.api.dataset.lib.PartitionOutput;
@@ -42,6 +46,8 @@ import co.cask.cdap.proto.Id;
 import co.cask.tephra.Transaction;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -53,6 +59,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -61,16 +68,44 @@ import javax.annotation.Nullable;
 
 /**
  * Implementation of partitioned datasets using a Table to store the meta data.
+ *
+ * The row key of a partition in the partitions table is composed of the values of all partitioning fields, hence
+ * only conditions on the leading field narrow down a scan of that table. If the dataset has an index table (it was
+ * created after field indexes were introduced), every other partitioning field is indexed with a row
+ * {@code <field name>\0<field value>\0<partition row key>} that also holds the relative path of the partition,
+ * so that filters on these fields are answered by a range scan of the index.
+ *
+ * An instance that existed before the index table was introduced gets an empty index table when it is updated,
+ * so the index is only used if it covers all partitions. This is recorded with a marker row {@code \0i}, which is
+ * written when the first partition is added to an empty dataset.
+ *
+ * The index table also records the order in which partitions are added, with a row
+ * {@code \0c<transaction write pointer><partition row key>} per partition, and the states of named partition
+ * consumers, with a row {@code \0s<consumer name>}. These cannot clash with field index rows, because
+ * field names are not empty.
  */
-public class PartitionedFileSetDataset extends AbstractDataset implements PartitionedFileSet, DatasetOutputCommitter {
+public class PartitionedFileSetDataset extends AbstractDataset
+  implements PartitionedFileSet, DatasetOutputCommitter, DatasetInputCommitter {
 
   private static final Logger LOG = LoggerFactory.getLogger(PartitionedFileSetDataset.class);
 
   protected static final byte[] RELATIVE_PATH = { 'p' };
   protected static final byte[] FIELD_PREFIX = { 'f', '.' };
 
+  private static final byte[] SEPARATOR = { 0 };
+  // column of the partition row holding the write pointer of the transaction that added the partition
+  private static final byte[] CREATION_VERSION = { 'c' };
+  private static final byte[] CREATION_INDEX_PREFIX = { 0, 'c' };
+  private static final byte[] CONSUMER_STATE_PREFIX = { 0, 's' };
+  private static final byte[] CONSUMER_STATE = { 's' };
+  private static final byte[] INDEX_COMPLETE_ROW = { 0, 'i' };
+  private static final byte[] INDEX_COMPLETE = { 'i' };
+
   protected final FileSet files;
   protected final Table partitionsTable;
+  // null if the dataset was created before field indexes were introduced and has not been updated since
+  @Nullable
+  protected final Table indexTable;
   protected final Map<String, String> runtimeArguments;
   protected final DatasetSpecification spec;
   protected final Provider<ExploreFacade> exploreFacadeProvider;
@@ -86,13 +121,31 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   // their onFinish() any longer. But existing map/reduce programs may still do that, and would now fail.
   private final Map<String, PartitionKey> partitionsAddedInSameTx = Maps.newHashMap();
 
+  private Transaction tx;
+  // whether the index is known to cover all partitions, determined at most once per transaction
+  private Boolean indexComplete;
+
+  // the consumer that provides the input of a batch job and the states before and after the input was consumed;
+  // the new state is stored when the job succeeds.
+  private String inputConsumerName;
+  private byte[] inputConsumerStateBefore;
+  private PartitionConsumerState inputConsumerStateAfter;
+
   public PartitionedFileSetDataset(DatasetContext datasetContext, String name,
                                    Partitioning partitioning, FileSet fileSet, Table partitionTable,
                                    DatasetSpecification spec, Map<String, String> arguments,
                                    Provider<ExploreFacade> exploreFacadeProvider) {
-    super(name, partitionTable);
+    this(datasetContext, name, partitioning, fileSet, partitionTable, null, spec, arguments, exploreFacadeProvider);
+  }
+
+  public PartitionedFileSetDataset(DatasetContext datasetContext, String name,
+                                   Partitioning partitioning, FileSet fileSet, Table partitionTable,
+                                   @Nullable Table indexTable, DatasetSpecification spec,
+                                   Map<String, String> arguments, Provider<ExploreFacade> exploreFacadeProvider) {
+    super(name, partitionTable, indexTable == null ? new Dataset[0] : new Dataset[] { indexTable });
     this.files = fileSet;
     this.partitionsTable = partitionTable;
+    this.indexTable = indexTable;
     this.spec = spec;
     this.exploreFacadeProvider = exploreFacadeProvider;
     this.runtimeArguments = arguments;
@@ -103,9 +156,24 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   @Override
   public void startTx(Transaction tx) {
     partitionsAddedInSameTx.clear();
+    this.tx = tx;
+    this.indexComplete = null;
     super.startTx(tx);
   }
 
+  @Override
+  public void postTxCommit() {
+    tx = null;
+    super.postTxCommit();
+  }
+
+  @Override
+  public boolean rollbackTx() throws Exception {
+    tx = null;
+    indexComplete = null;
+    return super.rollbackTx();
+  }
+
   @Override
   public Partitioning getPartitioning() {
     return partitioning;
@@ -130,13 +198,28 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
                                                getName(), key.toString()));
     }
     LOG.debug("Adding partition with key {} and path {} to dataset {}", key, path, getName());
+    markIndexCompleteIfEmpty();
     Put put = new Put(rowKey);
     put.add(RELATIVE_PATH, Bytes.toBytes(path));
     for (Map.Entry<String, ? extends Comparable> entry : key.getFields().entrySet()) {
       put.add(Bytes.add(FIELD_PREFIX, Bytes.toBytes(entry.getKey())), // "f.<field name>"
               Bytes.toBytes(entry.getValue().toString()));            // "<string rep. of value>"
     }
+    // the index is not maintained if it does not cover all partitions, because it would never be used
+    boolean indexed = isIndexComplete();
+    Long creationVersion = null;
+    if (indexed) {
+      if (tx == null) {
+        throw new DataSetException(String.format(
+          "Partitions of dataset '%s' must be added in a transaction.", getName()));
+      }
+      creationVersion = tx.getWritePointer();
+      put.add(CREATION_VERSION, Bytes.toBytes(creationVersion));
+    }
     partitionsTable.put(put);
+    if (indexed) {
+      indexPartition(rowKey, key, path, creationVersion);
+    }
     partitionsAddedInSameTx.put(path, key);
     if (addToExplore) {
       addPartitionToExplore(key, path);
@@ -161,7 +244,13 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   @Override
   public void dropPartition(PartitionKey key) {
     final byte[] rowKey = generateRowKey(key, partitioning);
+    Long creationVersion = null;
+    if (indexTable != null) {
+      byte[] creationVersionBytes = partitionsTable.get(rowKey, CREATION_VERSION);
+      creationVersion = creationVersionBytes == null ? null : Bytes.toLong(creationVersionBytes);
+    }
     partitionsTable.delete(rowKey);
+    unindexPartition(rowKey, key, creationVersion);
     dropPartitionFromExplore(key);
     // TODO: make DDL operations transactional [CDAP-1393]
   }
@@ -225,6 +314,11 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   }
 
   protected void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer) {
+    String indexField = selectIndexField(filter);
+    if (indexField != null) {
+      scanIndex(filter, indexField, consumer);
+      return;
+    }
     final byte[] startKey = generateStartKey(filter);
     final byte[] endKey = generateStopKey(filter);
     Scanner scanner = partitionsTable.scan(startKey, endKey);
@@ -257,6 +351,288 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     }
   }
 
+  /**
+   * Scans the index of the given field for the partitions that match the filter.
+   */
+  private void scanIndex(PartitionFilter filter, String fieldName, PartitionConsumer consumer) {
+    FieldType fieldType = partitioning.getFields().get(fieldName);
+    PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+    byte[] prefix = Bytes.add(Bytes.toBytes(fieldName), SEPARATOR);
+    byte[] startKey;
+    byte[] stopKey;
+    if (condition.isSingleValue()) {
+      byte[] value = toFilterBytes(condition.getValue(), fieldName, fieldType, "value");
+      startKey = Bytes.add(prefix, value, SEPARATOR);
+      stopKey = Bytes.add(prefix, value, new byte[] { 1 });
+    } else {
+      startKey = condition.getLower() == null
+        ? prefix : Bytes.add(prefix, toFilterBytes(condition.getLower(), fieldName, fieldType, "lower bound"));
+      stopKey = condition.getUpper() == null
+        ? Bytes.add(Bytes.toBytes(fieldName), new byte[] { 1 })
+        : Bytes.add(prefix, toFilterBytes(condition.getUpper(), fieldName, fieldType, "upper bound"));
+    }
+
+    Scanner scanner = indexTable.scan(startKey, stopKey);
+    try {
+      while (true) {
+        Row row = scanner.next();
+        if (row == null) {
+          break;
+        }
+        byte[] indexKey = row.getRow();
+        PartitionKey key;
+        try {
+          int valueLength = FieldTypes.determineLengthInBytes(indexKey, prefix.length, fieldType);
+          int rowKeyOffset = prefix.length + valueLength + 1;
+          if (rowKeyOffset > indexKey.length) {
+            throw new IllegalArgumentException("Index row key has no partition row key");
+          }
+          key = parseRowKey(Arrays.copyOfRange(indexKey, rowKeyOffset, indexKey.length), partitioning);
+        } catch (IllegalArgumentException e) {
+          LOG.debug(String.format("Failed to parse index row key for partitioned file set '%s': %s",
+                                  getName(), Bytes.toStringBinary(indexKey)));
+          continue;
+        }
+        if (!filter.match(key)) {
+          continue;
+        }
+        byte[] pathBytes = row.get(RELATIVE_PATH);
+        if (pathBytes != null) {
+          consumer.consume(key, Bytes.toString(pathBytes));
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+  }
+
+  /**
+   * Determines the field whose index is used to answer a partition filter, or {@code null} if the partitions
+   * table is to be scanned. The index is only used if the filter has no condition on the leading field, because
+   * otherwise the scan of the partitions table is already bounded. Equality conditions are preferred over ranges.
+   */
+  @Nullable
+  private String selectIndexField(@Nullable PartitionFilter filter) {
+    if (filter == null || !isIndexComplete()) {
+      return null;
+    }
+    String rangeField = null;
+    boolean leading = true;
+    for (String fieldName : partitioning.getFields().keySet()) {
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (leading) {
+        if (condition != null) {
+          return null;
+        }
+        leading = false;
+        continue;
+      }
+      if (condition == null) {
+        continue;
+      }
+      if (condition.isSingleValue()) {
+        return fieldName;
+      }
+      if (rangeField == null) {
+        rangeField = fieldName;
+      }
+    }
+    return rangeField;
+  }
+
+  /**
+   * Returns whether the index table covers all partitions of this dataset.
+   */
+  private boolean isIndexComplete() {
+    if (indexTable == null) {
+      return false;
+    }
+    if (indexComplete == null) {
+      indexComplete = indexTable.get(INDEX_COMPLETE_ROW, INDEX_COMPLETE) != null;
+    }
+    return indexComplete;
+  }
+
+  /**
+   * Marks the index as complete if the dataset has no partitions yet. Concurrent transactions that add the
+   * first partitions all write the marker row, hence only one of them can commit.
+   */
+  private void markIndexCompleteIfEmpty() {
+    if (indexTable == null || isIndexComplete() || !hasNoPartitions()) {
+      return;
+    }
+    indexTable.put(INDEX_COMPLETE_ROW, INDEX_COMPLETE, Bytes.toBytes(true));
+    indexComplete = true;
+  }
+
+  private boolean hasNoPartitions() {
+    Scanner scanner = partitionsTable.scan(null, null);
+    try {
+      return scanner.next() == null;
+    } finally {
+      scanner.close();
+    }
+  }
+
+  /**
+   * Adds the index entries for a new partition.
+   */
+  private void indexPartition(byte[] rowKey, PartitionKey key, String path, @Nullable Long creationVersion) {
+    if (indexTable == null) {
+      return;
+    }
+    byte[] pathBytes = Bytes.toBytes(path);
+    for (byte[] indexKey : generateIndexRowKeys(rowKey, key)) {
+      indexTable.put(indexKey, RELATIVE_PATH, pathBytes);
+    }
+    if (creationVersion != null) {
+      indexTable.put(generateCreationIndexRowKey(creationVersion, rowKey), RELATIVE_PATH, pathBytes);
+    }
+  }
+
+  /**
+   * Removes the index entries of a dropped partition.
+   */
+  private void unindexPartition(byte[] rowKey, PartitionKey key, @Nullable Long creationVersion) {
+    if (indexTable == null) {
+      return;
+    }
+    for (byte[] indexKey : generateIndexRowKeys(rowKey, key)) {
+      indexTable.delete(indexKey);
+    }
+    if (creationVersion != null) {
+      indexTable.delete(generateCreationIndexRowKey(creationVersion, rowKey));
+    }
+  }
+
+  private static byte[] generateCreationIndexRowKey(long creationVersion, byte[] rowKey) {
+    return Bytes.add(CREATION_INDEX_PREFIX, Bytes.toBytes(creationVersion), rowKey);
+  }
+
+  // the leading field is not indexed, because the partitions table is sorted by it.
+  private List<byte[]> generateIndexRowKeys(byte[] rowKey, PartitionKey key) {
+    List<byte[]> indexKeys = Lists.newArrayListWithCapacity(partitioning.getFields().size() - 1);
+    boolean leading = true;
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      if (leading) {
+        leading = false;
+        continue;
+      }
+      // the key was already validated when generating the row key
+      byte[] value = FieldTypes.toBytes(key.getField(entry.getKey()), entry.getValue());
+      indexKeys.add(Bytes.add(Bytes.add(Bytes.toBytes(entry.getKey()), SEPARATOR, value), SEPARATOR, rowKey));
+    }
+    return indexKeys;
+  }
+
+  private static byte[] toFilterBytes(Comparable value, String fieldName, FieldType fieldType, String boundName) {
+    if (!FieldTypes.validateType(value, fieldType)) {
+      throw new IllegalArgumentException(
+        String.format("Invalid partition filter: %s for %s field '%s' has incompatible type %s",
+                      boundName, fieldType.name(), fieldName, value.getClass().getName()));
+    }
+    return FieldTypes.toBytes(value, fieldType);
+  }
+
+  @Override
+  public PartitionConsumerResult consumePartitions(PartitionConsumerState partitionConsumerState) {
+    // the index of an empty dataset is complete, even if no partition has been added to mark it
+    if (indexTable == null || !(isIndexComplete() || hasNoPartitions())) {
+      throw new DataSetException(String.format(
+        "Dataset '%s' had partitions before consuming partitions was supported and must be recreated to support it.",
+        getName()));
+    }
+    if (tx == null) {
+      throw new DataSetException("Partitions must be consumed in a transaction.");
+    }
+    long startVersion = partitionConsumerState.getStartVersion();
+    // versions above the read pointer are not committed yet. Transaction systems that read everything use a
+    // read pointer larger than the write pointer, which must not move the consumer past future versions
+    long readPointer = Math.min(tx.getReadPointer(), tx.getWritePointer() - 1);
+    if (readPointer < startVersion) {
+      // the state was produced by a newer transaction; nothing new is visible to this one
+      return new PartitionConsumerResult(partitionConsumerState, ImmutableList.<Partition>of());
+    }
+
+    Set<Long> versionsToCheck = Sets.newHashSet(partitionConsumerState.getVersionsToCheck());
+    long scanStart = startVersion;
+    for (long version : versionsToCheck) {
+      scanStart = Math.min(scanStart, version);
+    }
+
+    // the table only returns partitions of committed transactions visible to this one
+    List<Partition> partitions = Lists.newArrayList();
+    Scanner scanner = indexTable.scan(Bytes.add(CREATION_INDEX_PREFIX, Bytes.toBytes(scanStart)),
+                                      Bytes.add(CREATION_INDEX_PREFIX, Bytes.toBytes(readPointer + 1)));
+    try {
+      while (true) {
+        Row row = scanner.next();
+        if (row == null) {
+          break;
+        }
+        byte[] indexKey = row.getRow();
+        int rowKeyOffset = CREATION_INDEX_PREFIX.length + Bytes.SIZEOF_LONG;
+        if (indexKey.length < rowKeyOffset) {
+          continue;
+        }
+        long version = Bytes.toLong(indexKey, CREATION_INDEX_PREFIX.length);
+        if (version < startVersion && !versionsToCheck.contains(version)) {
+          continue;
+        }
+        PartitionKey key;
+        try {
+          key = parseRowKey(Arrays.copyOfRange(indexKey, rowKeyOffset, indexKey.length), partitioning);
+        } catch (IllegalArgumentException e) {
+          LOG.debug(String.format("Failed to parse creation index row key for partitioned file set '%s': %s",
+                                  getName(), Bytes.toStringBinary(indexKey)));
+          continue;
+        }
+        byte[] pathBytes = row.get(RELATIVE_PATH);
+        if (pathBytes != null) {
+          partitions.add(new BasicPartition(Bytes.toString(pathBytes), key));
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+
+    // transactions that are still in progress may add partitions that become visible later
+    List<Long> newVersionsToCheck = Lists.newArrayList();
+    for (long version : tx.getInProgress()) {
+      if (version > readPointer) {
+        break;
+      }
+      if (version >= startVersion || versionsToCheck.contains(version)) {
+        newVersionsToCheck.add(version);
+      }
+    }
+    return new PartitionConsumerResult(new PartitionConsumerState(readPointer + 1, newVersionsToCheck), partitions);
+  }
+
+  @Override
+  public PartitionConsumerResult consumePartitions(String consumerName) {
+    PartitionConsumerResult result = consumePartitions(toConsumerState(readConsumerState(consumerName)));
+    indexTable.put(generateConsumerStateRowKey(consumerName), CONSUMER_STATE,
+                   result.getPartitionConsumerState().toBytes());
+    return result;
+  }
+
+  // returns the serialized state of the given consumer, or null if it has not consumed yet
+  @Nullable
+  private byte[] readConsumerState(String consumerName) {
+    // without index table, consumePartitions() reports the error
+    return indexTable == null ? null : indexTable.get(generateConsumerStateRowKey(consumerName), CONSUMER_STATE);
+  }
+
+  private static PartitionConsumerState toConsumerState(@Nullable byte[] stateBytes) {
+    return stateBytes == null ? PartitionConsumerState.FROM_BEGINNING : PartitionConsumerState.fromBytes(stateBytes);
+  }
+
+  private static byte[] generateConsumerStateRowKey(String consumerName) {
+    Preconditions.checkArgument(consumerName != null && !consumerName.isEmpty(), "Consumer name must not be empty.");
+    return Bytes.add(CONSUMER_STATE_PREFIX, Bytes.toBytes(consumerName));
+  }
+
   /**
    * Generate an output path for a given partition key.
    */
@@ -283,7 +659,13 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     try {
       files.close();
     } finally {
-      partitionsTable.close();
+      try {
+        partitionsTable.close();
+      } finally {
+        if (indexTable != null) {
+          indexTable.close();
+        }
+      }
     }
   }
 
@@ -294,6 +676,10 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
 
   @Override
   public Map<String, String> getInputFormatConfiguration() {
+    String consumerName = PartitionedFileSetArguments.getInputPartitionConsumer(runtimeArguments);
+    if (consumerName != null) {
+      return getConsumerInputFormatConfiguration(consumerName);
+    }
     PartitionFilter filter;
     try {
       filter = PartitionedFileSetArguments.getInputPartitionFilter(runtimeArguments, partitioning);
@@ -308,6 +694,45 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     return files.getInputFormatConfiguration(inputLocations);
   }
 
+  // the new state of the consumer is only stored by onInputSuccess(), after the batch job succeeded
+  private Map<String, String> getConsumerInputFormatConfiguration(String consumerName) {
+    byte[] stateBytes = readConsumerState(consumerName);
+    PartitionConsumerResult result = consumePartitions(toConsumerState(stateBytes));
+    inputConsumerName = consumerName;
+    inputConsumerStateBefore = stateBytes;
+    inputConsumerStateAfter = result.getPartitionConsumerState();
+
+    List<Location> inputLocations = Lists.newArrayListWithExpectedSize(result.getPartitions().size());
+    for (Partition partition : result.getPartitions()) {
+      inputLocations.add(partition.getLocation());
+    }
+    LOG.debug("Consumer {} of dataset {} reads {} new partitions.", consumerName, getName(), inputLocations.size());
+    return files.getInputFormatConfiguration(inputLocations);
+  }
+
+  @Override
+  public void onInputSuccess() throws DataSetException {
+    if (inputConsumerName == null) {
+      return;
+    }
+    try {
+      // only advance the consumer if no other job has advanced it in the meantime
+      if (!indexTable.compareAndSwap(generateConsumerStateRowKey(inputConsumerName), CONSUMER_STATE,
+                                     inputConsumerStateBefore, inputConsumerStateAfter.toBytes())) {
+        throw new DataSetException(String.format(
+          "State of partition consumer '%s' of dataset '%s' was modified concurrently.", inputConsumerName, getName()));
+      }
+    } finally {
+      inputConsumerName = null;
+    }
+  }
+
+  @Override
+  public void onInputFailure() throws DataSetException {
+    // the consumer state is left unchanged, so that the same partitions are consumed again
+    inputConsumerName = null;
+  }
+
   @Override
   public <T> Class<? extends T> getOutputFormatClass() {
     // we verify that the output partition key is configured in getOutputFormatConfiguration()
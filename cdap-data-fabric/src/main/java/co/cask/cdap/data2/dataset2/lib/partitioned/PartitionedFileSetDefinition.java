@@ -33,6 +33,7 @@ import co.cask.cdap.api.dataset.lib.Partitioning;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.explore.client.ExploreFacade;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -41,7 +42,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Defines the partitioned dataset type. At this time, the partitions are not managed by the
@@ -54,6 +57,9 @@ public class PartitionedFileSetDefinition extends AbstractDatasetDefinition<Part
 
   protected static final String PARTITION_TABLE_NAME = "partitions";
   protected static final String FILESET_NAME = "files";
+  // instances created before field indexes were introduced do not have this table until they are updated,
+  // and then only use it once it covers all partitions (see PartitionedFileSetDataset)
+  protected static final String INDEX_TABLE_NAME = "index";
 
   protected final DatasetDefinition<? extends Table, ?> tableDef;
   protected final DatasetDefinition<? extends FileSet, ?> filesetDef;
@@ -76,17 +82,23 @@ public class PartitionedFileSetDefinition extends AbstractDatasetDefinition<Part
     return DatasetSpecification.builder(instanceName, getName())
       .properties(properties.getProperties())
       .datasets(filesetDef.configure(FILESET_NAME, properties),
-                tableDef.configure(PARTITION_TABLE_NAME, properties))
+                tableDef.configure(PARTITION_TABLE_NAME, properties),
+                tableDef.configure(INDEX_TABLE_NAME, properties))
       .build();
   }
 
   @Override
   public DatasetAdmin getAdmin(DatasetContext datasetContext, DatasetSpecification spec,
                                ClassLoader classLoader) throws IOException {
-    return new PartitionedFileSetAdmin(
-        datasetContext, spec, getExploreProvider(),
+    List<DatasetAdmin> admins = Lists.newArrayList(
         filesetDef.getAdmin(datasetContext, spec.getSpecification(FILESET_NAME), classLoader),
         tableDef.getAdmin(datasetContext, spec.getSpecification(PARTITION_TABLE_NAME), classLoader));
+    DatasetSpecification indexSpec = spec.getSpecification(INDEX_TABLE_NAME);
+    if (indexSpec != null) {
+      admins.add(tableDef.getAdmin(datasetContext, indexSpec, classLoader));
+    }
+    return new PartitionedFileSetAdmin(datasetContext, spec, getExploreProvider(),
+                                       admins.toArray(new DatasetAdmin[admins.size()]));
   }
 
   @Override
@@ -103,10 +115,21 @@ public class PartitionedFileSetDefinition extends AbstractDatasetDefinition<Part
     Table table = tableDef.getDataset(datasetContext, spec.getSpecification(PARTITION_TABLE_NAME), arguments,
                                       classLoader);
 
-    return new PartitionedFileSetDataset(datasetContext, spec.getName(), partitioning, fileset, table, spec, arguments,
+    return new PartitionedFileSetDataset(datasetContext, spec.getName(), partitioning, fileset, table,
+                                         getIndexTable(datasetContext, spec, arguments, classLoader), spec, arguments,
                                          getExploreProvider());
   }
 
+  /**
+   * Returns the index table of the given dataset instance, or {@code null} if the instance has none.
+   */
+  @Nullable
+  protected Table getIndexTable(DatasetContext datasetContext, DatasetSpecification spec,
+                                Map<String, String> arguments, ClassLoader classLoader) throws IOException {
+    DatasetSpecification indexSpec = spec.getSpecification(INDEX_TABLE_NAME);
+    return indexSpec == null ? null : tableDef.getDataset(datasetContext, indexSpec, arguments, classLoader);
+  }
+
   // if the arguments do not contain an output location, generate one from the partition key (if present)
   protected static Map<String, String> updateArgumentsIfNeeded(Map<String, String> arguments,
                                                                Partitioning partitioning) {
@@ -88,7 +88,15 @@ public class TimePartitionedFileSetDataset extends PartitionedFileSetDataset imp
                                        FileSet fileSet, Table partitionTable,
                                        DatasetSpecification spec, Map<String, String> arguments,
                                        Provider<ExploreFacade> exploreFacadeProvider) {
-    super(datasetContext, name, PARTITIONING, fileSet, partitionTable, spec, arguments, exploreFacadeProvider);
+    this(datasetContext, name, fileSet, partitionTable, null, spec, arguments, exploreFacadeProvider);
+  }
+
+  public TimePartitionedFileSetDataset(DatasetContext datasetContext, String name,
+                                       FileSet fileSet, Table partitionTable, @Nullable Table indexTable,
+                                       DatasetSpecification spec, Map<String, String> arguments,
+                                       Provider<ExploreFacade> exploreFacadeProvider) {
+    super(datasetContext, name, PARTITIONING, fileSet, partitionTable, indexTable, spec, arguments,
+          exploreFacadeProvider);
 
     isLegacyDataset = arguments.containsKey(ARGUMENT_LEGACY_DATASET) ||
       PartitionedFileSetProperties.getPartitioning(spec.getProperties()) == null;
@@ -70,8 +70,9 @@ public class TimePartitionedFileSetDefinition extends PartitionedFileSetDefiniti
     Table table = tableDef.getDataset(datasetContext, spec.getSpecification(PARTITION_TABLE_NAME), arguments,
                                       classLoader);
 
-    return new TimePartitionedFileSetDataset(datasetContext, spec.getName(), fileset, table, spec, arguments,
-                                             getExploreProvider());
+    return new TimePartitionedFileSetDataset(datasetContext, spec.getName(), fileset, table,
+                                             getIndexTable(datasetContext, spec, arguments, classLoader),
+                                             spec, arguments, getExploreProvider());
   }
 
   // if the arguments do not contain an output path, but an output partition time, generate an output path from that;
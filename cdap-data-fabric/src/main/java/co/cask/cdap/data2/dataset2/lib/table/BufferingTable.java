@@ -65,8 +65,10 @@ import javax.annotation.Nullable;
  *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
  *       Given the snapshot isolation tx model, this can be improved in future implementations.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * NOTE: changes are persisted when {@link #commitTx()} is called. Long running transactions, such as the ones of
+ *       MapReduce programs, can call it more than once to persist their changes incrementally and bound the size of
+ *       the in-memory buffer. Only the changes persisted by the last call are kept to be undone on rollback: a long
+ *       running transaction cannot be rolled back, it is invalidated on failure, which hides all of its changes.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -91,7 +93,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // that the corresponded column was removed.
   private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
 
-  // Keeps track of what was persisted so far
+  // Keeps track of what was persisted by the last call to commitTx()
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
   // Report data ops metrics to
@@ -294,6 +296,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public boolean commitTx() throws Exception {
     if (!buff.isEmpty()) {
+      // Changes persisted before in the same transaction are not kept: only long running transactions persist
+      // incrementally, and those are invalidated instead of being rolled back.
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
       toUndo = buff;
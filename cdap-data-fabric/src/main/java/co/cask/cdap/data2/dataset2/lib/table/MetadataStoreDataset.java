@@ -60,6 +60,13 @@ public class MetadataStoreDataset extends AbstractDataset {
     return GSON.fromJson(Bytes.toString(serialized), typeOfT);
   }
 
+  /**
+   * Deserializes the value stored in the given row. Subclasses can override it to reuse values deserialized before.
+   */
+  protected <T> T deserialize(byte[] rowKey, byte[] serialized, Type typeOfT) {
+    return deserialize(serialized, typeOfT);
+  }
+
   @Nullable
   public <T> T get(MDSKey id, Type typeOfT) {
     Row row = table.get(id.getKey());
@@ -72,7 +79,7 @@ public class MetadataStoreDataset extends AbstractDataset {
       return null;
     }
 
-    return deserialize(value, typeOfT);
+    return deserialize(id.getKey(), value, typeOfT);
   }
 
   // returns first that matches
@@ -91,7 +98,7 @@ public class MetadataStoreDataset extends AbstractDataset {
           return null;
         }
 
-        return deserialize(value, typeOfT);
+        return deserialize(row.getRow(), value, typeOfT);
       } finally {
         scan.close();
       }
@@ -142,7 +149,7 @@ public class MetadataStoreDataset extends AbstractDataset {
           if (columnValue == null) {
             continue;
           }
-          T value = deserialize(columnValue, typeOfT);
+          T value = deserialize(next.getRow(), columnValue, typeOfT);
 
           if (filter.apply(value)) {
             MDSKey key = new MDSKey(next.getRow());
@@ -21,12 +21,16 @@ import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
@@ -37,23 +41,74 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
  * An HBase metrics table client.
+ *
+ * Increments are coalesced in memory: increments of the same cell are summed up and written as one delta put,
+ * either when the flush interval has passed since the first pending increment, when the number of pending cells
+ * reaches the configured maximum, before any other operation on this table, or when the table is closed.
+ * Coalescing is disabled by default: callers that record their progress elsewhere, such as the Kafka offsets of
+ * the metrics processor, would otherwise record progress for increments that are lost if the process fails.
+ * Since the underlying {@link HTable} is not thread-safe, all operations are synchronized on this table.
  */
 public class HBaseMetricsTable implements MetricsTable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseMetricsTable.class);
+
+  // Flushes pending increments of all tables when their flush interval is over
+  private static final ScheduledExecutorService FLUSH_EXECUTOR =
+    Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("metrics-table-flush"));
+
   private final TableId tableId;
   private final HTable hTable;
   private final byte[] columnFamily;
 
+  private final long flushIntervalMillis;
+  private final int flushMaxCells;
+  // increments not yet written, guarded by this
+  private final NavigableMap<byte[], NavigableMap<byte[], Long>> pendingIncrements =
+    Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+  private int pendingCells;
+  private ScheduledFuture<?> scheduledFlush;
+
+  // number of cell increments received and number of cells written, to measure the coalescing ratio
+  private final AtomicLong incrementsReceived = new AtomicLong();
+  private final AtomicLong incrementsWritten = new AtomicLong();
+
   public HBaseMetricsTable(DatasetContext datasetContext, DatasetSpecification spec,
                            Configuration hConf, HBaseTableUtil tableUtil) throws IOException {
+    this(datasetContext, spec, hConf, tableUtil, 0L, 0);
+  }
+
+  public HBaseMetricsTable(DatasetContext datasetContext, DatasetSpecification spec,
+                           Configuration hConf, HBaseTableUtil tableUtil, CConfiguration cConf) throws IOException {
+    this(datasetContext, spec, hConf, tableUtil,
+         cConf.getLong(Constants.Metrics.INCREMENT_FLUSH_INTERVAL_MS,
+                       Constants.Metrics.DEFAULT_INCREMENT_FLUSH_INTERVAL_MS),
+         cConf.getInt(Constants.Metrics.INCREMENT_FLUSH_MAX_CELLS,
+                      Constants.Metrics.DEFAULT_INCREMENT_FLUSH_MAX_CELLS));
+  }
+
+  private HBaseMetricsTable(DatasetContext datasetContext, DatasetSpecification spec,
+                            Configuration hConf, HBaseTableUtil tableUtil,
+                            long flushIntervalMillis, int flushMaxCells) throws IOException {
     this.tableId = TableId.from(datasetContext.getNamespaceId(), spec.getName());
     HTable hTable = tableUtil.createHTable(hConf, tableId);
     // todo: make configurable
@@ -61,11 +116,14 @@ public class HBaseMetricsTable implements MetricsTable {
     hTable.setAutoFlush(false);
     this.hTable = hTable;
     this.columnFamily = HBaseTableAdmin.getColumnFamily(spec);
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.flushMaxCells = flushMaxCells;
   }
 
   @Override
   @Nullable
-  public byte[] get(byte[] row, byte[] column) {
+  public synchronized byte[] get(byte[] row, byte[] column) {
+    flushIncrements();
     try {
       Get get = new Get(row);
       get.addColumn(columnFamily, column);
@@ -81,7 +139,8 @@ public class HBaseMetricsTable implements MetricsTable {
   }
 
   @Override
-  public void put(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+  public synchronized void put(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+    flushIncrements();
     List<Put> puts = Lists.newArrayList();
     for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
       Put put = new Put(row.getKey());
@@ -99,7 +158,8 @@ public class HBaseMetricsTable implements MetricsTable {
   }
 
   @Override
-  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+    flushIncrements();
     try {
       if (newValue == null) {
         Delete delete = new Delete(row);
@@ -117,22 +177,106 @@ public class HBaseMetricsTable implements MetricsTable {
   }
 
   @Override
-  public void increment(byte[] row, Map<byte[], Long> increments) {
-    Put increment = getIncrementalPut(row, increments);
-    try {
-      hTable.put(increment);
-      hTable.flushCommits();
-    } catch (IOException e) {
-      // figure out whether this is an illegal increment
-      // currently there is not other way to extract that from the HBase exception than string match
-      if (e.getMessage() != null && e.getMessage().contains("isn't 64 bits wide")) {
-        throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
-                                          " row: " + Bytes.toStringBinary(row));
+  public synchronized void increment(byte[] row, Map<byte[], Long> increments) {
+    if (flushIntervalMillis <= 0) {
+      incrementsReceived.addAndGet(increments.size());
+      writeIncrements(Collections.singletonMap(row, increments));
+      return;
+    }
+    addPendingIncrements(row, increments);
+    maybeFlushIncrements();
+  }
+
+  @Override
+  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+    if (flushIntervalMillis <= 0) {
+      for (Map<byte[], Long> increments : updates.values()) {
+        incrementsReceived.addAndGet(increments.size());
       }
-      throw new DataSetException("Increment failed on table " + tableId, e);
+      writeIncrements(updates);
+      return;
+    }
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> update : updates.entrySet()) {
+      addPendingIncrements(update.getKey(), update.getValue());
+    }
+    maybeFlushIncrements();
+  }
+
+  private void addPendingIncrements(byte[] row, Map<byte[], Long> increments) {
+    incrementsReceived.addAndGet(increments.size());
+    NavigableMap<byte[], Long> pendingRow = pendingIncrements.get(row);
+    if (pendingRow == null) {
+      pendingRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      pendingIncrements.put(row, pendingRow);
+    }
+    for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
+      Long pending = pendingRow.get(increment.getKey());
+      if (pending == null) {
+        pendingCells++;
+        pendingRow.put(increment.getKey(), increment.getValue());
+      } else {
+        pendingRow.put(increment.getKey(), pending + increment.getValue());
+      }
+    }
+  }
+
+  /**
+   * Flushes pending increments if the max number of cells is reached, otherwise makes sure that a flush is
+   * scheduled for the end of the flush interval.
+   */
+  private void maybeFlushIncrements() {
+    if (pendingCells >= flushMaxCells) {
+      flushIncrements();
+    } else if (pendingCells > 0 && scheduledFlush == null) {
+      scheduledFlush = FLUSH_EXECUTOR.schedule(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (HBaseMetricsTable.this) {
+            scheduledFlush = null;
+            try {
+              flushIncrements();
+            } catch (Exception e) {
+              LOG.error("Failed to flush increments to table {}", tableId, e);
+            }
+          }
+        }
+      }, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Writes all pending increments. Must be called while holding the lock of this table.
+   */
+  private void flushIncrements() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (pendingIncrements.isEmpty()) {
+      return;
+    }
+    NavigableMap<byte[], NavigableMap<byte[], Long>> increments = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    increments.putAll(pendingIncrements);
+    pendingIncrements.clear();
+    pendingCells = 0;
+    // If the write fails, the puts stay in the write buffer of the HTable, because auto flush is off, and are
+    // retried with the next write or when the table is closed. Putting the increments back would count them twice.
+    writeIncrements(increments);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Flushed increments to table {}, coalescing ratio {}", tableId, getCoalescingRatio());
     }
   }
 
+  /**
+   * Returns the average number of cell increments received per cell written by this table, or 0 if nothing
+   * was written yet.
+   */
+  @VisibleForTesting
+  double getCoalescingRatio() {
+    long written = incrementsWritten.get();
+    return written == 0 ? 0d : (double) incrementsReceived.get() / written;
+  }
+
   private Put getIncrementalPut(byte[] row, Map<byte[], Long> increments) {
     Put increment = getIncrementalPut(row);
     for (Map.Entry<byte[], Long> column : increments.entrySet()) {
@@ -150,12 +294,12 @@ public class HBaseMetricsTable implements MetricsTable {
     return put;
   }
 
-  @Override
-  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+  private void writeIncrements(Map<byte[], ? extends Map<byte[], Long>> updates) {
     List<Put> puts = Lists.newArrayList();
-    for (Map.Entry<byte[], NavigableMap<byte[], Long>> update : updates.entrySet()) {
+    for (Map.Entry<byte[], ? extends Map<byte[], Long>> update : updates.entrySet()) {
       Put increment = getIncrementalPut(update.getKey(), update.getValue());
       puts.add(increment);
+      incrementsWritten.addAndGet(update.getValue().size());
     }
 
     try {
@@ -165,14 +309,39 @@ public class HBaseMetricsTable implements MetricsTable {
       // figure out whether this is an illegal increment
       // currently there is not other way to extract that from the HBase exception than string match
       if (e.getMessage() != null && e.getMessage().contains("isn't 64 bits wide")) {
-        throw new NumberFormatException("Attempted to increment a value that is not convertible to long.");
+        throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
+                                          " row: " + toStringBinary(updates.keySet()));
       }
       throw new DataSetException("Increment failed on table " + tableId, e);
     }
   }
 
+  private static String toStringBinary(Collection<byte[]> rows) {
+    if (rows.size() == 1) {
+      return Bytes.toStringBinary(rows.iterator().next());
+    }
+    List<String> strings = Lists.newArrayListWithCapacity(rows.size());
+    for (byte[] row : rows) {
+      strings.add(Bytes.toStringBinary(row));
+    }
+    return strings.toString();
+  }
+
   @Override
-  public long incrementAndGet(byte[] row, byte[] column, long delta) {
+  public synchronized long incrementAndGet(byte[] row, byte[] column, long delta) {
+    incrementsReceived.incrementAndGet();
+    // fold a pending increment of the same cell into this increment, and flush all others
+    NavigableMap<byte[], Long> pendingRow = pendingIncrements.get(row);
+    Long pending = pendingRow == null ? null : pendingRow.remove(column);
+    if (pending != null) {
+      delta += pending;
+      pendingCells--;
+      if (pendingRow.isEmpty()) {
+        pendingIncrements.remove(row);
+      }
+    }
+    flushIncrements();
+    incrementsWritten.incrementAndGet();
     Increment increment = new Increment(row);
     increment.addColumn(columnFamily, column, delta);
     try {
@@ -191,7 +360,8 @@ public class HBaseMetricsTable implements MetricsTable {
   }
 
   @Override
-  public void delete(byte[] row, byte[][] columns) {
+  public synchronized void delete(byte[] row, byte[][] columns) {
+    flushIncrements();
     Delete delete = new Delete(row);
     for (byte[] column : columns) {
       delete.deleteColumns(columnFamily, column);
@@ -204,8 +374,9 @@ public class HBaseMetricsTable implements MetricsTable {
   }
 
   @Override
-  public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow,
-                      @Nullable FuzzyRowFilter filter) {
+  public synchronized Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow,
+                                   @Nullable FuzzyRowFilter filter) {
+    flushIncrements();
     Scan scan = new Scan();
     configureRangeScan(scan, startRow, stopRow, filter);
     try {
@@ -239,7 +410,11 @@ public class HBaseMetricsTable implements MetricsTable {
   }
 
   @Override
-  public void close() throws IOException {
-    hTable.close();
+  public synchronized void close() throws IOException {
+    try {
+      flushIncrements();
+    } finally {
+      hTable.close();
+    }
   }
 }
@@ -70,18 +70,27 @@ import javax.annotation.Nullable;
  */
 // todo: do periodic flush when certain threshold is reached
 // todo: extract separate "no delete inside tx" table?
-// todo: consider writing & reading using HTable to do in multi-threaded way
+// todo: consider writing using HTable to do in multi-threaded way
 public class HBaseTable extends BufferingTable {
   private static final Logger LOG = LoggerFactory.getLogger(HBaseTable.class);
 
   public static final String DELTA_WRITE = "d";
 
+  /**
+   * Property to set the max number of regions read in parallel by multi-gets and scans. A value of 1 or less
+   * disables parallel reads.
+   */
+  public static final String PROPERTY_READ_PARALLELISM = "hbase.read.parallelism";
+  public static final int DEFAULT_READ_PARALLELISM = 1;
+
   private final HTable hTable;
   private final String hTableName;
   private final byte[] columnFamily;
   private final TransactionCodec txCodec;
   // name length + name of the table: handy to have one cached
   private final byte[] nameAsTxChangePrefix;
+  // reads regions in parallel, null if parallel reads are disabled
+  private final RegionAwareReader regionAwareReader;
 
   private Transaction tx;
 
@@ -105,6 +114,10 @@ public class HBaseTable extends BufferingTable {
     // Overriding the hbase tx change prefix so it resembles the hbase table name more closely, since the HBase
     // table name is not the same as the dataset name anymore
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) this.hTableName.length()}, Bytes.toBytes(this.hTableName));
+    int readParallelism = Integer.parseInt(spec.getProperty(PROPERTY_READ_PARALLELISM,
+                                                            Integer.toString(DEFAULT_READ_PARALLELISM)));
+    this.regionAwareReader = readParallelism > 1
+      ? new RegionAwareReader(hConf, tableUtil, tableId, readParallelism) : null;
   }
 
   @Override
@@ -124,16 +137,19 @@ public class HBaseTable extends BufferingTable {
 
   @Override
   public List<Row> get(List<co.cask.cdap.api.dataset.table.Get> gets) {
-    List<Get> hbaseGets = Lists.transform(gets, new Function<co.cask.cdap.api.dataset.table.Get, Get>() {
-      @Nullable
-      @Override
-      public Get apply(co.cask.cdap.api.dataset.table.Get get) {
-        List<byte[]> cols = get.getColumns();
-        return createGet(get.getRow(), cols == null ? null : cols.toArray(new byte[cols.size()][]));
-      }
-    });
+    // copy the transformed gets, because the region aware reader accesses them more than once
+    List<Get> hbaseGets = Lists.newArrayList(
+      Lists.transform(gets, new Function<co.cask.cdap.api.dataset.table.Get, Get>() {
+        @Nullable
+        @Override
+        public Get apply(co.cask.cdap.api.dataset.table.Get get) {
+          List<byte[]> cols = get.getColumns();
+          return createGet(get.getRow(), cols == null ? null : cols.toArray(new byte[cols.size()][]));
+        }
+      }));
     try {
-      Result[] results = hTable.get(hbaseGets);
+      Result[] results = regionAwareReader == null
+        ? hTable.get(hbaseGets) : regionAwareReader.get(hTable, hbaseGets);
       return Lists.transform(Arrays.asList(results), new Function<Result, Row>() {
         @Nullable
         @Override
@@ -263,10 +279,23 @@ public class HBaseTable extends BufferingTable {
 
     addToOperation(hScan, tx);
 
-    ResultScanner resultScanner = hTable.getScanner(hScan);
+    ResultScanner resultScanner = regionAwareReader == null
+      ? hTable.getScanner(hScan) : regionAwareReader.getScanner(hTable, hScan);
     return new HBaseScanner(resultScanner, columnFamily);
   }
 
+  @Override
+  public void close() {
+    super.close();
+    if (regionAwareReader != null) {
+      try {
+        regionAwareReader.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close region reader of table {}", hTableName, e);
+      }
+    }
+  }
+
   private void setFilterIfNeeded(Scan scan, @Nullable Filter filter) {
     if (filter == null) {
       return;
@@ -0,0 +1,396 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.hbase;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.util.TableId;
+import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes multi-gets and scans on an HBase table in parallel, one task per region.
+ *
+ * Gets are grouped by the region that contains their row, and the groups are read concurrently. A scan is split
+ * into one sub-scan per region in its range. The sub-scans of a window of consecutive regions are read ahead
+ * concurrently in chunks, and their results are returned region by region, hence in key order. Sub-scans and gets
+ * keep all attributes of the original operation, including the transaction, so that visibility is not affected.
+ *
+ * Region boundaries are taken from the region locations cached by the HBase client, so that a scan does not
+ * read the meta table. Each reader has its own pool of at most {@code parallelism} threads, which is shut down when
+ * the reader is closed. Since {@link HTable} is not thread-safe, every task borrows an {@link HTable} from this
+ * reader while it uses it; hence the reader never creates more tables than it has threads.
+ */
+final class RegionAwareReader implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RegionAwareReader.class);
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private final Configuration hConf;
+  private final HBaseTableUtil tableUtil;
+  private final TableId tableId;
+  private final int parallelism;
+  // Tasks never wait for each other, hence the bounded pool cannot deadlock.
+  private final ListeningExecutorService executor;
+  private final BlockingQueue<HTable> tables = new LinkedBlockingQueue<HTable>();
+  private final List<HTable> allTables = Collections.synchronizedList(Lists.<HTable>newArrayList());
+
+  RegionAwareReader(Configuration hConf, HBaseTableUtil tableUtil, TableId tableId, int parallelism) {
+    this.hConf = hConf;
+    this.tableUtil = tableUtil;
+    this.tableId = tableId;
+    this.parallelism = parallelism;
+    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+      parallelism, parallelism, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+      Threads.createDaemonThreadFactory("hbase-region-reader-%d"));
+    // idle tables do not keep threads
+    threadPool.allowCoreThreadTimeOut(true);
+    this.executor = MoreExecutors.listeningDecorator(threadPool);
+  }
+
+  /**
+   * Reads the given gets, grouped by region. If all gets fall into a single region, they are read with the
+   * given table in the calling thread.
+   *
+   * @return the results, in the order of the gets
+   */
+  Result[] get(HTable hTable, List<Get> gets) throws IOException {
+    // group the gets by region, remembering their positions
+    Map<String, List<Integer>> regionGets = Maps.newLinkedHashMap();
+    for (int i = 0; i < gets.size(); i++) {
+      String region = hTable.getRegionLocation(gets.get(i).getRow()).getRegionInfo().getEncodedName();
+      List<Integer> positions = regionGets.get(region);
+      if (positions == null) {
+        positions = Lists.newArrayList();
+        regionGets.put(region, positions);
+      }
+      positions.add(i);
+    }
+    if (regionGets.size() <= 1) {
+      return hTable.get(gets);
+    }
+
+    // split the regions into at most parallelism groups, each read by one task
+    List<List<Integer>> groups = Lists.newArrayList();
+    for (int i = 0; i < Math.min(parallelism, regionGets.size()); i++) {
+      groups.add(Lists.<Integer>newArrayList());
+    }
+    int region = 0;
+    for (List<Integer> positions : regionGets.values()) {
+      groups.get(region++ % groups.size()).addAll(positions);
+    }
+
+    List<ListenableFuture<Result[]>> futures = Lists.newArrayList();
+    for (final List<Integer> positions : groups) {
+      final List<Get> groupGets = Lists.newArrayListWithCapacity(positions.size());
+      for (int position : positions) {
+        groupGets.add(gets.get(position));
+      }
+      futures.add(executor.submit(new Callable<Result[]>() {
+        @Override
+        public Result[] call() throws Exception {
+          HTable table = borrowTable();
+          try {
+            return table.get(groupGets);
+          } finally {
+            tables.add(table);
+          }
+        }
+      }));
+    }
+
+    Result[] results = new Result[gets.size()];
+    List<Result[]> groupResults = getAll(futures);
+    for (int i = 0; i < groups.size(); i++) {
+      List<Integer> positions = groups.get(i);
+      Result[] groupResult = groupResults.get(i);
+      for (int j = 0; j < positions.size(); j++) {
+        results[positions.get(j)] = groupResult[j];
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns a scanner that reads the regions in the range of the given scan in parallel. If the range is in a
+   * single region, a regular scanner of the given table is returned.
+   */
+  ResultScanner getScanner(HTable hTable, Scan scan) throws IOException {
+    byte[] startRow = scan.getStartRow();
+    byte[] stopRow = scan.getStopRow();
+    if (!isEmpty(stopRow) && Bytes.compareTo(startRow, stopRow) >= 0) {
+      // empty range
+      return hTable.getScanner(scan);
+    }
+    // the locations are cached by the HBase client, hence this only reads the meta table for unknown regions
+    List<HRegionLocation> regions = hTable.getRegionsInRange(startRow, stopRow);
+    if (regions.size() <= 1) {
+      return hTable.getScanner(scan);
+    }
+
+    // the regions are returned in key order
+    List<Scan> regionScans = Lists.newArrayListWithCapacity(regions.size());
+    for (HRegionLocation region : regions) {
+      Scan regionScan = new Scan(scan);
+      regionScan.setStartRow(max(startRow, region.getRegionInfo().getStartKey()));
+      regionScan.setStopRow(minStop(stopRow, region.getRegionInfo().getEndKey()));
+      regionScans.add(regionScan);
+    }
+    return new ParallelScanner(regionScans, scan.getCaching() > 0 ? scan.getCaching() : 100);
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    synchronized (allTables) {
+      for (HTable table : allTables) {
+        try {
+          table.close();
+        } catch (IOException e) {
+          LOG.warn("Failed to close HTable for {}", tableId, e);
+        }
+      }
+      allTables.clear();
+    }
+    tables.clear();
+  }
+
+  private HTable borrowTable() throws IOException {
+    HTable table = tables.poll();
+    if (table == null) {
+      table = tableUtil.createHTable(hConf, tableId);
+      allTables.add(table);
+    }
+    return table;
+  }
+
+  private static <V> List<V> getAll(List<ListenableFuture<V>> futures) throws IOException {
+    try {
+      return Futures.allAsList(futures).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading from HBase", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private static boolean isEmpty(byte[] key) {
+    return key == null || key.length == 0;
+  }
+
+  private static byte[] max(byte[] start, byte[] regionStart) {
+    return Bytes.compareTo(start, regionStart) >= 0 ? start : regionStart;
+  }
+
+  private static byte[] minStop(byte[] stop, byte[] regionEnd) {
+    if (isEmpty(stop)) {
+      return regionEnd;
+    }
+    if (isEmpty(regionEnd)) {
+      return stop;
+    }
+    return Bytes.compareTo(stop, regionEnd) <= 0 ? stop : regionEnd;
+  }
+
+  /**
+   * A scanner over multiple regions that reads ahead a window of regions concurrently, and returns
+   * their results region by region.
+   */
+  private final class ParallelScanner implements ResultScanner {
+
+    private final Deque<RegionScan> window = new ArrayDeque<RegionScan>();
+    private final Iterator<Scan> pendingScans;
+    private final int chunkSize;
+    private Iterator<Result> current = Iterators.emptyIterator();
+    private boolean closed;
+
+    ParallelScanner(List<Scan> regionScans, int chunkSize) {
+      this.pendingScans = regionScans.iterator();
+      this.chunkSize = chunkSize;
+      fillWindow();
+    }
+
+    private void fillWindow() {
+      while (window.size() < parallelism && pendingScans.hasNext()) {
+        RegionScan regionScan = new RegionScan(pendingScans.next());
+        regionScan.fetch();
+        window.add(regionScan);
+      }
+    }
+
+    @Override
+    public Result next() throws IOException {
+      while (!current.hasNext()) {
+        RegionScan regionScan = window.peekFirst();
+        if (regionScan == null || closed) {
+          return null;
+        }
+        List<Result> chunk = regionScan.take();
+        if (chunk.size() < chunkSize) {
+          // region exhausted, start reading the next one
+          window.removeFirst();
+          regionScan.close();
+          fillWindow();
+        } else {
+          regionScan.fetch();
+        }
+        current = chunk.iterator();
+      }
+      return current.next();
+    }
+
+    @Override
+    public Result[] next(int nbRows) throws IOException {
+      List<Result> results = Lists.newArrayListWithCapacity(nbRows);
+      Result result;
+      while (results.size() < nbRows && (result = next()) != null) {
+        results.add(result);
+      }
+      return results.toArray(new Result[results.size()]);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      for (RegionScan regionScan : window) {
+        regionScan.close();
+      }
+      window.clear();
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+      return new Iterator<Result>() {
+        private Result next;
+
+        @Override
+        public boolean hasNext() {
+          if (next == null) {
+            try {
+              next = ParallelScanner.this.next();
+            } catch (IOException e) {
+              throw Throwables.propagate(e);
+            }
+          }
+          return next != null;
+        }
+
+        @Override
+        public Result next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          Result result = next;
+          next = null;
+          return result;
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    /**
+     * The scan of one region, read in chunks by tasks of the executor. At most one chunk is read at a time.
+     */
+    private final class RegionScan {
+      private final Scan scan;
+      private ResultScanner scanner;
+      private ListenableFuture<List<Result>> chunk;
+
+      RegionScan(Scan scan) {
+        this.scan = scan;
+      }
+
+      void fetch() {
+        chunk = executor.submit(new Callable<List<Result>>() {
+          @Override
+          public List<Result> call() throws Exception {
+            synchronized (RegionScan.this) {
+              if (scanner == null) {
+                // the scanner does not use the table after it is created
+                HTable table = borrowTable();
+                try {
+                  scanner = table.getScanner(scan);
+                } finally {
+                  tables.add(table);
+                }
+              }
+              List<Result> results = Lists.newArrayListWithCapacity(chunkSize);
+              Result result;
+              while (results.size() < chunkSize && (result = scanner.next()) != null) {
+                results.add(result);
+              }
+              return results;
+            }
+          }
+        });
+      }
+
+      List<Result> take() throws IOException {
+        return getAll(Collections.singletonList(chunk)).get(0);
+      }
+
+      void close() {
+        chunk.cancel(false);
+        // wait for a running chunk to finish, then release the scanner
+        synchronized (this) {
+          if (scanner != null) {
+            scanner.close();
+            scanner = null;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.collect.Lists;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies {@link WriteBatch}es to one LevelDB table, coalescing concurrent synced writes into one group commit.
+ *
+ * For synced writes, the first writer to arrive becomes the leader of a group. It waits for the configured
+ * window to let other writers join, then writes all batches of the group, only syncing the last one. A synced
+ * write forces the whole write-ahead log to disk, which makes all batches of the group durable with a single
+ * fsync. The other writers of the group wait until the leader is done.
+ *
+ * Each batch of a group is written separately, hence a failed batch only fails its own writer. If the last
+ * batch fails, the batches written before it are synced separately; if that fails, their writers fail too,
+ * with an exception that tells that the batch was applied but may not be durable.
+ *
+ * Unsynced writes are written directly.
+ */
+final class LevelDBGroupCommitter {
+
+  private static final WriteOptions NO_SYNC = new WriteOptions().sync(false);
+  private static final WriteOptions SYNC = new WriteOptions().sync(true);
+
+  private final DB db;
+  private final long windowNanos;
+  private final long startTime = System.nanoTime();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition groupDone = lock.newCondition();
+  private List<PendingWrite> pending = Lists.newArrayList();
+  private boolean leaderActive;
+
+  // Metrics
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong writeTimeNanos = new AtomicLong();
+
+  LevelDBGroupCommitter(DB db, long windowMicros) {
+    this.db = db;
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+  }
+
+  /**
+   * Writes the given batch. Returns once the batch is written, and is durable if it is synced.
+   */
+  void write(WriteBatch batch, boolean sync) throws IOException {
+    long start = System.nanoTime();
+    try {
+      if (sync) {
+        groupWrite(batch);
+      } else {
+        db.write(batch, NO_SYNC);
+        commits.incrementAndGet();
+      }
+    } finally {
+      batches.incrementAndGet();
+      writeTimeNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  private void groupWrite(WriteBatch batch) throws IOException {
+    PendingWrite write = new PendingWrite(batch);
+    lock.lock();
+    try {
+      pending.add(write);
+      while (leaderActive && !write.done) {
+        groupDone.awaitUninterruptibly();
+      }
+      if (write.done) {
+        // written by another leader
+        write.rethrowFailure();
+        return;
+      }
+      leaderActive = true;
+    } finally {
+      lock.unlock();
+    }
+
+    // This thread is the leader. Give other writers the chance to join the group.
+    if (windowNanos > 0) {
+      LockSupport.parkNanos(windowNanos);
+    }
+
+    List<PendingWrite> group;
+    lock.lock();
+    try {
+      group = pending;
+      pending = Lists.newArrayList();
+    } finally {
+      lock.unlock();
+    }
+
+    Throwable[] failures = new Throwable[group.size()];
+    int last = group.size() - 1;
+    int lastApplied = -1;
+    for (int i = 0; i <= last; i++) {
+      try {
+        db.write(group.get(i).batch, i == last ? SYNC : NO_SYNC);
+        lastApplied = i;
+      } catch (Throwable t) {
+        failures[i] = t;
+      }
+    }
+    if (lastApplied >= 0) {
+      commits.incrementAndGet();
+    }
+    if (lastApplied >= 0 && lastApplied < last) {
+      // The synced write failed, but earlier batches were applied. Sync them with an empty batch.
+      try {
+        WriteBatch syncBatch = db.createWriteBatch();
+        try {
+          db.write(syncBatch, SYNC);
+        } finally {
+          syncBatch.close();
+        }
+      } catch (Throwable t) {
+        IOException syncFailure = new IOException("Batch was applied but could not be synced", t);
+        for (int i = 0; i <= lastApplied; i++) {
+          if (failures[i] == null) {
+            failures[i] = syncFailure;
+          }
+        }
+      }
+    }
+
+    lock.lock();
+    try {
+      for (int i = 0; i <= last; i++) {
+        PendingWrite groupWrite = group.get(i);
+        groupWrite.failure = failures[i];
+        groupWrite.done = true;
+      }
+      leaderActive = false;
+      groupDone.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    write.rethrowFailure();
+  }
+
+  /**
+   * Returns the write statistics of this table since it was opened.
+   */
+  LevelDBTableService.WriteStats getWriteStats() {
+    return new LevelDBTableService.WriteStats(batches.get(), commits.get(), writeTimeNanos.get(),
+                                              System.nanoTime() - startTime);
+  }
+
+  /**
+   * A batch waiting to be written as part of a group.
+   */
+  private static final class PendingWrite {
+    private final WriteBatch batch;
+    // guarded by the lock of the committer
+    private boolean done;
+    private Throwable failure;
+
+    PendingWrite(WriteBatch batch) {
+      this.batch = batch;
+    }
+
+    void rethrowFailure() throws IOException {
+      if (failure == null) {
+        return;
+      }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      throw new IOException("Failed to write batch", failure);
+    }
+  }
+}
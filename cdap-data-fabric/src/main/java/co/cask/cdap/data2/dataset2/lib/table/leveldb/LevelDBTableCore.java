@@ -25,13 +25,15 @@ import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.tephra.Transaction;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.WriteBatch;
-import org.iq80.leveldb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +42,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -77,68 +81,123 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  private final Striped<Lock> rowLocks;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.rowLocks = service.getRowLocks(tableName);
   }
 
   private DB getDB() throws IOException {
     return service.getTable(tableName);
   }
 
-  private WriteOptions getWriteOptions() {
-    return service.getWriteOptions();
-  }
 
+  // Read-modify-write operations (swap and increment) lock the rows they modify, using locks shared by all
+  // instances of the same table. Locks are striped by row key, so that operations on different rows
+  // can run concurrently. Multi-row operations acquire the locks in stripe order to avoid deadlocks.
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = rowLocks.get(new RowKey(row));
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = rowLocks.get(new RowKey(row));
+    lock.lock();
+    try {
+      Map<byte[], Long> result = getResultMap(row, increments);
+      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      }
+      persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
+      return result;
+    } finally {
+      lock.unlock();
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
+  /**
+   * Increments multiple rows. The locks of all rows are held while the current values are read, and the new
+   * values of all rows are written with a single {@link WriteBatch}.
+   */
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    if (updates.isEmpty()) {
+      return;
+    }
+    List<RowKey> rowKeys = Lists.newArrayListWithCapacity(updates.size());
+    for (byte[] row : updates.keySet()) {
+      rowKeys.add(new RowKey(row));
+    }
+    // bulkGet returns the locks sorted by stripe, which gives a consistent locking order across threads
+    List<Lock> locks = ImmutableList.copyOf(rowLocks.bulkGet(rowKeys));
+    int locked = 0;
+    try {
+      for (Lock lock : locks) {
+        lock.lock();
+        locked++;
+      }
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
+      // read all rows with one iterator, the rows are sorted
+      DBIterator iterator = getDB().iterator();
+      try {
+        for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+          NavigableMap<byte[], Long> increments = row.getValue();
+          Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          Map<byte[], Long> result = getResultMap(iterator, row.getKey(), increments);
+          for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+            replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+          }
+          resultMap.put(row.getKey(), replacing);
+        }
+      } finally {
+        iterator.close();
+      }
+      persist(resultMap, System.currentTimeMillis());
+    } finally {
+      // release in reverse order of acquisition
+      for (int i = locked - 1; i >= 0; i--) {
+        locks.get(i).unlock();
       }
-      resultMap.put(row.getKey(), replacing);
     }
-    persist(resultMap, System.currentTimeMillis());
   }
 
   private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
-    NavigableMap<byte[], byte[]> existing =
-      getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
+    DBIterator iterator = getDB().iterator();
+    try {
+      return getResultMap(iterator, row, increments);
+    } finally {
+      iterator.close();
+    }
+  }
+
+  private Map<byte[], Long> getResultMap(DBIterator iterator, byte[] row,
+                                         Map<byte[], Long> increments) throws IOException {
+    byte[][] columns = increments.keySet().toArray(new byte[increments.size()][]);
+    NavigableMap<byte[], byte[]> existing = getRow(iterator, row, columns);
     Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
       long existingValue = 0L;
@@ -167,7 +226,7 @@ public class LevelDBTableCore {
         batch.put(key, column.getValue() == null ? DELETE_MARKER : column.getValue());
       }
     }
-    db.write(batch, service.getWriteOptions());
+    service.write(tableName, batch);
   }
 
   public void put(byte[] row, byte[] column, byte[] value, long version) throws IOException {
@@ -186,7 +245,7 @@ public class LevelDBTableCore {
         batch.delete(key);
       }
     }
-    db.write(batch, service.getWriteOptions());
+    service.write(tableName, batch);
   }
 
   public Scanner scan(byte[] startRow, byte[] stopRow,
@@ -232,6 +291,20 @@ public class LevelDBTableCore {
     }
   }
 
+  /**
+   * Reads the latest values of the given columns of a row, ignoring transactions, using the given iterator.
+   */
+  private NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, byte[][] columns) throws IOException {
+    if (columns.length == 0) {
+      return EMPTY_ROW_MAP;
+    }
+    columns = Arrays.copyOf(columns, columns.length);
+    Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
+    iterator.seek(createStartKey(row, columns[0]));
+    byte[] endKey = createEndKey(row, upperBound(columns[columns.length - 1]));
+    return getRow(iterator, endKey, null, false, columns, columns.length).getSecond();
+  }
+
   private static Scanner createEmptyScanner() {
     return new Scanner() {
       @Override
@@ -344,7 +417,7 @@ public class LevelDBTableCore {
         }
         batch.delete(entry.getKey());
       }
-      db.write(batch);
+      service.writeUnsynced(tableName, batch);
     } finally {
       iterator.close();
     }
@@ -393,7 +466,7 @@ public class LevelDBTableCore {
       iterator.close();
     }
     // delete all the entries that were found
-    db.write(batch, getWriteOptions());
+    service.write(tableName, batch);
   }
 
   public void deleteRange(byte[] startRow, byte[] stopRow, @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns)
@@ -430,7 +503,7 @@ public class LevelDBTableCore {
           // perform the deletes when we have built up a batch.
           if (deletesInBatch >= deletesPerRound) {
             // delete all the entries that were found
-            db.write(batch, getWriteOptions());
+            service.write(tableName, batch);
             batch = db.createWriteBatch();
             deletesInBatch = 0;
           }
@@ -439,7 +512,7 @@ public class LevelDBTableCore {
 
       // perform any outstanding deletes
       if (deletesInBatch > 0) {
-        db.write(batch, getWriteOptions());
+        service.write(tableName, batch);
       }
     } finally {
       scanner.close();
@@ -453,7 +526,7 @@ public class LevelDBTableCore {
     DBIterator iterator = db.iterator();
     try {
       addToDeleteBatch(batch, iterator, row, column);
-      db.write(batch);
+      service.writeUnsynced(tableName, batch);
     } finally {
       iterator.close();
     }
@@ -558,6 +631,29 @@ public class LevelDBTableCore {
     }
   }
 
+  /**
+   * Wraps a row key to be used for looking up row locks, which requires equals and hashCode by content.
+   */
+  private static final class RowKey {
+    private final byte[] row;
+    private final int hashCode;
+
+    RowKey(byte[] row) {
+      this.row = row;
+      this.hashCode = Arrays.hashCode(row);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || (o instanceof RowKey && Arrays.equals(row, ((RowKey) o).row));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
   // ------- helpers to create the keys for writes and scans ----------
 
   private static byte[] createPutKey(byte[] rowKey, byte[] columnKey, long version) {
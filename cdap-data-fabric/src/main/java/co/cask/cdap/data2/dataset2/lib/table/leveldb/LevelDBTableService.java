@@ -21,16 +21,19 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.transaction.stream.leveldb.LevelDBNameConverter;
 import co.cask.cdap.data2.util.TableId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBComparator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +46,7 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,12 +58,18 @@ public class LevelDBTableService {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // Number of lock stripes per table used to serialize read-modify-write operations on rows
+  private static final int ROW_LOCK_STRIPES = 256;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
+  private long groupCommitWindowMicros;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Striped<Lock>> rowLocks = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, LevelDBGroupCommitter> committers = Maps.newConcurrentMap();
 
   private static final LevelDBTableService SINGLETON = new LevelDBTableService();
 
@@ -86,6 +96,8 @@ public class LevelDBTableService {
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
+    groupCommitWindowMicros = config.getLong(Constants.CFG_DATA_LEVELDB_GROUP_COMMIT_WINDOW_MICROS,
+                                             Constants.DEFAULT_DATA_LEVELDB_GROUP_COMMIT_WINDOW_MICROS);
   }
 
   /**
@@ -93,6 +105,7 @@ public class LevelDBTableService {
    */
   public void clearTables() {
     tables.clear();
+    committers.clear();
   }
 
   public Collection<String> list() throws Exception {
@@ -126,7 +139,9 @@ public class LevelDBTableService {
       String tableName = getTableName(dir.getName());
       // NOTE: we are using recursion to traverse file tree as we know that leveldb table fs tree is couple levels deep.
       long size = getSize(dir);
-      builder.put(LevelDBNameConverter.from(tableName), new TableStats(size));
+      LevelDBGroupCommitter committer = committers.get(tableName);
+      WriteStats writeStats = committer == null ? WriteStats.EMPTY : committer.getWriteStats();
+      builder.put(LevelDBNameConverter.from(tableName), new TableStats(size, writeStats));
     }
     return builder.build();
   }
@@ -167,6 +182,50 @@ public class LevelDBTableService {
     return db;
   }
 
+  /**
+   * Writes a batch to the given table. Concurrent writes to the same table are coalesced into group commits if
+   * writes are synced.
+   */
+  public void write(String tableName, WriteBatch batch) throws IOException {
+    getCommitter(tableName).write(batch, writeOptions.sync());
+  }
+
+  /**
+   * Writes a batch to the given table without syncing it, regardless of the configured write options.
+   */
+  public void writeUnsynced(String tableName, WriteBatch batch) throws IOException {
+    getCommitter(tableName).write(batch, false);
+  }
+
+  private LevelDBGroupCommitter getCommitter(String tableName) throws IOException {
+    LevelDBGroupCommitter committer = committers.get(tableName);
+    if (committer == null) {
+      DB db = getTable(tableName);
+      committer = new LevelDBGroupCommitter(db, groupCommitWindowMicros);
+      LevelDBGroupCommitter existing = committers.putIfAbsent(tableName, committer);
+      if (existing != null) {
+        committer = existing;
+      }
+    }
+    return committer;
+  }
+
+  /**
+   * Returns the striped locks guarding read-modify-write operations on rows of the given table. All
+   * {@link LevelDBTableCore} instances of the same table share the same locks.
+   */
+  public Striped<Lock> getRowLocks(String tableName) {
+    Striped<Lock> locks = rowLocks.get(tableName);
+    if (locks == null) {
+      locks = Striped.lock(ROW_LOCK_STRIPES);
+      Striped<Lock> existing = rowLocks.putIfAbsent(tableName, locks);
+      if (existing != null) {
+        locks = existing;
+      }
+    }
+    return locks;
+  }
+
   public void ensureTableExists(String tableName) throws IOException {
     DB db = tables.get(tableName);
     if (db == null) {
@@ -218,6 +277,8 @@ public class LevelDBTableService {
 
   public void dropTable(String name) throws IOException {
     DB db = tables.remove(name);
+    rowLocks.remove(name);
+    committers.remove(name);
     if (db != null) {
       db.close();
     }
@@ -268,13 +329,91 @@ public class LevelDBTableService {
    */
   public static final class TableStats {
     private final long diskSizeBytes;
+    private final WriteStats writeStats;
 
     public TableStats(long sizeInBytes) {
+      this(sizeInBytes, WriteStats.EMPTY);
+    }
+
+    public TableStats(long sizeInBytes, WriteStats writeStats) {
       this.diskSizeBytes = sizeInBytes;
+      this.writeStats = writeStats;
     }
 
     public long getDiskSizeBytes() {
       return diskSizeBytes;
     }
+
+    /**
+     * Returns the statistics of batch writes to this table since it was opened by this service.
+     */
+    public WriteStats getWriteStats() {
+      return writeStats;
+    }
+  }
+
+  /**
+   * Statistics of batch writes to a LevelDB table.
+   */
+  public static final class WriteStats {
+    static final WriteStats EMPTY = new WriteStats(0, 0, 0, 0);
+
+    private final long batches;
+    private final long commits;
+    private final long writeTimeNanos;
+    private final long elapsedNanos;
+
+    WriteStats(long batches, long commits, long writeTimeNanos, long elapsedNanos) {
+      this.batches = batches;
+      this.commits = commits;
+      this.writeTimeNanos = writeTimeNanos;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of batches written.
+     */
+    public long getBatches() {
+      return batches;
+    }
+
+    /**
+     * Returns the number of writes to LevelDB, each containing one or more batches.
+     */
+    public long getCommits() {
+      return commits;
+    }
+
+    /**
+     * Returns the number of batches written per second.
+     */
+    public double getBatchesPerSecond() {
+      return elapsedNanos == 0 ? 0d : batches * 1e9d / elapsedNanos;
+    }
+
+    /**
+     * Returns the average number of batches per commit.
+     */
+    public double getAverageBatchSize() {
+      return commits == 0 ? 0d : (double) batches / commits;
+    }
+
+    /**
+     * Returns the average latency of writing a batch, in milliseconds, including the time waiting for its commit.
+     */
+    public double getAverageWriteLatencyMillis() {
+      return batches == 0 ? 0d : writeTimeNanos / 1e6d / batches;
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("batches", batches)
+        .add("commits", commits)
+        .add("batchesPerSecond", getBatchesPerSecond())
+        .add("averageBatchSize", getAverageBatchSize())
+        .add("averageWriteLatencyMillis", getAverageWriteLatencyMillis())
+        .toString();
+    }
   }
 }
@@ -33,6 +33,8 @@ import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -671,6 +673,175 @@ public class IndexedTableTest {
       dsFrameworkUtil.deleteInstance(incrTabInstance);
     }
   }
+  @Test
+  public void testBatchPut() throws Exception {
+    Id.DatasetInstance batchTabInstance = Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "batchtab");
+    dsFrameworkUtil.createInstance("indexedTable", batchTabInstance, DatasetProperties.builder()
+      .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .build());
+    final IndexedTable iTable = dsFrameworkUtil.getInstance(batchTabInstance);
+    try {
+      TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(iTable);
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(keyA, idxCol, idx1);
+        }
+      });
+
+      // a batch that updates an existing row, adds new rows, and updates the same row twice
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(Arrays.asList(new Put(keyA).add(idxCol, idx2).add(valCol, valA),
+                                   new Put(keyB).add(idxCol, idx1).add(valCol, valB),
+                                   new Put(keyC).add(idxCol, idx1).add(valCol, valC),
+                                   new Put(keyC).add(idxCol, idx3)));
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Scanner scanner = iTable.readByIndex(idxCol, idx1);
+          try {
+            TableTest.verifyRow(scanner.next(), keyB, colIdxVal, new byte[][]{ idx1, valB });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+
+          scanner = iTable.readByIndex(idxCol, idx2);
+          try {
+            TableTest.verifyRow(scanner.next(), keyA, colIdxVal, new byte[][]{ idx2, valA });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+
+          scanner = iTable.readByIndex(idxCol, idx3);
+          try {
+            TableTest.verifyRow(scanner.next(), keyC, colIdxVal, new byte[][]{ idx3, valC });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(batchTabInstance);
+    }
+  }
+
+  @Test
+  public void testCoveringColumns() throws Exception {
+    Id.DatasetInstance coverTabInstance = Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "covertab");
+    dsFrameworkUtil.createInstance("indexedTable", coverTabInstance, DatasetProperties.builder()
+      .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .add(IndexedTableDefinition.COVERING_COLUMNS_CONF_KEY, Bytes.toString(valCol))
+      .build());
+    final IndexedTable iTable = dsFrameworkUtil.getInstance(coverTabInstance);
+    final byte[] otherCol = { 'o', 't', 'h' };
+    try {
+      TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(iTable);
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(new Put(keyA).add(idxCol, idx1).add(valCol, valA).add(otherCol, valA));
+          iTable.put(new Put(keyB).add(idxCol, idx1).add(valCol, valB).add(otherCol, valB));
+        }
+      });
+
+      // covered reads only return the requested columns, full reads return the data rows
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Scanner scanner = iTable.readByIndex(idxCol, idx1, colIdxVal);
+          try {
+            TableTest.verifyRow(scanner.next(), keyA, colIdxVal, new byte[][]{ idx1, valA });
+            TableTest.verifyRow(scanner.next(), keyB, colIdxVal, new byte[][]{ idx1, valB });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+
+          scanner = iTable.readByIndex(idxCol, idx1, new byte[][]{ otherCol });
+          try {
+            TableTest.verifyRow(scanner.next(), keyA, new byte[][]{ otherCol }, new byte[][]{ valA });
+            TableTest.verifyRow(scanner.next(), keyB, new byte[][]{ otherCol }, new byte[][]{ valB });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+
+      // updates of the covering column must be reflected in the index
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(keyA, valCol, valAA);
+          Assert.assertTrue(iTable.compareAndSwap(keyB, valCol, valB, valBB));
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Scanner scanner = iTable.readByIndex(idxCol, idx1, colIdxVal);
+          try {
+            TableTest.verifyRow(scanner.next(), keyA, colIdxVal, new byte[][]{ idx1, valAA });
+            TableTest.verifyRow(scanner.next(), keyB, colIdxVal, new byte[][]{ idx1, valBB });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+
+      // changing the indexed value carries over the covering value, deleting the covering column removes it
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(keyA, idxCol, idx2);
+          iTable.delete(keyB, valCol);
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Scanner scanner = iTable.readByIndex(idxCol, idx1, colIdxVal);
+          try {
+            TableTest.verifyRow(scanner.next(), keyB, new byte[][]{ idxCol }, new byte[][]{ idx1 });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+
+          scanner = iTable.readByIndex(idxCol, idx2, colIdxVal);
+          try {
+            TableTest.verifyRow(scanner.next(), keyA, colIdxVal, new byte[][]{ idx2, valAA });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+
+      // deleting the row removes it from the index
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.delete(keyA);
+          assertEmpty(iTable.readByIndex(idxCol, idx2, colIdxVal));
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(coverTabInstance);
+    }
+  }
+
   /**
    * Asserts that the given scanner contains no more rows.
    */
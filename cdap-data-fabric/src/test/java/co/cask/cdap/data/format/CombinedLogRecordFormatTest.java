@@ -23,6 +23,7 @@ import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -106,4 +107,28 @@ public class CombinedLogRecordFormatTest {
     String data = "10.10.10.10[01/Feb/2015:06:47:10 +0000";
     StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(data))));
   }
+
+  @Test
+  public void testProjectionAndReuse() throws UnsupportedTypeException, UnexpectedFormatException {
+    CombinedLogRecordFormat format = new CombinedLogRecordFormat();
+    FormatSpecification spec = new FormatSpecification(CombinedLogRecordFormat.class.getCanonicalName(),
+                                                       null, ImmutableMap.<String, String>of());
+    format.initialize(spec);
+    format.setProjection(ImmutableSet.of("request", "status"));
+    format.setReuseRecord(true);
+
+    String data = "10.10.10.10 - - [01/Feb/2015:06:47:10 +0000] \"GET /index.html HTTP/1.1\" 200 256 \"-\" \"-\"";
+    // Only the fields up to the last projected one are parsed, so an invalid user agent is not detected
+    StructuredRecord first = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(data + " \"invalid"))));
+    Assert.assertEquals("GET /index.html HTTP/1.1", first.get("request"));
+    Assert.assertEquals(200, first.get("status"));
+    Assert.assertNull(first.get("remote_host"));
+    Assert.assertNull(first.getSchema().getField("remote_host"));
+
+    // Missing entries are null, and overwrite the values of the previous record
+    StructuredRecord second = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("10.10.10.10 - - "))));
+    Assert.assertNull(second.get("request"));
+    Assert.assertNull(second.get("status"));
+    Assert.assertNull(first.get("request"));
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,10 +26,12 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -244,4 +246,76 @@ public class DelimitedStringsRecordFormatTest {
     Assert.assertEquals("hello world", output.get("f6"));
     Assert.assertArrayEquals(new String[] {"extra1"}, (String[]) output.get("f7"));
   }
+
+  @Test
+  public void testCharsetAndDelimiter() throws UnsupportedTypeException, UnexpectedFormatException {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("f1", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("f2", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("f3", Schema.arrayOf(Schema.of(Schema.Type.STRING)))
+    );
+    String body = "h\u00e9llo||-1234567890123||||w\u00f6rld||";
+
+    // Multi-byte delimiter in UTF-8 and UTF-16, which is parsed by decoding the body to a string
+    for (String charset : new String[] { "UTF-8", "UTF-16" }) {
+      DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+      format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getCanonicalName(), schema,
+                                                ImmutableMap.of(DelimitedStringsRecordFormat.DELIMITER, "||",
+                                                                DelimitedStringsRecordFormat.CHARSET, charset)));
+      StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(body.getBytes(Charset.forName(charset)))));
+      Assert.assertEquals("h\u00e9llo", output.get("f1"));
+      Assert.assertEquals(-1234567890123L, output.get("f2"));
+      Assert.assertArrayEquals(new String[] { "", "w\u00f6rld", "" }, (String[]) output.get("f3"));
+    }
+  }
+
+  @Test
+  public void testProjectionAndReuse() throws UnsupportedTypeException, UnexpectedFormatException {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("f1", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("f2", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("f3", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+      Schema.Field.of("f4", Schema.of(Schema.Type.STRING))
+    );
+    DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+    format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getCanonicalName(), schema,
+                                              Collections.<String, String>emptyMap()));
+    format.setProjection(ImmutableSet.of("f3", "f2"));
+    Assert.assertEquals(Schema.recordOf("event", schema.getField("f2"), schema.getField("f3")),
+                        format.getReadSchema());
+
+    // Fields that are not projected are not parsed, hence invalid values in them are not detected
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("x,a,-10,b"))));
+    Assert.assertEquals(format.getReadSchema(), output.getSchema());
+    Assert.assertEquals("a", output.get("f2"));
+    Assert.assertEquals(-10, output.get("f3"));
+    Assert.assertNull(output.get("f1"));
+    Assert.assertNull(output.get("f4"));
+
+    // With record reuse, a new read overwrites all the fields of the previous record
+    format.setReuseRecord(true);
+    StructuredRecord first = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("1,a,2,b"))));
+    Assert.assertEquals("a", first.get("f2"));
+    Assert.assertEquals(2, first.get("f3"));
+    StructuredRecord second = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("1,c"))));
+    Assert.assertEquals("c", second.get("f2"));
+    Assert.assertNull(second.get("f3"));
+    Assert.assertEquals("c", first.get("f2"));
+
+    // Reading all fields again
+    format.setProjection(null);
+    output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("1,a,2,b"))));
+    Assert.assertEquals(schema, output.getSchema());
+    Assert.assertEquals(1, output.get("f1"));
+    Assert.assertEquals("b", output.get("f4"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidProjection() throws UnsupportedTypeException {
+    DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+    format.initialize(null);
+    format.setProjection(ImmutableSet.of("body", "unknown"));
+  }
 }
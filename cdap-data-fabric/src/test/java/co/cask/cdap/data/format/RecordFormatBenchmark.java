@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.format;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.FormatSpecification;
+import co.cask.cdap.api.data.format.Formats;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Benchmark for reading {@link StreamEvent}s with the {@link StructuredRecord} formats, measuring records per second
+ * when reading all fields, when reading a projection of two fields, and when reusing the record between reads.
+ *
+ * Usage: RecordFormatBenchmark [records]
+ */
+public class RecordFormatBenchmark {
+
+  private static final Schema CSV_SCHEMA = Schema.recordOf(
+    "event",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("url", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("agent", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("country", Schema.of(Schema.Type.STRING)));
+
+  private static StreamEvent[] createCSVEvents(int count) {
+    StreamEvent[] events = new StreamEvent[count];
+    for (int i = 0; i < count; i++) {
+      String body = (1000000000L + i) + ",user" + (i % 1000) + "," + (i % 100) + "," + (i % 1000) / 10.0 + "," +
+        (i % 2 == 0) + ",http://example.com/page/" + i + ",Mozilla/5.0 (X11; Linux x86_64),US";
+      events[i] = new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(body)));
+    }
+    return events;
+  }
+
+  private static StreamEvent[] createCLFEvents(int count) {
+    StreamEvent[] events = new StreamEvent[count];
+    for (int i = 0; i < count; i++) {
+      String body = "10.10." + (i % 256) + "." + (i % 100) + " - frank [01/Feb/2015:06:47:10 +0000] " +
+        "\"GET /browse/page/" + i + " HTTP/1.1\" " + (i % 2 == 0 ? 200 : 301) + " " + (i % 5000) +
+        " \"http://example.com/\" \"Mozilla/5.0 (compatible; AhrefsBot/5.0; +http://ahrefs.com/robot/)\"";
+      events[i] = new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(body)));
+    }
+    return events;
+  }
+
+  private static StreamEvent[] createSyslogEvents(int count) {
+    StreamEvent[] events = new StreamEvent[count];
+    for (int i = 0; i < count; i++) {
+      String body = "Oct 17 08:59:00 host" + (i % 10) + " program[" + i + "]: Message number " + i;
+      events[i] = new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(body)));
+    }
+    return events;
+  }
+
+  private static AbstractStructuredRecordFormat createFormat(String name, @Nullable Schema schema,
+                                                             @Nullable Set<String> projection,
+                                                             boolean reuseRecord) throws Exception {
+    FormatSpecification spec = new FormatSpecification(name, schema, ImmutableMap.<String, String>of());
+    AbstractStructuredRecordFormat format = (AbstractStructuredRecordFormat) RecordFormats
+      .<StreamEvent, StructuredRecord>createInitializedFormat(spec);
+    format.setProjection(projection);
+    format.setReuseRecord(reuseRecord);
+    return format;
+  }
+
+  private static long read(AbstractStructuredRecordFormat format, StreamEvent[] events) throws Exception {
+    long start = System.nanoTime();
+    int fields = 0;
+    for (StreamEvent event : events) {
+      fields += format.read(event).getSchema().getFields().size();
+    }
+    long time = System.nanoTime() - start;
+    if (fields == 0) {
+      throw new IllegalStateException("No fields read");
+    }
+    return time;
+  }
+
+  private static void run(String name, @Nullable Schema schema, Set<String> projection,
+                          StreamEvent[] events) throws Exception {
+    report(name + " all fields", events.length, read(createFormat(name, schema, null, false), events));
+    report(name + " projected", events.length, read(createFormat(name, schema, projection, false), events));
+    report(name + " reuse record", events.length, read(createFormat(name, schema, null, true), events));
+    report(name + " projected, reuse record", events.length,
+           read(createFormat(name, schema, projection, true), events));
+  }
+
+  private static void report(String name, int records, long nanos) {
+    System.out.printf("%-40s %10.2f ms %12.0f records/s%n", name, nanos / 1e6, records * 1e9 / nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+
+    StreamEvent[] csvEvents = createCSVEvents(records);
+    StreamEvent[] clfEvents = createCLFEvents(records);
+    StreamEvent[] syslogEvents = createSyslogEvents(records);
+
+    // Run twice, the first run is for warm-up
+    for (int run = 0; run < 2; run++) {
+      System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+      run(Formats.CSV, CSV_SCHEMA, ImmutableSet.of("id", "count"), csvEvents);
+      run(Formats.COMBINED_LOG_FORMAT, null, ImmutableSet.of("remote_host", "status"), clfEvents);
+      run(Formats.SYSLOG, null, ImmutableSet.of("program", "message"), syslogEvents);
+    }
+  }
+}
@@ -16,21 +16,31 @@
 
 package co.cask.cdap.data.stream.service.upload;
 
+import co.cask.cdap.proto.Id;
 import co.cask.http.BodyConsumer;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.InputSupplier;
 import org.apache.avro.Schema;
 import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.reflect.ReflectDatumReader;
 import org.apache.avro.reflect.ReflectDatumWriter;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,9 +48,87 @@ import java.util.Map;
  */
 public class AvroStreamBodyConsumerTest extends StreamBodyConsumerTestBase {
 
+  private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+  private static final int SYNC_SIZE = DataFileConstants.SYNC_SIZE;
+
+  private CodecFactory codec = CodecFactory.snappyCodec();
+
+  @Test
+  public void testCodecs() throws Exception {
+    // Snappy is tested by the base class
+    for (CodecFactory codec : ImmutableList.of(CodecFactory.nullCodec(), CodecFactory.deflateCodec(6))) {
+      this.codec = codec;
+      testChunkedContent();
+    }
+  }
+
+  @Test
+  public void testBlockSplitAcrossChunks() throws Exception {
+    for (CodecFactory codec : ImmutableList.of(CodecFactory.nullCodec(), CodecFactory.deflateCodec(6),
+                                               CodecFactory.snappyCodec())) {
+      this.codec = codec;
+      int recordCount = 1000;
+      ContentInfo contentInfo = generateFile(recordCount);
+      byte[] content = ByteStreams.toByteArray(contentInfo.getContentSupplier());
+
+      // The sync marker ends the header and every data block
+      List<Integer> syncEnds = findSyncEnds(content);
+      Assert.assertTrue(syncEnds.size() >= 2);
+      int headerEnd = syncEnds.get(0);
+      int blockEnd = syncEnds.get(1);
+
+      testUpload(contentInfo, recordCount, ImmutableList.of(
+        headerEnd - SYNC_SIZE / 2,      // Within the sync marker of the header
+        headerEnd,                      // Between the header and the first block
+        headerEnd + 1,                  // After the first byte of the block count
+        blockEnd - SYNC_SIZE,           // Before the sync marker of the first block
+        blockEnd - SYNC_SIZE / 2        // Within the sync marker of the first block
+      ));
+    }
+  }
+
+  @Test
+  public void testMaxBlockSize() throws Exception {
+    codec = CodecFactory.nullCodec();
+    byte[] content = ByteStreams.toByteArray(generateFile(1000).getContentSupplier());
+    int headerEnd = findSyncEnds(content).get(0);
+
+    // A block larger than the maximum is rejected as soon as its size is known
+    final TestContentWriter contentWriter = new TestContentWriter();
+    BodyConsumer bodyConsumer = new AvroStreamBodyConsumer(new ContentWriterFactory() {
+      @Override
+      public Id.Stream getStream() {
+        return Id.Stream.from("test-namespace", "test-stream");
+      }
+
+      @Override
+      public ContentWriter create(Map<String, String> headers) throws IOException {
+        return contentWriter;
+      }
+    }, 1024);
+    TestHttpResponder responder = new TestHttpResponder();
+    bodyConsumer.chunk(ChannelBuffers.copiedBuffer(content, 0, headerEnd + 8), responder);
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST, responder.getResponseStatus());
+    Assert.assertEquals(0, contentWriter.getEvents());
+  }
+
+  /**
+   * Returns the offsets right after every occurrence of the sync marker of the given avro file.
+   */
+  private List<Integer> findSyncEnds(byte[] content) {
+    byte[] sync = Arrays.copyOfRange(content, content.length - SYNC_SIZE, content.length);
+    List<Integer> syncEnds = Lists.newArrayList();
+    for (int i = SYNC_SIZE; i <= content.length; i++) {
+      if (Arrays.equals(sync, Arrays.copyOfRange(content, i - SYNC_SIZE, i))) {
+        syncEnds.add(i);
+      }
+    }
+    return syncEnds;
+  }
+
   @Override
   protected ContentInfo generateFile(final int recordCount) throws IOException {
-    return new FileContentInfo(generateAvroFile(TMP_FOLDER.newFile(), recordCount)) {
+    return new FileContentInfo(generateAvroFile(TMP_FOLDER.newFile(), recordCount, codec)) {
 
       @Override
       public boolean verify(Map<String, String> headers,
@@ -65,10 +153,10 @@ public class AvroStreamBodyConsumerTest extends StreamBodyConsumerTestBase {
 
   @Override
   protected BodyConsumer createBodyConsumer(ContentWriterFactory contentWriterFactory) {
-    return new AvroStreamBodyConsumer(contentWriterFactory);
+    return new AvroStreamBodyConsumer(contentWriterFactory, MAX_BLOCK_SIZE);
   }
 
-  private File generateAvroFile(File file, int recordCount) throws IOException {
+  private File generateAvroFile(File file, int recordCount, CodecFactory codec) throws IOException {
     Schema schema = Schema.createRecord("Record", null, null, false);
     schema.setFields(ImmutableList.of(
       new Schema.Field("id", Schema.create(Schema.Type.INT), null, null),
@@ -78,7 +166,7 @@ public class AvroStreamBodyConsumerTest extends StreamBodyConsumerTestBase {
 
     DataFileWriter<Record> writer = new DataFileWriter<Record>(new ReflectDatumWriter<Record>(Record.class));
     try {
-      writer.setCodec(CodecFactory.snappyCodec());
+      writer.setCodec(codec);
       writer.create(schema, file);
 
       for (int i = 0; i < recordCount; i++) {
@@ -25,6 +25,7 @@ import co.cask.http.HttpResponder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.common.io.InputSupplier;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -64,6 +65,20 @@ public abstract class StreamBodyConsumerTestBase {
     // Generate a file for upload
     ContentInfo contentInfo = generateFile(recordCount);
 
+    // Feed the file content in small chunk
+    byte[] content = ByteStreams.toByteArray(contentInfo.getContentSupplier());
+    List<Integer> splits = Lists.newArrayList();
+    for (int offset = 10; offset < content.length; offset += 10) {
+      splits.add(offset);
+    }
+    testUpload(contentInfo, recordCount, splits);
+  }
+
+  /**
+   * Uploads the content of the given {@link ContentInfo}, split into chunks at the given offsets, and verifies
+   * that it is processed correctly.
+   */
+  protected void testUpload(ContentInfo contentInfo, int recordCount, List<Integer> splits) throws Exception {
     final Map<String, String> contentHeaders = Maps.newHashMap();
     final TestContentWriter contentWriter = new TestContentWriter();
     BodyConsumer bodyConsumer = createBodyConsumer(new ContentWriterFactory() {
@@ -80,8 +95,7 @@ public abstract class StreamBodyConsumerTestBase {
     });
     TestHttpResponder responder = new TestHttpResponder();
 
-    // Feed the file content in small chunk
-    sendChunks(contentInfo.getContentSupplier(), 10, bodyConsumer, responder);
+    sendChunks(ByteStreams.toByteArray(contentInfo.getContentSupplier()), splits, bodyConsumer, responder);
 
     // Verify the processing is completed correctly
     Assert.assertTrue(contentWriter.waitForClose(5, TimeUnit.SECONDS));
@@ -96,24 +110,19 @@ public abstract class StreamBodyConsumerTestBase {
   }
 
   /**
-   * Sends content as provided by the given {@link InputSupplier} as small chunks to the given
-   * {@link BodyConsumer}.
+   * Sends the given content as chunks split at the given offsets to the given {@link BodyConsumer}.
    */
-  private void sendChunks(InputSupplier<? extends InputStream> inputSupplier, int chunkSize,
-                          BodyConsumer bodyConsumer, HttpResponder responder) throws IOException {
-    InputStream input = inputSupplier.getInput();
+  private void sendChunks(byte[] content, List<Integer> splits, BodyConsumer bodyConsumer, HttpResponder responder) {
     try {
-      byte[] bytes = new byte[chunkSize];
-      int len = input.read(bytes);
-      while (len >= 0) {
-        bodyConsumer.chunk(ChannelBuffers.copiedBuffer(bytes, 0, len), responder);
-        len = input.read(bytes);
+      int start = 0;
+      for (int split : splits) {
+        bodyConsumer.chunk(ChannelBuffers.copiedBuffer(content, start, split - start), responder);
+        start = split;
       }
+      bodyConsumer.chunk(ChannelBuffers.copiedBuffer(content, start, content.length - start), responder);
       bodyConsumer.finished(responder);
     } catch (Exception e) {
       bodyConsumer.handleError(e);
-    } finally {
-      input.close();
     }
   }
 
@@ -154,7 +163,7 @@ public abstract class StreamBodyConsumerTestBase {
   /**
    * A {@link ContentWriter} for testing. It keeps all content written in memory.
    */
-  private static class TestContentWriter implements ContentWriter {
+  protected static class TestContentWriter implements ContentWriter {
     private final List<ChannelBuffer> contents;
     private final CountDownLatch completion;
     private int events;
@@ -204,7 +213,7 @@ public abstract class StreamBodyConsumerTestBase {
   /**
    * A {@link HttpResponder} for testing. It only saved the first response status event sent.
    */
-  private static class TestHttpResponder extends AbstractHttpResponder {
+  protected static class TestHttpResponder extends AbstractHttpResponder {
     private final AtomicReference<HttpResponseStatus> responseStatus = new AtomicReference<HttpResponseStatus>();
 
     @Override
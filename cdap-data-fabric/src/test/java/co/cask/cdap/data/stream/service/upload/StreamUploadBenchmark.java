@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.proto.Id;
+import co.cask.http.AbstractHttpResponder;
+import co.cask.http.BodyConsumer;
+import co.cask.http.ChunkResponder;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Benchmark for concurrent avro and text uploads through the stream {@link BodyConsumer}s. The uploads are driven
+ * by a fixed number of threads, each interleaving the chunks of its uploads as a Netty I/O thread would.
+ * It measures the number of events per second written to a {@link ContentWriter} that discards the content.
+ *
+ * Usage: StreamUploadBenchmark [eventsPerUpload] [ioThreads]
+ */
+public class StreamUploadBenchmark {
+
+  private static final int CHUNK_SIZE = 8192;
+  private static final int[] CONCURRENT_UPLOADS = { 1, 4, 16, 64, 256 };
+
+  private static byte[] createAvroFile(int events, CodecFactory codec) throws IOException {
+    Schema schema = Schema.createRecord("Event", null, null, false);
+    schema.setFields(ImmutableList.of(
+      new Schema.Field("id", Schema.create(Schema.Type.LONG), null, null),
+      new Schema.Field("body", Schema.create(Schema.Type.STRING), null, null)
+    ));
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DataFileWriter<GenericRecord> writer = new DataFileWriter<GenericRecord>(
+      new GenericDatumWriter<GenericRecord>(schema));
+    try {
+      writer.setCodec(codec);
+      writer.create(schema, output);
+      for (int i = 0; i < events; i++) {
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("id", (long) i);
+        record.put("body", "Event number " + i + " of the benchmark upload");
+        writer.append(record);
+      }
+    } finally {
+      writer.close();
+    }
+    return output.toByteArray();
+  }
+
+  private static byte[] createTextFile(int events) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < events; i++) {
+      builder.append("Event number ").append(i).append(" of the benchmark upload\n");
+    }
+    return builder.toString().getBytes(Charsets.UTF_8);
+  }
+
+  private static BodyConsumer createBodyConsumer(boolean avro, ContentWriterFactory contentWriterFactory) {
+    return avro ? new AvroStreamBodyConsumer(contentWriterFactory, Integer.MAX_VALUE)
+                : new TextStreamBodyConsumer(contentWriterFactory);
+  }
+
+  private static long run(final byte[] content, final boolean avro, int uploads, int ioThreads,
+                          final AtomicLong events) throws Exception {
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final ContentWriterFactory contentWriterFactory = new DiscardingContentWriterFactory(events);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < ioThreads; i++) {
+      final int threadUploads = uploads / ioThreads + (i < uploads % ioThreads ? 1 : 0);
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            StatusResponder responder = new StatusResponder();
+            List<BodyConsumer> consumers = Lists.newArrayList();
+            for (int j = 0; j < threadUploads; j++) {
+              consumers.add(createBodyConsumer(avro, contentWriterFactory));
+            }
+            startLatch.await();
+            // Deliver one chunk to each upload in turn
+            for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+              int length = Math.min(CHUNK_SIZE, content.length - offset);
+              for (BodyConsumer consumer : consumers) {
+                consumer.chunk(ChannelBuffers.wrappedBuffer(content, offset, length), responder);
+              }
+            }
+            for (BodyConsumer consumer : consumers) {
+              consumer.finished(responder);
+              if (!HttpResponseStatus.OK.equals(responder.status)) {
+                throw new IllegalStateException("Upload failed with status " + responder.status);
+              }
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      });
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    long start = System.nanoTime();
+    startLatch.countDown();
+    for (Thread t : threads) {
+      t.join();
+    }
+    long time = System.nanoTime() - start;
+    if (failure.get() != null) {
+      throw new RuntimeException(failure.get());
+    }
+    return time;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int eventsPerUpload = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int ioThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+
+    Map<String, byte[]> files = Maps.newLinkedHashMap();
+    files.put("avro null", createAvroFile(eventsPerUpload, CodecFactory.nullCodec()));
+    files.put("avro deflate", createAvroFile(eventsPerUpload, CodecFactory.deflateCodec(6)));
+    files.put("avro snappy", createAvroFile(eventsPerUpload, CodecFactory.snappyCodec()));
+    files.put("text", createTextFile(eventsPerUpload));
+
+    // Run twice, the first run is for warm-up
+    for (int run = 0; run < 2; run++) {
+      System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+      for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+        boolean avro = entry.getKey().startsWith("avro");
+        for (int uploads : CONCURRENT_UPLOADS) {
+          AtomicLong events = new AtomicLong();
+          long nanos = run(entry.getValue(), avro, uploads, Math.min(uploads, ioThreads), events);
+          System.out.printf("%-14s uploads=%-4d %12.0f events/s%n", entry.getKey(), uploads,
+                            events.get() * 1e9 / nanos);
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@link ContentWriterFactory} that creates {@link ContentWriter}s which only count events.
+   */
+  private static final class DiscardingContentWriterFactory implements ContentWriterFactory {
+
+    private final AtomicLong events;
+
+    DiscardingContentWriterFactory(AtomicLong events) {
+      this.events = events;
+    }
+
+    @Override
+    public Id.Stream getStream() {
+      return Id.Stream.from("benchmark", "upload");
+    }
+
+    @Override
+    public ContentWriter create(Map<String, String> headers) throws IOException {
+      return new ContentWriter() {
+        private long count;
+
+        @Override
+        public void append(ByteBuffer body, boolean immutable) throws IOException {
+          count++;
+        }
+
+        @Override
+        public void appendAll(Iterator<ByteBuffer> bodies, boolean immutable) throws IOException {
+          while (bodies.hasNext()) {
+            bodies.next();
+            count++;
+          }
+        }
+
+        @Override
+        public void cancel() {
+          count = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+          events.addAndGet(count);
+        }
+      };
+    }
+  }
+
+  /**
+   * A {@link co.cask.http.HttpResponder} that only remembers the last response status.
+   */
+  private static final class StatusResponder extends AbstractHttpResponder {
+    private HttpResponseStatus status;
+
+    @Override
+    public ChunkResponder sendChunkStart(HttpResponseStatus status, Multimap<String, String> headers) {
+      // Not used in benchmark
+      return null;
+    }
+
+    @Override
+    public void sendContent(HttpResponseStatus status, ChannelBuffer content,
+                            String contentType, Multimap<String, String> headers) {
+      this.status = status;
+    }
+
+    @Override
+    public void sendFile(File file, Multimap<String, String> headers) {
+      // Not used in benchmark
+    }
+  }
+}
@@ -16,6 +16,8 @@
 
 package co.cask.cdap.data2.datafabric.dataset;
 
+import co.cask.cdap.api.dataset.DatasetDefinition;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.module.DatasetModule;
 import co.cask.cdap.api.dataset.table.OrderedTable;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
@@ -105,7 +107,7 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
 
     locationFactory = new LocalLocationFactory(new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR)));
     NamespacedLocationFactory namespacedLocationFactory = new DefaultNamespacedLocationFactory(cConf, locationFactory);
-    framework = new RemoteDatasetFramework(discoveryService, registryFactory,
+    framework = new RemoteDatasetFramework(cConf, discoveryService, registryFactory,
                                            new LocalDatasetTypeClassLoaderFactory());
 
     ImmutableSet<HttpHandler> handlers =
@@ -184,6 +186,30 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     }
   }
 
+  @Test
+  public void testMetaCache() throws Exception {
+    Id.DatasetInstance datasetInstanceId = Id.DatasetInstance.from(NAMESPACE_ID, "cached");
+    framework.addInstance("table", datasetInstanceId, DatasetProperties.EMPTY);
+    try {
+      // The first lookup fetches the metadata from the dataset service, later lookups are answered by the cache
+      Assert.assertNotNull(framework.getDatasetSpec(datasetInstanceId));
+      long hits = framework.getMetaCacheHits();
+      long misses = framework.getMetaCacheMisses();
+      Assert.assertTrue(framework.hasInstance(datasetInstanceId));
+      Assert.assertNotNull(framework.getDataset(datasetInstanceId, DatasetDefinition.NO_ARGUMENTS, null));
+      Assert.assertEquals(hits + 2, framework.getMetaCacheHits());
+      Assert.assertEquals(misses, framework.getMetaCacheMisses());
+
+      // Updating the instance invalidates its cached metadata
+      framework.updateInstance(datasetInstanceId, DatasetProperties.builder().add("key", "value").build());
+      Assert.assertEquals("value", framework.getDatasetSpec(datasetInstanceId).getProperty("key"));
+      Assert.assertTrue(framework.getMetaCacheMisses() > misses);
+    } finally {
+      framework.deleteInstance(datasetInstanceId);
+    }
+    Assert.assertFalse(framework.hasInstance(datasetInstanceId));
+  }
+
   @After
   public void after() throws DatasetManagementException {
     Services.chainStop(service, opExecutorService, txManager);
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2;
+
+import co.cask.cdap.api.dataset.Dataset;
+import co.cask.cdap.api.dataset.DatasetDefinition;
+import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.proto.Id;
+import com.google.common.collect.ImmutableMap;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link DatasetInstancePool}.
+ */
+public class DatasetInstancePoolTest {
+  @ClassRule
+  public static DatasetFrameworkTestUtil dsFrameworkUtil = new DatasetFrameworkTestUtil();
+
+  private static final Id.DatasetInstance TABLE_ID =
+    Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "pooled");
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    dsFrameworkUtil.createInstance("keyValueTable", TABLE_ID, DatasetProperties.EMPTY);
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    dsFrameworkUtil.deleteInstance(TABLE_ID);
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    DatasetInstancePool pool = createPool(2);
+    Map<String, String> args = DatasetDefinition.NO_ARGUMENTS;
+
+    Dataset first = pool.acquire(TABLE_ID, args);
+    Assert.assertNotNull(first);
+    Assert.assertEquals(1, pool.getInstantiations());
+
+    // a released instance is handed out again
+    pool.release(TABLE_ID, args, first);
+    Assert.assertEquals(1, pool.getIdleCount());
+    Assert.assertSame(first, pool.acquire(TABLE_ID, args));
+    Assert.assertEquals(1, pool.getReuses());
+    Assert.assertEquals(0, pool.getIdleCount());
+
+    // while it is in use, another one is instantiated
+    Dataset second = pool.acquire(TABLE_ID, args);
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(2, pool.getInstantiations());
+
+    // instances are only reused for the same arguments
+    pool.release(TABLE_ID, args, first);
+    Dataset other = pool.acquire(TABLE_ID, ImmutableMap.of("key", "value"));
+    Assert.assertNotSame(first, other);
+    Assert.assertEquals(3, pool.getInstantiations());
+
+    // instances beyond the idle limit are closed
+    pool.release(TABLE_ID, args, second);
+    pool.release(TABLE_ID, ImmutableMap.of("key", "value"), other);
+    Assert.assertEquals(2, pool.getIdleCount());
+
+    pool.close();
+    Assert.assertEquals(0, pool.getIdleCount());
+  }
+
+  @Test
+  public void testDiscard() throws Exception {
+    DatasetInstancePool pool = createPool(2);
+    Map<String, String> args = DatasetDefinition.NO_ARGUMENTS;
+
+    // a discarded instance is never handed out again
+    Dataset dataset = pool.acquire(TABLE_ID, args);
+    pool.discard(dataset);
+    Assert.assertEquals(0, pool.getIdleCount());
+    Assert.assertNotSame(dataset, pool.acquire(TABLE_ID, args));
+    Assert.assertEquals(0, pool.getReuses());
+
+    // after the pool is closed, released instances are not kept
+    pool.close();
+    pool.release(TABLE_ID, args, dataset);
+    Assert.assertEquals(0, pool.getIdleCount());
+  }
+
+  @Test
+  public void testIdleTimeout() throws Exception {
+    DatasetInstancePool pool = createPool(2, 50L);
+    Map<String, String> args = DatasetDefinition.NO_ARGUMENTS;
+
+    // an instance released within the idle timeout is reused
+    Dataset dataset = pool.acquire(TABLE_ID, args);
+    pool.release(TABLE_ID, args, dataset);
+    Assert.assertSame(dataset, pool.acquire(TABLE_ID, args));
+
+    // an instance idle for longer than the idle timeout is closed instead of being reused
+    pool.release(TABLE_ID, args, dataset);
+    TimeUnit.MILLISECONDS.sleep(100L);
+    Dataset fresh = pool.acquire(TABLE_ID, args);
+    Assert.assertNotSame(dataset, fresh);
+    Assert.assertEquals(0, pool.getIdleCount());
+    Assert.assertEquals(2, pool.getInstantiations());
+    Assert.assertEquals(1, pool.getReuses());
+
+    // expired instances of other datasets are closed as well
+    Map<String, String> otherArgs = ImmutableMap.of("key", "value");
+    pool.release(TABLE_ID, otherArgs, pool.acquire(TABLE_ID, otherArgs));
+    Assert.assertEquals(1, pool.getIdleCount());
+    TimeUnit.MILLISECONDS.sleep(100L);
+    pool.release(TABLE_ID, args, fresh);
+    Assert.assertEquals(1, pool.getIdleCount());
+
+    pool.close();
+  }
+
+  private DatasetInstancePool createPool(int maxIdle) {
+    return createPool(maxIdle, TimeUnit.HOURS.toMillis(1));
+  }
+
+  private DatasetInstancePool createPool(int maxIdle, long idleTimeoutMillis) {
+    return new DatasetInstancePool(dsFrameworkUtil.getFramework(), getClass().getClassLoader(), null,
+                                   maxIdle, idleTimeoutMillis, null);
+  }
+}
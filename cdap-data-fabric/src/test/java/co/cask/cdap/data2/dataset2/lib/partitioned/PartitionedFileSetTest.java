@@ -17,12 +17,16 @@
 package co.cask.cdap.data2.dataset2.lib.partitioned;
 
 import co.cask.cdap.api.dataset.lib.Partition;
+import co.cask.cdap.api.dataset.lib.PartitionConsumerResult;
+import co.cask.cdap.api.dataset.lib.PartitionConsumerState;
 import co.cask.cdap.api.dataset.lib.PartitionFilter;
 import co.cask.cdap.api.dataset.lib.PartitionKey;
 import co.cask.cdap.api.dataset.lib.PartitionOutput;
 import co.cask.cdap.api.dataset.lib.PartitionedFileSet;
 import co.cask.cdap.api.dataset.lib.PartitionedFileSetProperties;
 import co.cask.cdap.api.dataset.lib.Partitioning;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.data2.dataset2.DatasetFrameworkTestUtil;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.test.SlowTests;
@@ -43,6 +47,7 @@ import org.slf4j.Logger;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Test partitioned file sets without map/reduce and without explore.
@@ -212,6 +217,179 @@ public class PartitionedFileSetTest {
 
   }
 
+  @Test
+  public void testIndexedListingInTx() throws Exception {
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsInstance);
+    final PartitionKey key1 = PartitionKey.builder()
+      .addField("s", "a")
+      .addField("i", 1)
+      .addField("l", 10L)
+      .build();
+    final PartitionKey key2 = PartitionKey.builder()
+      .addField("s", "b")
+      .addField("i", 2)
+      .addField("l", 10L)
+      .build();
+    // filters on non-leading fields are answered by the index
+    final PartitionFilter lFilter = PartitionFilter.builder().addValueCondition("l", 10L).build();
+    final PartitionFilter iFilter = PartitionFilter.builder().addRangeCondition("i", 2, null).build();
+
+    TransactionExecutor txnl = dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset);
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.addPartition(key1, "path1");
+        Assert.assertEquals(Sets.newHashSet(key1), getPartitionKeys(dataset.getPartitions(lFilter)));
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        // listing twice in the same transaction must give the same result
+        Assert.assertEquals(Sets.newHashSet(key1), getPartitionKeys(dataset.getPartitions(lFilter)));
+        Assert.assertEquals(Sets.newHashSet(key1), getPartitionKeys(dataset.getPartitions(lFilter)));
+        // changes in the transaction must be visible to listings of the same transaction
+        dataset.addPartition(key2, "path2");
+        Assert.assertEquals(Sets.newHashSet(key1, key2), getPartitionKeys(dataset.getPartitions(lFilter)));
+        dataset.dropPartition(key1);
+        Assert.assertEquals(Sets.newHashSet(key2), getPartitionKeys(dataset.getPartitions(lFilter)));
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Assert.assertEquals(Sets.newHashSet(key2), getPartitionKeys(dataset.getPartitions(lFilter)));
+        Assert.assertEquals(Sets.newHashSet(key2), getPartitionKeys(dataset.getPartitions(iFilter)));
+        Assert.assertEquals(Sets.newHashSet(key2), getPartitionKeys(dataset.getPartitions(null)));
+      }
+    });
+  }
+
+  @Test
+  public void testConsumePartitions() throws Exception {
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsInstance);
+    final PartitionKey[] keys = new PartitionKey[4];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = PartitionKey.builder()
+        .addField("s", "x")
+        .addField("i", i)
+        .addField("l", 1L)
+        .build();
+    }
+    final AtomicReference<PartitionConsumerState> state =
+      new AtomicReference<PartitionConsumerState>(PartitionConsumerState.FROM_BEGINNING);
+
+    TransactionExecutor txnl = dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset);
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.addPartition(keys[0], "path0");
+        dataset.addPartition(keys[1], "path1");
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        PartitionConsumerResult result = dataset.consumePartitions(state.get());
+        Assert.assertEquals(Sets.newHashSet(keys[0], keys[1]),
+                            getPartitionKeys(Sets.newHashSet(result.getPartitions())));
+        state.set(result.getPartitionConsumerState());
+        // consuming again from the new state gives no partitions
+        Assert.assertTrue(dataset.consumePartitions(state.get()).getPartitions().isEmpty());
+        // the named consumer also starts from the beginning
+        Assert.assertEquals(2, dataset.consumePartitions("consumer").getPartitions().size());
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.addPartition(keys[2], "path2");
+        dataset.addPartition(keys[3], "path3");
+        dataset.dropPartition(keys[3]);
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        PartitionConsumerResult result = dataset.consumePartitions(state.get());
+        Assert.assertEquals(Sets.newHashSet(keys[2]), getPartitionKeys(Sets.newHashSet(result.getPartitions())));
+        // the state survives serialization
+        PartitionConsumerState newState = result.getPartitionConsumerState();
+        Assert.assertEquals(newState, PartitionConsumerState.fromBytes(newState.toBytes()));
+        // the named consumer has committed its position in the previous transaction
+        result = dataset.consumePartitions("consumer");
+        Assert.assertEquals(Sets.newHashSet(keys[2]), getPartitionKeys(Sets.newHashSet(result.getPartitions())));
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Assert.assertTrue(dataset.consumePartitions("consumer").getPartitions().isEmpty());
+      }
+    });
+  }
+
+  @Test
+  public void testIncompleteIndexNotUsed() throws Exception {
+    final PartitionedFileSetDataset dataset = dsFrameworkUtil.getInstance(pfsInstance);
+    final PartitionKey key1 = PartitionKey.builder()
+      .addField("s", "a")
+      .addField("i", 1)
+      .addField("l", 10L)
+      .build();
+    final PartitionKey key2 = PartitionKey.builder()
+      .addField("s", "b")
+      .addField("i", 2)
+      .addField("l", 10L)
+      .build();
+    final PartitionFilter lFilter = PartitionFilter.builder().addValueCondition("l", 10L).build();
+
+    TransactionExecutor txnl = dsFrameworkUtil.newTransactionExecutor(dataset);
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.addPartition(key1, "path1");
+      }
+    });
+    // clear the index table, as for an instance that existed before the index was introduced
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Scanner scanner = dataset.indexTable.scan(null, null);
+        try {
+          Row row;
+          while ((row = scanner.next()) != null) {
+            dataset.indexTable.delete(row.getRow());
+          }
+        } finally {
+          scanner.close();
+        }
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Assert.assertEquals(Sets.newHashSet(key1), getPartitionKeys(dataset.getPartitions(lFilter)));
+        // adding a partition to a non-empty dataset must not make the index appear complete
+        dataset.addPartition(key2, "path2");
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Assert.assertEquals(Sets.newHashSet(key1, key2), getPartitionKeys(dataset.getPartitions(lFilter)));
+      }
+    });
+  }
+
+  private static Set<PartitionKey> getPartitionKeys(Set<Partition> partitions) {
+    Set<PartitionKey> keys = Sets.newHashSet();
+    for (Partition partition : partitions) {
+      keys.add(partition.getPartitionKey());
+    }
+    return keys;
+  }
+
   private void testAllFilters(PartitionedFileSet dataset,
                               Set<Partition> allPartitions,
                               List<PartitionFilter> filters) throws Exception {
@@ -86,6 +86,45 @@ public abstract class BufferingTableTest<T extends BufferingTable>
     }
   }
 
+  /**
+   * Tests that changes persisted incrementally within one long running transaction are all hidden once the
+   * transaction is rolled back and invalidated, as the MapReduce runtime does on failure.
+   */
+  @Test
+  public void testRollingBackIncrementallyPersistedChanges() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      Transaction tx1 = txClient.startLong();
+      BufferingTable myTable1 = getTable(CONTEXT1, MY_TABLE);
+      myTable1.startTx(tx1);
+      myTable1.put(R1, a(C1), a(V1));
+      Assert.assertTrue(myTable1.commitTx());
+      myTable1.put(R1, a(C2), a(V2));
+      myTable1.put(R2, a(C2), a(V2));
+      Assert.assertTrue(myTable1.commitTx());
+      myTable1.put(R3, a(C3), a(V3));
+      Assert.assertTrue(myTable1.commitTx());
+
+      // persisted changes stay visible within the transaction
+      verify(a(C1, V1, C2, V2), myTable1.get(R1, a(C1, C2)));
+      verify(a(C2, V2), myTable1.get(R2, a(C2)));
+      verify(a(C3, V3), myTable1.get(R3, a(C3)));
+
+      Assert.assertTrue(myTable1.rollbackTx());
+      txClient.invalidate(tx1.getWritePointer());
+
+      Transaction tx2 = txClient.startShort();
+      Table myTable2 = getTable(CONTEXT1, MY_TABLE);
+      ((TransactionAware) myTable2).startTx(tx2);
+      verify(a(), myTable2.get(R1, a(C1, C2)));
+      verify(a(), myTable2.get(R2, a(C2)));
+      verify(a(), myTable2.get(R3, a(C3)));
+    } finally {
+      admin.drop();
+    }
+  }
+
   /**
    * Tests that writes being buffered in memory by the client are still visible during scans.
    */
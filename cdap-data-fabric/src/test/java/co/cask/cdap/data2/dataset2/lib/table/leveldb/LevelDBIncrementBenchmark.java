@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Benchmark for concurrent increments on {@link LevelDBTableCore}, measuring increments per second with
+ * 1 to 32 threads, either on disjoint rows (one row per thread) or on a single hot row.
+ *
+ * Usage: LevelDBIncrementBenchmark [incrementsPerThread]
+ */
+public class LevelDBIncrementBenchmark {
+
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+  private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32 };
+
+  private static long run(final LevelDBTableService service, final String tableName,
+                          int threadCount, final int increments, final boolean hotRow) throws Exception {
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < threadCount; i++) {
+      final byte[] row = Bytes.toBytes(hotRow ? "hot" : "row" + i);
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            // each thread uses its own instance, as with separate dataset instances of the same table
+            LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+            Map<byte[], Long> increment = ImmutableMap.of(COLUMN, 1L);
+            startLatch.await();
+            for (int j = 0; j < increments; j++) {
+              core.increment(row, increment);
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      });
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    long start = System.nanoTime();
+    startLatch.countDown();
+    for (Thread t : threads) {
+      t.join();
+    }
+    long time = System.nanoTime() - start;
+    if (failure.get() != null) {
+      throw new RuntimeException(failure.get());
+    }
+    return time;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int increments = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+    File dataDir = Files.createTempDir();
+    try {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_DATA_LEVELDB_DIR, dataDir.getAbsolutePath());
+      LevelDBTableService service = new LevelDBTableService();
+      service.setConfiguration(cConf);
+
+      // Run twice, the first run is for warm-up
+      for (int run = 0; run < 2; run++) {
+        System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+        for (boolean hotRow : new boolean[] { false, true }) {
+          for (int threads : THREAD_COUNTS) {
+            String tableName = "increments." + run + "." + hotRow + "." + threads;
+            service.ensureTableExists(tableName);
+            long nanos = run(service, tableName, threads, increments, hotRow);
+            System.out.printf("%-10s threads=%-3d %12.0f increments/s%n", hotRow ? "hot row" : "disjoint",
+                              threads, (long) threads * increments * 1e9 / nanos);
+            service.dropTable(tableName);
+          }
+        }
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(dataDir);
+    }
+  }
+}
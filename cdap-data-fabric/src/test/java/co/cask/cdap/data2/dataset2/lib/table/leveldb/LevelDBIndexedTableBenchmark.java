@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.lib.IndexedTable;
+import co.cask.cdap.api.dataset.table.ConflictDetection;
+import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.guice.LocationRuntimeModule;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data.runtime.DataFabricLevelDBModule;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data.runtime.TransactionMetricsModule;
+import co.cask.cdap.proto.Id;
+import co.cask.tephra.Transaction;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Benchmark for index maintenance and reads by index of {@link IndexedTable} on top of LevelDB tables.
+ * It compares per-row puts with batched puts, and full-row reads by index with reads of covering columns only.
+ *
+ * Usage: LevelDBIndexedTableBenchmark [rows] [batchSize] [distinctIndexValues]
+ */
+public class LevelDBIndexedTableBenchmark {
+
+  private static final byte[] IDX_COL = Bytes.toBytes("idx");
+  private static final byte[] VAL_COL = Bytes.toBytes("val");
+  private static final byte[] PAYLOAD_COL = Bytes.toBytes("payload");
+  private static final byte[] PAYLOAD = new byte[256];
+
+  private final LevelDBTableService service;
+  private final CConfiguration cConf;
+  private final DatasetContext datasetContext = DatasetContext.from(Id.Namespace.DEFAULT.getId());
+  private long writePointer = 1;
+
+  public LevelDBIndexedTableBenchmark(File dataDir) {
+    cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new LocationRuntimeModule().getStandaloneModules(),
+      new DiscoveryRuntimeModule().getStandaloneModules(),
+      new DataSetsModules().getStandaloneModules(),
+      new DataFabricLevelDBModule(),
+      new TransactionMetricsModule());
+    service = injector.getInstance(LevelDBTableService.class);
+  }
+
+  private IndexedTable createTable(String name, byte[][] coveringColumns) throws Exception {
+    LevelDBTable data = createLevelDBTable(name + ".d");
+    LevelDBTable index = createLevelDBTable(name + ".i");
+    return new IndexedTable(name, data, index, new byte[][] { IDX_COL }, coveringColumns);
+  }
+
+  private LevelDBTable createLevelDBTable(String name) throws Exception {
+    DatasetSpecification spec = new LevelDBTableDefinition("benchmark").configure(name, DatasetProperties.EMPTY);
+    new LevelDBTableAdmin(datasetContext, spec, service, cConf).create();
+    return new LevelDBTable(datasetContext, name, ConflictDetection.ROW, service, cConf, null, null);
+  }
+
+  private void startTx(IndexedTable table) {
+    writePointer++;
+    table.startTx(new Transaction(writePointer - 1, writePointer, new long[0], new long[0],
+                                  Transaction.NO_TX_IN_PROGRESS));
+  }
+
+  private void commitTx(IndexedTable table) throws Exception {
+    table.commitTx();
+    table.postTxCommit();
+  }
+
+  private Put createPut(int row, int distinctValues) {
+    return new Put(Bytes.toBytes(row))
+      .add(IDX_COL, Bytes.toBytes(row % distinctValues))
+      .add(VAL_COL, Bytes.toBytes(row))
+      .add(PAYLOAD_COL, PAYLOAD);
+  }
+
+  private long load(IndexedTable table, int rows, int batchSize, int distinctValues, boolean batched) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < rows; i += batchSize) {
+      startTx(table);
+      int end = Math.min(rows, i + batchSize);
+      if (batched) {
+        List<Put> puts = Lists.newArrayListWithCapacity(end - i);
+        for (int row = i; row < end; row++) {
+          puts.add(createPut(row, distinctValues));
+        }
+        table.put(puts);
+      } else {
+        for (int row = i; row < end; row++) {
+          table.put(createPut(row, distinctValues));
+        }
+      }
+      commitTx(table);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private long readByIndex(IndexedTable table, int distinctValues, byte[][] columns) throws Exception {
+    long start = System.nanoTime();
+    int count = 0;
+    startTx(table);
+    for (int value = 0; value < distinctValues; value++) {
+      Scanner scanner = table.readByIndex(IDX_COL, Bytes.toBytes(value), columns);
+      try {
+        Row row = scanner.next();
+        while (row != null) {
+          count++;
+          row = scanner.next();
+        }
+      } finally {
+        scanner.close();
+      }
+    }
+    commitTx(table);
+    long time = System.nanoTime() - start;
+    if (count == 0) {
+      throw new IllegalStateException("No rows read by index");
+    }
+    return time;
+  }
+
+  private static void report(String name, int ops, long nanos) {
+    System.out.printf("%-40s %10.2f ms %12.0f ops/s%n", name, nanos / 1e6, ops * 1e9 / nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int distinctValues = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+    File dataDir = Files.createTempDir();
+    try {
+      LevelDBIndexedTableBenchmark benchmark = new LevelDBIndexedTableBenchmark(dataDir);
+      byte[][] covering = new byte[][] { VAL_COL };
+      byte[][] readColumns = new byte[][] { IDX_COL, VAL_COL };
+
+      IndexedTable perRow = benchmark.createTable("perRow", covering);
+      IndexedTable batched = benchmark.createTable("batched", covering);
+
+      // Run twice, the first run is for warm-up
+      for (int run = 0; run < 2; run++) {
+        System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+        report("put per row", rows, benchmark.load(perRow, rows, batchSize, distinctValues, false));
+        report("put batched", rows, benchmark.load(batched, rows, batchSize, distinctValues, true));
+        report("readByIndex full rows", rows, benchmark.readByIndex(batched, distinctValues, null));
+        report("readByIndex columns", rows, benchmark.readByIndex(batched, distinctValues, new byte[][] {
+          IDX_COL, PAYLOAD_COL }));
+        report("readByIndex covering columns", rows, benchmark.readByIndex(batched, distinctValues, readColumns));
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(dataDir);
+    }
+  }
+}
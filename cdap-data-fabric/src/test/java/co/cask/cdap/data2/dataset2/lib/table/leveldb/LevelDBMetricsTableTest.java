@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -31,12 +32,20 @@ import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTableTest;
 import co.cask.cdap.proto.Id;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.NavigableMap;
+
 /**
  * metrics table test for levelDB.
  */
@@ -72,4 +81,55 @@ public class LevelDBMetricsTableTest extends MetricsTableTest {
     return DatasetsUtil.getOrCreateDataset(dsFramework, metricsDatasetInstanceId, MetricsTable.class.getName(),
                                            DatasetProperties.EMPTY, null, null);
   }
+
+  @Test
+  public void testConcurrentMultiRowIncrement() throws Exception {
+    // each thread uses its own instance of the table, the row locks are shared by all instances
+    final int rounds = 500;
+    final NavigableMap<byte[], NavigableMap<byte[], Long>> updates1 =
+      ImmutableSortedMap.<byte[], NavigableMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+        .put(A, Bytes.immutableSortedMapOf(X, 1L))
+        .put(B, Bytes.immutableSortedMapOf(X, 2L)).build();
+    final NavigableMap<byte[], NavigableMap<byte[], Long>> updates2 =
+      ImmutableSortedMap.<byte[], NavigableMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+        .put(B, Bytes.immutableSortedMapOf(X, 1L))
+        .put(C, Bytes.immutableSortedMapOf(X, 3L)).build();
+
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      final MetricsTable table = getTable("testConcurrentMultiRowIncrement");
+      final NavigableMap<byte[], NavigableMap<byte[], Long>> updates = i % 2 == 0 ? updates1 : updates2;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < rounds; j++) {
+              table.increment(updates);
+            }
+          } finally {
+            try {
+              table.close();
+            } catch (IOException e) {
+              // ignore
+            }
+          }
+        }
+      });
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    MetricsTable table = getTable("testConcurrentMultiRowIncrement");
+    try {
+      Assert.assertEquals(2 * rounds, table.incrementAndGet(A, X, 0L));
+      Assert.assertEquals(6 * rounds, table.incrementAndGet(B, X, 0L));
+      Assert.assertEquals(6 * rounds, table.incrementAndGet(C, X, 0L));
+    } finally {
+      table.close();
+    }
+  }
 }
@@ -26,6 +26,9 @@ import co.cask.cdap.data.runtime.DataFabricLevelDBModule;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.TransactionMetricsModule;
 import co.cask.cdap.data2.util.TableId;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -35,6 +38,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -106,6 +110,55 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    final String tableName = "cdap_default.groupCommit";
+    TableId tableId = TableId.from("default", "groupCommit");
+    service.ensureTableExists(tableName);
+
+    // write from multiple threads concurrently, each batch increments a different row
+    final int threads = 8;
+    final int rounds = 100;
+    List<Thread> writers = Lists.newArrayList();
+    for (int i = 0; i < threads; i++) {
+      final byte[] row = Bytes.toBytes("row" + i);
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+            for (int j = 0; j < rounds; j++) {
+              core.increment(row, ImmutableMap.of(Bytes.toBytes("c"), 1L));
+            }
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
+      });
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    for (int i = 0; i < threads; i++) {
+      byte[] value = core.getRow(Bytes.toBytes("row" + i), new byte[][] { Bytes.toBytes("c") },
+                                 null, null, -1, null).get(Bytes.toBytes("c"));
+      Assert.assertEquals(rounds, Bytes.toLong(value));
+    }
+
+    LevelDBTableService.WriteStats writeStats = service.getTableStats().get(tableId).getWriteStats();
+    Assert.assertEquals(threads * rounds, writeStats.getBatches());
+    Assert.assertTrue(writeStats.getCommits() > 0);
+    Assert.assertTrue(writeStats.getCommits() <= writeStats.getBatches());
+    Assert.assertTrue(writeStats.getAverageBatchSize() >= 1d);
+
+    service.dropTable(tableName);
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
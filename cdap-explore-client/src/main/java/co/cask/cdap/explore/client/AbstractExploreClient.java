@@ -38,6 +38,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
@@ -49,7 +50,11 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -60,10 +65,12 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
   private static final Gson GSON = new Gson();
 
   private final ListeningScheduledExecutorService executor;
+  private final ExecutorService prefetchExecutor;
 
   protected AbstractExploreClient() {
     executor = MoreExecutors.listeningDecorator(
       Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("explore-client-executor")));
+    prefetchExecutor = Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("explore-client-prefetch-%d"));
   }
 
   @Override
@@ -71,6 +78,7 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
     // This will cancel all the running tasks, with interruption - that means that all
     // queries submitted by this executor will be closed
     executor.shutdownNow();
+    prefetchExecutor.shutdownNow();
   }
 
   @Override
@@ -318,7 +326,7 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
             if (!status.hasResults()) {
               close(handle);
             }
-            if (!resultFuture.set(new ClientExploreExecutionResult(AbstractExploreClient.this,
+            if (!resultFuture.set(new ClientExploreExecutionResult(AbstractExploreClient.this, prefetchExecutor,
                                                                    handle, status.hasResults()))) {
               close(handle);
             }
@@ -344,7 +352,8 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
   }
 
   /**
-   * Result iterator which polls Explore service using HTTP to get next results.
+   * Result iterator which polls Explore service using HTTP to get next results. Results are fetched in binary
+   * batches of the fetch size, and the next batch is prefetched in the background while the current one is consumed.
    */
   private static final class ClientExploreExecutionResult extends AbstractIterator<QueryResult>
     implements ExploreExecutionResult {
@@ -354,15 +363,20 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
     private int fetchSize = DEFAULT_FETCH_SIZE;
     private Iterator<QueryResult> delegate;
     private List<ColumnDesc> resultSchema = null;
+    private Future<List<QueryResult>> nextPage;
+    private int nextPageSize;
+    private boolean exhausted;
 
     private final ExploreHttpClient exploreClient;
+    private final ExecutorService prefetchExecutor;
     private final QueryHandle handle;
     private final boolean canContainResults;
     private final boolean hasResults;
 
-    public ClientExploreExecutionResult(ExploreHttpClient exploreClient, QueryHandle handle,
-                                        boolean canContainResults) {
+    public ClientExploreExecutionResult(ExploreHttpClient exploreClient, ExecutorService prefetchExecutor,
+                                        QueryHandle handle, boolean canContainResults) {
       this.exploreClient = exploreClient;
+      this.prefetchExecutor = prefetchExecutor;
       this.handle = handle;
       this.canContainResults = canContainResults;
       this.hasResults = canContainResults;
@@ -377,15 +391,25 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
       if (delegate != null && delegate.hasNext()) {
         return delegate.next();
       }
+      if (exhausted) {
+        return endOfData();
+      }
       try {
-        // call the endpoint 'next' to get more results and set delegate
-        List<QueryResult> nextResults = convertRows(exploreClient.nextResults(handle, fetchSize));
-        delegate = nextResults.iterator();
+        // get the next page of results and set delegate
+        int pageSize = (nextPage == null) ? fetchSize : nextPageSize;
+        List<QueryResult> results = convertRows(fetchPage());
+        delegate = results.iterator();
 
         // At this point, if delegate has no result, there are no more results at all
         if (!delegate.hasNext()) {
           return endOfData();
         }
+
+        // The server only returns less than the requested size if there are no more results
+        exhausted = results.size() < pageSize;
+        if (!exhausted) {
+          prefetch();
+        }
         return delegate.next();
       } catch (ExploreException e) {
         LOG.error("Exception while iterating through the results of query {}", handle.getHandle(), e);
@@ -397,6 +421,40 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
       }
     }
 
+    /**
+     * Returns the page of results that is being prefetched, or fetches one if there is no prefetch in progress.
+     */
+    private List<QueryResult> fetchPage() throws ExploreException, HandleNotFoundException {
+      Future<List<QueryResult>> page = nextPage;
+      nextPage = null;
+      if (page == null) {
+        return exploreClient.doNextResultsBinary(handle, fetchSize);
+      }
+      try {
+        return Uninterruptibles.getUninterruptibly(page);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfInstanceOf(e.getCause(), ExploreException.class);
+        Throwables.propagateIfInstanceOf(e.getCause(), HandleNotFoundException.class);
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+
+    private void prefetch() {
+      final int size = fetchSize;
+      try {
+        nextPage = prefetchExecutor.submit(new Callable<List<QueryResult>>() {
+          @Override
+          public List<QueryResult> call() throws Exception {
+            return exploreClient.doNextResultsBinary(handle, size);
+          }
+        });
+        nextPageSize = size;
+      } catch (RejectedExecutionException e) {
+        // The client is closed. The next page will be fetched synchronously, which will fail accordingly.
+        LOG.debug("Prefetch of results for query {} rejected", handle.getHandle(), e);
+      }
+    }
+
     private List<QueryResult> convertRows(List<QueryResult> rows) throws ExploreException {
       List<ColumnDesc> schema = getResultSchema();
       ImmutableList.Builder<QueryResult> builder = ImmutableList.builder();
@@ -420,7 +478,7 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
             } else if (schemaColumn.getType().equals("TINYINT")) {
               columnValue = ((Double) columnValue).byteValue();
             }
-          } else if ("BINARY".equals(columnType)) {
+          } else if ("BINARY".equals(columnType) && !(columnValue instanceof byte[])) {
             // A BINARY value is a byte array, which is deserialized by GSon into a list of
             // double objects - here we recreate a byte[] object.
             List<Object> binary;
@@ -460,6 +518,10 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
 
     @Override
     public void close() throws IOException {
+      if (nextPage != null) {
+        nextPage.cancel(true);
+        nextPage = null;
+      }
       try {
         exploreClient.close(handle);
       } catch (HandleNotFoundException e) {
@@ -26,6 +26,7 @@ import co.cask.cdap.explore.service.MetaDataInfo;
 import co.cask.cdap.explore.service.TableNotFoundException;
 import co.cask.cdap.explore.utils.ColumnsArgs;
 import co.cask.cdap.explore.utils.FunctionsArgs;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
 import co.cask.cdap.explore.utils.SchemasArgs;
 import co.cask.cdap.explore.utils.TablesArgs;
 import co.cask.cdap.proto.ColumnDesc;
@@ -206,6 +207,32 @@ abstract class ExploreHttpClient implements Explore {
     throw new ExploreException("Cannot get next results. Reason: " + getDetails(response));
   }
 
+  /**
+   * Fetches the next results of a query, like {@link #nextResults(QueryHandle, int)}, but using the binary endpoint
+   * which sends results as columnar batches encoded by {@link QueryResultBatchCodec}. Column values keep their
+   * types instead of going through JSON.
+   *
+   * @param handle handle returned by {@link #execute(Id.Namespace, String)}.
+   * @param size max rows to fetch in the call.
+   * @return list of {@link QueryResult}s.
+   */
+  protected List<QueryResult> doNextResultsBinary(QueryHandle handle, int size)
+    throws ExploreException, HandleNotFoundException {
+    HttpResponse response = doPost(String.format("data/explore/queries/%s/%s",
+                                                 handle.getHandle(), "next/binary"),
+                                   GSON.toJson(ImmutableMap.of("size", size)), null);
+    if (response.getResponseCode() == HttpURLConnection.HTTP_OK) {
+      try {
+        return QueryResultBatchCodec.INSTANCE.decode(response.getResponseBody());
+      } catch (IOException e) {
+        throw new ExploreException("Cannot decode next results of handle " + handle.getHandle(), e);
+      }
+    } else if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      throw new HandleNotFoundException("Handle " + handle.getHandle() + "not found.");
+    }
+    throw new ExploreException("Cannot get next results. Reason: " + getDetails(response));
+  }
+
   @Override
   public List<QueryResult> previewResults(QueryHandle handle)
     throws ExploreException, HandleNotFoundException, SQLException {
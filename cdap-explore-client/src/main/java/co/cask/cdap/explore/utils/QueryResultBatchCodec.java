@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.utils;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Codec;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary codec for a batch of {@link QueryResult}s. Rows are encoded column by column, so that each column is
+ * written with the encoding of its value type instead of JSON. The format of a batch is:
+ *
+ * <pre>
+ * {@code
+ *
+ * batch = <row_count> <column_count> <column>*
+ * column = <type> <null_bitmap> <value>*
+ * value = encoded value of a non-null cell, or <type> followed by the encoded value if the column type is MIXED
+ * }
+ * </pre>
+ *
+ * A sequence of batches is terminated by a batch with zero row count (see {@link #encodeEnd(Encoder)}).
+ * Values of types that have no specific encoding are written as JSON, hence decoded the same way as the
+ * results returned by the JSON endpoints.
+ */
+public final class QueryResultBatchCodec implements Codec<List<QueryResult>> {
+
+  public static final QueryResultBatchCodec INSTANCE = new QueryResultBatchCodec();
+
+  private static final Gson GSON = new Gson();
+
+  /**
+   * Type of values in a column.
+   */
+  private enum ColumnType {
+    NULL, BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, STRING, BINARY, JSON, MIXED;
+
+    private static final ColumnType[] VALUES = values();
+
+    static ColumnType fromOrdinal(int ordinal) throws IOException {
+      if (ordinal < 0 || ordinal >= VALUES.length) {
+        throw new IOException("Unknown column type " + ordinal);
+      }
+      return VALUES[ordinal];
+    }
+
+    static ColumnType of(Object value) {
+      if (value == null) {
+        return NULL;
+      }
+      if (value instanceof String) {
+        return STRING;
+      }
+      if (value instanceof Integer) {
+        return INT;
+      }
+      if (value instanceof Long) {
+        return LONG;
+      }
+      if (value instanceof Double) {
+        return DOUBLE;
+      }
+      if (value instanceof Boolean) {
+        return BOOLEAN;
+      }
+      if (value instanceof Float) {
+        return FLOAT;
+      }
+      if (value instanceof Short) {
+        return SHORT;
+      }
+      if (value instanceof Byte) {
+        return BYTE;
+      }
+      if (value instanceof byte[]) {
+        return BINARY;
+      }
+      return JSON;
+    }
+  }
+
+  private QueryResultBatchCodec() {
+  }
+
+  @Override
+  public byte[] encode(List<QueryResult> rows) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = new BinaryEncoder(os);
+    encode(rows, encoder);
+    encodeEnd(encoder);
+    return os.toByteArray();
+  }
+
+  @Override
+  public List<QueryResult> decode(byte[] data) throws IOException {
+    Decoder decoder = new BinaryDecoder(new ByteArrayInputStream(data));
+    ImmutableList.Builder<QueryResult> rows = ImmutableList.builder();
+    while (decode(decoder, rows)) {
+      // Keep decoding until the end of batches
+    }
+    return rows.build();
+  }
+
+  /**
+   * Encodes the given rows as one batch. Does nothing if there is no row, since an empty batch marks the end.
+   */
+  public void encode(List<QueryResult> rows, Encoder encoder) throws IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    int rowCount = rows.size();
+    int columnCount = rows.get(0).getColumns().size();
+    encoder.writeInt(rowCount);
+    encoder.writeInt(columnCount);
+
+    Object[] values = new Object[rowCount];
+    byte[] nullBitmap = new byte[(rowCount + 7) / 8];
+
+    for (int col = 0; col < columnCount; col++) {
+      ColumnType type = ColumnType.NULL;
+      Arrays.fill(nullBitmap, (byte) 0);
+
+      for (int row = 0; row < rowCount; row++) {
+        List<Object> columns = rows.get(row).getColumns();
+        if (columns.size() != columnCount) {
+          throw new IOException("Rows in a batch must have the same number of columns");
+        }
+        Object value = columns.get(col);
+        values[row] = value;
+        ColumnType valueType = ColumnType.of(value);
+        if (valueType == ColumnType.NULL) {
+          nullBitmap[row >> 3] |= (byte) (1 << (row & 7));
+        } else if (type == ColumnType.NULL) {
+          type = valueType;
+        } else if (type != valueType) {
+          type = ColumnType.MIXED;
+        }
+      }
+
+      encoder.writeInt(type.ordinal());
+      encoder.writeBytes(nullBitmap);
+      for (int row = 0; row < rowCount; row++) {
+        if (values[row] == null) {
+          continue;
+        }
+        if (type == ColumnType.MIXED) {
+          ColumnType valueType = ColumnType.of(values[row]);
+          encoder.writeInt(valueType.ordinal());
+          encodeValue(valueType, values[row], encoder);
+        } else {
+          encodeValue(type, values[row], encoder);
+        }
+      }
+    }
+  }
+
+  /**
+   * Encodes the marker for the end of batches.
+   */
+  public void encodeEnd(Encoder encoder) throws IOException {
+    encoder.writeInt(0);
+  }
+
+  /**
+   * Decodes one batch and adds the rows to the given builder.
+   *
+   * @return {@code false} if the end of batches is reached, {@code true} otherwise
+   */
+  public boolean decode(Decoder decoder, ImmutableList.Builder<QueryResult> rows) throws IOException {
+    int rowCount = decoder.readInt();
+    if (rowCount <= 0) {
+      return false;
+    }
+    int columnCount = decoder.readInt();
+    Object[][] cells = new Object[rowCount][columnCount];
+
+    for (int col = 0; col < columnCount; col++) {
+      ColumnType type = ColumnType.fromOrdinal(decoder.readInt());
+      byte[] nullBitmap = toByteArray(decoder.readBytes());
+      for (int row = 0; row < rowCount; row++) {
+        if ((nullBitmap[row >> 3] & (1 << (row & 7))) != 0) {
+          continue;
+        }
+        if (type == ColumnType.MIXED) {
+          cells[row][col] = decodeValue(ColumnType.fromOrdinal(decoder.readInt()), decoder);
+        } else {
+          cells[row][col] = decodeValue(type, decoder);
+        }
+      }
+    }
+
+    for (Object[] row : cells) {
+      // Use a mutable list as QueryResult allows null values
+      rows.add(new QueryResult(Lists.newArrayList(row)));
+    }
+    return true;
+  }
+
+  private void encodeValue(ColumnType type, Object value, Encoder encoder) throws IOException {
+    switch (type) {
+      case BOOLEAN:
+        encoder.writeBool((Boolean) value);
+        break;
+      case BYTE:
+        encoder.writeInt((Byte) value);
+        break;
+      case SHORT:
+        encoder.writeInt((Short) value);
+        break;
+      case INT:
+        encoder.writeInt((Integer) value);
+        break;
+      case LONG:
+        encoder.writeLong((Long) value);
+        break;
+      case FLOAT:
+        encoder.writeFloat((Float) value);
+        break;
+      case DOUBLE:
+        encoder.writeDouble((Double) value);
+        break;
+      case STRING:
+        encoder.writeString((String) value);
+        break;
+      case BINARY:
+        encoder.writeBytes((byte[]) value);
+        break;
+      case JSON:
+        encoder.writeString(GSON.toJson(value));
+        break;
+      default:
+        throw new IOException("Unsupported column type " + type);
+    }
+  }
+
+  private Object decodeValue(ColumnType type, Decoder decoder) throws IOException {
+    switch (type) {
+      case BOOLEAN:
+        return decoder.readBool();
+      case BYTE:
+        return (byte) decoder.readInt();
+      case SHORT:
+        return (short) decoder.readInt();
+      case INT:
+        return decoder.readInt();
+      case LONG:
+        return decoder.readLong();
+      case FLOAT:
+        return decoder.readFloat();
+      case DOUBLE:
+        return decoder.readDouble();
+      case STRING:
+        return decoder.readString();
+      case BINARY:
+        return toByteArray(decoder.readBytes());
+      case JSON:
+        return GSON.fromJson(decoder.readString(), Object.class);
+      default:
+        throw new IOException("Unsupported column type " + type);
+    }
+  }
+
+  private byte[] toByteArray(ByteBuffer buffer) {
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+      && buffer.remaining() == buffer.array().length) {
+      return buffer.array();
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+}
@@ -17,6 +17,7 @@
 package co.cask.cdap.explore.jdbc;
 
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
 import co.cask.cdap.proto.ColumnDesc;
 import co.cask.cdap.proto.QueryHandle;
 import co.cask.cdap.proto.QueryResult;
@@ -325,6 +326,24 @@ public class ExploreDriverTest {
       responder.sendJson(HttpResponseStatus.OK, rows);
     }
 
+    @POST
+    @Path("data/explore/queries/{id}/next/binary")
+    public void getQueryNextResultsBinary(HttpRequest request, HttpResponder responder,
+                                          @PathParam("id") String id) throws IOException {
+      if (closedHandles.contains(id)) {
+        responder.sendStatus(HttpResponseStatus.NOT_FOUND);
+        return;
+      }
+      List<QueryResult> rows = Lists.newArrayList();
+      if (!canceledHandles.contains(id) && !handleWithFetchedResutls.contains(id)) {
+        rows.add(new QueryResult(ImmutableList.<Object>of(1, "one")));
+        rows.add(new QueryResult(ImmutableList.<Object>of(2, "two")));
+        handleWithFetchedResutls.add(id);
+      }
+      responder.sendByteArray(HttpResponseStatus.OK, QueryResultBatchCodec.INSTANCE.encode(rows),
+                              ImmutableMultimap.<String, String>of());
+    }
+
     private Map<String, String> decodeArguments(HttpRequest request) throws IOException {
       ChannelBuffer content = request.getContent();
       if (!content.readable()) {
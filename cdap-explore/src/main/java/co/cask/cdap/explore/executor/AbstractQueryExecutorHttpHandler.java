@@ -54,6 +54,7 @@ public class AbstractQueryExecutorHttpHandler extends AbstractHttpHandler {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractQueryExecutorHttpHandler.class);
   protected static final Gson GSON = new Gson();
   protected static final int DOWNLOAD_FETCH_CHUNK_SIZE = 1000;
+  protected static final int BINARY_FETCH_BATCH_SIZE = 1000;
 
   protected static final Type STRING_MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
 
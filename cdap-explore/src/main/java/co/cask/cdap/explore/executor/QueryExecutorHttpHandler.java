@@ -17,23 +17,32 @@
 package co.cask.cdap.explore.executor;
 
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.explore.service.ExploreService;
 import co.cask.cdap.explore.service.HandleNotFoundException;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
 import co.cask.cdap.proto.ColumnDesc;
 import co.cask.cdap.proto.QueryHandle;
 import co.cask.cdap.proto.QueryResult;
 import co.cask.cdap.proto.QueryStatus;
 import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
 import com.google.inject.Inject;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
@@ -160,6 +169,62 @@ public class QueryExecutorHttpHandler extends AbstractQueryExecutorHttpHandler {
     }
   }
 
+  @POST
+  @Path("data/explore/queries/{id}/next/binary")
+  public void getQueryNextResultsBinary(HttpRequest request, HttpResponder responder, @PathParam("id") String id) {
+    // NOTE: this call is a POST because it is not idempotent: cursor of results is moved
+    boolean responseStarted = false;
+    try {
+      QueryHandle handle = QueryHandle.fromId(id);
+      Map<String, String> args = decodeArguments(request);
+      int size = args.containsKey("size") ? Integer.valueOf(args.get("size")) : 100;
+
+      // Fetch the first batch before starting the response, so that errors can still be reported with a status
+      List<QueryResult> results = handle.equals(QueryHandle.NO_OP)
+        ? ImmutableList.<QueryResult>of()
+        : exploreService.nextResults(handle, Math.min(size, BINARY_FETCH_BATCH_SIZE));
+
+      ChunkResponder chunkResponder = responder.sendChunkStart(
+        HttpResponseStatus.OK, ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "application/octet-stream"));
+      responseStarted = true;
+
+      // Results are sent as a sequence of columnar batches, so that only one batch is kept in memory at a time
+      int remaining = size;
+      while (!results.isEmpty()) {
+        remaining -= results.size();
+        chunkResponder.sendChunk(encodeBatch(results, false));
+        if (remaining <= 0) {
+          break;
+        }
+        results = exploreService.nextResults(handle, Math.min(remaining, BINARY_FETCH_BATCH_SIZE));
+      }
+      chunkResponder.sendChunk(encodeBatch(ImmutableList.<QueryResult>of(), true));
+      Closeables.closeQuietly(chunkResponder);
+
+    } catch (IllegalArgumentException e) {
+      LOG.debug("Got exception:", e);
+      // We can't send another response if sendChunkStart has been called
+      if (!responseStarted) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+      }
+    } catch (SQLException e) {
+      LOG.debug("Got exception:", e);
+      if (!responseStarted) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST, String.format("[SQLState %s] %s",
+                                                                           e.getSQLState(), e.getMessage()));
+      }
+    } catch (HandleNotFoundException e) {
+      if (!responseStarted) {
+        responder.sendStatus(HttpResponseStatus.NOT_FOUND);
+      }
+    } catch (Throwable e) {
+      LOG.error("Got exception:", e);
+      if (!responseStarted) {
+        responder.sendStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+      }
+    }
+  }
+
   @POST
   @Path("data/explore/queries/{id}/preview")
   public void getQueryResultPreview(HttpRequest request, HttpResponder responder, @PathParam("id") String id) {
@@ -256,4 +321,14 @@ public class QueryExecutorHttpHandler extends AbstractQueryExecutorHttpHandler {
       }
     }
   }
+
+  private ChannelBuffer encodeBatch(List<QueryResult> results, boolean end) throws IOException {
+    ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+    Encoder encoder = new BinaryEncoder(new ChannelBufferOutputStream(buffer));
+    QueryResultBatchCodec.INSTANCE.encode(results, encoder);
+    if (end) {
+      QueryResultBatchCodec.INSTANCE.encodeEnd(encoder);
+    }
+    return buffer;
+  }
 }
@@ -35,10 +35,12 @@ import co.cask.cdap.explore.service.HandleNotFoundException;
 import co.cask.cdap.explore.service.HiveStreamRedirector;
 import co.cask.cdap.explore.service.MetaDataInfo;
 import co.cask.cdap.explore.service.TableNotFoundException;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
 import co.cask.cdap.hive.context.CConfCodec;
 import co.cask.cdap.hive.context.ConfigurationUtil;
 import co.cask.cdap.hive.context.ContextManager;
 import co.cask.cdap.hive.context.HConfCodec;
+import co.cask.cdap.hive.context.QueryStatisticsManager;
 import co.cask.cdap.hive.context.TxnCodec;
 import co.cask.cdap.hive.datasets.DatasetAccessor;
 import co.cask.cdap.hive.datasets.DatasetStorageHandler;
@@ -48,26 +50,25 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.QueryHandle;
 import co.cask.cdap.proto.QueryInfo;
 import co.cask.cdap.proto.QueryResult;
+import co.cask.cdap.proto.QueryStatistics;
 import co.cask.cdap.proto.QueryStatus;
 import co.cask.cdap.proto.TableInfo;
 import co.cask.cdap.proto.TableNameInfo;
 import co.cask.tephra.Transaction;
 import co.cask.tephra.TransactionSystemClient;
-import com.google.common.base.Charsets;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.io.Closeables;
 import com.google.common.io.Files;
-import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractIdleService;
-import com.google.gson.Gson;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.HiveMetaStoreClient;
@@ -98,10 +99,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
@@ -130,7 +128,6 @@ import javax.annotation.Nullable;
  */
 public abstract class BaseHiveExploreService extends AbstractIdleService implements ExploreService {
   private static final Logger LOG = LoggerFactory.getLogger(BaseHiveExploreService.class);
-  private static final Gson GSON = new Gson();
   private static final int PREVIEW_COUNT = 5;
   private static final long METASTORE_CLIENT_CLEANUP_PERIOD = 60;
   public static final String HIVE_METASTORE_TOKEN_KEY = "hive.metastore.token.signature";
@@ -196,6 +193,13 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
     this.inactiveHandleCache =
       CacheBuilder.newBuilder()
         .expireAfterWrite(cConf.getLong(Constants.Explore.INACTIVE_OPERATION_TIMEOUT_SECS), TimeUnit.SECONDS)
+        .removalListener(new RemovalListener<QueryHandle, InactiveOperationInfo>() {
+          @Override
+          public void onRemoval(RemovalNotification<QueryHandle, InactiveOperationInfo> notification) {
+            // Statistics of an inactive handle are kept until the handle is closed or expires
+            QueryStatisticsManager.remove(notification.getKey().getHandle());
+          }
+        })
         .build();
 
     this.cliService = new CLIService();
@@ -702,12 +706,15 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
         // Switch database to the one being passed in.
         setCurrentDatabase(database);
 
+        // Statistics are only collected for queries that get executed, and are removed when the query is closed.
+        QueryStatisticsManager.register(sessionConf.get(Constants.Explore.QUERY_ID));
         OperationHandle operationHandle = doExecute(sessionHandle, statement);
         QueryHandle handle = saveOperationInfo(operationHandle, sessionHandle, sessionConf,
                                                statement, database);
         LOG.trace("Executing statement: {} with handle {}", statement, handle);
         return handle;
       } catch (Throwable e) {
+        QueryStatisticsManager.remove(sessionConf.get(Constants.Explore.QUERY_ID));
         closeSession(sessionHandle);
         throw e;
       }
@@ -726,12 +733,12 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
     if (inactiveOperationInfo != null) {
       // Operation has been made inactive, so return the saved status.
       LOG.trace("Returning saved status for inactive handle {}", handle);
-      return inactiveOperationInfo.getStatus();
+      return attachStatistics(handle, inactiveOperationInfo.getStatus());
     }
 
     try {
       // Fetch status from Hive
-      QueryStatus status = fetchStatus(getOperationHandle(handle));
+      QueryStatus status = attachStatistics(handle, fetchStatus(getOperationHandle(handle)));
       LOG.trace("Status of handle {} is {}", handle, status);
 
       // No results or error, so can be timed out aggressively
@@ -749,6 +756,17 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
     }
   }
 
+  /**
+   * Attaches the statistics reported by the input formats during split computation, if any, to a query status.
+   */
+  private QueryStatus attachStatistics(QueryHandle handle, QueryStatus status) {
+    QueryStatistics statistics = QueryStatisticsManager.get(handle.getHandle());
+    if (statistics == null) {
+      return status;
+    }
+    return new QueryStatus(status.getStatus(), status.hasResults(), statistics);
+  }
+
   @Override
   public List<QueryResult> nextResults(QueryHandle handle, int size)
     throws ExploreException, HandleNotFoundException, SQLException {
@@ -846,30 +864,20 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
       File previewFile = operationInfo.getPreviewFile();
       if (previewFile != null) {
         try {
-          Reader reader = Files.newReader(previewFile, Charsets.UTF_8);
-          try {
-            return GSON.fromJson(reader, new TypeToken<List<QueryResult>>() { }.getType());
-          } finally {
-            Closeables.closeQuietly(reader);
-          }
-        } catch (FileNotFoundException e) {
+          return QueryResultBatchCodec.INSTANCE.decode(Files.toByteArray(previewFile));
+        } catch (IOException e) {
           LOG.error("Could not retrieve preview result file {}", previewFile, e);
           throw new ExploreException(e);
         }
       }
 
       try {
-        // Create preview results for query
+        // Create preview results for query, stored in the same binary format as the results sent to clients
         previewFile = new File(previewsDir, handle.getHandle());
-        FileWriter fileWriter = new FileWriter(previewFile);
-        try {
-          List<QueryResult> results = fetchNextResults(handle, PREVIEW_COUNT);
-          GSON.toJson(results, fileWriter);
-          operationInfo.setPreviewFile(previewFile);
-          return results;
-        } finally {
-          Closeables.closeQuietly(fileWriter);
-        }
+        List<QueryResult> results = fetchNextResults(handle, PREVIEW_COUNT);
+        Files.write(QueryResultBatchCodec.INSTANCE.encode(results), previewFile);
+        operationInfo.setPreviewFile(previewFile);
+        return results;
       } catch (IOException e) {
         LOG.error("Could not write preview results into file", e);
         throw new ExploreException(e);
@@ -948,6 +956,7 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
     startAndWait();
     inactiveHandleCache.invalidate(handle);
     activeHandleCache.invalidate(handle);
+    QueryStatisticsManager.remove(handle.getHandle());
     DatasetAccessor.closeQuery(handle);
   }
 
@@ -1287,6 +1296,10 @@ public abstract class BaseHiveExploreService extends AbstractIdleService impleme
       closeTransaction(handle, opInfo);
     } finally {
       activeHandleCache.invalidate(handle);
+      // The statistics of a handle that was timed out aggressively are still returned by getStatus()
+      if (inactiveHandleCache.getIfPresent(handle) == null) {
+        QueryStatisticsManager.remove(handle.getHandle());
+      }
     }
   }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.context;
+
+import co.cask.cdap.proto.QueryStatistics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * Collects {@link QueryStatistics} reported by Hive input formats during split computation, keyed by the explore
+ * query id. Split computation happens in the Hive server, which is the Explore service JVM, hence the statistics
+ * can be picked up by the Explore service when reporting query status.
+ *
+ * Only statistics of queries that were {@link #register(String) registered} are recorded, so that splits computed
+ * after a query was closed (or for a query that is not tracked by the Explore service) do not leave entries behind.
+ */
+public final class QueryStatisticsManager {
+
+  private static final ConcurrentMap<String, QueryStatistics> STATISTICS =
+    new ConcurrentHashMap<String, QueryStatistics>();
+
+  // Placeholder for registered queries that have no statistics reported yet
+  private static final QueryStatistics NONE = new QueryStatistics(0, 0, 0, 0, 0);
+
+  /**
+   * Starts recording statistics for the given query. The statistics must be {@link #remove(String) removed} once
+   * the query is closed.
+   */
+  public static void register(String queryId) {
+    STATISTICS.putIfAbsent(queryId, NONE);
+  }
+
+  /**
+   * Adds the given statistics to the ones already recorded for the given query. A query can scan multiple inputs,
+   * for example when joining two streams.
+   *
+   * @param queryId id of the query, or {@code null} if the query id is unknown. Nothing is recorded if the query id
+   *                is unknown or the query is not registered.
+   * @param statistics the statistics to add
+   */
+  public static void add(@Nullable String queryId, QueryStatistics statistics) {
+    if (queryId == null) {
+      return;
+    }
+    QueryStatistics existing = STATISTICS.get(queryId);
+    while (existing != null && !STATISTICS.replace(queryId, existing, existing.add(statistics))) {
+      existing = STATISTICS.get(queryId);
+    }
+  }
+
+  /**
+   * Returns the statistics recorded for the given query or {@code null} if there is none.
+   */
+  @Nullable
+  public static QueryStatistics get(String queryId) {
+    QueryStatistics statistics = STATISTICS.get(queryId);
+    return statistics == NONE ? null : statistics;
+  }
+
+  /**
+   * Removes the statistics recorded for the given query.
+   */
+  public static void remove(String queryId) {
+    STATISTICS.remove(queryId);
+  }
+
+  private QueryStatisticsManager() {
+  }
+}
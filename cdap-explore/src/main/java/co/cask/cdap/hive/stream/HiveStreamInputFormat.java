@@ -19,11 +19,14 @@ package co.cask.cdap.hive.stream;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data.stream.StreamInputSplitFactory;
 import co.cask.cdap.data.stream.StreamInputSplitFinder;
+import co.cask.cdap.data.stream.StreamInputSplitStats;
 import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.hive.context.ContextManager;
+import co.cask.cdap.hive.context.QueryStatisticsManager;
 import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.QueryStatistics;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import org.apache.hadoop.conf.Configuration;
@@ -76,7 +79,14 @@ public class HiveStreamInputFormat implements InputFormat<Void, ObjectWritable>
     // by the settings for another stream if a join over streams is being performed.
     StreamInputSplitFinder<InputSplit> splitFinder = getSplitFinder(conf);
     try {
-      List<InputSplit> splits = splitFinder.getSplits(conf);
+      StreamInputSplitStats stats = new StreamInputSplitStats();
+      List<InputSplit> splits = splitFinder.getSplits(conf, stats);
+      LOG.debug("Computed splits for stream {} in query {}: {}",
+                conf.get(Constants.Explore.STREAM_NAME), conf.get(Constants.Explore.QUERY_ID), stats);
+      QueryStatisticsManager.add(conf.get(Constants.Explore.QUERY_ID),
+                                 new QueryStatistics(stats.getPartitionsScanned(), stats.getPartitionsSkipped(),
+                                                     stats.getSplits(), stats.getBytesScanned(),
+                                                     stats.getBytesSkipped()));
       InputSplit[] splitArray = new InputSplit[splits.size()];
       int i = 0;
       for (InputSplit split : splits) {
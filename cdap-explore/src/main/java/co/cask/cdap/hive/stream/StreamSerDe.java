@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,6 +21,7 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data.format.AbstractStructuredRecordFormat;
 import co.cask.cdap.data.format.RecordFormats;
 import co.cask.cdap.data.format.StreamEventRecordFormat;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
@@ -92,6 +93,10 @@ public class StreamSerDe implements SerDe {
       StreamConfig streamConfig = streamAdmin.getConfig(streamId);
       FormatSpecification formatSpec = streamConfig.getFormat();
       this.streamFormat = (StreamEventRecordFormat) RecordFormats.createInitializedFormat(formatSpec);
+      if (streamFormat instanceof AbstractStructuredRecordFormat) {
+        // Records are translated right after being read, hence they can be reused
+        ((AbstractStructuredRecordFormat) streamFormat).setReuseRecord(true);
+      }
       Schema schema = formatSpec.getSchema();
       this.deserializer = new ObjectDeserializer(properties, schema, BODY_OFFSET);
       this.inspector = deserializer.getInspector();
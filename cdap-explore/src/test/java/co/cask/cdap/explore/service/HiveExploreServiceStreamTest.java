@@ -22,9 +22,13 @@ import co.cask.cdap.api.data.format.Formats;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.explore.client.ExploreExecutionResult;
+import co.cask.cdap.hive.context.QueryStatisticsManager;
 import co.cask.cdap.proto.ColumnDesc;
 import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.QueryHandle;
 import co.cask.cdap.proto.QueryResult;
+import co.cask.cdap.proto.QueryStatistics;
+import co.cask.cdap.proto.QueryStatus;
 import co.cask.cdap.proto.StreamProperties;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.collect.ImmutableMap;
@@ -51,6 +55,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -129,6 +134,29 @@ public class HiveExploreServiceStreamTest extends BaseHiveExploreServiceTest {
     Assert.assertFalse(results.hasNext());
   }
 
+  @Test
+  public void testStatisticsKeptAfterResultsFetched() throws Exception {
+    QueryHandle handle = exploreService.execute(NAMESPACE_ID, "select body from " + streamTableName);
+    try {
+      QueryStatus status = waitForCompletionStatus(handle, 200, TimeUnit.MILLISECONDS, 100);
+      Assert.assertEquals(QueryStatus.OpStatus.FINISHED, status.getStatus());
+      QueryStatistics statistics = status.getStatistics();
+      Assert.assertNotNull(statistics);
+      Assert.assertTrue(statistics.getSplits() > 0);
+
+      // fetching all results times out the handle aggressively, which keeps its statistics until it is closed
+      List<QueryResult> results = exploreService.nextResults(handle, 10);
+      while (!results.isEmpty()) {
+        results = exploreService.nextResults(handle, 10);
+      }
+      Assert.assertEquals(statistics, exploreService.getStatus(handle).getStatistics());
+      Assert.assertEquals(statistics, QueryStatisticsManager.get(handle.getHandle()));
+    } finally {
+      exploreService.close(handle);
+    }
+    Assert.assertNull(QueryStatisticsManager.get(handle.getHandle()));
+  }
+
   @Test
   public void testSelectFieldOnStream() throws Exception {
     runCommand(NAMESPACE_ID, "select body from " + streamTableName,
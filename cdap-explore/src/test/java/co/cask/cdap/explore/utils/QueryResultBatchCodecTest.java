@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.utils;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Tests for {@link QueryResultBatchCodec}.
+ */
+public class QueryResultBatchCodecTest {
+
+  @Test
+  public void testTypes() throws Exception {
+    List<QueryResult> rows = ImmutableList.of(
+      new QueryResult(Lists.<Object>newArrayList("foo", 1, 1.23d, 2.45f, 1000L, (byte) 100, true, (short) 8,
+                                                 new byte[] { 106, 110 }, ImmutableMap.of("k", "v"), 1)),
+      new QueryResult(Lists.<Object>newArrayList(null, 2, null, 3.5f, 2000L, (byte) 101, false, (short) 9,
+                                                 null, null, "mixed"))
+    );
+
+    List<QueryResult> decoded = QueryResultBatchCodec.INSTANCE.decode(QueryResultBatchCodec.INSTANCE.encode(rows));
+    Assert.assertEquals(2, decoded.size());
+
+    // Compare all columns except the one encoded as JSON, which is decoded the same way as by Gson
+    Assert.assertEquals(rows.get(0).getColumns().subList(0, 8), decoded.get(0).getColumns().subList(0, 8));
+    Assert.assertEquals(rows.get(1).getColumns().subList(0, 8), decoded.get(1).getColumns().subList(0, 8));
+    Assert.assertArrayEquals(new byte[] { 106, 110 }, (byte[]) decoded.get(0).getColumns().get(8));
+    Assert.assertEquals(new Gson().fromJson("{\"k\":\"v\"}", Object.class), decoded.get(0).getColumns().get(9));
+    Assert.assertNull(decoded.get(1).getColumns().get(9));
+    Assert.assertEquals(1, decoded.get(0).getColumns().get(10));
+    Assert.assertEquals("mixed", decoded.get(1).getColumns().get(10));
+  }
+
+  @Test
+  public void testMultipleBatches() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = new BinaryEncoder(os);
+    List<QueryResult> expected = Lists.newArrayList();
+    for (int batch = 0; batch < 3; batch++) {
+      List<QueryResult> rows = createRows(batch * 100, 100);
+      expected.addAll(rows);
+      QueryResultBatchCodec.INSTANCE.encode(rows, encoder);
+    }
+    // Empty batches are not written
+    QueryResultBatchCodec.INSTANCE.encode(ImmutableList.<QueryResult>of(), encoder);
+    QueryResultBatchCodec.INSTANCE.encodeEnd(encoder);
+
+    Decoder decoder = new BinaryDecoder(new ByteArrayInputStream(os.toByteArray()));
+    ImmutableList.Builder<QueryResult> rows = ImmutableList.builder();
+    int batches = 0;
+    while (QueryResultBatchCodec.INSTANCE.decode(decoder, rows)) {
+      batches++;
+    }
+    Assert.assertEquals(3, batches);
+    Assert.assertEquals(expected, rows.build());
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    byte[] encoded = QueryResultBatchCodec.INSTANCE.encode(ImmutableList.<QueryResult>of());
+    Assert.assertTrue(QueryResultBatchCodec.INSTANCE.decode(encoded).isEmpty());
+  }
+
+  /**
+   * Simple benchmark comparing the binary encoding with the JSON encoding used by the "next" endpoint.
+   * Pass the number of rows to encode as the first argument.
+   */
+  public static void main(String[] args) throws Exception {
+    int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int batchSize = 1000;
+    Gson gson = new Gson();
+    Type rowListType = new TypeToken<List<QueryResult>>() { }.getType();
+
+    List<List<QueryResult>> batches = Lists.newArrayList();
+    for (int i = 0; i < numRows; i += batchSize) {
+      batches.add(createRows(i, Math.min(batchSize, numRows - i)));
+    }
+
+    for (int round = 0; round < 3; round++) {
+      long startTime = System.nanoTime();
+      long bytes = 0;
+      for (List<QueryResult> batch : batches) {
+        String json = gson.toJson(batch);
+        bytes += json.length();
+        gson.fromJson(json, rowListType);
+      }
+      report("JSON", numRows, bytes, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      bytes = 0;
+      for (List<QueryResult> batch : batches) {
+        byte[] encoded = QueryResultBatchCodec.INSTANCE.encode(batch);
+        bytes += encoded.length;
+        QueryResultBatchCodec.INSTANCE.decode(encoded);
+      }
+      report("Binary", numRows, bytes, System.nanoTime() - startTime);
+    }
+  }
+
+  private static void report(String name, int numRows, long bytes, long nanos) {
+    System.out.printf("%s: %d rows, %d bytes, %.0f rows/sec%n", name, numRows, bytes, numRows * 1e9d / nanos);
+  }
+
+  private static List<QueryResult> createRows(int start, int count) {
+    List<QueryResult> rows = Lists.newArrayList();
+    for (int i = start; i < start + count; i++) {
+      rows.add(new QueryResult(Lists.<Object>newArrayList("row" + i, i, (long) i * 1000, i / 3.0d,
+                                                         i % 2 == 0, i % 5 == 0 ? null : "value" + i)));
+    }
+    return rows;
+  }
+}
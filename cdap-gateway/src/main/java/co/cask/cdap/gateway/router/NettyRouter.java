@@ -16,11 +16,15 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
+import co.cask.cdap.gateway.router.handlers.BackendConnectionPool;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
+import co.cask.cdap.gateway.router.handlers.OutboundHandler;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
@@ -50,8 +54,8 @@ import org.jboss.netty.channel.socket.nio.NioClientBossPool;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioWorkerPool;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
 import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
-import org.jboss.netty.handler.codec.http.HttpRequestEncoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +74,10 @@ import java.util.concurrent.TimeUnit;
 public class NettyRouter extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(NettyRouter.class);
   private static final int CLOSE_CHANNEL_TIMEOUT_SECS = 10;
+  // Limits for decoding responses of backend services
+  private static final int MAX_INITIAL_LINE_LENGTH = 4096;
+  private static final int MAX_HEADER_SIZE = 65536;
+  private static final int MAX_CHUNK_SIZE = 65536;
 
   private final int serverBossThreadPoolSize;
   private final int serverWorkerThreadPoolSize;
@@ -77,6 +85,9 @@ public class NettyRouter extends AbstractIdleService {
 
   private final int clientBossThreadPoolSize;
   private final int clientWorkerThreadPoolSize;
+  private final int backendMaxConnections;
+  private final long backendIdleTimeoutMillis;
+  private final long backendBorrowTimeoutMillis;
   private final InetAddress hostname;
   private final Map<String, Integer> serviceToPortMap;
 
@@ -92,6 +103,8 @@ public class NettyRouter extends AbstractIdleService {
 
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
+  private BackendConnectionPool connectionPool;
+  private MetricsCollector metricsCollector;
 
   private DiscoveryServiceClient discoveryServiceClient;
 
@@ -116,6 +129,12 @@ public class NettyRouter extends AbstractIdleService {
                                                  Constants.Router.DEFAULT_CLIENT_BOSS_THREADS);
     this.clientWorkerThreadPoolSize = cConf.getInt(Constants.Router.CLIENT_WORKER_THREADS,
                                                    Constants.Router.DEFAULT_CLIENT_WORKER_THREADS);
+    this.backendMaxConnections = cConf.getInt(Constants.Router.BACKEND_MAX_CONNECTIONS,
+                                              Constants.Router.DEFAULT_BACKEND_MAX_CONNECTIONS);
+    this.backendIdleTimeoutMillis = TimeUnit.SECONDS.toMillis(
+      cConf.getInt(Constants.Router.BACKEND_IDLE_TIMEOUT_SECS, Constants.Router.DEFAULT_BACKEND_IDLE_TIMEOUT_SECS));
+    this.backendBorrowTimeoutMillis = cConf.getLong(Constants.Router.BACKEND_BORROW_TIMEOUT_MS,
+                                                    Constants.Router.DEFAULT_BACKEND_BORROW_TIMEOUT_MS);
 
     this.hostname = hostname;
     this.serviceToPortMap = Maps.newHashMap();
@@ -193,6 +212,8 @@ public class NettyRouter extends AbstractIdleService {
         LOG.warn("Timeout when closing all channels.");
       }
     } finally {
+      LOG.info("Backend connection pool statistics: {}", connectionPool.getStats());
+      connectionPool.close();
       serverBootstrap.shutdown();
       clientBootstrap.shutdown();
       clientBootstrap.releaseExternalResources();
@@ -203,10 +224,29 @@ public class NettyRouter extends AbstractIdleService {
     LOG.info("Stopped Netty Router.");
   }
 
+  /**
+   * Sets the metrics collection service to emit the metrics of the pool of connections to backend services to.
+   * Without it, the metrics are only available through {@link #getBackendConnectionStats()}.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollector = metricsCollectionService.getCollector(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, Constants.SYSTEM_NAMESPACE,
+      Constants.Metrics.Tag.COMPONENT, Constants.Gateway.METRICS_CONTEXT));
+  }
+
   public RouterServiceLookup getServiceLookup() {
     return serviceLookup;
   }
 
+  /**
+   * Returns the statistics of the pool of connections to backend services.
+   */
+  public BackendConnectionPool.Stats getBackendConnectionStats() {
+    return connectionPool.getStats();
+  }
+
   private ExecutorService createExecutorService(int threadPoolSize, String name) {
     return Executors.newFixedThreadPool(threadPoolSize,
                                         new ThreadFactoryBuilder()
@@ -245,7 +285,7 @@ public class NettyRouter extends AbstractIdleService {
           }
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(connectionPool, serviceLookup, ImmutableList.<ProxyRule>of()));
           return pipeline;
         }
       }
@@ -294,12 +334,16 @@ public class NettyRouter extends AbstractIdleService {
       public ChannelPipeline getPipeline() throws Exception {
         ChannelPipeline pipeline = Channels.pipeline();
         pipeline.addLast("tracker", connectionTracker);
-        pipeline.addLast("request-encoder", new HttpRequestEncoder());
+        pipeline.addLast("codec", new HttpClientCodec(MAX_INITIAL_LINE_LENGTH, MAX_HEADER_SIZE, MAX_CHUNK_SIZE));
+        pipeline.addLast("outbound-handler", new OutboundHandler(connectionPool));
         return pipeline;
       }
     });
 
     clientBootstrap.setOption("bufferFactory", new DirectChannelBufferFactory());
+    connectionPool = new BackendConnectionPool(clientBootstrap, backendMaxConnections,
+                                               backendIdleTimeoutMillis, backendBorrowTimeoutMillis,
+                                               metricsCollector);
   }
 
   private boolean isSSLEnabled() {
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang.StringUtils;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A trie of URI path patterns, which maps a request path to the value of the first pattern that matches it.
+ *
+ * Patterns are split into segments at '/'. Every segment of a pattern is either
+ * <ul>
+ *   <li>a literal, which matches that exact path segment;</li>
+ *   <li>alternative literals separated by '|', such as {@code queries|jdbc};</li>
+ *   <li>{@code *}, which matches any single path segment; or</li>
+ *   <li>{@code **} as the last segment, which matches any number of remaining path segments, including none.</li>
+ * </ul>
+ * A pattern can be restricted to one HTTP method. If more than one pattern matches a path, the pattern that was
+ * added first wins. As in {@link StringUtils#split(String, char)}, empty path segments are ignored.
+ *
+ * Lookups do not allocate, and visit only the subtrees that may contain a pattern of higher precedence than the
+ * best match found so far.
+ *
+ * @param <T> type of the values
+ */
+final class PathTrie<T> {
+
+  private static final String WILDCARD = "*";
+  private static final String ANY_REMAINING = "**";
+
+  private final Node<T> root;
+
+  private PathTrie(Node<T> root) {
+    this.root = root;
+  }
+
+  static <T> Builder<T> builder() {
+    return new Builder<T>();
+  }
+
+  /**
+   * Returns the value of the first pattern matching the given path and method, or {@code null} if none matches.
+   */
+  @Nullable
+  T lookup(String path, HttpMethod method) {
+    Entry<T> entry = find(root, path, 0, method, null);
+    return entry == null ? null : entry.value;
+  }
+
+  private Entry<T> find(Node<T> node, String path, int pos, HttpMethod method, @Nullable Entry<T> best) {
+    best = first(node.prefixEntries, method, best);
+
+    int start = skipSeparators(path, pos);
+    if (start == path.length()) {
+      return first(node.exactEntries, method, best);
+    }
+    int end = path.indexOf('/', start);
+    if (end < 0) {
+      end = path.length();
+    }
+
+    Node<T> child = node.getChild(path, start, end);
+    if (child != null && precedes(child.minPriority, best)) {
+      best = find(child, path, end, method, best);
+    }
+    if (node.wildcard != null && precedes(node.wildcard.minPriority, best)) {
+      best = find(node.wildcard, path, end, method, best);
+    }
+    return best;
+  }
+
+  private static int skipSeparators(String path, int pos) {
+    while (pos < path.length() && path.charAt(pos) == '/') {
+      pos++;
+    }
+    return pos;
+  }
+
+  private static boolean precedes(int priority, @Nullable Entry<?> best) {
+    return best == null || priority < best.priority;
+  }
+
+  /**
+   * Returns the first of the given entries that matches the method if it precedes the best entry, or the best entry.
+   * The entries are sorted by priority.
+   */
+  private static <T> Entry<T> first(List<Entry<T>> entries, HttpMethod method, @Nullable Entry<T> best) {
+    for (int i = 0; i < entries.size(); i++) {
+      Entry<T> entry = entries.get(i);
+      if (!precedes(entry.priority, best)) {
+        return best;
+      }
+      if (entry.method == null || entry.method.equals(method)) {
+        return entry;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Builder for {@link PathTrie}. The precedence of patterns is the order in which they are added.
+   */
+  static final class Builder<T> {
+    private final Node<T> root = new Node<T>();
+    private int priority;
+
+    private Builder() {
+    }
+
+    Builder<T> add(String pattern, T value) {
+      return add(pattern, null, value);
+    }
+
+    Builder<T> add(String pattern, @Nullable HttpMethod method, T value) {
+      String[] segments = StringUtils.split(pattern, '/');
+      for (int i = 0; i < segments.length - 1; i++) {
+        Preconditions.checkArgument(!ANY_REMAINING.equals(segments[i]),
+                                    "'%s' must be the last segment of pattern %s", ANY_REMAINING, pattern);
+      }
+      insert(root, segments, 0, new Entry<T>(priority++, method, value));
+      return this;
+    }
+
+    private void insert(Node<T> node, String[] segments, int idx, Entry<T> entry) {
+      node.minPriority = Math.min(node.minPriority, entry.priority);
+      if (idx == segments.length) {
+        node.exactEntries.add(entry);
+        return;
+      }
+      String segment = segments[idx];
+      if (ANY_REMAINING.equals(segment)) {
+        node.prefixEntries.add(entry);
+      } else if (WILDCARD.equals(segment)) {
+        if (node.wildcard == null) {
+          node.wildcard = new Node<T>();
+        }
+        insert(node.wildcard, segments, idx + 1, entry);
+      } else {
+        for (String literal : StringUtils.split(segment, '|')) {
+          insert(node.getOrAddChild(literal), segments, idx + 1, entry);
+        }
+      }
+    }
+
+    PathTrie<T> build() {
+      return new PathTrie<T>(root);
+    }
+  }
+
+  /**
+   * A node of the trie, which represents a path prefix.
+   */
+  private static final class Node<T> {
+    private final List<String> literals = Lists.newArrayList();
+    private final List<Node<T>> children = Lists.newArrayList();
+    // Patterns that end at this node, in order of priority
+    private final List<Entry<T>> exactEntries = Lists.newArrayList();
+    // Patterns that end with '**' after this node, in order of priority
+    private final List<Entry<T>> prefixEntries = Lists.newArrayList();
+    private Node<T> wildcard;
+    // The highest priority of all patterns in this subtree
+    private int minPriority = Integer.MAX_VALUE;
+
+    @Nullable
+    Node<T> getChild(String path, int start, int end) {
+      int length = end - start;
+      for (int i = 0; i < literals.size(); i++) {
+        String literal = literals.get(i);
+        if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+          return children.get(i);
+        }
+      }
+      return null;
+    }
+
+    Node<T> getOrAddChild(String literal) {
+      Node<T> child = getChild(literal, 0, literal.length());
+      if (child == null) {
+        child = new Node<T>();
+        literals.add(literal);
+        children.add(child);
+      }
+      return child;
+    }
+  }
+
+  /**
+   * A pattern added to the trie.
+   */
+  private static final class Entry<T> {
+    private final int priority;
+    private final HttpMethod method;
+    private final T value;
+
+    Entry(int priority, @Nullable HttpMethod method, T value) {
+      this.priority = priority;
+      this.method = method;
+      this.value = value;
+    }
+  }
+}
@@ -19,25 +19,80 @@ package co.cask.cdap.gateway.router;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.gateway.auth.Authenticator;
 import co.cask.cdap.gateway.handlers.AuthenticatedHttpHandler;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
-import org.apache.commons.lang.StringUtils;
+import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 
+import java.util.Set;
+import javax.annotation.Nullable;
+
 /**
  * Class to match the request path to corresponding service like app-fabric, or metrics service.
  */
 public final class RouterPathLookup extends AuthenticatedHttpHandler {
 
+  private static final Set<HttpMethod> ALLOWED_METHODS = ImmutableSet.of(HttpMethod.GET, HttpMethod.PUT,
+                                                                         HttpMethod.POST, HttpMethod.DELETE);
+
+  /**
+   * Routes of v3 paths. Patterns are matched in the order they are added, and unmatched paths go to app-fabric.
+   */
+  private static final PathTrie<Route> V3_ROUTES = PathTrie.<Route>builder()
+    // TODO find a better way to handle that - this looks hackish
+    .add("/v3/feeds/**", new Route(null))
+    //User defined services handle methods on them:
+    //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
+    //Discoverable Service Name -> "service.%s.%s.%s", namespaceId, appId, serviceId
+    .add("/v3/*/*/*/*/services/*/methods/*/**", new Route(null) {
+      @Override
+      String getService(String path) {
+        return String.format("service.%s.%s.%s", segment(path, 2), segment(path, 4), segment(path, 6));
+      }
+    })
+    //Log Handler Path /v3/system/services/<service-id>/logs
+    .add("/v3/system/services/*/logs/**", new Route(Constants.Service.METRICS))
+    //     /v3/namespaces/<namespace>/streams goes to AppFabricHttp
+    //     /v3/namespaces/<namespace>/streams/<stream-id> PUT, POST should go to Stream Handler
+    // GET /v3/namespaces/<namespace>/streams/<stream-id>/flows should go to AppFabricHttp
+    // All else go to Stream Handler
+    .add("/v3/namespaces/*/streams", new Route(Constants.Service.APP_FABRIC_HTTP))
+    .add("/v3/namespaces/*/streams/*", new Route(Constants.Service.STREAMS))
+    .add("/v3/namespaces/*/streams/*/flows", HttpMethod.GET, new Route(Constants.Service.APP_FABRIC_HTTP))
+    .add("/v3/namespaces/*/streams/**", new Route(Constants.Service.STREAMS))
+    //Log Handler Paths:
+    // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
+    // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
+    // /v3/namespaces/<namespaceid>/adapters/<adapterid>/logs
+    // /v3/namespaces/{namespace-id}/adapters/{adapter-id}/runs/{run-id}/logs (same as case 1)
+    .add("/v3/*/*/*/*/*/*/logs/**", new Route(Constants.Service.METRICS))
+    .add("/v3/*/*/*/*/*/*/*/*/logs/**", new Route(Constants.Service.METRICS))
+    .add("/v3/*/*/*/*/logs/**", new Route(Constants.Service.METRICS))
+    //Metrics Search Handler Path /v3/metrics
+    .add("/v3/metrics/**", new Route(Constants.Service.METRICS))
+    // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
+    .add("/v3/data/explore/queries|jdbc|namespaces/*/**", new Route(Constants.Service.EXPLORE_HTTP_USER_SERVICE))
+    // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
+    .add("/v3/*/*/data/explore/queries|streams|datasets|tables|jdbc/**",
+         new Route(Constants.Service.EXPLORE_HTTP_USER_SERVICE))
+    // namespaced app fabric data operations:
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
+    .add("/v3/*/*/data/datasets/*/flows|workers|mapreduce", new Route(Constants.Service.APP_FABRIC_HTTP))
+    // other data operations. For example:
+    // /v3/namespaces/{namespace-id}/data/datasets
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
+    // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
+    .add("/v3/*/*/data/**", new Route(Constants.Service.DATASET_MANAGER))
+    .build();
+
   @Inject
   public RouterPathLookup(Authenticator authenticator) {
     super(authenticator);
   }
 
-  @SuppressWarnings("unused")
-  private enum AllowedMethod {
-    GET, PUT, POST, DELETE
-  }
-
   /**
    * Returns the CDAP service which will handle the HttpRequest
    *
@@ -47,116 +102,70 @@ public final class RouterPathLookup extends AuthenticatedHttpHandler {
    * @return destination service
    */
   public String getRoutingService(String fallbackService, String requestPath, HttpRequest httpRequest) {
-    try {
-      String method = httpRequest.getMethod().getName();
-      AllowedMethod requestMethod = AllowedMethod.valueOf(method);
-      String[] uriParts = StringUtils.split(requestPath, '/');
+    HttpMethod method = httpRequest.getMethod();
+    if (!ALLOWED_METHODS.contains(method)) {
+      return Constants.Service.APP_FABRIC_HTTP;
+    }
 
-      //Check if the call should go to webapp
-      //If service contains "$HOST" and if first split element is NOT the gateway version, then send it to WebApp
-      //WebApp serves only static files (HTML, CSS, JS) and so /<appname> calls should go to WebApp
-      //But stream calls issued by the UI should be routed to the appropriate CDAP service
-      if (fallbackService.contains("$HOST") && (uriParts.length >= 1)
-        && !("/" + uriParts[0]).equals(Constants.Gateway.API_VERSION_3)) {
-        return fallbackService;
-      }
-      if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
-        return getV3RoutingService(uriParts, requestMethod);
-      }
-    } catch (Exception e) {
-      // Ignore exception. Default routing to app-fabric.
+    // Find the first path segment
+    int start = 0;
+    while (start < requestPath.length() && requestPath.charAt(start) == '/') {
+      start++;
     }
-    return Constants.Service.APP_FABRIC_HTTP;
+    if (start == requestPath.length()) {
+      return Constants.Service.APP_FABRIC_HTTP;
+    }
+    int end = requestPath.indexOf('/', start);
+    int length = (end < 0 ? requestPath.length() : end) - start;
+    String version = Constants.Gateway.API_VERSION_3_TOKEN;
+    boolean isV3 = length == version.length() && requestPath.regionMatches(start, version, 0, length);
+
+    //Check if the call should go to webapp
+    //If service contains "$HOST" and if first split element is NOT the gateway version, then send it to WebApp
+    //WebApp serves only static files (HTML, CSS, JS) and so /<appname> calls should go to WebApp
+    //But stream calls issued by the UI should be routed to the appropriate CDAP service
+    if (!isV3) {
+      return fallbackService.contains("$HOST") ? fallbackService : Constants.Service.APP_FABRIC_HTTP;
+    }
+    Route route = V3_ROUTES.lookup(requestPath, method);
+    return route == null ? Constants.Service.APP_FABRIC_HTTP : route.getService(requestPath);
   }
 
-  private String getV3RoutingService(String [] uriParts, AllowedMethod requestMethod) {
-    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
-      // TODO find a better way to handle that - this looks hackish
-      return null;
-    } else if ((uriParts.length >= 9) && "services".equals(uriParts[5]) && "methods".equals(uriParts[7])) {
-      //User defined services handle methods on them:
-      //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
-      //Discoverable Service Name -> "service.%s.%s.%s", namespaceId, appId, serviceId
-      return String.format("service.%s.%s.%s", uriParts[2], uriParts[4], uriParts[6]);
-    } else if (matches(uriParts, "v3", "system", "services", null, "logs")) {
-      //Log Handler Path /v3/system/services/<service-id>/logs
-      return Constants.Service.METRICS;
-    } else if ((uriParts.length >= 4) && uriParts[1].equals("namespaces") && uriParts[3].equals("streams")) {
-      //     /v3/namespaces/<namespace>/streams goes to AppFabricHttp
-      //     /v3/namespaces/<namespace>/streams/<stream-id> PUT, POST should go to Stream Handler
-      // GET /v3/namespaces/<namespace>/streams/<stream-id>/flows should go to AppFabricHttp
-      // All else go to Stream Handler
-      if (uriParts.length == 4) {
-        return Constants.Service.APP_FABRIC_HTTP;
-      } else if (uriParts.length == 5) {
-        return Constants.Service.STREAMS;
-      } else if ((uriParts.length == 6) && uriParts[5].equals("flows") && requestMethod.equals(AllowedMethod.GET)) {
-        return Constants.Service.APP_FABRIC_HTTP;
-      } else {
-        return Constants.Service.STREAMS;
+  /**
+   * Returns the path segment with the given index, ignoring empty segments.
+   */
+  private static String segment(String path, int index) {
+    int start = 0;
+    int end = 0;
+    for (int i = 0; i <= index; i++) {
+      start = end;
+      while (start < path.length() && path.charAt(start) == '/') {
+        start++;
+      }
+      end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
       }
-    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
-      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
-      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
-      //Log Handler Paths:
-      // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
-      // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
-      // /v3/namespaces/<namespaceid>/adapters/<adapterid>/logs
-      // /v3/namespaces/{namespace-id}/adapters/{adapter-id}/runs/{run-id}/logs (same as case 1)
-      return Constants.Service.METRICS;
-    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
-      //Metrics Search Handler Path /v3/metrics
-      return Constants.Service.METRICS;
-    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
-      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
-      // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
-      return Constants.Service.EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
-      (uriParts[5].equals("queries") || uriParts[5].equals("streams") || uriParts[5].equals("datasets")
-        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
-      // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/streams/{stream}/enable
-      return Constants.Service.EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
-      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
-      // namespaced app fabric data operations:
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
-      return Constants.Service.APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
-      // other data operations. For example:
-      // /v3/namespaces/{namespace-id}/data/datasets
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
-      // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
-      return Constants.Service.DATASET_MANAGER;
     }
-    return Constants.Service.APP_FABRIC_HTTP;
+    return path.substring(start, end);
   }
 
   /**
-   * Determines if actual matches expected.
-   *
-   * - actual may be longer than expected, but we'll return true as long as expected was found
-   * - null in expected means "accept any string"
-   *
-   * @param actual actual string array to check
-   * @param expected expected string array format
-   * @return true if actual matches expected
+   * Destination of the requests matching a path pattern.
    */
-  private boolean matches(String[] actual, String... expected) {
-    if (actual.length < expected.length) {
-      return false;
+  private static class Route {
+    private final String service;
+
+    Route(@Nullable String service) {
+      this.service = service;
     }
 
-    for (int i = 0; i < expected.length; i++) {
-      if (expected[i] == null) {
-        continue;
-      }
-      if (!expected[i].equals(actual[i])) {
-        return false;
-      }
+    /**
+     * Returns the service for the given request path, or {@code null} if the request is not routed.
+     */
+    @Nullable
+    String getService(String path) {
+      return service;
     }
-    return true;
   }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -116,7 +116,9 @@ public class RouterServiceLookup {
         return null;
       }
 
-      CacheKey cacheKey = new CacheKey(destService, host, path);
+      // Only webapp lookups depend on the host and path. Other services are cached by service name only.
+      CacheKey cacheKey = destService.contains("$HOST") ? new CacheKey(destService, host, path)
+                                                         : new CacheKey(destService);
       LOG.trace("Request was routed from {} to: {}", path, cacheKey.getService());
 
       return discoverableCache.get(cacheKey);
@@ -201,6 +203,13 @@ public class RouterServiceLookup {
     private final String firstPathPart;
     private final int hashCode;
 
+    private CacheKey(String service) {
+      this.service = service;
+      this.host = null;
+      this.firstPathPart = null;
+      this.hashCode = service.hashCode();
+    }
+
     private CacheKey(String service, String host, String path) {
       this.service = service;
       this.host = host;
@@ -0,0 +1,490 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.common.exception.HandlerException;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A router-wide pool of keep-alive connections to backend services, with a separate pool for every discoverable.
+ *
+ * A borrower gets an idle connection if one is available. Otherwise a new connection is opened, unless the number
+ * of connections to the discoverable has reached the maximum, in which case the borrower waits until a connection
+ * is released or closed. Waiting borrowers are served in the order they arrived. A borrower that waits for longer
+ * than the borrow timeout fails with a {@link HandlerException} with status 503, and a borrower that cancels its
+ * future is removed from the queue right away. Connections closed by the backend are evicted from the pool, and so
+ * are idle connections that have not been used for longer than the idle timeout.
+ *
+ * Borrows, waits, timeouts and evictions are counted in {@link Stats}, and are also emitted to the metrics collector
+ * given at construction, if any.
+ */
+public final class BackendConnectionPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BackendConnectionPool.class);
+
+  private final ClientBootstrap clientBootstrap;
+  private final int maxConnections;
+  private final long idleTimeoutNanos;
+  private final long borrowTimeoutMillis;
+  private final Timer timer;
+  private final ConcurrentMap<WrappedDiscoverable, EndpointPool> pools = Maps.newConcurrentMap();
+
+  // Metrics
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong connects = new AtomicLong();
+  private final AtomicLong connectTimeNanos = new AtomicLong();
+  private final AtomicLong waits = new AtomicLong();
+  private final AtomicLong waitTimeNanos = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final MetricsCollector metricsCollector;
+
+  /**
+   * Creates a connection pool.
+   *
+   * @param clientBootstrap bootstrap for opening connections to backend services
+   * @param maxConnections maximum number of connections to one discoverable
+   * @param idleTimeoutMillis time after which idle connections are closed
+   * @param borrowTimeoutMillis maximum time a borrower waits for a connection
+   * @param metricsCollector collector to emit the pool metrics to, or {@code null} to not emit metrics
+   */
+  public BackendConnectionPool(ClientBootstrap clientBootstrap, int maxConnections,
+                               long idleTimeoutMillis, long borrowTimeoutMillis,
+                               @Nullable MetricsCollector metricsCollector) {
+    this.clientBootstrap = clientBootstrap;
+    this.metricsCollector = metricsCollector;
+    this.maxConnections = maxConnections;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    this.borrowTimeoutMillis = borrowTimeoutMillis;
+    this.timer = new HashedWheelTimer();
+  }
+
+  /**
+   * Borrows a connection to the given discoverable. The returned future completes once a connection is available.
+   * A borrower that is not interested in the connection anymore cancels the future. A connection that becomes
+   * available after that goes back to the pool. If no connection becomes available within the borrow timeout,
+   * the future fails with a {@link HandlerException} with status 503.
+   */
+  ListenableFuture<Channel> acquire(final WrappedDiscoverable discoverable) {
+    final EndpointPool pool = getPool(discoverable);
+    final SettableFuture<Channel> future = SettableFuture.create();
+    emit("router.backend.borrows", 1);
+    List<Channel> expired = Lists.newArrayList();
+    Channel channel;
+    Waiter waiter = null;
+    boolean connect = false;
+    synchronized (pool) {
+      channel = pool.pollIdle(expired);
+      if (channel == null) {
+        if (pool.connections < maxConnections) {
+          pool.connections++;
+          connect = true;
+        } else {
+          waiter = new Waiter(future);
+          pool.waiters.add(waiter);
+        }
+      }
+    }
+    closeAll(expired);
+
+    if (channel != null) {
+      hits.incrementAndGet();
+      future.set(channel);
+    } else if (connect) {
+      connect(discoverable, pool, future);
+    } else {
+      waits.incrementAndGet();
+      emit("router.backend.waits", 1);
+      final Waiter timedWaiter = waiter;
+      final Timeout borrowTimeout = timer.newTimeout(new TimerTask() {
+        @Override
+        public void run(Timeout timeout) throws Exception {
+          if (removeWaiter(pool, timedWaiter)) {
+            timeouts.incrementAndGet();
+            emit("router.backend.timeouts", 1);
+            future.setException(new HandlerException(
+              HttpResponseStatus.SERVICE_UNAVAILABLE,
+              String.format("Timeout waiting for a connection to %s", discoverable.getName())));
+          }
+        }
+      }, borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+      future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          borrowTimeout.cancel();
+          if (future.isCancelled()) {
+            // The borrower is gone, e.g. because its client channel closed
+            removeWaiter(pool, timedWaiter);
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+    return future;
+  }
+
+  /**
+   * Returns a borrowed connection to the pool. The connection is closed instead if it cannot be reused.
+   */
+  void release(WrappedDiscoverable discoverable, Channel channel, boolean reusable) {
+    if (!reusable || !channel.isConnected()) {
+      channel.close();
+      return;
+    }
+    handOver(getPool(discoverable), channel);
+  }
+
+  /**
+   * Returns the statistics of this pool since it was created.
+   */
+  public Stats getStats() {
+    return new Stats(hits.get(), connects.get(), connectTimeNanos.get(),
+                     waits.get(), waitTimeNanos.get(), timeouts.get(), evictions.get());
+  }
+
+  /**
+   * Stops the timer of the borrow timeouts. Connections are closed by the owner of the client bootstrap.
+   */
+  public void close() {
+    timer.stop();
+  }
+
+  private EndpointPool getPool(WrappedDiscoverable discoverable) {
+    EndpointPool pool = pools.get(discoverable);
+    if (pool == null) {
+      pool = new EndpointPool();
+      EndpointPool existing = pools.putIfAbsent(discoverable, pool);
+      if (existing != null) {
+        pool = existing;
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Hands the given connection to the first waiting borrower, or puts it into the pool if nobody is waiting.
+   */
+  private void handOver(EndpointPool pool, Channel channel) {
+    while (true) {
+      Waiter waiter;
+      List<Channel> expired = Lists.newArrayList();
+      synchronized (pool) {
+        waiter = pool.waiters.poll();
+        if (waiter == null) {
+          pool.evictExpired(expired);
+          pool.idle.addLast(new IdleConnection(channel, System.nanoTime()));
+        }
+      }
+      closeAll(expired);
+      if (waiter == null) {
+        return;
+      }
+      if (waiter.future.set(channel)) {
+        waited(waiter);
+        return;
+      }
+      // The waiter gave up, try the next one
+    }
+  }
+
+  private void connect(final WrappedDiscoverable discoverable,
+                       final EndpointPool pool, final SettableFuture<Channel> future) {
+    final long startTime = System.nanoTime();
+    ChannelFuture connectFuture;
+    try {
+      connectFuture = clientBootstrap.connect(discoverable.getSocketAddress());
+    } catch (RuntimeException e) {
+      synchronized (pool) {
+        pool.connections--;
+      }
+      future.setException(e);
+      return;
+    }
+
+    // Every connection is accounted until it is closed, which also happens if the connect fails
+    connectFuture.getChannel().getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture closeFuture) throws Exception {
+        connectionClosed(discoverable, pool, closeFuture.getChannel());
+      }
+    });
+    connectFuture.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture connectFuture) throws Exception {
+        if (!connectFuture.isSuccess()) {
+          Throwable cause = connectFuture.getCause();
+          future.setException(cause == null ? new IOException("Failed to connect to " + discoverable.getName())
+                                            : cause);
+          return;
+        }
+        connects.incrementAndGet();
+        connectTimeNanos.addAndGet(System.nanoTime() - startTime);
+        if (!future.set(connectFuture.getChannel())) {
+          // The borrower gave up while the connection was being opened
+          handOver(pool, connectFuture.getChannel());
+        }
+      }
+    });
+  }
+
+  /**
+   * Removes a closed connection from the pool, and opens a new connection for the next waiting borrower, if any.
+   */
+  private void connectionClosed(WrappedDiscoverable discoverable, EndpointPool pool, Channel channel) {
+    Waiter waiter;
+    synchronized (pool) {
+      if (pool.removeIdle(channel)) {
+        evictions.incrementAndGet();
+        emit("router.backend.evictions", 1);
+        LOG.trace("Evicted closed connection {} to {}", channel, discoverable.getSocketAddress());
+      }
+      pool.connections--;
+      waiter = pool.waiters.poll();
+      while (waiter != null && waiter.future.isCancelled()) {
+        waiter = pool.waiters.poll();
+      }
+      if (waiter == null) {
+        return;
+      }
+      pool.connections++;
+    }
+    waited(waiter);
+    connect(discoverable, pool, waiter.future);
+  }
+
+  /**
+   * Removes the given waiter from the queue of the given pool.
+   *
+   * @return {@code true} if the waiter was still waiting
+   */
+  private boolean removeWaiter(EndpointPool pool, Waiter waiter) {
+    synchronized (pool) {
+      return pool.waiters.remove(waiter);
+    }
+  }
+
+  private void closeAll(List<Channel> channels) {
+    for (Channel channel : channels) {
+      evictions.incrementAndGet();
+      emit("router.backend.evictions", 1);
+      channel.close();
+    }
+  }
+
+  /**
+   * Accounts the time the given waiter waited until it got a connection.
+   */
+  private void waited(Waiter waiter) {
+    long waitTime = System.nanoTime() - waiter.startTime;
+    waitTimeNanos.addAndGet(waitTime);
+    emit("router.backend.wait.ms", TimeUnit.NANOSECONDS.toMillis(waitTime));
+  }
+
+  private void emit(String metricName, long value) {
+    if (metricsCollector != null) {
+      metricsCollector.increment(metricName, value);
+    }
+  }
+
+  /**
+   * The connections to one discoverable. All fields are guarded by the instance.
+   */
+  private final class EndpointPool {
+    // Least recently used connections first
+    private final Deque<IdleConnection> idle = Queues.newArrayDeque();
+    private final Queue<Waiter> waiters = Queues.newArrayDeque();
+    // Number of open or opening connections, borrowed or idle
+    private int connections;
+
+    /**
+     * Returns the most recently used idle connection that is usable, collecting unusable ones into the given list.
+     */
+    private Channel pollIdle(List<Channel> expired) {
+      long now = System.nanoTime();
+      IdleConnection connection = idle.pollLast();
+      while (connection != null) {
+        if (connection.channel.isConnected() && now - connection.idleSince < idleTimeoutNanos) {
+          return connection.channel;
+        }
+        expired.add(connection.channel);
+        connection = idle.pollLast();
+      }
+      return null;
+    }
+
+    /**
+     * Removes idle connections that are idle for longer than the idle timeout, collecting them into the given list.
+     */
+    private void evictExpired(List<Channel> expired) {
+      long now = System.nanoTime();
+      IdleConnection connection = idle.peekFirst();
+      while (connection != null && now - connection.idleSince >= idleTimeoutNanos) {
+        expired.add(idle.pollFirst().channel);
+        connection = idle.peekFirst();
+      }
+    }
+
+    private boolean removeIdle(Channel channel) {
+      Iterator<IdleConnection> iterator = idle.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().channel.equals(channel)) {
+          iterator.remove();
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A connection in the pool together with the time it became idle.
+   */
+  private static final class IdleConnection {
+    private final Channel channel;
+    private final long idleSince;
+
+    private IdleConnection(Channel channel, long idleSince) {
+      this.channel = channel;
+      this.idleSince = idleSince;
+    }
+  }
+
+  /**
+   * A borrower waiting for a connection.
+   */
+  private static final class Waiter {
+    private final SettableFuture<Channel> future;
+    private final long startTime = System.nanoTime();
+
+    private Waiter(SettableFuture<Channel> future) {
+      this.future = future;
+    }
+  }
+
+  /**
+   * Statistics of a {@link BackendConnectionPool}.
+   */
+  public static final class Stats {
+    private final long hits;
+    private final long connects;
+    private final long connectTimeNanos;
+    private final long waits;
+    private final long waitTimeNanos;
+    private final long timeouts;
+    private final long evictions;
+
+    private Stats(long hits, long connects, long connectTimeNanos,
+                  long waits, long waitTimeNanos, long timeouts, long evictions) {
+      this.hits = hits;
+      this.connects = connects;
+      this.connectTimeNanos = connectTimeNanos;
+      this.waits = waits;
+      this.waitTimeNanos = waitTimeNanos;
+      this.timeouts = timeouts;
+      this.evictions = evictions;
+    }
+
+    /**
+     * Returns the number of borrows served with an idle connection from the pool.
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * Returns the number of connections opened.
+     */
+    public long getConnects() {
+      return connects;
+    }
+
+    /**
+     * Returns the total time spent opening connections, in nanoseconds.
+     */
+    public long getConnectTimeNanos() {
+      return connectTimeNanos;
+    }
+
+    /**
+     * Returns the number of borrows that had to wait because the maximum number of connections was reached.
+     */
+    public long getWaits() {
+      return waits;
+    }
+
+    /**
+     * Returns the total time borrowers waited for a connection, in nanoseconds.
+     */
+    public long getWaitTimeNanos() {
+      return waitTimeNanos;
+    }
+
+    /**
+     * Returns the number of borrows that failed because no connection became available within the borrow timeout.
+     */
+    public long getTimeouts() {
+      return timeouts;
+    }
+
+    /**
+     * Returns the number of idle connections evicted because they were closed or idle for too long.
+     */
+    public long getEvictions() {
+      return evictions;
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("hits", hits)
+        .add("connects", connects)
+        .add("avgConnectMillis", connects == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(connectTimeNanos / connects))
+        .add("waits", waits)
+        .add("avgWaitMillis", waits == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitTimeNanos / waits))
+        .add("timeouts", timeouts)
+        .add("evictions", evictions)
+        .toString();
+    }
+  }
+}
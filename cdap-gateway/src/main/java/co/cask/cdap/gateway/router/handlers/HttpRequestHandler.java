@@ -23,11 +23,12 @@ import co.cask.cdap.gateway.router.RouterServiceLookup;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.twill.discovery.Discoverable;
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
@@ -37,6 +38,7 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -51,16 +53,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Handler that handles HTTP requests and forwards to appropriate services. The service discovery is
- * performed using Discovery service for forwarding.
+ * performed using Discovery service for forwarding. Connections to the services are borrowed from a
+ * {@link BackendConnectionPool} that is shared by all inbound channels.
  */
 public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-  private final ClientBootstrap clientBootstrap;
+  private final BackendConnectionPool connectionPool;
   private final RouterServiceLookup serviceLookup;
   // Data structure is used to clean up the channel futures on connection close.
   private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
@@ -69,10 +73,10 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
   private MessageSender chunkSender;
   private volatile boolean channelClosed;
 
-  public HttpRequestHandler(ClientBootstrap clientBootstrap,
+  public HttpRequestHandler(BackendConnectionPool connectionPool,
                             RouterServiceLookup serviceLookup,
                             List<ProxyRule> proxyRules) {
-    this.clientBootstrap = clientBootstrap;
+    this.connectionPool = connectionPool;
     this.serviceLookup = serviceLookup;
     this.discoveryLookup = Maps.newHashMap();
     this.proxyRules = proxyRules;
@@ -95,6 +99,9 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
                                    "Chunk received and event sender is null");
       }
       chunkSender.send(msg);
+      if (((HttpChunk) msg).isLast()) {
+        chunkSender.requestCompleted();
+      }
 
     } else if (msg instanceof HttpRequest) {
       // Discover and forward event.
@@ -106,29 +113,13 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       WrappedDiscoverable discoverable = getDiscoverable(request,
                                                          (InetSocketAddress) inboundChannel.getLocalAddress());
 
-      // If no event sender, make new connection, otherwise reuse existing one.
-      MessageSender sender =  discoveryLookup.get(discoverable);
-      if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
-        sender = new MessageSender(inboundChannel, future);
+      // Reuse the connection of this inbound channel to the discoverable if it is still usable,
+      // otherwise borrow one from the pool.
+      MessageSender sender = discoveryLookup.get(discoverable);
+      if (sender == null || !sender.startRequest(request)) {
+        sender = new MessageSender(inboundChannel, discoverable, connectionPool);
         discoveryLookup.put(discoverable, sender);
-
-        // Remember the in-flight outbound channel
-        inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            // When the outbound channel closed, close the inbound channel as well if it carries the in-flight request
-            if (outboundChannel.equals(inboundChannel.getAttachment())) {
-              closeOnFlush(inboundChannel);
-            }
-          }
-        });
+        sender.startRequest(request);
       }
 
       // Send the message.
@@ -214,55 +205,142 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
    * It uses a lock-free algorithm similar to the one
    * in {@link co.cask.cdap.data.stream.service.ConcurrentStreamWriter} to do the write through the
    * channel callback.
+   *
+   * Every sender borrows one connection from the {@link BackendConnectionPool}, and owns it until all requests
+   * sent through it are completed. After that, the connection may be borrowed by other inbound channels, and the
+   * sender cannot be used for new requests anymore.
    */
   private static final class MessageSender implements Closeable {
     private final Channel inBoundChannel;
-    private final ChannelFuture channelFuture;
+    private final WrappedDiscoverable discoverable;
+    private final ListenableFuture<Channel> channelFuture;
     private final Queue<OutboundMessage> messages;
     private final AtomicBoolean writer;
 
-    private MessageSender(Channel inBoundChannel, ChannelFuture channelFuture) {
+    // All following fields are guarded by this instance
+    private OutboundHandler outboundHandler;
+    // Requests started before the connection is available
+    private int unboundRequests;
+    private boolean unboundRequestInProgress;
+    private boolean unboundReusable = true;
+    private boolean closed;
+
+    private MessageSender(Channel inBoundChannel, WrappedDiscoverable discoverable,
+                          BackendConnectionPool connectionPool) {
       this.inBoundChannel = inBoundChannel;
-      this.channelFuture = channelFuture;
+      this.discoverable = discoverable;
       this.messages = Queues.newConcurrentLinkedQueue();
       this.writer = new AtomicBoolean(false);
+      this.channelFuture = connectionPool.acquire(discoverable);
+      Futures.addCallback(channelFuture, new FutureCallback<Channel>() {
+        @Override
+        public void onSuccess(Channel channel) {
+          connected(channel);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          if (channelFuture.isCancelled()) {
+            return;
+          }
+          if (t instanceof HandlerException) {
+            // No connection became available in time, respond to the client and close the channel,
+            // since the requests queued on this sender cannot be answered anymore
+            LOG.warn("{} for {}", t.getMessage(), MessageSender.this.discoverable.getSocketAddress());
+            Channel channel = MessageSender.this.inBoundChannel;
+            if (channel.isConnected()) {
+              channel.write(((HandlerException) t).createFailureResponse()).addListener(ChannelFutureListener.CLOSE);
+            }
+            return;
+          }
+          LOG.error("Failed to connect to {}", MessageSender.this.discoverable.getSocketAddress(), t);
+          closeOnFlush(MessageSender.this.inBoundChannel);
+        }
+      });
     }
 
-    private boolean isConnected() {
-      return channelFuture.getChannel().isConnected();
+    /**
+     * Registers a new request that is going to be sent through this sender.
+     *
+     * @return {@code false} if this sender cannot be used for new requests anymore
+     */
+    private synchronized boolean startRequest(HttpRequest request) {
+      if (closed) {
+        return false;
+      }
+      if (outboundHandler == null) {
+        unboundRequests++;
+        unboundRequestInProgress = request.isChunked();
+        unboundReusable &= HttpHeaders.isKeepAlive(request);
+        return true;
+      }
+      return outboundHandler.startRequest(this, request);
     }
 
-    private void send(Object msg) {
-      // Attach the outbound channel to the inbound to indicate the in-flight request outbound.
-      inBoundChannel.setAttachment(channelFuture.getChannel());
+    /**
+     * Marks the body of the current chunked request as completely sent.
+     */
+    private void requestCompleted() {
+      OutboundHandler handler;
+      synchronized (this) {
+        if (outboundHandler == null) {
+          unboundRequestInProgress = false;
+          return;
+        }
+        handler = outboundHandler;
+      }
+      handler.requestCompleted(this);
+    }
+
+    private void connected(Channel channel) {
+      if (!channel.isConnected()) {
+        LOG.debug("Connection to {} closed before it is used", discoverable.getSocketAddress());
+        closeOnFlush(inBoundChannel);
+        return;
+      }
+      OutboundHandler handler = channel.getPipeline().get(OutboundHandler.class);
+      synchronized (this) {
+        if (closed) {
+          // Nothing has been written to the connection, hence it can be used by others
+          handler.bind(this, inBoundChannel, channel, discoverable, 0, false, true);
+          handler.unbind(this);
+          return;
+        }
+        handler.bind(this, inBoundChannel, channel, discoverable,
+                     unboundRequests, unboundRequestInProgress, unboundReusable);
+        outboundHandler = handler;
+      }
+      flushUntilCompleted(channel, null);
+    }
 
+    private void send(Object msg) {
       final OutboundMessage message = new OutboundMessage(msg);
       messages.add(message);
-      if (channelFuture.isSuccess()) {
-        flushUntilCompleted(channelFuture.getChannel(), message);
-      } else {
-        channelFuture.addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            if (!future.isSuccess()) {
-              closeOnFlush(inBoundChannel);
-              return;
-            }
-
-            flushUntilCompleted(future.getChannel(), message);
+      if (channelFuture.isDone() && !channelFuture.isCancelled()) {
+        Channel channel = Futures.getUnchecked(channelFuture);
+        synchronized (this) {
+          if (outboundHandler == null) {
+            // The connection is not bound yet, the messages are written once it is
+            return;
           }
-        });
+        }
+        flushUntilCompleted(channel, message);
       }
     }
 
     /**
      * Writes queued messages to the given channel and keep doing it until the given message is written.
+     * If the given message is {@code null}, writes all queued messages.
      */
-    private void flushUntilCompleted(Channel channel, OutboundMessage message) {
+    private void flushUntilCompleted(Channel channel, @Nullable OutboundMessage message) {
       // Retry until the message is sent.
-      while (!message.isCompleted()) {
+      while (message == null || !message.isCompleted()) {
         // If lose to be write, just yield for other threads and recheck if the message is sent.
         if (!writer.compareAndSet(false, true)) {
+          if (message == null) {
+            // The other writer is going to write all messages
+            return;
+          }
           Thread.yield();
           continue;
         }
@@ -270,6 +348,8 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
         // Otherwise, send every messages in the queue and notify others by setting the completed flag
         // The visibility of the flag is guaranteed by the setting of the atomic boolean.
         try {
+          // Attach the outbound channel to the inbound to indicate the in-flight request outbound.
+          inBoundChannel.setAttachment(channel);
           OutboundMessage m = messages.poll();
           while (m != null) {
             m.write(channel);
@@ -279,12 +359,24 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
         } finally {
           writer.set(false);
         }
+        if (message == null) {
+          return;
+        }
       }
     }
 
     @Override
     public void close() throws IOException {
-      closeOnFlush(channelFuture.getChannel());
+      OutboundHandler handler;
+      synchronized (this) {
+        closed = true;
+        handler = outboundHandler;
+      }
+      if (handler != null) {
+        handler.unbind(this);
+      } else {
+        channelFuture.cancel(false);
+      }
     }
   }
 
@@ -16,56 +16,237 @@
 
 package co.cask.cdap.gateway.router.handlers;
 
-import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Handles requests to and from a discoverable endpoint.
+ *
+ * There is one instance per connection to a backend service. While the connection is borrowed from the
+ * {@link BackendConnectionPool} by an inbound channel, responses are forwarded to that inbound channel. The handler
+ * keeps track of the requests sent over the connection, and returns the connection to the pool once all responses
+ * are received and no request is partially sent.
  */
 public class OutboundHandler extends SimpleChannelUpstreamHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private final BackendConnectionPool connectionPool;
+
+  // All following fields are guarded by this instance
+  private Object owner;
+  private Channel inboundChannel;
+  private Channel outboundChannel;
+  private WrappedDiscoverable discoverable;
+  // Number of requests that have no complete response yet
+  private int pendingResponses;
+  // Whether the body of a chunked request is still being sent
+  private boolean requestInProgress;
+  private boolean reusable;
+
+  public OutboundHandler(BackendConnectionPool connectionPool) {
+    this.connectionPool = connectionPool;
+  }
 
-  public OutboundHandler(Channel inboundChannel) {
+  /**
+   * Binds the connection to an inbound channel after it was borrowed from the pool.
+   *
+   * @param owner the borrower, which must be passed to all subsequent calls
+   * @param inboundChannel channel to forward responses to
+   * @param outboundChannel the connection this handler belongs to
+   * @param discoverable the discoverable the connection belongs to
+   * @param pendingResponses number of requests that are sent over the connection before it is bound
+   * @param requestInProgress whether the last of these requests is chunked and not completely sent
+   * @param reusable whether all of these requests allow to keep the connection alive
+   */
+  synchronized void bind(Object owner, Channel inboundChannel, Channel outboundChannel,
+                         WrappedDiscoverable discoverable, int pendingResponses, boolean requestInProgress,
+                         boolean reusable) {
+    this.owner = owner;
     this.inboundChannel = inboundChannel;
+    this.outboundChannel = outboundChannel;
+    this.discoverable = discoverable;
+    this.pendingResponses = pendingResponses;
+    this.requestInProgress = requestInProgress;
+    this.reusable = reusable;
+  }
+
+  /**
+   * Registers a request that is about to be sent over the connection.
+   *
+   * @return {@code false} if the connection cannot be used by the given owner anymore
+   */
+  synchronized boolean startRequest(Object owner, HttpRequest request) {
+    if (this.owner != owner || !outboundChannel.isConnected()) {
+      return false;
+    }
+    pendingResponses++;
+    requestInProgress = request.isChunked();
+    if (!HttpHeaders.isKeepAlive(request)) {
+      // The backend closes the connection after the response
+      reusable = false;
+    }
+    return true;
+  }
+
+  /**
+   * Marks the body of the current chunked request as completely sent.
+   */
+  void requestCompleted(Object owner) {
+    synchronized (this) {
+      if (this.owner != owner) {
+        return;
+      }
+      requestInProgress = false;
+      if (!isIdle()) {
+        return;
+      }
+    }
+    release(owner);
+  }
+
+  /**
+   * Called when the owner does not use the connection anymore. If there is still an exchange in progress,
+   * the connection is closed.
+   */
+  void unbind(Object owner) {
+    synchronized (this) {
+      if (this.owner != owner) {
+        return;
+      }
+      if (!isIdle()) {
+        reusable = false;
+      }
+    }
+    release(owner);
   }
 
   @Override
   public void messageReceived(ChannelHandlerContext ctx, final MessageEvent e) throws Exception {
-    ChannelBuffer msg = (ChannelBuffer) e.getMessage();
-    inboundChannel.write(msg);
+    Object msg = e.getMessage();
+
+    boolean completed;
+    boolean keepAlive = true;
+    if (msg instanceof HttpResponse) {
+      HttpResponse response = (HttpResponse) msg;
+      // Informational responses are followed by the actual response
+      completed = !response.isChunked() && response.getStatus().getCode() >= 200;
+      keepAlive = HttpHeaders.isKeepAlive(response);
+    } else {
+      completed = msg instanceof HttpChunk && ((HttpChunk) msg).isLast();
+    }
+
+    Object currentOwner;
+    Channel inbound;
+    boolean closeInbound = false;
+    boolean release = false;
+    synchronized (this) {
+      currentOwner = owner;
+      inbound = inboundChannel;
+      if (!keepAlive) {
+        reusable = false;
+      }
+      if (completed && inbound != null) {
+        pendingResponses--;
+        // If the backend closes the connection, so does the router with the inbound channel
+        closeInbound = !reusable && ctx.getChannel().equals(inbound.getAttachment());
+        release = isIdle();
+      }
+    }
+    if (inbound == null) {
+      LOG.debug("Discarding unexpected message on idle connection {}", ctx.getChannel());
+      ctx.getChannel().close();
+      return;
+    }
+
+    // Release before forwarding the end of the response, so that the connection is available to the next request
+    // of the client. Responses to other borrowers are handled by this thread only after this method returns.
+    if (release) {
+      release(currentOwner);
+    }
+    inbound.write(msg);
+    if (closeInbound) {
+      HttpRequestHandler.closeOnFlush(inbound);
+    }
   }
 
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
-    inboundChannel.getPipeline().execute(new Runnable() {
+    final Channel inbound;
+    synchronized (this) {
+      inbound = inboundChannel;
+    }
+    if (inbound == null) {
+      return;
+    }
+    inbound.getPipeline().execute(new Runnable() {
       @Override
       public void run() {
         // If outboundChannel is not saturated anymore, continue accepting
         // the incoming traffic from the inboundChannel.
         if (e.getChannel().isWritable()) {
           LOG.trace("Setting inboundChannel readable.");
-          inboundChannel.setReadable(true);
+          inbound.setReadable(true);
         } else {
           // If outboundChannel is saturated, do not read inboundChannel
           LOG.trace("Setting inboundChannel non-readable.");
-          inboundChannel.setReadable(false);
+          inbound.setReadable(false);
         }
       }
     });
   }
 
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    Channel inbound;
+    synchronized (this) {
+      inbound = inboundChannel;
+      owner = null;
+      inboundChannel = null;
+    }
+    // When the outbound channel closed, close the inbound channel as well if it carries the in-flight request
+    if (inbound != null && ctx.getChannel().equals(inbound.getAttachment())) {
+      HttpRequestHandler.closeOnFlush(inbound);
+    }
+    super.channelClosed(ctx, e);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     LOG.error("Got exception {}", ctx.getChannel(), e.getCause());
     HttpRequestHandler.closeOnFlush(e.getChannel());
   }
+
+  private boolean isIdle() {
+    return pendingResponses <= 0 && !requestInProgress;
+  }
+
+  /**
+   * Returns the connection to the pool, unless it was released by the given owner already.
+   */
+  private void release(Object owner) {
+    Channel channel;
+    WrappedDiscoverable discoverable;
+    boolean reusable;
+    synchronized (this) {
+      if (owner == null || this.owner != owner) {
+        return;
+      }
+      channel = outboundChannel;
+      discoverable = this.discoverable;
+      reusable = this.reusable;
+      this.owner = null;
+      inboundChannel = null;
+    }
+    connectionPool.release(discoverable, channel, reusable);
+  }
 }
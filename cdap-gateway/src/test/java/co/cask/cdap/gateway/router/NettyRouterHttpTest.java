@@ -16,6 +16,8 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
@@ -23,16 +25,26 @@ import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.IOModule;
 import co.cask.cdap.gateway.auth.NoAuthenticator;
+import co.cask.cdap.gateway.router.handlers.BackendConnectionPool;
+import co.cask.cdap.metrics.collect.AggregatedMetricsCollectionService;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.guice.SecurityModules;
 import com.google.common.collect.Maps;
 import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.AtomicLongMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.apache.twill.discovery.DiscoveryService;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -60,10 +72,75 @@ public class NettyRouterHttpTest extends NettyRouterTestBase {
     return new DefaultHttpClient();
   }
 
+  @Test
+  public void testBackendConnectionReuse() throws Exception {
+    NettyRouter router = ((HttpRouterService) routerService).router;
+    RecordingMetricsCollectionService metrics = ((HttpRouterService) routerService).metrics;
+    BackendConnectionPool.Stats before = router.getBackendConnectionStats();
+    metrics.flush();
+    long borrowsBefore = metrics.get("router.backend.borrows");
+
+    // Every request uses a new inbound connection, the backend connections should still be reused
+    int requests = 20;
+    for (int i = 0; i < requests; i++) {
+      DefaultHttpClient client = getHTTPClient();
+      try {
+        HttpResponse response = client.execute(new HttpGet(String.format("http://%s:%d/v1/ping/reuse-%d", HOSTNAME,
+                                                                          lookupService(DEFAULT_SERVICE), i)));
+        Assert.assertEquals(HttpResponseStatus.OK.getCode(), response.getStatusLine().getStatusCode());
+        EntityUtils.consume(response.getEntity());
+      } finally {
+        client.getConnectionManager().shutdown();
+      }
+    }
+
+    BackendConnectionPool.Stats after = router.getBackendConnectionStats();
+    long connects = after.getConnects() - before.getConnects();
+    long hits = after.getHits() - before.getHits();
+    // There are two backend servers for the service
+    Assert.assertTrue("Too many connections: " + connects, connects <= 2);
+    Assert.assertEquals(requests, connects + hits);
+
+    // Every request borrows one connection, which is emitted as a metric
+    metrics.flush();
+    Assert.assertEquals(requests, metrics.get("router.backend.borrows") - borrowsBefore);
+  }
+
+  /**
+   * Metrics collection service that sums up the published metrics by name. Metrics are only published by
+   * {@link #flush()}, as the service is not started.
+   */
+  private static final class RecordingMetricsCollectionService extends AggregatedMetricsCollectionService {
+    private final AtomicLongMap<String> totals = AtomicLongMap.create();
+
+    @Override
+    protected void publish(Iterator<MetricValues> metrics) throws Exception {
+      while (metrics.hasNext()) {
+        for (MetricValue metric : metrics.next().getMetrics()) {
+          totals.addAndGet(metric.getName(), metric.getValue());
+        }
+      }
+    }
+
+    @Override
+    protected boolean isPublishMetaMetrics() {
+      return false;
+    }
+
+    void flush() throws Exception {
+      runOneIteration();
+    }
+
+    long get(String metricName) {
+      return totals.get(metricName);
+    }
+  }
+
   private static class HttpRouterService extends RouterService {
     private final String hostname;
     private final DiscoveryService discoveryService;
     private final Map<String, Integer> serviceMap = Maps.newHashMap();
+    private final RecordingMetricsCollectionService metrics = new RecordingMetricsCollectionService();
 
     private NettyRouter router;
 
@@ -90,6 +167,7 @@ public class NettyRouterHttpTest extends NettyRouterTestBase {
                         new RouterServiceLookup((DiscoveryServiceClient) discoveryService,
                                                 new RouterPathLookup(new NoAuthenticator())),
                         new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
+      router.setMetricsCollectionService(metrics);
       router.startAndWait();
 
       for (Map.Entry<Integer, String> entry : router.getServiceLookup().getServiceMap().entrySet()) {
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router;
+
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PathTrie}.
+ */
+public class PathTrieTest {
+
+  @Test
+  public void testPrecedence() {
+    PathTrie<String> trie = PathTrie.<String>builder()
+      .add("/a/*/c", "wildcard")
+      .add("/a/b/c", "literal")
+      .add("/a/b/**", "prefix")
+      .add("/a/b/d|e", HttpMethod.PUT, "put")
+      .add("/a/**", "fallback")
+      .build();
+
+    // The first added pattern wins, even if a later one is more specific
+    Assert.assertEquals("wildcard", trie.lookup("/a/b/c", HttpMethod.GET));
+    Assert.assertEquals("wildcard", trie.lookup("//a///x/c/", HttpMethod.GET));
+    Assert.assertEquals("prefix", trie.lookup("/a/b/c/d", HttpMethod.GET));
+    Assert.assertEquals("prefix", trie.lookup("/a/b", HttpMethod.GET));
+    Assert.assertEquals("prefix", trie.lookup("/a/b/d", HttpMethod.PUT));
+    Assert.assertEquals("fallback", trie.lookup("/a", HttpMethod.GET));
+    Assert.assertEquals("fallback", trie.lookup("/a/x/d", HttpMethod.GET));
+    Assert.assertNull(trie.lookup("/b/b/c", HttpMethod.GET));
+    Assert.assertNull(trie.lookup("/", HttpMethod.GET));
+    Assert.assertNull(trie.lookup("/ab", HttpMethod.GET));
+  }
+
+  @Test
+  public void testMethodAndAlternatives() {
+    PathTrie<String> trie = PathTrie.<String>builder()
+      .add("/s/*/flows", HttpMethod.GET, "get")
+      .add("/s/*/queries|jdbc", "alternative")
+      .add("/s/**", "other")
+      .build();
+
+    Assert.assertEquals("get", trie.lookup("/s/x/flows", HttpMethod.GET));
+    Assert.assertEquals("other", trie.lookup("/s/x/flows", HttpMethod.POST));
+    Assert.assertEquals("alternative", trie.lookup("/s/x/queries", HttpMethod.POST));
+    Assert.assertEquals("alternative", trie.lookup("s/x/jdbc/", HttpMethod.GET));
+    Assert.assertEquals("other", trie.lookup("/s/x/queries|jdbc", HttpMethod.GET));
+    Assert.assertEquals("other", trie.lookup("/s/x/flows/y", HttpMethod.GET));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPattern() {
+    PathTrie.<String>builder().add("/a/**/b", "invalid");
+  }
+}
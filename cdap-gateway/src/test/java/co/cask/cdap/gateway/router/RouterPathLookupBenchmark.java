@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router;
+
+import co.cask.cdap.gateway.auth.NoAuthenticator;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Benchmark for {@link RouterPathLookup}, measuring the time to resolve the destination service of the v3 paths
+ * served by the router.
+ *
+ * Usage: RouterPathLookupBenchmark [iterations]
+ */
+public class RouterPathLookupBenchmark {
+
+  private static final String FALLBACK_SERVICE = "gateway";
+
+  private static final Object[][] PATHS = {
+    { HttpMethod.GET, "/v3/namespaces" },
+    { HttpMethod.PUT, "/v3/namespaces/default" },
+    { HttpMethod.GET, "/v3/namespaces/default/apps" },
+    { HttpMethod.POST, "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/start" },
+    { HttpMethod.GET, "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/runs" },
+    { HttpMethod.GET, "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/logs" },
+    { HttpMethod.GET, "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/runs/1234/logs" },
+    { HttpMethod.PUT, "/v3/namespaces/default/apps/PurchaseHistory/flows/PurchaseFlow/flowlets/reader/instances" },
+    { HttpMethod.GET, "/v3/namespaces/default/apps/PurchaseHistory/services/CatalogLookup/methods/v1/product/1" },
+    { HttpMethod.GET, "/v3/namespaces/default/adapters/adapter1/logs" },
+    { HttpMethod.GET, "/v3/namespaces/default/streams" },
+    { HttpMethod.POST, "/v3/namespaces/default/streams/purchases" },
+    { HttpMethod.GET, "/v3/namespaces/default/streams/purchases/flows" },
+    { HttpMethod.GET, "/v3/namespaces/default/streams/purchases/events" },
+    { HttpMethod.POST, "/v3/namespaces/default/streams/purchases/batch" },
+    { HttpMethod.GET, "/v3/namespaces/default/data/datasets" },
+    { HttpMethod.GET, "/v3/namespaces/default/data/datasets/history/properties" },
+    { HttpMethod.GET, "/v3/namespaces/default/data/datasets/history/flows" },
+    { HttpMethod.POST, "/v3/namespaces/default/data/explore/datasets/history/enable" },
+    { HttpMethod.GET, "/v3/data/explore/queries/1234/status" },
+    { HttpMethod.POST, "/v3/metrics/query" },
+    { HttpMethod.GET, "/v3/system/services/appfabric/logs" },
+    { HttpMethod.GET, "/v3/system/services/appfabric/status" },
+    { HttpMethod.GET, "/v3/feeds/categories" },
+    { HttpMethod.GET, "/v3/ping" }
+  };
+
+  public static void main(String[] args) {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    RouterPathLookup lookup = new RouterPathLookup(new NoAuthenticator());
+    String[] paths = new String[PATHS.length];
+    HttpRequest[] requests = new HttpRequest[PATHS.length];
+    for (int i = 0; i < PATHS.length; i++) {
+      paths[i] = (String) PATHS[i][1];
+      requests[i] = new DefaultHttpRequest(HttpVersion.HTTP_1_1, (HttpMethod) PATHS[i][0], paths[i]);
+    }
+
+    // Run twice, the first run is for warm-up
+    for (int run = 0; run < 2; run++) {
+      System.out.println(run == 0 ? "Warm-up run" : "Measured run");
+      int routed = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        for (int j = 0; j < paths.length; j++) {
+          if (lookup.getRoutingService(FALLBACK_SERVICE, paths[j], requests[j]) != null) {
+            routed++;
+          }
+        }
+      }
+      long nanos = System.nanoTime() - start;
+      long lookups = (long) iterations * paths.length;
+      System.out.printf("%d lookups (%d routed) %10.2f ns/lookup %12.0f lookups/s%n",
+                        lookups, routed, (double) nanos / lookups, lookups * 1e9 / nanos);
+    }
+  }
+}
@@ -17,11 +17,13 @@
 package co.cask.cdap.notifications.service;
 
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.DatasetInstancePool;
 import co.cask.cdap.notifications.feeds.NotificationFeedException;
 import co.cask.cdap.notifications.feeds.NotificationFeedManager;
 import co.cask.cdap.notifications.feeds.NotificationFeedNotFoundException;
 import co.cask.cdap.notifications.service.inmemory.InMemoryNotificationService;
 import co.cask.cdap.proto.Id;
+import co.cask.tephra.TransactionContext;
 import co.cask.tephra.TransactionSystemClient;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
@@ -40,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Common implementation of the the {@link NotificationService} that handles the subscriptions to all the notification
@@ -50,18 +53,24 @@ public abstract class AbstractNotificationService extends AbstractIdleService im
   private static final Gson GSON = new GsonBuilder()
     .enableComplexMapKeySerialization()
     .create();
+  private static final int MAX_IDLE_DATASETS = 16;
+  private static final long DATASET_IDLE_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(2);
 
   private final Multimap<Id.NotificationFeed, NotificationCaller<?>> subscribers;
 
   private final DatasetFramework dsFramework;
   private final TransactionSystemClient transactionSystemClient;
   private final NotificationFeedManager feedManager;
+  // Dataset instances reused by the transactions of all notification handlers
+  private final DatasetInstancePool datasetPool;
 
   protected AbstractNotificationService(DatasetFramework dsFramework, TransactionSystemClient transactionSystemClient,
                                         NotificationFeedManager feedManager) {
     this.dsFramework = dsFramework;
     this.transactionSystemClient = transactionSystemClient;
     this.feedManager = feedManager;
+    this.datasetPool = new DatasetInstancePool(dsFramework, TransactionContext.class.getClassLoader(), null,
+                                               MAX_IDLE_DATASETS, DATASET_IDLE_TIMEOUT_MILLIS, null);
     this.subscribers = Multimaps.synchronizedMultimap(
       HashMultimap.<Id.NotificationFeed, NotificationCaller<?>>create());
   }
@@ -81,10 +90,18 @@ public abstract class AbstractNotificationService extends AbstractIdleService im
     for (NotificationCaller caller : callers) {
       Object notification = GSON.fromJson(notificationJson, caller.getNotificationType());
       Id.Namespace namespaceId = Id.Namespace.from(feed.getNamespaceId());
-      caller.received(notification, new BasicNotificationContext(namespaceId, dsFramework, transactionSystemClient));
+      caller.received(notification, new BasicNotificationContext(namespaceId, dsFramework, transactionSystemClient,
+                                                                 datasetPool));
     }
   }
 
+  /**
+   * Closes the dataset instances kept for notification handlers. Subclasses must call this when shutting down.
+   */
+  protected void closeDatasets() {
+    datasetPool.close();
+  }
+
   @Override
   public <N> ListenableFuture<N> publish(Id.NotificationFeed feed, N notification)
     throws NotificationException {
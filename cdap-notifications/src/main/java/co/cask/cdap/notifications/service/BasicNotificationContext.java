@@ -20,6 +20,7 @@ import co.cask.cdap.api.TxRunnable;
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.data2.dataset2.DatasetCacheKey;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.DatasetInstancePool;
 import co.cask.cdap.data2.dataset2.DynamicDatasetContext;
 import co.cask.cdap.proto.Id;
 import co.cask.tephra.TransactionContext;
@@ -41,12 +42,14 @@ public final class BasicNotificationContext implements NotificationContext {
   private final Id.Namespace namespaceId;
   private final DatasetFramework dsFramework;
   private final TransactionSystemClient transactionSystemClient;
+  private final DatasetInstancePool datasetPool;
 
   public BasicNotificationContext(Id.Namespace namespaceId, DatasetFramework dsFramework,
-                                  TransactionSystemClient transactionSystemClient) {
+                                  TransactionSystemClient transactionSystemClient, DatasetInstancePool datasetPool) {
     this.namespaceId = namespaceId;
     this.dsFramework = dsFramework;
     this.transactionSystemClient = transactionSystemClient;
+    this.datasetPool = datasetPool;
   }
 
   @Override
@@ -55,22 +58,32 @@ public final class BasicNotificationContext implements NotificationContext {
     while (true) {
       try {
         final TransactionContext context = new TransactionContext(transactionSystemClient);
+        DynamicDatasetContext datasetContext = new DynamicDatasetContext(namespaceId, context, dsFramework,
+                                                                         context.getClass().getClassLoader()) {
+          @Nullable
+          @Override
+          protected LoadingCache<Long, Map<DatasetCacheKey, Dataset>> getDatasetsCache() {
+            return null;
+          }
+
+          @Override
+          protected DatasetInstancePool getDatasetPool() {
+            return datasetPool;
+          }
+        };
+        boolean committed = false;
         try {
           context.start();
-          runnable.run(new DynamicDatasetContext(namespaceId, context, dsFramework,
-                                                 context.getClass().getClassLoader()) {
-            @Nullable
-            @Override
-            protected LoadingCache<Long, Map<DatasetCacheKey, Dataset>> getDatasetsCache() {
-              return null;
-            }
-          });
+          runnable.run(datasetContext);
           context.finish();
+          committed = true;
           return true;
         } catch (TransactionFailureException e) {
           abortTransaction(e, "Failed to commit. Aborting transaction.", context);
         } catch (Exception e) {
           abortTransaction(e, "Exception occurred running user code. Aborting transaction.", context);
+        } finally {
+          datasetContext.releaseDatasets(committed);
         }
       } catch (Throwable t) {
         switch (policy.handleFailure(++countFail, t)) {
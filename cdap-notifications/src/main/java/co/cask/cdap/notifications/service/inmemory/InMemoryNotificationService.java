@@ -58,6 +58,7 @@ public class InMemoryNotificationService extends AbstractNotificationService {
   @Override
   protected void shutDown() throws Exception {
     executorService.shutdownNow();
+    closeDatasets();
   }
 
   @Override
@@ -98,6 +98,7 @@ public class KafkaNotificationService extends AbstractNotificationService {
   @Override
   protected void shutDown() throws Exception {
     publishingExecutor.shutdownNow();
+    closeDatasets();
   }
 
   @Override
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.proto;
+
+import com.google.common.base.Objects;
+
+/**
+ * Represents statistics about the input scanned by a query, such as the number of splits and the number of bytes
+ * skipped by pushing the query predicates into split computation.
+ */
+public class QueryStatistics {
+
+  private final int partitionsScanned;
+  private final int partitionsSkipped;
+  private final int splits;
+  private final long bytesScanned;
+  private final long bytesSkipped;
+
+  public QueryStatistics(int partitionsScanned, int partitionsSkipped, int splits,
+                         long bytesScanned, long bytesSkipped) {
+    this.partitionsScanned = partitionsScanned;
+    this.partitionsSkipped = partitionsSkipped;
+    this.splits = splits;
+    this.bytesScanned = bytesScanned;
+    this.bytesSkipped = bytesSkipped;
+  }
+
+  public int getPartitionsScanned() {
+    return partitionsScanned;
+  }
+
+  public int getPartitionsSkipped() {
+    return partitionsSkipped;
+  }
+
+  public int getSplits() {
+    return splits;
+  }
+
+  public long getBytesScanned() {
+    return bytesScanned;
+  }
+
+  public long getBytesSkipped() {
+    return bytesSkipped;
+  }
+
+  /**
+   * Returns a new {@link QueryStatistics} that is the sum of this and the given statistics.
+   */
+  public QueryStatistics add(QueryStatistics other) {
+    return new QueryStatistics(partitionsScanned + other.partitionsScanned,
+                               partitionsSkipped + other.partitionsSkipped,
+                               splits + other.splits,
+                               bytesScanned + other.bytesScanned,
+                               bytesSkipped + other.bytesSkipped);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("partitionsScanned", partitionsScanned)
+      .add("partitionsSkipped", partitionsSkipped)
+      .add("splits", splits)
+      .add("bytesScanned", bytesScanned)
+      .add("bytesSkipped", bytesSkipped)
+      .toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    QueryStatistics that = (QueryStatistics) o;
+
+    return this.partitionsScanned == that.partitionsScanned &&
+      this.partitionsSkipped == that.partitionsSkipped &&
+      this.splits == that.splits &&
+      this.bytesScanned == that.bytesScanned &&
+      this.bytesSkipped == that.bytesSkipped;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(partitionsScanned, partitionsSkipped, splits, bytesScanned, bytesSkipped);
+  }
+}
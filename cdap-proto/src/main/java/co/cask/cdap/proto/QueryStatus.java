@@ -18,6 +18,8 @@ package co.cask.cdap.proto;
 
 import com.google.common.base.Objects;
 
+import javax.annotation.Nullable;
+
 /**
  * Represents the status of a submitted query operation.
  */
@@ -27,10 +29,16 @@ public class QueryStatus {
 
   private final OpStatus status;
   private final boolean hasResults;
+  private final QueryStatistics statistics;
 
   public QueryStatus(OpStatus status, boolean hasResults) {
+    this(status, hasResults, null);
+  }
+
+  public QueryStatus(OpStatus status, boolean hasResults, @Nullable QueryStatistics statistics) {
     this.status = status;
     this.hasResults = hasResults;
+    this.statistics = statistics;
   }
 
   public OpStatus getStatus() {
@@ -41,11 +49,20 @@ public class QueryStatus {
     return hasResults;
   }
 
+  /**
+   * Returns statistics about the input scanned by the query or {@code null} if not available.
+   */
+  @Nullable
+  public QueryStatistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
       .add("state", status)
       .add("hasResults", hasResults)
+      .add("statistics", statistics)
       .toString();
   }
 
@@ -61,12 +78,13 @@ public class QueryStatus {
     QueryStatus that = (QueryStatus) o;
 
     return Objects.equal(this.status, that.status) &&
-      Objects.equal(this.hasResults, that.hasResults);
+      Objects.equal(this.hasResults, that.hasResults) &&
+      Objects.equal(this.statistics, that.statistics);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(NO_OP, status, hasResults);
+    return Objects.hashCode(NO_OP, status, hasResults, statistics);
   }
 
   /**
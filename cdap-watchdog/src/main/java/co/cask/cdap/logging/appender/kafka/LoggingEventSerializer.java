@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -31,7 +31,6 @@ import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.EncoderFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -41,9 +40,17 @@ import java.nio.ByteBuffer;
  */
 public final class LoggingEventSerializer {
   private final LogSchema logSchema;
+  private final GenericDatumWriter<GenericRecord> datumWriter;
+  private final GenericDatumReader<GenericRecord> datumReader;
+
+  // The serializer is shared by threads, hence the buffered encoder and array based decoder are reused per thread
+  private final ThreadLocal<BinaryEncoder> encoders = new ThreadLocal<BinaryEncoder>();
+  private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<BinaryDecoder>();
 
   public LoggingEventSerializer() throws IOException {
     this.logSchema = new LogSchema();
+    this.datumWriter = new GenericDatumWriter<GenericRecord>(logSchema.getAvroSchema());
+    this.datumReader = new GenericDatumReader<GenericRecord>(logSchema.getAvroSchema());
   }
 
   public LoggingEventSerializer(VerifiableProperties props) throws IOException {
@@ -56,10 +63,11 @@ public final class LoggingEventSerializer {
 
   public byte[] toBytes(ILoggingEvent loggingEvent, LoggingContext loggingContext) {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<GenericRecord>(logSchema.getAvroSchema());
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, encoders.get());
+    encoders.set(encoder);
     try {
-      writer.write(LoggingEvent.encode(logSchema.getAvroSchema(), loggingEvent, loggingContext), encoder);
+      datumWriter.write(LoggingEvent.encode(logSchema.getAvroSchema(), loggingEvent, loggingContext), encoder);
+      encoder.flush();
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -71,19 +79,20 @@ public final class LoggingEventSerializer {
   }
 
   public GenericRecord toGenericRecord(ByteBuffer buffer) {
-    ByteArrayInputStream in;
+    // Decodes directly from the array instead of going through an InputStream
+    BinaryDecoder decoder;
     if (buffer.hasArray()) {
-      in = new ByteArrayInputStream(buffer.array(), buffer.arrayOffset(), buffer.limit());
+      decoder = DecoderFactory.get().binaryDecoder(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                                   buffer.remaining(), decoders.get());
     } else {
-      byte [] bytes = new byte[buffer.limit()];
+      byte [] bytes = new byte[buffer.remaining()];
       buffer.get(bytes);
-      in = new ByteArrayInputStream(bytes);
+      decoder = DecoderFactory.get().binaryDecoder(bytes, decoders.get());
     }
+    decoders.set(decoder);
 
-    BinaryDecoder decoder = DecoderFactory.get().directBinaryDecoder(in, null);
-    GenericDatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>(logSchema.getAvroSchema());
     try {
-      return reader.read(null, decoder);
+      return datumReader.read(null, decoder);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
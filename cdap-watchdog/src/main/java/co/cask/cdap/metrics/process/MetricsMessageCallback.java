@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,9 +18,8 @@ package co.cask.cdap.metrics.process;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricValues;
-import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
 import co.cask.cdap.internal.io.DatumReader;
-import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
@@ -42,6 +41,10 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
 
   private static final Logger LOG = LoggerFactory.getLogger(MetricsMessageCallback.class);
 
+  // Number of decoded strings to cache. Metric names and tag values repeat a lot, and with the cache the decoded
+  // records of a batch share the same instances.
+  private static final int STRING_CACHE_SIZE = 1024;
+
   private final DatumReader<MetricValues> recordReader;
   private final Schema recordSchema;
   private long recordProcessed;
@@ -58,13 +61,13 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
   @Override
   public void onReceived(Iterator<FetchedMessage> messages) {
     // Decode the metrics records.
-    final ByteBufferInputStream is = new ByteBufferInputStream(null);
+    final ByteBufferDecoder decoder = new ByteBufferDecoder(null, false, STRING_CACHE_SIZE);
     List<MetricValues> records = ImmutableList.copyOf(
       Iterators.filter(Iterators.transform(messages, new Function<FetchedMessage, MetricValues>() {
       @Override
       public MetricValues apply(FetchedMessage input) {
         try {
-          return recordReader.read(new BinaryDecoder(is.reset(input.getPayload())), recordSchema);
+          return recordReader.read(decoder.reset(input.getPayload()), recordSchema);
         } catch (IOException e) {
           LOG.info("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
           return null;